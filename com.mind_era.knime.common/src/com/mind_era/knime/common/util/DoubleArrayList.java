@@ -0,0 +1,162 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+
+/**
+ * A growable buffer of primitive {@code double} values.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+public final class DoubleArrayList implements Serializable {
+	private static final long serialVersionUID = -2979618960958587413L;
+
+	private double[] elements;
+	private int size;
+
+	/**
+	 * Constructs an empty {@link DoubleArrayList}.
+	 */
+	public DoubleArrayList() {
+		this(16);
+	}
+
+	/**
+	 * Constructs an empty {@link DoubleArrayList}.
+	 *
+	 * @param initialCapacity
+	 *            The initial capacity.
+	 */
+	public DoubleArrayList(final int initialCapacity) {
+		super();
+		elements = new double[Math.max(initialCapacity, 1)];
+	}
+
+	/**
+	 * Appends {@code value} to the end of the buffer.
+	 *
+	 * @param value
+	 *            A {@code double} value.
+	 */
+	public void add(final double value) {
+		if (size == elements.length) {
+			grow(size + 1);
+		}
+		elements[size++] = value;
+	}
+
+	/**
+	 * Appends the {@code values} to the end of the buffer.
+	 *
+	 * @param values
+	 *            Some {@code double} values.
+	 */
+	public void addAll(final double[] values) {
+		addAll(values, 0, values.length);
+	}
+
+	/**
+	 * Appends the {@code [from, to)} part of {@code values} to the end of the
+	 * buffer.
+	 *
+	 * @param values
+	 *            Some {@code double} values.
+	 * @param from
+	 *            The first index (inclusive).
+	 * @param to
+	 *            The last index (exclusive).
+	 */
+	public void addAll(final double[] values, final int from, final int to) {
+		final int count = to - from;
+		if (size + count > elements.length) {
+			grow(size + count);
+		}
+		System.arraycopy(values, from, elements, size, count);
+		size += count;
+	}
+
+	/**
+	 * Appends the {@code values} which are not {@link Double#NaN}s or
+	 * infinities to the end of the buffer.
+	 *
+	 * @param values
+	 *            Some {@code double} values.
+	 */
+	public void addAllFinite(final double[] values) {
+		if (size + values.length > elements.length) {
+			grow(size + values.length);
+		}
+		for (final double value : values) {
+			if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+				elements[size++] = value;
+			}
+		}
+	}
+
+	/**
+	 * @param index
+	 *            A {@code 0}-based index.
+	 * @return The value at {@code index}.
+	 */
+	public double get(final int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: "
+					+ size);
+		}
+		return elements[index];
+	}
+
+	/**
+	 * @return The number of values.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return {@code true} iff there are no values in the buffer.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all values, but keeps the allocated capacity.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return The backing array, only the first {@link #size()} values are
+	 *         valid. Modifications are reflected in the buffer.
+	 */
+	public double[] elements() {
+		return elements;
+	}
+
+	/**
+	 * @return A copy of the values.
+	 */
+	public double[] toArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+	private void grow(final int minCapacity) {
+		elements = Arrays.copyOf(elements, Math.max(minCapacity,
+				elements.length + (elements.length >> 1)));
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+
+/**
+ * A simple open addressing hash map from {@code long} keys to {@code int}
+ * values without boxing.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+final class LongIntMap implements Serializable {
+	private static final long serialVersionUID = 3326316946536474092L;
+
+	/** The marker of the free slots, the {@code 0} key is stored separately. */
+	private static final long FREE = 0L;
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private boolean hasZero;
+	private int zeroValue;
+
+	/**
+	 * Constructs an empty {@link LongIntMap}.
+	 *
+	 * @param expectedSize
+	 *            The expected number of entries.
+	 */
+	LongIntMap(final int expectedSize) {
+		super();
+		int capacity = 16;
+		while (capacity < expectedSize * 2 && capacity < 1 << 30) {
+			capacity <<= 1;
+		}
+		keys = new long[capacity];
+		values = new int[capacity];
+	}
+
+	/**
+	 * @param key
+	 *            A key.
+	 * @param defaultValue
+	 *            The value returned when {@code key} is not present.
+	 * @return The value associated to {@code key}, or {@code defaultValue}.
+	 */
+	int get(final long key, final int defaultValue) {
+		if (key == FREE) {
+			return hasZero ? zeroValue : defaultValue;
+		}
+		final int mask = keys.length - 1;
+		for (int i = mix(key) & mask;; i = i + 1 & mask) {
+			final long k = keys[i];
+			if (k == key) {
+				return values[i];
+			}
+			if (k == FREE) {
+				return defaultValue;
+			}
+		}
+	}
+
+	/**
+	 * @param key
+	 *            A key.
+	 * @return {@code true} iff {@code key} is present.
+	 */
+	boolean containsKey(final long key) {
+		if (key == FREE) {
+			return hasZero;
+		}
+		final int mask = keys.length - 1;
+		for (int i = mix(key) & mask;; i = i + 1 & mask) {
+			final long k = keys[i];
+			if (k == key) {
+				return true;
+			}
+			if (k == FREE) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Associates {@code value} to {@code key}.
+	 *
+	 * @param key
+	 *            A key.
+	 * @param value
+	 *            The new value.
+	 */
+	void put(final long key, final int value) {
+		if (key == FREE) {
+			if (!hasZero) {
+				++size;
+			}
+			hasZero = true;
+			zeroValue = value;
+			return;
+		}
+		final int mask = keys.length - 1;
+		for (int i = mix(key) & mask;; i = i + 1 & mask) {
+			final long k = keys[i];
+			if (k == key) {
+				values[i] = value;
+				return;
+			}
+			if (k == FREE) {
+				keys[i] = key;
+				values[i] = value;
+				if (++size * 2 > keys.length) {
+					rehash(keys.length << 1);
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes the entry of {@code key} (if present).
+	 *
+	 * @param key
+	 *            A key.
+	 * @return {@code true} iff {@code key} was present.
+	 */
+	boolean remove(final long key) {
+		if (key == FREE) {
+			if (!hasZero) {
+				return false;
+			}
+			hasZero = false;
+			--size;
+			return true;
+		}
+		final int mask = keys.length - 1;
+		int i = mix(key) & mask;
+		while (keys[i] != key) {
+			if (keys[i] == FREE) {
+				return false;
+			}
+			i = i + 1 & mask;
+		}
+		// Shifts back the following entries of the probe sequence.
+		for (int j = i + 1 & mask; keys[j] != FREE; j = j + 1 & mask) {
+			final int ideal = mix(keys[j]) & mask;
+			if (i <= j ? i >= ideal || ideal > j : i >= ideal && ideal > j) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = FREE;
+		--size;
+		return true;
+	}
+
+	/**
+	 * @return The number of entries.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return The keys of the entries (in no particular order).
+	 */
+	long[] keys() {
+		final long[] ret = new long[size];
+		int count = 0;
+		if (hasZero) {
+			ret[count++] = FREE;
+		}
+		for (final long key : keys) {
+			if (key != FREE) {
+				ret[count++] = key;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	void clear() {
+		Arrays.fill(keys, FREE);
+		size = 0;
+		hasZero = false;
+	}
+
+	private void rehash(final int capacity) {
+		final long[] oldKeys = keys;
+		final int[] oldValues = values;
+		keys = new long[capacity];
+		values = new int[capacity];
+		final int mask = capacity - 1;
+		for (int j = oldKeys.length; j-- > 0;) {
+			final long key = oldKeys[j];
+			if (key != FREE) {
+				int i = mix(key) & mask;
+				while (keys[i] != FREE) {
+					i = i + 1 & mask;
+				}
+				keys[i] = key;
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	private static int mix(final long key) {
+		final long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ h >>> 32);
+	}
+}
@@ -0,0 +1,402 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.knime.core.node.NodeLogger;
+
+/**
+ * A file backed store of fixed size {@code double} blocks, one for each
+ * plate. The file is memory-mapped, so the values are cached by the operating
+ * system instead of the Java heap.
+ * <p>
+ * The file starts with a header containing a fingerprint of the structure
+ * and the values, so a previously written (and {@link #markComplete()
+ * completed}) file with the same fingerprint is reused. A completed file can
+ * also be opened read-only, then it is never modified.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+final class MappedPlateStore implements Closeable {
+	private static final NodeLogger logger = NodeLogger
+			.getLogger(MappedPlateStore.class);
+	private static final long MAGIC = 0x48695453437562L;
+	private static final int VERSION = 1;
+	/** The size of the header, the values start after it. */
+	private static final int HEADER_BYTES = 4096;
+	/** The maximal size of a mapped segment. */
+	private static final long SEGMENT_BYTES = 1L << 30;
+
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final int blockDoubles;
+	private final int platesPerSegment;
+	private final MappedByteBuffer[] mappedSegments;
+	private final DoubleBuffer[] segments;
+	private final MappedByteBuffer header;
+	private final boolean complete;
+	/** The file is mapped read-only. */
+	private final boolean readOnly;
+	/** The store is {@link #close() closed}. */
+	private boolean closed;
+
+	/**
+	 * Opens (or creates) the store. If {@code file} was
+	 * {@link #markComplete() completed} with the same parameters, its content
+	 * is kept, else it is filled with {@link Double#NaN}s.
+	 *
+	 * @param file
+	 *            The backing file.
+	 * @param plateCount
+	 *            The number of plates.
+	 * @param blockDoubles
+	 *            The number of {@code double}s for each plate.
+	 * @param fingerprint
+	 *            A value identifying the structure and the content of the
+	 *            stored values.
+	 * @throws IOException
+	 *             If the file cannot be opened or mapped.
+	 */
+	MappedPlateStore(final File file, final int plateCount,
+			final int blockDoubles, final long fingerprint) throws IOException {
+		this(file, plateCount, blockDoubles, fingerprint, false);
+	}
+
+	/**
+	 * Opens (or creates) the store. A read-only store is only opened if
+	 * {@code file} was {@link #markComplete() completed} with the same
+	 * parameters.
+	 *
+	 * @param file
+	 *            The backing file.
+	 * @param plateCount
+	 *            The number of plates.
+	 * @param blockDoubles
+	 *            The number of {@code double}s for each plate.
+	 * @param fingerprint
+	 *            A value identifying the structure and the content of the
+	 *            stored values.
+	 * @param readOnly
+	 *            If {@code true} {@code file} is mapped read-only.
+	 * @throws IOException
+	 *             If the file cannot be opened or mapped, or it is opened
+	 *             read-only and it does not contain the completed values.
+	 * @see #MappedPlateStore(File, int, int, long)
+	 */
+	MappedPlateStore(final File file, final int plateCount,
+			final int blockDoubles, final long fingerprint,
+			final boolean readOnly) throws IOException {
+		super();
+		final long blockBytes = blockDoubles * 8L;
+		if (blockBytes > SEGMENT_BYTES) {
+			throw new IllegalStateException("Too many values on a plate: "
+					+ blockDoubles);
+		}
+		this.file = file;
+		this.blockDoubles = blockDoubles;
+		this.readOnly = readOnly;
+		platesPerSegment = blockDoubles == 0 ? Integer.MAX_VALUE : (int) Math
+				.min(Integer.MAX_VALUE, SEGMENT_BYTES / blockBytes);
+		final long length = HEADER_BYTES + plateCount * blockBytes;
+		randomAccessFile = new RandomAccessFile(file, readOnly ? "r" : "rw");
+		boolean ok = false;
+		try {
+			final boolean reuse = randomAccessFile.length() == length
+					&& matches(fingerprint, plateCount);
+			if (readOnly && !reuse) {
+				throw new IOException("The values are not complete, or they "
+						+ "belong to a different model: " + file);
+			}
+			final MapMode mode = readOnly ? MapMode.READ_ONLY
+					: MapMode.READ_WRITE;
+			if (!readOnly) {
+				randomAccessFile.setLength(length);
+			}
+			final FileChannel channel = randomAccessFile.getChannel();
+			header = channel.map(mode, 0, HEADER_BYTES);
+			final int segmentCount = plateCount == 0 ? 0
+					: (plateCount - 1) / platesPerSegment + 1;
+			mappedSegments = new MappedByteBuffer[segmentCount];
+			segments = new DoubleBuffer[segmentCount];
+			for (int i = 0; i < segmentCount; ++i) {
+				final long start = HEADER_BYTES + i * platesPerSegment
+						* blockBytes;
+				mappedSegments[i] = channel.map(mode, start,
+						Math.min(length - start, platesPerSegment * blockBytes));
+				segments[i] = mappedSegments[i].asDoubleBuffer();
+			}
+			complete = reuse;
+			if (!reuse) {
+				header.putLong(0, MAGIC);
+				header.putInt(8, VERSION);
+				header.putInt(12, plateCount);
+				header.putInt(16, blockDoubles);
+				header.putLong(20, fingerprint);
+				header.put(28, (byte) 0);
+				final double[] missing = new double[(int) Math.min(1 << 16,
+						Math.max(1, platesPerSegment * (long) blockDoubles))];
+				Arrays.fill(missing, Double.NaN);
+				for (final DoubleBuffer segment : segments) {
+					final DoubleBuffer view = segment.duplicate();
+					view.clear();
+					while (view.hasRemaining()) {
+						view.put(missing, 0, Math.min(missing.length, view
+								.remaining()));
+					}
+				}
+			}
+			ok = true;
+		} finally {
+			if (!ok) {
+				randomAccessFile.close();
+			}
+		}
+	}
+
+	private boolean matches(final long fingerprint, final int plateCount)
+			throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(29);
+		randomAccessFile.getChannel().read(buffer, 0);
+		return buffer.getLong(0) == MAGIC && buffer.getInt(8) == VERSION
+				&& buffer.getInt(12) == plateCount
+				&& buffer.getInt(16) == blockDoubles
+				&& buffer.getLong(20) == fingerprint && buffer.get(28) == 1;
+	}
+
+	/**
+	 * @return {@code true} iff the values were already written (and
+	 *         {@link #markComplete() completed}) before opening.
+	 */
+	boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return {@code true} iff the file is mapped read-only.
+	 */
+	boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * Marks the values as completely written, and flushes them to the file.
+	 *
+	 * @throws IllegalStateException
+	 *             If the store is read-only.
+	 */
+	synchronized void markComplete() {
+		checkOpen();
+		if (readOnly) {
+			throw new IllegalStateException("The store is read-only: " + file);
+		}
+		for (final MappedByteBuffer segment : mappedSegments) {
+			segment.force();
+		}
+		header.put(28, (byte) 1);
+		header.force();
+	}
+
+	/**
+	 * @return The number of {@code double}s for each plate.
+	 */
+	int getBlockDoubles() {
+		return blockDoubles;
+	}
+
+	/**
+	 * Selects the block of a plate to write its values. The values are
+	 * written through the returned view without any locking, so the view
+	 * must not be shared between threads, and it must not be used after the
+	 * store is {@link #close() closed} (the memory is unmapped).
+	 *
+	 * @param plate
+	 *            The index of the plate.
+	 * @return The view of the block of {@code plate}, its positions are the
+	 *         offsets in the block.
+	 * @throws IllegalStateException
+	 *             If the store is read-only.
+	 */
+	synchronized DoubleBuffer block(final int plate) {
+		checkOpen();
+		if (readOnly) {
+			throw new IllegalStateException("The store is read-only: " + file);
+		}
+		final DoubleBuffer view = segments[plate / platesPerSegment]
+				.duplicate();
+		final int start = plate % platesPerSegment * blockDoubles;
+		view.limit(start + blockDoubles);
+		view.position(start);
+		return view.slice();
+	}
+
+	/**
+	 * Copies the block of a plate to {@code target} with a single bulk copy.
+	 * <p>
+	 * The values have to be copied to the heap: the slices of a
+	 * {@link PlateCube} (and its views) are {@code double[]}s, which are kept
+	 * and indexed directly by their users, so a view of the mapped file
+	 * cannot be handed out instead. The copies are bounded by the number of
+	 * cached plates of the cube. The copy is done while holding the lock, so
+	 * the memory is not unmapped by a concurrent {@link #close()}.
+	 *
+	 * @param plate
+	 *            The index of the plate.
+	 * @param target
+	 *            The array to fill, at least {@link #getBlockDoubles()} long.
+	 */
+	synchronized void get(final int plate, final double[] target) {
+		checkOpen();
+		final DoubleBuffer view = segments[plate / platesPerSegment]
+				.duplicate();
+		view.position(plate % platesPerSegment * blockDoubles);
+		view.get(target, 0, blockDoubles);
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             If the store is already closed.
+	 */
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("The store is closed: " + file);
+		}
+	}
+
+	/**
+	 * @return The backing file.
+	 */
+	File getFile() {
+		return file;
+	}
+
+	/**
+	 * Closes the file and unmaps the buffers (when the {@link Unmapper} is
+	 * supported by the JVM, else a warning is logged and they are released by
+	 * the garbage collector), so the file can be deleted or moved even on
+	 * Windows. The store (and the {@link #block(int) views} of its blocks)
+	 * cannot be used after closing.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		randomAccessFile.close();
+		boolean unmapped = Unmapper.unmap(header);
+		for (int i = mappedSegments.length; i-- > 0;) {
+			segments[i] = null;
+			unmapped &= Unmapper.unmap(mappedSegments[i]);
+		}
+		if (!unmapped) {
+			logger.warn("Unable to unmap " + file + ", it is released by the "
+					+ "garbage collector, until then it cannot be deleted on "
+					+ "some platforms.");
+		}
+	}
+
+	/**
+	 * Releases the memory mappings before the garbage collector would do it.
+	 * Java 8 has no public API for this, so the internal cleaner of the
+	 * buffers is looked up (once) by reflection. It is only a fallback for the
+	 * platforms locking the mapped files (Windows): when the internals are
+	 * not accessible, nothing is done, the mappings are released by the
+	 * garbage collector.
+	 */
+	private static final class Unmapper {
+		/** {@code sun.misc.Unsafe.invokeCleaner} (Java 9+), or {@code null}. */
+		@Nullable
+		private static final Method INVOKE_CLEANER;
+		/** The {@code sun.misc.Unsafe} instance (Java 9+), or {@code null}. */
+		@Nullable
+		private static final Object UNSAFE;
+		/** {@code sun.nio.ch.DirectBuffer.cleaner} (Java 8), or {@code null}. */
+		@Nullable
+		private static final Method CLEANER;
+		/** {@code sun.misc.Cleaner.clean} (Java 8), or {@code null}. */
+		@Nullable
+		private static final Method CLEAN;
+		static {
+			Method invokeCleaner = null, cleaner = null, clean = null;
+			Object unsafe = null;
+			try {
+				final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+				try {
+					invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+							ByteBuffer.class);
+					final Field theUnsafe = unsafeClass
+							.getDeclaredField("theUnsafe");
+					theUnsafe.setAccessible(true);
+					unsafe = theUnsafe.get(null);
+				} catch (final NoSuchMethodException e) {
+					// Java 8
+					cleaner = Class.forName("sun.nio.ch.DirectBuffer")
+							.getMethod("cleaner");
+					clean = Class.forName("sun.misc.Cleaner").getMethod(
+							"clean");
+				}
+			} catch (final Exception e) {
+				logger.debug("Mapped buffers are released by the garbage "
+						+ "collector: " + e, e);
+				invokeCleaner = null;
+				unsafe = null;
+				cleaner = null;
+				clean = null;
+			}
+			INVOKE_CLEANER = invokeCleaner;
+			UNSAFE = unsafe;
+			CLEANER = cleaner;
+			CLEAN = clean;
+		}
+
+		private Unmapper() {
+			super();
+		}
+
+		/**
+		 * Releases the memory mapping of {@code buffer} (if supported). The
+		 * buffer must not be used after this.
+		 * 
+		 * @param buffer
+		 *            A {@link MappedByteBuffer}.
+		 * @return {@code true} iff the mapping was released.
+		 */
+		static boolean unmap(final MappedByteBuffer buffer) {
+			try {
+				if (INVOKE_CLEANER != null) {
+					INVOKE_CLEANER.invoke(UNSAFE, buffer);
+					return true;
+				}
+				if (CLEANER != null && CLEAN != null) {
+					final Object cleaner = CLEANER.invoke(buffer);
+					if (cleaner != null) {
+						CLEAN.invoke(cleaner);
+					}
+					return true;
+				}
+			} catch (final Exception e) {
+				logger.debug("Unable to unmap: " + e, e);
+			}
+			return false;
+		}
+	}
+}
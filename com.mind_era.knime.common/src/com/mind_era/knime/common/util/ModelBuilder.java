@@ -4,23 +4,48 @@
 package com.mind_era.knime.common.util;
 
 import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
@@ -30,7 +55,11 @@ import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.DataType;
 import org.knime.core.data.DoubleValue;
 import org.knime.core.data.StringValue;
+import org.knime.core.data.container.CloseableRowIterator;
 import org.knime.core.data.def.StringCell;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
 import org.knime.core.util.Pair;
 
 import com.mind_era.knime.common.Format;
@@ -53,8 +82,8 @@ import com.mind_era.knime.common.view.StatTypes;
 public class ModelBuilder extends SimpleModelBuilder {
 	private static final long serialVersionUID = 6605965494973262221L;
 
-	/** key, plate, position [0-95] */
-	private final Map<String, Pair<Integer, Integer>> keyToPlateAndPosition = new HashMap<String, Pair<Integer, Integer>>();
+	/** key &harr; (plate, position [0-95]) */
+	private final RowKeyIndex rowKeyIndex;
 
 	/**
 	 * Constructs a {@link ModelBuilder} with creating a {@link SpecAnalyser}
@@ -78,7 +107,573 @@ public class ModelBuilder extends SimpleModelBuilder {
 	 */
 	public ModelBuilder(final DataTable table, final SpecAnalyser specAnalyser) {
 		super(table, specAnalyser);
-		generate(specAnalyser);
+		cube = new PlateCube(specAnalyser.getPredictedFormat().getWellCount());
+		rowKeyIndex = new RowKeyIndex(cube.getWellCount());
+		rowRanges = null;
+		deferValues = false;
+		try {
+			generate(specAnalyser, null, 1);
+		} catch (final CanceledExecutionException e) {
+			// Cannot happen without an ExecutionMonitor.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Constructs a {@link ModelBuilder} with creating a {@link SpecAnalyser}
+	 * for that {@code table}.
+	 * 
+	 * @param table
+	 *            A {@link DataTable}.
+	 * @param exec
+	 *            The {@link ExecutionMonitor} to report progress and check
+	 *            cancellation.
+	 * @param parallelism
+	 *            The number of threads used to parse the rows. When it is
+	 *            larger than {@code 1} the rows are read in chunks, the chunks
+	 *            are parsed in parallel, and merged in the original order, so
+	 *            the result is the same as with a single thread.
+	 * @throws CanceledExecutionException
+	 *             If the execution was cancelled.
+	 */
+	public ModelBuilder(final DataTable table, final ExecutionMonitor exec,
+			final int parallelism) throws CanceledExecutionException {
+		this(table, new SpecAnalyser(table.getDataTableSpec()), exec,
+				parallelism);
+	}
+
+	/**
+	 * Constructs a {@link ModelBuilder} with a compatible {@code specAnalyser}
+	 * for that {@code table}.
+	 * 
+	 * @param table
+	 *            A {@link DataTable}.
+	 * @param specAnalyser
+	 *            A {@link SpecAnalyser} compatible with {@code table}.
+	 * @param exec
+	 *            The {@link ExecutionMonitor} to report progress and check
+	 *            cancellation.
+	 * @param parallelism
+	 *            The number of threads used to parse the rows.
+	 * @throws CanceledExecutionException
+	 *             If the execution was cancelled.
+	 * @see #ModelBuilder(DataTable, ExecutionMonitor, int)
+	 */
+	public ModelBuilder(final DataTable table, final SpecAnalyser specAnalyser,
+			final ExecutionMonitor exec, final int parallelism)
+			throws CanceledExecutionException {
+		this(table, specAnalyser, exec, parallelism, 0);
+	}
+
+	/**
+	 * Constructs a {@link ModelBuilder} with a compatible {@code specAnalyser}
+	 * for that {@code table}, optionally with lazily loaded slices.
+	 * <p>
+	 * With positive {@code cachedPlates} only the structure, the texts, the
+	 * colours and the row positions of the plates are collected while
+	 * building, the {@code double} values of a plate are read from
+	 * {@code table} when they are first asked for. At most
+	 * {@code cachedPlates} plates are kept in memory, the least recently used
+	 * ones are dropped (and read again when necessary). The lazy build is
+	 * sequential, the {@link #getRanges() statistics} are computed in the
+	 * same pass (without keeping the values), so they do not need the plates
+	 * to be loaded.
+	 * 
+	 * @param table
+	 *            A {@link DataTable}.
+	 * @param specAnalyser
+	 *            A {@link SpecAnalyser} compatible with {@code table}.
+	 * @param exec
+	 *            The {@link ExecutionMonitor} to report progress and check
+	 *            cancellation.
+	 * @param parallelism
+	 *            The number of threads used to parse the rows.
+	 * @param cachedPlates
+	 *            The number of plates kept in memory, or {@code 0} to build
+	 *            every values eagerly.
+	 * @throws CanceledExecutionException
+	 *             If the execution was cancelled.
+	 * @see #ModelBuilder(DataTable, ExecutionMonitor, int)
+	 */
+	public ModelBuilder(final DataTable table, final SpecAnalyser specAnalyser,
+			final ExecutionMonitor exec, final int parallelism,
+			final int cachedPlates) throws CanceledExecutionException {
+		super(table, specAnalyser);
+		cube = new PlateCube(specAnalyser.getPredictedFormat().getWellCount());
+		rowKeyIndex = new RowKeyIndex(cube.getWellCount());
+		rowRanges = cachedPlates > 0 ? new HashMap<Long, RowRanges>() : null;
+		deferValues = rowRanges != null;
+		rangeValues = deferValues ? new RangeValues(cube.getWellCount(),
+				cachedPlates) : null;
+		generate(specAnalyser, exec, cachedPlates > 0 ? 1 : parallelism);
+		if (rowRanges != null) {
+			plateLoader = new PlateLoader();
+			cube.setLoader(plateLoader, cachedPlates);
+			computeDeferredRanges();
+		}
+	}
+
+	/**
+	 * Constructs a {@link ModelBuilder} with a compatible {@code specAnalyser}
+	 * for that {@code table}, the {@code double} values are stored in a
+	 * memory-mapped {@code storeFile}.
+	 * <p>
+	 * The structure, the texts and the colours are collected in memory, the
+	 * values are written to {@code storeFile} in a second pass (only if it
+	 * does not already contain the values of the same structure and with the
+	 * same checksum of the values, so a file written by a previous
+	 * {@link ModelBuilder} of the same table is reused). The slices of a plate are copied from the file when they are
+	 * first asked for, at most {@code cachedPlates} plates are kept in
+	 * memory.
+	 * 
+	 * @param table
+	 *            A {@link DataTable}.
+	 * @param specAnalyser
+	 *            A {@link SpecAnalyser} compatible with {@code table}.
+	 * @param exec
+	 *            The {@link ExecutionMonitor} to report progress and check
+	 *            cancellation.
+	 * @param cachedPlates
+	 *            The number of plates kept in memory (positive).
+	 * @param storeFile
+	 *            The file of the values.
+	 * @throws CanceledExecutionException
+	 *             If the execution was cancelled.
+	 * @throws IOException
+	 *             If {@code storeFile} cannot be written.
+	 * @see #dispose()
+	 */
+	public ModelBuilder(final DataTable table, final SpecAnalyser specAnalyser,
+			final ExecutionMonitor exec, final int cachedPlates,
+			final File storeFile) throws CanceledExecutionException,
+			IOException {
+		super(table, specAnalyser);
+		cube = new PlateCube(specAnalyser.getPredictedFormat().getWellCount());
+		rowKeyIndex = new RowKeyIndex(cube.getWellCount());
+		rowRanges = null;
+		deferValues = true;
+		checksumValues = true;
+		rangeValues = new RangeValues(cube.getWellCount(), cachedPlates);
+		generate(specAnalyser, exec.createSubProgress(.5), 1);
+		final MappedLoader loader = new MappedLoader(storeFile, false);
+		boolean ok = false;
+		try {
+			if (!loader.store.isComplete()) {
+				loader.fill(exec.createSubProgress(.5));
+				loader.store.markComplete();
+			}
+			ok = true;
+		} finally {
+			if (!ok) {
+				loader.store.close();
+			}
+		}
+		mappedLoader = loader;
+		cube.setLoader(loader, cachedPlates);
+		computeDeferredRanges();
+	}
+
+	/**
+	 * Computes the {@link #ranges} of a model with deferred values from the
+	 * {@link #rangeValues} collected while building, or (if the rows of the
+	 * plates were too scattered to compute them in the same pass) from the
+	 * loaded plates, so the plates are not loaded for the ranges later (for
+	 * example in the event dispatch thread).
+	 */
+	private void computeDeferredRanges() {
+		if (rangeValues != null) {
+			ranges = rangeValues.compute(cube.getParameters());
+			rangeValues = null;
+		}
+		if (ranges == null) {
+			ranges = deferredRanges();
+		}
+	}
+
+	/**
+	 * Computes the ranges of a model with deferred values plate by plate, the
+	 * values are not collected.
+	 * 
+	 * @return The statistics of the values (in the same form as
+	 *         {@link #getRanges()}).
+	 */
+	private Map<String, Map<StatTypes, Map<RangeType, Double>>> deferredRanges() {
+		final RangeValues values = new RangeValues(cube.getWellCount(), 0);
+		final StatTypes[] stats = StatTypes.values();
+		for (int e = 0; e < cube.getExperiments().size(); ++e) {
+			for (int n = 0; n < cube.getNormalisations().size(); ++n) {
+				for (int p = 0; p < cube.getPlates().size(); ++p) {
+					for (int rep = PlateCube.NO_REPLICATE; rep < cube
+							.getReplicates().size(); ++rep) {
+						for (int param = 0; param < cube.getParameters()
+								.size(); ++param) {
+							for (final StatTypes stat : stats) {
+								final double[] slice = cube.getSlice(e, n, p,
+										rep, param, stat);
+								if (slice != null) {
+									values.addSlice(param, stat, slice);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		final Map<String, Map<StatTypes, Map<RangeType, Double>>> ret = values
+				.compute(cube.getParameters());
+		assert ret != null;
+		return ret;
+	}
+
+	/**
+	 * Constructs a {@link ModelBuilder} from a snapshot.
+	 * 
+	 * @param table
+	 *            The {@link DataTable} of the snapshot.
+	 * @param specAnalyser
+	 *            A {@link SpecAnalyser} compatible with {@code table}.
+	 * @param in
+	 *            The content after the header of the snapshot.
+	 * @param kind
+	 *            The kind of the model ({@link #SNAPSHOT_EAGER},
+	 *            {@link #SNAPSHOT_LAZY} or {@link #SNAPSHOT_MAPPED}).
+	 * @param cachedPlates
+	 *            The number of plates kept in memory (positive), used only
+	 *            for the lazily loaded models.
+	 * @param storeFile
+	 *            The file of the values of a {@link #SNAPSHOT_MAPPED} model.
+	 * @throws IOException
+	 *             If cannot read, or the content is not compatible.
+	 * @see #readSnapshot(DataTable, InputStream, int, File)
+	 */
+	private ModelBuilder(final DataTable table,
+			final SpecAnalyser specAnalyser, final DataInputStream in,
+			final byte kind, final int cachedPlates,
+			@Nullable final File storeFile) throws IOException {
+		super(table, specAnalyser);
+		cube = new PlateCube(specAnalyser.getPredictedFormat().getWellCount());
+		rowKeyIndex = new RowKeyIndex(cube.getWellCount());
+		rowRanges = kind == SNAPSHOT_LAZY ? new HashMap<Long, RowRanges>()
+				: null;
+		deferValues = kind != SNAPSHOT_EAGER;
+		minReplicate = in.readInt();
+		maxReplicate = in.readInt();
+		minPlate = in.readInt();
+		maxPlate = in.readInt();
+		cube.read(in);
+		for (int i = in.readInt(); i-- > 0;) {
+			final String key = readString(in);
+			final int plate = in.readInt();
+			final int well = in.readInt();
+			rowKeyIndex.put(key, plate, well, in.readLong());
+		}
+		for (int e = in.readInt(); e-- > 0;) {
+			final String experiment = readString(in);
+			checkAndPutTreeMap(experiment, texts);
+			checkAndPutTreeMap(experiment, colours);
+			for (int n = in.readInt(); n-- > 0;) {
+				final String normKey = readString(in);
+				checkAndPutHashMap(normKey, texts.get(experiment));
+				checkAndPutHashMap(normKey, colours.get(experiment));
+				final Map<Integer, Map<String, String[]>> textValues = texts
+						.get(experiment).get(normKey);
+				final Map<Integer, PackedColours> colourValues = colours.get(
+						experiment).get(normKey);
+				for (int p = in.readInt(); p-- > 0;) {
+					final Integer plate = Integer.valueOf(in.readInt());
+					final Map<String, String[]> columns = new HashMap<String, String[]>();
+					for (int c = in.readInt(); c-- > 0;) {
+						final String column = readString(in);
+						final String[] values = new String[in.readInt()];
+						for (int i = 0; i < values.length; ++i) {
+							values[i] = readString(in);
+						}
+						columns.put(column, values);
+					}
+					textValues.put(plate, columns);
+					final PackedColours plateColours = new PackedColours(in
+							.readInt());
+					for (int i = 0; i < plateColours.size(); ++i) {
+						if (in.readBoolean()) {
+							plateColours.set(i, in.readInt());
+						}
+					}
+					colourValues.put(plate, plateColours);
+				}
+			}
+		}
+		ranges = new HashMap<String, Map<StatTypes, Map<RangeType, Double>>>();
+		final StatTypes[] statTypes = StatTypes.values();
+		final RangeType[] rangeTypes = RangeType.values();
+		for (int i = in.readInt(); i-- > 0;) {
+			final Map<StatTypes, Map<RangeType, Double>> map = new EnumMap<StatTypes, Map<RangeType, Double>>(
+					StatTypes.class);
+			ranges.put(readString(in), map);
+			for (int j = in.readInt(); j-- > 0;) {
+				final Map<RangeType, Double> values = new EnumMap<RangeType, Double>(
+						RangeType.class);
+				map.put(statTypes[in.readInt()], values);
+				for (int k = in.readInt(); k-- > 0;) {
+					values.put(rangeTypes[in.readInt()], Double.valueOf(in
+							.readDouble()));
+				}
+			}
+		}
+		if (kind == SNAPSHOT_LAZY) {
+			for (int i = in.readInt(); i-- > 0;) {
+				final Long plateKey = Long.valueOf(in.readLong());
+				final RowRanges plateRows = new RowRanges();
+				plateRows.size = in.readInt();
+				plateRows.bounds = new long[Math.max(8, 2 * plateRows.size)];
+				for (int j = 0; j < 2 * plateRows.size; ++j) {
+					plateRows.bounds[j] = in.readLong();
+				}
+				rowRanges.put(plateKey, plateRows);
+			}
+			plateLoader = new PlateLoader();
+			cube.setLoader(plateLoader, cachedPlates);
+		} else if (kind == SNAPSHOT_MAPPED) {
+			if (storeFile == null) {
+				throw new IOException("No file of the values.");
+			}
+			valueChecksum = in.readLong();
+			final MappedLoader loader = new MappedLoader(storeFile, true);
+			mappedLoader = loader;
+			cube.setLoader(loader, cachedPlates);
+		}
+	}
+
+	/** The first bytes of a snapshot. */
+	private static final long SNAPSHOT_MAGIC = 0x486954534d6f646cL;
+	/** The version of the snapshot format. */
+	private static final int SNAPSHOT_VERSION = 4;
+	/** The snapshot contains the values. */
+	private static final byte SNAPSHOT_EAGER = 0;
+	/** The values are loaded lazily from the table. */
+	private static final byte SNAPSHOT_LAZY = 1;
+	/** The values are loaded from the file of the values. */
+	private static final byte SNAPSHOT_MAPPED = 2;
+
+	/**
+	 * Writes a versioned binary snapshot of the built model (the axes, the
+	 * values, the texts, the colours, the keys and the {@link #getRanges()
+	 * ranges}), which can be read by
+	 * {@link #readSnapshot(DataTable, InputStream, int, File)} without
+	 * processing the {@link #getTable() table} again. The snapshot contains
+	 * a fingerprint of the columns of the table, so it is not read for a
+	 * table with different columns, the number of rows and the fingerprint
+	 * of the row keys are stored too.
+	 * <p>
+	 * The values of the lazily loaded models are not written, only the rows
+	 * of their plates, the values are loaded from the table again. The
+	 * values of the models {@link #getStoreFile() stored in a file} are not
+	 * written either, the file is necessary to read the snapshot.
+	 * 
+	 * @param out
+	 *            The output, it is not closed.
+	 * @throws IOException
+	 *             If cannot write.
+	 */
+	public void writeSnapshot(final OutputStream out) throws IOException {
+		final byte kind = mappedLoader != null ? SNAPSHOT_MAPPED
+				: rowRanges != null ? SNAPSHOT_LAZY : SNAPSHOT_EAGER;
+		final DataOutputStream data = new DataOutputStream(
+				new BufferedOutputStream(out, 1 << 16));
+		data.writeLong(SNAPSHOT_MAGIC);
+		data.writeInt(SNAPSHOT_VERSION);
+		data.writeInt(getTable().getDataTableSpec().getNumColumns());
+		data.writeLong(specFingerprint(getTable().getDataTableSpec()));
+		data.writeLong(inputRows);
+		data.writeLong(inputFingerprint);
+		data.writeByte(kind);
+		data.writeInt(minReplicate);
+		data.writeInt(maxReplicate);
+		data.writeInt(minPlate);
+		data.writeInt(maxPlate);
+		cube.write(data);
+		data.writeInt(rowKeyIndex.size());
+		for (int ordinal = 0; ordinal < rowKeyIndex.getOrdinalCount(); ++ordinal) {
+			final long position = rowKeyIndex.getPosition(ordinal);
+			writeString(data, rowKeyIndex.getKey(ordinal));
+			data.writeInt(RowKeyIndex.plateOf(position));
+			data.writeInt(RowKeyIndex.wellOf(position));
+			data.writeLong(rowKeyIndex.getGroup(ordinal));
+		}
+		data.writeInt(texts.size());
+		for (final Entry<String, Map<String, Map<Integer, Map<String, String[]>>>> expEntry : texts
+				.entrySet()) {
+			writeString(data, expEntry.getKey());
+			data.writeInt(expEntry.getValue().size());
+			for (final Entry<String, Map<Integer, Map<String, String[]>>> normEntry : expEntry
+					.getValue().entrySet()) {
+				writeString(data, normEntry.getKey());
+				final Map<Integer, PackedColours> colourValues = colours.get(
+						expEntry.getKey()).get(normEntry.getKey());
+				data.writeInt(normEntry.getValue().size());
+				for (final Entry<Integer, Map<String, String[]>> plateEntry : normEntry
+						.getValue().entrySet()) {
+					data.writeInt(plateEntry.getKey().intValue());
+					data.writeInt(plateEntry.getValue().size());
+					for (final Entry<String, String[]> columnEntry : plateEntry
+							.getValue().entrySet()) {
+						writeString(data, columnEntry.getKey());
+						data.writeInt(columnEntry.getValue().length);
+						for (final String text : columnEntry.getValue()) {
+							writeString(data, text);
+						}
+					}
+					final PackedColours plateColours = colourValues
+							.get(plateEntry.getKey());
+					data.writeInt(plateColours.size());
+					for (int i = 0; i < plateColours.size(); ++i) {
+						data.writeBoolean(plateColours.isPresent(i));
+						if (plateColours.isPresent(i)) {
+							data.writeInt(plateColours.getArgb(i));
+						}
+					}
+				}
+			}
+		}
+		final Map<String, Map<StatTypes, Map<RangeType, Double>>> computed = getRanges();
+		data.writeInt(computed.size());
+		for (final Entry<String, Map<StatTypes, Map<RangeType, Double>>> paramEntry : computed
+				.entrySet()) {
+			writeString(data, paramEntry.getKey());
+			data.writeInt(paramEntry.getValue().size());
+			for (final Entry<StatTypes, Map<RangeType, Double>> statEntry : paramEntry
+					.getValue().entrySet()) {
+				data.writeInt(statEntry.getKey().ordinal());
+				data.writeInt(statEntry.getValue().size());
+				for (final Entry<RangeType, Double> rangeEntry : statEntry
+						.getValue().entrySet()) {
+					data.writeInt(rangeEntry.getKey().ordinal());
+					data.writeDouble(rangeEntry.getValue().doubleValue());
+				}
+			}
+		}
+		if (kind == SNAPSHOT_LAZY) {
+			data.writeInt(rowRanges.size());
+			for (final Entry<Long, RowRanges> entry : rowRanges.entrySet()) {
+				data.writeLong(entry.getKey().longValue());
+				final RowRanges plateRows = entry.getValue();
+				data.writeInt(plateRows.size);
+				for (int i = 0; i < 2 * plateRows.size; ++i) {
+					data.writeLong(plateRows.bounds[i]);
+				}
+			}
+		} else if (kind == SNAPSHOT_MAPPED) {
+			data.writeLong(valueChecksum);
+		}
+		data.flush();
+	}
+
+	/**
+	 * Reads a snapshot written by {@link #writeSnapshot(OutputStream)}, the
+	 * lazily loaded models keep a single plate in memory.
+	 * 
+	 * @param table
+	 *            The {@link DataTable} the snapshot was written from.
+	 * @param in
+	 *            The input, it is not closed.
+	 * @return The {@link ModelBuilder} of the snapshot.
+	 * @throws IOException
+	 *             If cannot read, or the snapshot is from a different version
+	 *             or a different table, or it belongs to a model
+	 *             {@link #getStoreFile() stored in a file}.
+	 * @see #readSnapshot(DataTable, InputStream, int, File)
+	 */
+	public static ModelBuilder readSnapshot(final DataTable table,
+			final InputStream in) throws IOException {
+		return readSnapshot(table, in, 1, null);
+	}
+
+	/**
+	 * Reads a snapshot written by {@link #writeSnapshot(OutputStream)}. The
+	 * rows of {@code table} are not read, only its columns and its number of
+	 * rows (when known without iterating) are checked, the stored fingerprint
+	 * of the row keys is kept. The values of the lazily loaded models are
+	 * read from {@code table} when their plates are first asked for.
+	 * 
+	 * @param table
+	 *            The {@link DataTable} the snapshot was written from.
+	 * @param in
+	 *            The input, it is not closed.
+	 * @param cachedPlates
+	 *            The number of plates kept in memory (positive) if the values
+	 *            are loaded lazily.
+	 * @param storeFile
+	 *            The (completed) file of the values, if the snapshot belongs
+	 *            to a model {@link #getStoreFile() stored in a file}. It is
+	 *            mapped read-only, the values are not written again.
+	 * @return The {@link ModelBuilder} of the snapshot.
+	 * @throws IOException
+	 *             If cannot read, the snapshot is from a different version or
+	 *             a different table, or {@code storeFile} does not contain
+	 *             the values of the model.
+	 * @see #dispose()
+	 */
+	public static ModelBuilder readSnapshot(final DataTable table,
+			final InputStream in, final int cachedPlates,
+			@Nullable final File storeFile) throws IOException {
+		final DataInputStream data = new DataInputStream(
+				new BufferedInputStream(in, 1 << 16));
+		if (data.readLong() != SNAPSHOT_MAGIC) {
+			throw new IOException("Not a model snapshot.");
+		}
+		final int version = data.readInt();
+		if (version != SNAPSHOT_VERSION) {
+			throw new IOException("Not supported snapshot version: "
+					+ version);
+		}
+		final DataTableSpec spec = table.getDataTableSpec();
+		if (data.readInt() != spec.getNumColumns()
+				|| data.readLong() != specFingerprint(spec)) {
+			throw new IOException("The snapshot belongs to a different table.");
+		}
+		final long rows = data.readLong();
+		final long fingerprint = data.readLong();
+		final long knownRows = rowCount(table);
+		if (knownRows != -1L && knownRows != rows) {
+			throw new IOException("The snapshot belongs to a different table.");
+		}
+		final byte kind = data.readByte();
+		if (kind != SNAPSHOT_EAGER && kind != SNAPSHOT_LAZY
+				&& kind != SNAPSHOT_MAPPED) {
+			throw new IOException("Not supported snapshot kind: " + kind);
+		}
+		final ModelBuilder ret = new ModelBuilder(table, new SpecAnalyser(
+				table.getDataTableSpec()), data, kind, cachedPlates, storeFile);
+		ret.inputRows = rows;
+		ret.inputFingerprint = fingerprint;
+		return ret;
+	}
+
+	/**
+	 * @param spec
+	 *            A {@link DataTableSpec}.
+	 * @return The initial fingerprint of a table with {@code spec} (from the
+	 *         names and the types of the columns).
+	 */
+	private static long specFingerprint(final DataTableSpec spec) {
+		long ret = spec.getNumColumns();
+		for (final DataColumnSpec column : spec) {
+			ret = mix(ret, column.getName().hashCode());
+			ret = mix(ret, column.getType().toString().hashCode());
+		}
+		return ret;
+	}
+
+	/**
+	 * Adds the row keys of {@code chunk} to the {@link #inputFingerprint}.
+	 * 
+	 * @param chunk
+	 *            The next rows of the {@link #getTable() table}.
+	 */
+	private void fingerprint(final Chunk chunk) {
+		for (int r = 0; r < chunk.size; ++r) {
+			inputFingerprint = mix(inputFingerprint, chunk.keys[r].hashCode());
+		}
+		inputRows += chunk.size;
 	}
 
 	/** The prefix for {@link PossibleStatistics#RAW_PER_PLATE_REPLICATE_MEAN}. */
@@ -105,10 +700,51 @@ public class ModelBuilder extends SimpleModelBuilder {
 	public static final String SCORE_START = StaticUtil
 			.createPrefix(PossibleStatistics.SCORE);
 
-	private final Map<String, Map<String, Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>>>> replicates = new TreeMap<String, Map<String, Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>>>>();
-	private final Map<String, Map<String, Map<Integer, Map<String, Map<StatTypes, double[]>>>>> scores = new TreeMap<String, Map<String, Map<Integer, Map<String, Map<StatTypes, double[]>>>>>();
+	/** The replicate dependent and independent values. */
+	private final PlateCube cube;
+	/**
+	 * The rows of the plates (by {@link PlateCube#plateKey(int, int, int)})
+	 * when the slices are loaded lazily, else {@code null}.
+	 */
+	@Nullable
+	private final Map<Long, RowRanges> rowRanges;
+	/**
+	 * The values are not written while building the model, the slices are
+	 * loaded on demand.
+	 */
+	private final boolean deferValues;
+	/** The loader of the values (if they are stored in a file). */
+	@Nullable
+	private transient MappedLoader mappedLoader;
+	/** The statistics of the values, computed on demand. */
+	@Nullable
+	private Map<String, Map<StatTypes, Map<RangeType, Double>>> ranges;
+	/**
+	 * The summary of the values for the {@link #ranges} while building a
+	 * model with deferred values, else {@code null}.
+	 */
+	@Nullable
+	private transient RangeValues rangeValues;
+	/**
+	 * The {@link #valueChecksum} is computed while building (the values are
+	 * stored in a file).
+	 */
+	private transient boolean checksumValues;
+	/** The checksum of the values and their positions. */
+	private transient long valueChecksum;
+	/** The number of rows of the {@link #getTable() table}. */
+	private long inputRows;
+	/**
+	 * The fingerprint of the columns and the row keys of the
+	 * {@link #getTable() table}.
+	 */
+	private long inputFingerprint;
+	/** The loader of the lazily loaded plates (if not stored in a file). */
+	@Nullable
+	private transient PlateLoader plateLoader;
 	private final Map<String, Map<String, Map<Integer, Map<String, String[]>>>> texts = new TreeMap<String, Map<String, Map<Integer, Map<String, String[]>>>>();
-	private final Map<String, Map<String, Map<Integer, Color[]>>> colours = new TreeMap<String, Map<String, Map<Integer, Color[]>>>();
+	/** The packed ARGB row colours, see {@link #getColours()}. */
+	private final Map<String, Map<String, Map<Integer, PackedColours>>> colours = new TreeMap<String, Map<String, Map<Integer, PackedColours>>>();
 
 	private int minReplicate;
 
@@ -473,262 +1109,1921 @@ public class ModelBuilder extends SimpleModelBuilder {
 		}
 	}
 
-	private void generate(final SpecAnalyser specAnalyser) {
+	/** The number of rows parsed together. */
+	private static final int CHUNK_SIZE = 4096;
+
+	private void generate(final SpecAnalyser specAnalyser,
+			@Nullable final ExecutionMonitor exec, final int parallelism)
+			throws CanceledExecutionException {
 		minReplicate = Integer.MAX_VALUE;
 		maxReplicate = Integer.MIN_VALUE;
-		final int experimentIndex = specAnalyser.getExperimentIndex();
-		final int normMethodIndex = specAnalyser.getNormMethodIndex();
-		final int logTransformIndex = specAnalyser.getLogTransformIndex();
-		final int normKindIndex = specAnalyser.getNormKindIndex();
-		final int varianceAdjustmentIndex = specAnalyser
-				.getVarianceAdjustmentIndex();
-		final int scoreMethodIndex = specAnalyser.getScoreMethodIndex();
-		final int sumMethodIndex = specAnalyser.getSumMethodIndex();
-		final int plateIndex = specAnalyser.getPlateIndex();
-		final int replicateIndex = specAnalyser.getReplicateIndex();
-		final int wellIndex = specAnalyser.getWellIndex();
-		if (wellIndex == -1) {
+		if (specAnalyser.getWellIndex() == -1) {
 			throw new IllegalStateException("No "
 					+ PublicConstants.WELL_COL_NAME + " column present!");
 		}
-		final EnumMap<StatTypes, Map<String, Integer>> indices = specAnalyser
-				.getIndices();
-		final Map<String, Integer> stringIndices = specAnalyser
-				.getStringIndices();
-		final List<String> parameters = specAnalyser.getParameters();
-		final EnumSet<StatTypes> statistics = specAnalyser.getStatistics();
-		final boolean hasReplicate = specAnalyser.isHasReplicate();
+		final Layout layout = new Layout(specAnalyser, getTable()
+				.getDataTableSpec());
+		final int[] valueParams = internValueParameters(specAnalyser);
+		final int[] params = internParameters(specAnalyser);
 		minPlate = Integer.MAX_VALUE;
 		maxPlate = Integer.MIN_VALUE;
-		for (final DataRow dataRow : getTable()) {
-			final String experiment = experimentIndex == -1 ? ""
-					: ((StringCell) dataRow.getCell(experimentIndex))
-							.getStringValue();
-			checkAndPutTreeMap(experiment, replicates);
-			checkAndPutTreeMap(experiment, scores);
-			checkAndPutTreeMap(experiment, texts);
-			checkAndPutTreeMap(experiment, colours);
-			final Map<String, Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>>> normMethodValues = replicates
-					.get(experiment);
-			final Map<String, Map<Integer, Map<String, Map<StatTypes, double[]>>>> scoreNormMethodValues = scores
-					.get(experiment);
-			final Map<String, Map<Integer, Map<String, String[]>>> textsNormMethodValues = texts
-					.get(experiment);
-			final Map<String, Map<Integer, Color[]>> colourNormMethodValues = colours
-					.get(experiment);
-			final String normKey = getNormKey(dataRow, normMethodIndex,
-					logTransformIndex, normKindIndex, varianceAdjustmentIndex,
-					scoreMethodIndex, sumMethodIndex);
-			checkAndPutHashMap(normKey, normMethodValues);
-			checkAndPutHashMap(normKey, scoreNormMethodValues);
-			checkAndPutHashMap(normKey, textsNormMethodValues);
-			checkAndPutHashMap(normKey, colourNormMethodValues);
-			final Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>> replicateValues = normMethodValues
-					.get(normKey);
-			final Map<Integer, Map<String, Map<StatTypes, double[]>>> scoreValues = scoreNormMethodValues
-					.get(normKey);
-			final Map<Integer, Map<String, String[]>> textValues = textsNormMethodValues
-					.get(normKey);
-			final Map<Integer, Color[]> colourValues = colourNormMethodValues
-					.get(normKey);
-			final Integer plate = getInt(dataRow, plateIndex);
-			minPlate = Math.min(minPlate, plate.intValue());
-			maxPlate = Math.max(maxPlate, plate.intValue());
-			checkAndPutHashMap(plate, replicateValues);
-			checkAndPutHashMap(plate, scoreValues);
-			if (!textValues.containsKey(plate)) {
-				final HashMap<String, String[]> map = new HashMap<String, String[]>();
-				textValues.put(plate, map);
-				for (final String colName : stringIndices.keySet()) {
-					map.put(colName, new String[specAnalyser
-							.getPredictedFormat().getWellCount()]);
+		inputRows = 0L;
+		inputFingerprint = specFingerprint(getTable().getDataTableSpec());
+		final long rowCount = rowCount(getTable());
+		final Iterator<DataRow> rows = getTable().iterator();
+		long done = 0L;
+		if (parallelism <= 1) {
+			final Chunk chunk = new Chunk(layout, !deferValues
+					|| rangeValues != null || checksumValues);
+			while (rows.hasNext()) {
+				chunk.clear();
+				while (rows.hasNext() && chunk.size < CHUNK_SIZE) {
+					chunk.read(rows.next());
 				}
+				apply(chunk, valueParams, params, done);
+				fingerprint(chunk);
+				done += chunk.size;
+				progress(exec, done, rowCount);
 			}
-			if (!colourValues.containsKey(plate)) {
-				colourValues.put(plate, new Color[specAnalyser
-						.getPredictedFormat().getWellCount()]);
-			}
-			final Map<String, String[]> textColumns = textValues.get(plate);
-			final int well = specAnalyser.getPredictedFormat()
-					.convertWellToPosition(
-							((StringCell) dataRow.getCell(wellIndex))
-									.getStringValue());
-			colourValues.get(plate)[well] = getTable().getDataTableSpec()
-					.getRowColor(dataRow).getColor();
-			for (final Entry<String, Integer> entry : stringIndices.entrySet()) {
-				final DataCell cell = dataRow.getCell(entry.getValue()
-						.intValue());
-				textColumns.get(entry.getKey())[well] = cell == DataType
-						.getMissingCell() ? "" : ((StringValue) cell)
-						.getStringValue();
-			}
-			keyToPlateAndPosition.put(dataRow.getKey().getString(),
-					new Pair<Integer, Integer>(plate, Integer.valueOf(well)));
-			if (hasReplicate) {
-				final Integer replicate = getInt(dataRow, replicateIndex);
-				minReplicate = Math.min(replicate.intValue(), minReplicate);
-				maxReplicate = Math.max(replicate.intValue(), maxReplicate);
-				final Map<Integer, Map<String, Map<StatTypes, double[]>>> outerMap = replicateValues
-						.get(plate);
-				checkAndPutHashMap(replicate, outerMap);
-				final Map<String, Map<StatTypes, double[]>> paramMap = outerMap
-						.get(replicate);
-				for (final String param : specAnalyser.getValueIndices()
-						.keySet()) {
-					checkAndPutEnumMap(param, paramMap, StatTypes.class);
-					if (!paramMap.containsKey(param)) {
-						paramMap.put(param, new EnumMap<StatTypes, double[]>(
-								StatTypes.class));
+			return;
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(
+				parallelism, new ThreadFactory() {
+					private int count;
+
+					@Override
+					public synchronized Thread newThread(final Runnable r) {
+						final Thread thread = new Thread(r,
+								"HiTS model builder " + ++count);
+						thread.setDaemon(true);
+						return thread;
 					}
-					final Map<StatTypes, double[]> enumMap = paramMap
-							.get(param);
-					final StatTypes stat = StatTypes.otherNumeric;
-					if (!statistics.contains(stat)) {
-						continue;
-					}
-					if (!enumMap.containsKey(stat)) {
-						enumMap.put(stat, createPlateValues(specAnalyser
-								.getPredictedFormat().getWellCount()));
-					}
-					final DataCell cell = dataRow
-							.getCell(specAnalyser.valueIndices.get(param)
-									.intValue());
-					enumMap.get(stat)[well] = cell instanceof DoubleValue ? ((DoubleValue) cell)
-							.getDoubleValue()
-							: Double.NaN;
-				}
-				for (final String param : parameters) {
-					if (!paramMap.containsKey(param)) {
-						paramMap.put(param, new EnumMap<StatTypes, double[]>(
-								StatTypes.class));
+				});
+		try {
+			final Deque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+			while (rows.hasNext() || !pending.isEmpty()) {
+				while (rows.hasNext() && pending.size() < 2 * parallelism) {
+					final DataRow[] batch = new DataRow[CHUNK_SIZE];
+					int count = 0;
+					while (rows.hasNext() && count < CHUNK_SIZE) {
+						batch[count++] = rows.next();
 					}
-					final Map<StatTypes, double[]> enumMap = paramMap
-							.get(param);
-					for (final StatTypes stat : StatTypes.replicateTypes) {
-						if (!statistics.contains(stat)) {
-							continue;
-						}
-						if (!enumMap.containsKey(stat)) {
-							enumMap.put(stat, createPlateValues(specAnalyser
-									.getPredictedFormat().getWellCount()));
+					final int size = count;
+					pending.add(executor.submit(new Callable<Chunk>() {
+						@Override
+						public Chunk call() {
+							final Chunk chunk = new Chunk(layout, true);
+							for (int i = 0; i < size; ++i) {
+								chunk.read(batch[i]);
+							}
+							chunk.group();
+							return chunk;
 						}
-						final DataCell cell = dataRow.getCell(indices.get(stat)
-								.get(param).intValue());
-						enumMap.get(stat)[well] = cell instanceof DoubleValue ? ((DoubleValue) cell)
-								.getDoubleValue()
-								: Double.NaN;
-					}
+					}));
 				}
-			}
-			if (statistics.contains(StatTypes.score)
-					|| statistics.contains(StatTypes.meanOrDiff)
-					|| statistics.contains(StatTypes.median)) {
-				final Map<String, Map<StatTypes, double[]>> map = scoreValues
-						.get(plate);
-				for (final String param : parameters) {
-					if (!map.containsKey(param)) {
-						map.put(param, new EnumMap<StatTypes, double[]>(
-								StatTypes.class));
-						for (final StatTypes type : StatTypes.scoreTypes) {
-							map.get(param).put(
-									type,
-									createPlateValues(specAnalyser
-											.getPredictedFormat()
-											.getWellCount()));
-						}
-					}
-					final Map<StatTypes, double[]> values = map.get(param);
-					for (final StatTypes type : StatTypes.scoreTypes) {
-						if (!statistics.contains(type)) {
-							continue;
-						}
-						final double[] vals = values.get(type);
-						final DataCell cell = dataRow.getCell(indices.get(type)
-								.get(param).intValue());
-						vals[well] = cell instanceof DoubleValue ? ((DoubleValue) cell)
-								.getDoubleValue()
-								: Double.NaN;
+				final Chunk chunk;
+				try {
+					chunk = pending.poll().get();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new CanceledExecutionException(
+							"Interrupted while building the model.");
+				} catch (final ExecutionException e) {
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
 					}
+					throw new IllegalStateException(e.getCause());
 				}
+				applyGroups(chunk, valueParams, params);
+				fingerprint(chunk);
+				done += chunk.size;
+				progress(exec, done, rowCount);
 			}
+		} finally {
+			executor.shutdownNow();
 		}
 	}
 
 	/**
-	 * Add an {@link EnumMap} to {@code map} if {@code key} was not previously
-	 * contained.
+	 * Adds the rows of {@code delta} to the model without rebuilding the
+	 * already present plates. The plates (of an experiment and
+	 * normalisation) present in {@code delta} replace the previous values of
+	 * those plates, the other plates are kept. The whole {@code delta} is
+	 * parsed before changing anything, so when the execution is cancelled
+	 * (or {@code delta} cannot be parsed) the model is not modified.
+	 * <p>
+	 * The values, texts, colours and keys are updated in place, the cost of
+	 * that is proportional to the size of {@code delta} (and the number of
+	 * replaced plates). The {@link #getRanges() statistics} (medians,
+	 * quartiles, MADs) cannot be merged, they are recomputed from every value
+	 * on the next call of {@link #getRanges()}. The {@link #getTable() table}
+	 * does not change, use {@link #updateTo(DataTable, ExecutionMonitor)} when
+	 * the new rows are appended to the table.
 	 * 
-	 * @param <K1>
-	 *            Type of keys in outer map.
-	 * @param <K2>
-	 *            Type of keys in inner map.
-	 * @param <V>
-	 *            Type of values in inner map.
-	 * @param key
-	 *            A key of {@code map}.
-	 * @param map
-	 *            The map to check the key.
-	 * @param cls
-	 *            The class of the inner (enum) map's keys.
+	 * @param delta
+	 *            The new rows, with the same structure as the
+	 *            {@link #getTable() table}.
+	 * @param exec
+	 *            The {@link ExecutionMonitor} to report progress and check
+	 *            cancellation. (Might be {@code null}.)
+	 * @throws CanceledExecutionException
+	 *             If the execution was cancelled.
+	 * @throws IllegalArgumentException
+	 *             If {@code delta} has different structure.
+	 * @throws UnsupportedOperationException
+	 *             If the model {@link #isUpdatable() cannot be updated}.
 	 */
-	private static <K1, K2 extends Enum<K2>, V> void checkAndPutEnumMap(
-			final K1 key, final Map<K1, Map<K2, V>> map, final Class<K2> cls) {
-		if (!map.containsKey(key)) {
-			map.put(key, new EnumMap<K2, V>(cls));
+	public void update(final DataTable delta,
+			@Nullable final ExecutionMonitor exec)
+			throws CanceledExecutionException {
+		if (!isUpdatable()) {
+			throw new UnsupportedOperationException(
+					"The lazily loaded models cannot be updated.");
+		}
+		if (!getTable().getDataTableSpec().equalStructure(
+				delta.getDataTableSpec())) {
+			throw new IllegalArgumentException(
+					"The structure of the new rows is different: "
+							+ delta.getDataTableSpec());
+		}
+		final Iterator<DataRow> rows = delta.iterator();
+		try {
+			update(rows, delta.getDataTableSpec(), rowCount(delta), true,
+					exec);
+		} finally {
+			if (rows instanceof CloseableRowIterator) {
+				((CloseableRowIterator) rows).close();
+			}
 		}
 	}
 
 	/**
-	 * Add a {@link HashMap} to {@code map} if {@code key} was not previously
-	 * contained.
+	 * Updates the model to {@code table}, if it is the {@link #getTable()
+	 * table} of the model with new rows appended (like the plates of a
+	 * rolling screen). The previously processed rows are recognised by the
+	 * fingerprint of their keys (their values are not read again), the
+	 * appended rows are added the same way as they would be added while
+	 * building the model from {@code table} (so the result is the same), and
+	 * {@code table} becomes the table of the model. The cost is proportional
+	 * to the number of appended rows (and the row keys of the previous
+	 * rows), the {@link #getRanges() statistics} are recomputed on the next
+	 * call of {@link #getRanges()}.
+	 * <p>
+	 * Nothing is changed (and {@code false} is returned) when the model
+	 * {@link #isUpdatable() cannot be updated}, the structure of
+	 * {@code table} is different, or the previous rows are not the first
+	 * rows of {@code table}; then the model should be rebuilt. When the
+	 * execution is cancelled the model is not modified either.
 	 * 
-	 * @param <K1>
-	 *            Type of keys in outer map.
-	 * @param <K2>
-	 *            Type of keys in inner map.
-	 * @param <V>
-	 *            Type of values in inner map.
-	 * @param key
-	 *            A key of {@code map}.
-	 * @param map
-	 *            The map to check the key.
+	 * @param table
+	 *            The new table.
+	 * @param exec
+	 *            The {@link ExecutionMonitor} to report progress and check
+	 *            cancellation. (Might be {@code null}.)
+	 * @return {@code true} iff the model was updated to {@code table}.
+	 * @throws CanceledExecutionException
+	 *             If the execution was cancelled.
 	 */
-	private static <K1, K2, V> void checkAndPutHashMap(final K1 key,
-			final Map<K1, Map<K2, V>> map) {
-		if (!map.containsKey(key)) {
-			map.put(key, new HashMap<K2, V>());
+	public boolean updateTo(final DataTable table,
+			@Nullable final ExecutionMonitor exec)
+			throws CanceledExecutionException {
+		final DataTableSpec spec = table.getDataTableSpec();
+		final long rowCount = rowCount(table);
+		if (!isUpdatable()
+				|| !getTable().getDataTableSpec().equalStructure(spec)
+				|| rowCount != -1L && rowCount < inputRows) {
+			return false;
+		}
+		final Iterator<DataRow> rows = table.iterator();
+		try {
+			long fingerprint = specFingerprint(spec);
+			long done = 0L;
+			while (done < inputRows && rows.hasNext()) {
+				fingerprint = mix(fingerprint, rows.next().getKey()
+						.getString().hashCode());
+				if (++done % CHUNK_SIZE == 0) {
+					progress(exec, done, rowCount);
+				}
+			}
+			if (done < inputRows || fingerprint != inputFingerprint) {
+				return false;
+			}
+			for (final Chunk chunk : update(rows, spec, rowCount == -1L ? -1L
+					: rowCount - done, false, exec)) {
+				fingerprint(chunk);
+			}
+		} finally {
+			if (rows instanceof CloseableRowIterator) {
+				((CloseableRowIterator) rows).close();
+			}
 		}
+		setTable(table);
+		return true;
 	}
 
 	/**
-	 * Add a {@link TreeMap} to {@code map} if {@code key} was not previously
-	 * contained.
+	 * @return {@code true} iff the model can be {@link #update(DataTable,
+	 *         ExecutionMonitor) updated}, (its values are not loaded lazily or
+	 *         stored in a file).
+	 */
+	public boolean isUpdatable() {
+		return !deferValues;
+	}
+
+	/**
+	 * Adds the remaining rows of {@code rows} to the model, the same way as
+	 * {@link #update(DataTable, ExecutionMonitor)}, or (without
+	 * {@code replace}) the same way as the rows are added while building the
+	 * model.
 	 * 
-	 * @param <K1>
-	 *            Type of keys in outer map.
-	 * @param <K2>
-	 *            Type of keys in inner map.
-	 * @param <V>
-	 *            Type of values in inner map.
-	 * @param key
-	 *            A key of {@code map}.
-	 * @param map
-	 *            The map to check the key.
+	 * @param rows
+	 *            The new rows (it is not closed).
+	 * @param spec
+	 *            The structure of the new rows.
+	 * @param rowCount
+	 *            The number of the new rows, or {@code -1} if not known.
+	 * @param replace
+	 *            If {@code true}, the plates present in the new rows replace
+	 *            the previous values of those plates.
+	 * @param exec
+	 *            The {@link ExecutionMonitor} to report progress and check
+	 *            cancellation. (Might be {@code null}.)
+	 * @return The parsed new rows.
+	 * @throws CanceledExecutionException
+	 *             If the execution was cancelled.
 	 */
-	private static <K1, K2 extends Comparable<K2>, V> void checkAndPutTreeMap(
-			final K1 key, final Map<K1, Map<K2, V>> map) {
-		if (!map.containsKey(key)) {
-			map.put(key, new TreeMap<K2, V>());
+	private List<Chunk> update(final Iterator<DataRow> rows,
+			final DataTableSpec spec, final long rowCount,
+			final boolean replace, @Nullable final ExecutionMonitor exec)
+			throws CanceledExecutionException {
+		final SpecAnalyser specAnalyser = getSpecAnalyser();
+		final Layout layout = new Layout(specAnalyser, spec);
+		final List<Chunk> chunks = new ArrayList<Chunk>();
+		long done = 0L;
+		while (rows.hasNext()) {
+			final Chunk chunk = new Chunk(layout, true);
+			while (rows.hasNext() && chunk.size < CHUNK_SIZE) {
+				chunk.read(rows.next());
+			}
+			chunks.add(chunk);
+			done += chunk.size;
+			progress(exec, done, rowCount);
+		}
+		final int[] valueParams = internValueParameters(specAnalyser);
+		final int[] params = internParameters(specAnalyser);
+		final Set<Long> replacedPlates = new HashSet<Long>();
+		for (final Chunk chunk : replace ? chunks : Collections
+				.<Chunk> emptyList()) {
+			for (int r = 0; r < chunk.size; ++r) {
+				final String experiment = chunk.experimentValues
+						.get(chunk.experiments[r]);
+				final String normKey = chunk.normKeys.getKey(chunk.norms[r]);
+				final int exp = cube.getExperiments().codeOf(experiment);
+				final int norm = cube.getNormalisations().codeOf(normKey);
+				final int plate = cube.getPlates().codeOf(chunk.plates[r]);
+				if (exp >= 0 && norm >= 0 && plate >= 0
+						&& cube.removePlate(exp, norm, plate)) {
+					final Integer plateValue = Integer.valueOf(chunk.plates[r]);
+					texts.get(experiment).get(normKey).remove(plateValue);
+					colours.get(experiment).get(normKey).remove(plateValue);
+					replacedPlates.add(Long.valueOf(PlateCube.plateKey(exp,
+							norm, plate)));
+				}
+			}
 		}
+		if (!replacedPlates.isEmpty()) {
+			rowKeyIndex.removeGroups(replacedPlates);
+		}
+		for (final Chunk chunk : chunks) {
+			apply(chunk, valueParams, params, -1L);
+		}
+		ranges = null;
+		return chunks;
 	}
 
 	/**
-	 * Creates a {@code double} array with length {@code count} and fills with
-	 * {@link Double#NaN}.
+	 * Finds (or adds) the codes of the
+	 * {@link SpecAnalyser#getValueIndices() value columns}.
 	 * 
-	 * @param count
-	 *            The length of the returned {@code double} array.
-	 * @return An array with {@link Double#NaN}s.
+	 * @param specAnalyser
+	 *            A {@link SpecAnalyser}.
+	 * @return The parameter codes of the value columns.
+	 */
+	private int[] internValueParameters(final SpecAnalyser specAnalyser) {
+		final int[] ret = new int[specAnalyser.getValueIndices().size()];
+		int i = 0;
+		for (final String param : specAnalyser.getValueIndices().keySet()) {
+			ret[i++] = cube.getParameters().intern(param);
+		}
+		return ret;
+	}
+
+	/**
+	 * Finds (or adds) the codes of the {@link SpecAnalyser#getParameters()
+	 * parameters}.
+	 * 
+	 * @param specAnalyser
+	 *            A {@link SpecAnalyser}.
+	 * @return The parameter codes.
+	 */
+	private int[] internParameters(final SpecAnalyser specAnalyser) {
+		final List<String> parameters = specAnalyser.getParameters();
+		final int[] ret = new int[parameters.size()];
+		for (int i = 0; i < ret.length; ++i) {
+			ret[i] = cube.getParameters().intern(parameters.get(i));
+		}
+		return ret;
+	}
+
+	/**
+	 * @param table
+	 *            A {@link DataTable}.
+	 * @return The number of rows in {@code table}, or {@code -1} if not known.
+	 */
+	private static long rowCount(final DataTable table) {
+		return table instanceof BufferedDataTable ? ((BufferedDataTable) table)
+				.size() : -1L;
+	}
+
+	/**
+	 * Reports the progress and checks for cancellation.
+	 * 
+	 * @param exec
+	 *            An {@link ExecutionMonitor}, or {@code null}.
+	 * @param done
+	 *            The number of processed rows.
+	 * @param rowCount
+	 *            The number of rows, or {@code -1} if not known.
+	 * @throws CanceledExecutionException
+	 *             If the execution was cancelled.
+	 */
+	private static void progress(@Nullable final ExecutionMonitor exec,
+			final long done, final long rowCount)
+			throws CanceledExecutionException {
+		if (exec == null) {
+			return;
+		}
+		exec.checkCanceled();
+		if (rowCount > 0) {
+			exec.setProgress(done / (double) rowCount, "Processed " + done
+					+ " rows");
+		} else {
+			exec.setMessage("Processed " + done + " rows");
+		}
+	}
+
+	/**
+	 * Adds the values of the parsed rows to the model in their original
+	 * order.
+	 * 
+	 * @param chunk
+	 *            The parsed rows.
+	 * @param valueParams
+	 *            The parameter codes of the
+	 *            {@link SpecAnalyser#getValueIndices() value columns}.
+	 * @param params
+	 *            The parameter codes of the
+	 *            {@link SpecAnalyser#getParameters() parameters}.
+	 * @param firstRow
+	 *            The index of the first row of {@code chunk} in the
+	 *            {@link #getTable() table}.
+	 */
+	private void apply(final Chunk chunk, final int[] valueParams,
+			final int[] params, final long firstRow) {
+		final Layout layout = chunk.layout;
+		final int wellCount = layout.format.getWellCount();
+		final int[] experimentCodes = new int[chunk.experimentValues.size()];
+		Arrays.fill(experimentCodes, -1);
+		final int[] normCodes = new int[chunk.normKeys.size()];
+		Arrays.fill(normCodes, -1);
+		for (int r = 0; r < chunk.size; ++r) {
+			final String experiment = chunk.experimentValues
+					.get(chunk.experiments[r]);
+			checkAndPutTreeMap(experiment, texts);
+			checkAndPutTreeMap(experiment, colours);
+			final Map<String, Map<Integer, Map<String, String[]>>> textsNormMethodValues = texts
+					.get(experiment);
+			final Map<String, Map<Integer, PackedColours>> colourNormMethodValues = colours
+					.get(experiment);
+			final String normKey = chunk.normKeys.getKey(chunk.norms[r]);
+			checkAndPutHashMap(normKey, textsNormMethodValues);
+			checkAndPutHashMap(normKey, colourNormMethodValues);
+			final Map<Integer, Map<String, String[]>> textValues = textsNormMethodValues
+					.get(normKey);
+			final Map<Integer, PackedColours> colourValues = colourNormMethodValues
+					.get(normKey);
+			final int plateValue = chunk.plates[r];
+			final Integer plate = Integer.valueOf(plateValue);
+			minPlate = Math.min(minPlate, plateValue);
+			maxPlate = Math.max(maxPlate, plateValue);
+			if (experimentCodes[chunk.experiments[r]] < 0) {
+				experimentCodes[chunk.experiments[r]] = cube.getExperiments()
+						.intern(experiment);
+			}
+			final int exp = experimentCodes[chunk.experiments[r]];
+			if (normCodes[chunk.norms[r]] < 0) {
+				normCodes[chunk.norms[r]] = cube.getNormalisations().intern(
+						normKey);
+			}
+			final int norm = normCodes[chunk.norms[r]];
+			final int plateCode = cube.getPlates().intern(plateValue);
+			cube.mark(true, exp, norm, plateCode, PlateCube.ANY,
+					PlateCube.ANY);
+			cube.mark(false, exp, norm, plateCode, PlateCube.ANY,
+					PlateCube.ANY);
+			if (!textValues.containsKey(plate)) {
+				final HashMap<String, String[]> map = new HashMap<String, String[]>();
+				textValues.put(plate, map);
+				for (final String colName : layout.textNames) {
+					map.put(colName, new String[wellCount]);
+				}
+			}
+			if (!colourValues.containsKey(plate)) {
+				colourValues.put(plate, new PackedColours(wellCount));
+			}
+			final Map<String, String[]> textColumns = textValues.get(plate);
+			final int well = chunk.wells[r];
+			colourValues.get(plate).set(well, chunk.colours[r]);
+			for (int t = 0; t < layout.textNames.length; ++t) {
+				textColumns.get(layout.textNames[t])[well] = chunk.texts[t][r];
+			}
+			rowKeyIndex.put(chunk.keys[r], plateValue, well, PlateCube
+					.plateKey(exp, norm, plateCode));
+			if (rowRanges != null) {
+				final Long plateKey = Long.valueOf(PlateCube.plateKey(exp,
+						norm, plateCode));
+				RowRanges ranges = rowRanges.get(plateKey);
+				if (ranges == null) {
+					ranges = new RowRanges();
+					rowRanges.put(plateKey, ranges);
+				}
+				ranges.add(firstRow + r);
+			}
+			int rep = PlateCube.NO_REPLICATE;
+			if (layout.hasReplicate) {
+				final int replicate = chunk.replicates[r];
+				minReplicate = Math.min(replicate, minReplicate);
+				maxReplicate = Math.max(replicate, maxReplicate);
+				rep = cube.getReplicates().intern(replicate);
+				for (int i = 0; i < valueParams.length; ++i) {
+					cube.mark(true, exp, norm, plateCode, rep, valueParams[i]);
+				}
+				for (int i = 0; i < params.length; ++i) {
+					cube.mark(true, exp, norm, plateCode, rep, params[i]);
+				}
+			}
+			if (layout.hasScores) {
+				for (int i = 0; i < params.length; ++i) {
+					if (deferValues) {
+						cube.mark(false, exp, norm, plateCode,
+								PlateCube.NO_REPLICATE, params[i]);
+					} else if (!cube.contains(false, exp, norm, plateCode,
+							PlateCube.NO_REPLICATE, params[i])) {
+						createScoreSlices(exp, norm, plateCode, params[i]);
+					}
+				}
+			}
+			if (!deferValues) {
+				writeValues(chunk, r, exp, norm, plateCode, rep, valueParams,
+						params);
+			} else if (rangeValues != null) {
+				rangeValues.add(chunk, r, PlateCube.plateKey(exp, norm,
+						plateCode), rep, valueParams, params);
+			}
+			if (checksumValues) {
+				valueChecksum = checksum(valueChecksum, chunk, r, PlateCube
+						.plateKey(exp, norm, plateCode), rep);
+			}
+		}
+	}
+
+	/**
+	 * Adds the rows of a {@link Chunk#group() grouped} {@code chunk} to the
+	 * model (with eagerly written values), with the same result as
+	 * {@link #apply(Chunk, int[], int[], long)}. The groups are the partial
+	 * models built by the parsing threads: the codes, the structure, the maps
+	 * of the texts and the colours, and the slices are looked up once for
+	 * each group (in the order of their first rows, so the codes are
+	 * assigned in the same order), only the values of the rows are copied
+	 * one-by-one.
+	 * 
+	 * @param chunk
+	 *            The grouped rows.
+	 * @param valueParams
+	 *            The parameter codes of the
+	 *            {@link SpecAnalyser#getValueIndices() value columns}.
+	 * @param params
+	 *            The parameter codes of the
+	 *            {@link SpecAnalyser#getParameters() parameters}.
+	 */
+	private void applyGroups(final Chunk chunk, final int[] valueParams,
+			final int[] params) {
+		final Layout layout = chunk.layout;
+		final int wellCount = layout.format.getWellCount();
+		final int groups = chunk.plateGroupCount;
+		final int[] exps = new int[groups];
+		final int[] norms = new int[groups];
+		final int[] plateCodes = new int[groups];
+		// plate group, text column
+		final String[][][] textArrays = new String[groups][][];
+		final PackedColours[] plateColours = new PackedColours[groups];
+		for (int g = 0; g < groups; ++g) {
+			final int first = chunk.plateGroupRows[chunk.plateGroupStarts[g]];
+			final String experiment = chunk.experimentValues
+					.get(chunk.experiments[first]);
+			final String normKey = chunk.normKeys.getKey(chunk.norms[first]);
+			final int plateValue = chunk.plates[first];
+			minPlate = Math.min(minPlate, plateValue);
+			maxPlate = Math.max(maxPlate, plateValue);
+			exps[g] = cube.getExperiments().intern(experiment);
+			norms[g] = cube.getNormalisations().intern(normKey);
+			plateCodes[g] = cube.getPlates().intern(plateValue);
+			cube.mark(true, exps[g], norms[g], plateCodes[g], PlateCube.ANY,
+					PlateCube.ANY);
+			cube.mark(false, exps[g], norms[g], plateCodes[g], PlateCube.ANY,
+					PlateCube.ANY);
+			checkAndPutTreeMap(experiment, texts);
+			checkAndPutTreeMap(experiment, colours);
+			checkAndPutHashMap(normKey, texts.get(experiment));
+			checkAndPutHashMap(normKey, colours.get(experiment));
+			final Integer plate = Integer.valueOf(plateValue);
+			final Map<Integer, Map<String, String[]>> textValues = texts.get(
+					experiment).get(normKey);
+			Map<String, String[]> textColumns = textValues.get(plate);
+			if (textColumns == null) {
+				textColumns = new HashMap<String, String[]>();
+				textValues.put(plate, textColumns);
+				for (final String colName : layout.textNames) {
+					textColumns.put(colName, new String[wellCount]);
+				}
+			}
+			textArrays[g] = new String[layout.textNames.length][];
+			for (int t = 0; t < layout.textNames.length; ++t) {
+				textArrays[g][t] = textColumns.get(layout.textNames[t]);
+			}
+			final Map<Integer, PackedColours> colourValues = colours.get(
+					experiment).get(normKey);
+			plateColours[g] = colourValues.get(plate);
+			if (plateColours[g] == null) {
+				plateColours[g] = new PackedColours(wellCount);
+				colourValues.put(plate, plateColours[g]);
+			}
+			if (layout.hasScores) {
+				for (int i = 0; i < params.length; ++i) {
+					if (!cube.contains(false, exps[g], norms[g], plateCodes[g],
+							PlateCube.NO_REPLICATE, params[i])) {
+						createScoreSlices(exps[g], norms[g], plateCodes[g],
+								params[i]);
+					}
+				}
+			}
+		}
+		for (int r = 0; r < chunk.size; ++r) {
+			final int g = chunk.plateGroups[r];
+			final int well = chunk.wells[r];
+			plateColours[g].set(well, chunk.colours[r]);
+			for (int t = 0; t < textArrays[g].length; ++t) {
+				textArrays[g][t][well] = chunk.texts[t][r];
+			}
+			rowKeyIndex.put(chunk.keys[r], chunk.plates[r], well, PlateCube
+					.plateKey(exps[g], norms[g], plateCodes[g]));
+		}
+		if (layout.hasReplicate) {
+			for (int g = 0; g < chunk.replicateGroupCount; ++g) {
+				final int start = chunk.replicateGroupStarts[g], end = chunk.replicateGroupStarts[g + 1];
+				final int first = chunk.replicateGroupRows[start];
+				final int p = chunk.plateGroups[first];
+				final int replicate = chunk.replicates[first];
+				minReplicate = Math.min(replicate, minReplicate);
+				maxReplicate = Math.max(replicate, maxReplicate);
+				final int rep = cube.getReplicates().intern(replicate);
+				for (int i = 0; i < valueParams.length; ++i) {
+					cube.mark(true, exps[p], norms[p], plateCodes[p], rep,
+							valueParams[i]);
+				}
+				for (int i = 0; i < params.length; ++i) {
+					cube.mark(true, exps[p], norms[p], plateCodes[p], rep,
+							params[i]);
+				}
+				if (layout.hasOtherNumeric) {
+					for (int i = 0; i < valueParams.length; ++i) {
+						copy(chunk, chunk.replicateGroupRows, start, end,
+								layout.valuePositions[i], cube.getOrCreateSlice(
+										exps[p], norms[p], plateCodes[p], rep,
+										valueParams[i], StatTypes.otherNumeric));
+					}
+				}
+				for (int i = 0; i < params.length; ++i) {
+					for (int t = 0; t < StatTypes.replicateTypes.size(); ++t) {
+						if (layout.replicatePositions[t] != null) {
+							copy(chunk, chunk.replicateGroupRows, start, end,
+									layout.replicatePositions[t][i], cube
+											.getOrCreateSlice(exps[p], norms[p],
+													plateCodes[p], rep,
+													params[i],
+													StatTypes.replicateTypes
+															.get(t)));
+						}
+					}
+				}
+			}
+		}
+		if (layout.hasScores) {
+			for (int g = 0; g < groups; ++g) {
+				final int start = chunk.plateGroupStarts[g], end = chunk.plateGroupStarts[g + 1];
+				for (int i = 0; i < params.length; ++i) {
+					for (int t = 0; t < StatTypes.scoreTypes.size(); ++t) {
+						if (layout.scorePositions[t] != null) {
+							copy(chunk, chunk.plateGroupRows, start, end,
+									layout.scorePositions[t][i], cube
+											.getOrCreateSlice(exps[g], norms[g],
+													plateCodes[g],
+													PlateCube.NO_REPLICATE,
+													params[i],
+													StatTypes.scoreTypes
+															.get(t)));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies the values of a column from the rows of a group to the wells of
+	 * a slice (in the order of the rows, so the later rows overwrite the
+	 * previous ones).
+	 * 
+	 * @param chunk
+	 *            The parsed rows.
+	 * @param rows
+	 *            The rows ordered by their groups.
+	 * @param start
+	 *            The first position of the group in {@code rows}.
+	 * @param end
+	 *            The position after the last row of the group in
+	 *            {@code rows}.
+	 * @param position
+	 *            The position of the column in the values of a row.
+	 * @param slice
+	 *            The values for each well.
+	 */
+	private static void copy(final Chunk chunk, final int[] rows,
+			final int start, final int end, final int position,
+			final double[] slice) {
+		final int width = chunk.layout.width;
+		for (int i = start; i < end; ++i) {
+			final int r = rows[i];
+			slice[chunk.wells[r]] = chunk.values[r * width + position];
+		}
+	}
+
+	/**
+	 * Adds the values of a row (and their position) to a checksum.
+	 * 
+	 * @param checksum
+	 *            The checksum of the previous rows.
+	 * @param chunk
+	 *            The parsed rows (with values).
+	 * @param r
+	 *            The index of the row in {@code chunk}.
+	 * @param plateKey
+	 *            The {@link PlateCube#plateKey(int, int, int) key} of the
+	 *            plate.
+	 * @param rep
+	 *            The replicate code (if present).
+	 * @return The new checksum.
+	 */
+	private static long checksum(final long checksum, final Chunk chunk,
+			final int r, final long plateKey, final int rep) {
+		long ret = mix(checksum, plateKey);
+		ret = mix(ret, (long) rep << 32 | chunk.wells[r] & 0xffffffffL);
+		final int base = r * chunk.layout.width;
+		for (int i = 0; i < chunk.layout.width; ++i) {
+			ret = mix(ret, Double.doubleToLongBits(chunk.values[base + i]));
+		}
+		return ret;
+	}
+
+	/**
+	 * @param hash
+	 *            The previous hash.
+	 * @param value
+	 *            A value.
+	 * @return The hash combined with {@code value}.
+	 */
+	private static long mix(final long hash, final long value) {
+		final long ret = (Long.rotateLeft(hash, 27) ^ value)
+				* 0x9e3779b97f4a7c15L;
+		return ret ^ ret >>> 31;
+	}
+
+	/**
+	 * Creates the (empty) slices of {@link StatTypes#scoreTypes}.
+	 * 
+	 * @param exp
+	 *            The experiment code.
+	 * @param norm
+	 *            The normalisation code.
+	 * @param plate
+	 *            The plate code.
+	 * @param param
+	 *            The parameter code.
+	 */
+	private void createScoreSlices(final int exp, final int norm,
+			final int plate, final int param) {
+		for (final StatTypes type : StatTypes.scoreTypes) {
+			cube.getOrCreateSlice(exp, norm, plate, PlateCube.NO_REPLICATE,
+					param, type);
+		}
+	}
+
+	/**
+	 * Writes the values of a row to the {@link PlateCube cube}.
+	 * 
+	 * @param chunk
+	 *            The parsed rows.
+	 * @param r
+	 *            The index of the row in {@code chunk}.
+	 * @param exp
+	 *            The experiment code.
+	 * @param norm
+	 *            The normalisation code.
+	 * @param plate
+	 *            The plate code.
+	 * @param rep
+	 *            The replicate code (if present).
+	 * @param valueParams
+	 *            The parameter codes of the
+	 *            {@link SpecAnalyser#getValueIndices() value columns}.
+	 * @param params
+	 *            The parameter codes of the
+	 *            {@link SpecAnalyser#getParameters() parameters}.
+	 */
+	private void writeValues(final Chunk chunk, final int r, final int exp,
+			final int norm, final int plate, final int rep,
+			final int[] valueParams, final int[] params) {
+		final Layout layout = chunk.layout;
+		final double[] values = chunk.values;
+		final int base = r * layout.width;
+		final int well = chunk.wells[r];
+		if (layout.hasReplicate) {
+			if (layout.hasOtherNumeric) {
+				for (int i = 0; i < valueParams.length; ++i) {
+					cube.getOrCreateSlice(exp, norm, plate, rep,
+							valueParams[i], StatTypes.otherNumeric)[well] = values[base
+							+ layout.valuePositions[i]];
+				}
+			}
+			for (int i = 0; i < params.length; ++i) {
+				for (int t = 0; t < StatTypes.replicateTypes.size(); ++t) {
+					if (layout.replicatePositions[t] != null) {
+						cube.getOrCreateSlice(exp, norm, plate, rep,
+								params[i], StatTypes.replicateTypes.get(t))[well] = values[base
+								+ layout.replicatePositions[t][i]];
+					}
+				}
+			}
+		}
+		if (layout.hasScores) {
+			for (int i = 0; i < params.length; ++i) {
+				for (int t = 0; t < StatTypes.scoreTypes.size(); ++t) {
+					if (layout.scorePositions[t] != null) {
+						cube.getOrCreateSlice(exp, norm, plate,
+								PlateCube.NO_REPLICATE, params[i],
+								StatTypes.scoreTypes.get(t))[well] = values[base
+								+ layout.scorePositions[t][i]];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the values of a plate from the {@link #getTable() table} when the
+	 * slices are loaded lazily. The table is read sequentially, the iterator
+	 * is kept open between the loads, so the plates asked for in the order of
+	 * their rows are read in a single pass. The table is read again from the
+	 * start only when an earlier plate is asked for.
+	 */
+	private final class PlateLoader implements PlateCube.SliceLoader {
+		private final Layout layout = new Layout(getSpecAnalyser(),
+				getTable().getDataTableSpec());
+		private final int[] valueParams = internValueParameters(getSpecAnalyser());
+		private final int[] params = internParameters(getSpecAnalyser());
+		/** The rows of the table, {@code null} if not open. */
+		@Nullable
+		private Iterator<DataRow> rows;
+		/** The index of the next row of {@link #rows}. */
+		private long next;
+
+		PlateLoader() {
+			super();
+		}
+
+		@Override
+		public synchronized void load(final int experiment,
+				final int normalisation, final int plate) {
+			final RowRanges ranges = rowRanges.get(Long.valueOf(PlateCube
+					.plateKey(experiment, normalisation, plate)));
+			if (ranges == null) {
+				return;
+			}
+			if (layout.hasScores) {
+				for (final int param : params) {
+					createScoreSlices(experiment, normalisation, plate, param);
+				}
+			}
+			if (rows == null || next > ranges.bounds[0]) {
+				close();
+				rows = getTable().iterator();
+				next = 0L;
+			}
+			final Chunk chunk = new Chunk(layout, true);
+			boolean ok = false;
+			try {
+				for (int range = 0; range < ranges.size; ++range) {
+					final long start = ranges.bounds[2 * range], end = ranges.bounds[2 * range + 1];
+					for (; next < start; ++next) {
+						rows.next();
+					}
+					for (; next < end; ++next) {
+						chunk.read(rows.next());
+						if (chunk.size == CHUNK_SIZE) {
+							write(chunk, experiment, normalisation, plate);
+						}
+					}
+				}
+				write(chunk, experiment, normalisation, plate);
+				ok = true;
+			} finally {
+				if (!ok || !rows.hasNext()) {
+					close();
+				}
+			}
+		}
+
+		/**
+		 * Closes the iterator of the rows (if open).
+		 */
+		synchronized void close() {
+			if (rows instanceof CloseableRowIterator) {
+				((CloseableRowIterator) rows).close();
+			}
+			rows = null;
+		}
+
+		private void write(final Chunk chunk, final int experiment,
+				final int normalisation, final int plate) {
+			for (int r = 0; r < chunk.size; ++r) {
+				writeValues(chunk, r, experiment, normalisation, plate,
+						layout.hasReplicate ? cube.getReplicates().codeOf(
+								chunk.replicates[r]) : PlateCube.NO_REPLICATE,
+						valueParams, params);
+			}
+			chunk.clear();
+		}
+	}
+
+	/**
+	 * Writes the values of the plates to a {@link MappedPlateStore} (through
+	 * the views of the blocks of the plates, without locking), and copies
+	 * them to the slices when a plate is loaded (with a single bulk read of
+	 * the block of the plate). The block of a plate
+	 * contains the replicate dependent slices (by replicate, parameter and
+	 * type), followed by the {@link StatTypes#scoreTypes} slices (by parameter
+	 * and type).
+	 */
+	private final class MappedLoader implements PlateCube.SliceLoader {
+		private final Layout layout = new Layout(getSpecAnalyser(),
+				getTable().getDataTableSpec());
+		private final int[] valueParams = internValueParameters(getSpecAnalyser());
+		private final int[] params = internParameters(getSpecAnalyser());
+		/** The indices of the present {@link StatTypes#replicateTypes}. */
+		private final int[] replicateTypes;
+		/** The number of slices of a replicate. */
+		private final int replicateSlices;
+		/** The index of the first replicate independent slice. */
+		private final int scoreStart;
+		private final int wellCount;
+		/** {@link PlateCube#plateKey(int, int, int)} to plate index */
+		private final LongIntMap plateIndices = new LongIntMap(16);
+		/** The fingerprint of the structure and the values of the store. */
+		private final long storeFingerprint;
+		/** Only replaced while holding the lock of the {@link #cube}. */
+		private volatile MappedPlateStore store;
+		/** The index of the plate of {@link #block}. */
+		private int blockPlate = -1;
+		/** The view of the block written last by {@link #write(Chunk)}. */
+		@Nullable
+		private DoubleBuffer block;
+		/**
+		 * The values of the plate {@link #load(int, int, int) loaded} last
+		 * (only used while loading).
+		 */
+		@Nullable
+		private double[] loaded;
+
+		/**
+		 * @param file
+		 *            The file of the values.
+		 * @param readOnly
+		 *            If {@code true} {@code file} should already contain the
+		 *            values, it is mapped read-only.
+		 * @throws IOException
+		 *             If {@code file} cannot be opened, or it is read-only and
+		 *             does not contain the values.
+		 */
+		MappedLoader(final File file, final boolean readOnly)
+				throws IOException {
+			super();
+			wellCount = cube.getWellCount();
+			int present = 0;
+			for (final int[] positions : layout.replicatePositions) {
+				if (positions != null) {
+					++present;
+				}
+			}
+			replicateTypes = new int[present];
+			present = 0;
+			for (int t = 0; t < layout.replicatePositions.length; ++t) {
+				if (layout.replicatePositions[t] != null) {
+					replicateTypes[present++] = t;
+				}
+			}
+			replicateSlices = layout.hasReplicate ? (layout.hasOtherNumeric ? valueParams.length
+					: 0)
+					+ params.length * replicateTypes.length
+					: 0;
+			scoreStart = replicateSlices * cube.getReplicates().size();
+			final int slices = scoreStart
+					+ (layout.hasScores ? params.length
+							* StatTypes.scoreTypes.size() : 0);
+			long fingerprint = (slices * 31L + wellCount) * 31L
+					+ rowKeyIndex.size();
+			for (int e = 0; e < cube.getExperiments().size(); ++e) {
+				for (int n = 0; n < cube.getNormalisations().size(); ++n) {
+					for (int p = 0; p < cube.getPlates().size(); ++p) {
+						if (cube.contains(true, e, n, p, PlateCube.ANY,
+								PlateCube.ANY)
+								|| cube.contains(false, e, n, p,
+										PlateCube.ANY, PlateCube.ANY)) {
+							final long key = PlateCube.plateKey(e, n, p);
+							plateIndices.put(key, plateIndices.size());
+							fingerprint = fingerprint * 31L + key;
+						}
+					}
+				}
+			}
+			storeFingerprint = mix(fingerprint, valueChecksum);
+			store = new MappedPlateStore(file, plateIndices.size(), slices
+					* wellCount, storeFingerprint, readOnly);
+		}
+
+		/**
+		 * Moves the completed file of the values to {@code target}, and maps
+		 * it read-only from there. If the file cannot be moved (it might be
+		 * still mapped on some platforms), it is copied and the original file
+		 * is mapped again. The caller should hold the lock of the
+		 * {@link #cube}, so no plate is loaded meanwhile.
+		 * 
+		 * @param target
+		 *            The new file of the values.
+		 * @throws IOException
+		 *             If the file can neither be moved nor copied, or cannot
+		 *             be mapped again.
+		 */
+		void moveTo(final File target) throws IOException {
+			final File source = store.getFile();
+			final int blockDoubles = store.getBlockDoubles();
+			store.close();
+			File file = target;
+			try {
+				Files.move(source.toPath(), target.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			} catch (final IOException e) {
+				Files.copy(source.toPath(), target.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+				file = source;
+			}
+			store = new MappedPlateStore(file, plateIndices.size(),
+					blockDoubles, storeFingerprint, true);
+		}
+
+		/**
+		 * Writes the values of the {@link #getTable() table} to the
+		 * {@link MappedPlateStore}.
+		 * 
+		 * @param exec
+		 *            The {@link ExecutionMonitor} to report progress and check
+		 *            cancellation.
+		 * @throws CanceledExecutionException
+		 *             If the execution was cancelled.
+		 */
+		void fill(final ExecutionMonitor exec)
+				throws CanceledExecutionException {
+			final long rowCount = rowCount(getTable());
+			final Chunk chunk = new Chunk(layout, true);
+			final Iterator<DataRow> rows = getTable().iterator();
+			try {
+				long done = 0L;
+				while (rows.hasNext()) {
+					chunk.clear();
+					while (rows.hasNext() && chunk.size < CHUNK_SIZE) {
+						chunk.read(rows.next());
+					}
+					write(chunk);
+					done += chunk.size;
+					progress(exec, done, rowCount);
+				}
+			} finally {
+				if (rows instanceof CloseableRowIterator) {
+					((CloseableRowIterator) rows).close();
+				}
+			}
+		}
+
+		/**
+		 * Writes the values of {@code chunk} through the view of the block of
+		 * their plates, the view is selected again only when the plate
+		 * changes.
+		 * 
+		 * @param chunk
+		 *            The parsed rows.
+		 */
+		private void write(final Chunk chunk) {
+			final double[] values = chunk.values;
+			for (int r = 0; r < chunk.size; ++r) {
+				final int plate = plateIndices.get(PlateCube.plateKey(cube
+						.getExperiments().codeOf(
+								chunk.experimentValues.get(chunk.experiments[r])),
+						cube.getNormalisations().codeOf(
+								chunk.normKeys.getKey(chunk.norms[r])), cube
+								.getPlates().codeOf(chunk.plates[r])), -1);
+				if (plate != blockPlate) {
+					block = store.block(plate);
+					blockPlate = plate;
+				}
+				final DoubleBuffer view = block;
+				final int base = r * layout.width;
+				final int well = chunk.wells[r];
+				if (layout.hasReplicate) {
+					int offset = cube.getReplicates().codeOf(
+							chunk.replicates[r])
+							* replicateSlices * wellCount + well;
+					if (layout.hasOtherNumeric) {
+						for (int i = 0; i < valueParams.length; ++i) {
+							view.put(offset, values[base
+									+ layout.valuePositions[i]]);
+							offset += wellCount;
+						}
+					}
+					for (int i = 0; i < params.length; ++i) {
+						for (final int t : replicateTypes) {
+							view.put(offset, values[base
+									+ layout.replicatePositions[t][i]]);
+							offset += wellCount;
+						}
+					}
+				}
+				if (layout.hasScores) {
+					int offset = scoreStart * wellCount + well;
+					for (int i = 0; i < params.length; ++i) {
+						for (int t = 0; t < StatTypes.scoreTypes.size(); ++t) {
+							if (layout.scorePositions[t] != null) {
+								view.put(offset, values[base
+										+ layout.scorePositions[t][i]]);
+							}
+							offset += wellCount;
+						}
+					}
+				}
+			}
+		}
+
+		@Override
+		public void load(final int experiment, final int normalisation,
+				final int plate) {
+			final int index = plateIndices.get(PlateCube.plateKey(experiment,
+					normalisation, plate), -1);
+			if (index < 0) {
+				return;
+			}
+			if (loaded == null) {
+				loaded = new double[store.getBlockDoubles()];
+			}
+			store.get(index, loaded);
+			if (layout.hasScores) {
+				int offset = scoreStart * wellCount;
+				for (final int param : params) {
+					for (final StatTypes type : StatTypes.scoreTypes) {
+						System.arraycopy(loaded, offset, cube
+								.getOrCreateSlice(experiment, normalisation,
+										plate, PlateCube.NO_REPLICATE, param,
+										type), 0, wellCount);
+						offset += wellCount;
+					}
+				}
+			}
+			for (int rep = 0; rep < cube.getReplicates().size(); ++rep) {
+				if (!cube.contains(true, experiment, normalisation, plate,
+						rep, PlateCube.ANY)) {
+					continue;
+				}
+				int offset = rep * replicateSlices * wellCount;
+				if (layout.hasOtherNumeric) {
+					for (final int param : valueParams) {
+						System.arraycopy(loaded, offset, cube.getOrCreateSlice(
+								experiment, normalisation, plate, rep, param,
+								StatTypes.otherNumeric), 0, wellCount);
+						offset += wellCount;
+					}
+				}
+				for (final int param : params) {
+					for (final int t : replicateTypes) {
+						System.arraycopy(loaded, offset, cube.getOrCreateSlice(
+								experiment, normalisation, plate, rep, param,
+								StatTypes.replicateTypes.get(t)), 0, wellCount);
+						offset += wellCount;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The row index ranges of a plate.
+	 */
+	private static final class RowRanges implements Serializable {
+		private static final long serialVersionUID = 4262379713566493165L;
+		/** start (inclusive), end (exclusive) pairs */
+		private long[] bounds = new long[8];
+		private int size;
+
+		RowRanges() {
+			super();
+		}
+
+		/**
+		 * Adds a row index, not smaller than the previous ones.
+		 * 
+		 * @param row
+		 *            A row index.
+		 */
+		void add(final long row) {
+			if (size > 0 && bounds[2 * size - 1] == row) {
+				bounds[2 * size - 1] = row + 1;
+				return;
+			}
+			if (2 * size == bounds.length) {
+				bounds = Arrays.copyOf(bounds, bounds.length * 2);
+			}
+			bounds[2 * size] = row;
+			bounds[2 * size + 1] = row + 1;
+			++size;
+		}
+	}
+
+	/**
+	 * Computes the {@link ModelBuilder#getRanges() ranges} of the values of
+	 * the rows for each parameter and {@link StatTypes} in a single pass,
+	 * without keeping every value. The values of the recently seen plates are
+	 * collected to plate sized buffers first, so a repeated well (or the
+	 * scores of the replicates of a well) overwrites the previous value, the
+	 * same as in the slices of the eagerly built model. The buffer of a plate
+	 * is added to the {@link RangeSketch}es when more plates are open than
+	 * allowed. If the rows of an already added plate appear again, the ranges
+	 * cannot be computed in the same pass.
+	 */
+	private static final class RangeValues {
+		/** The minimal number of plates collected at once. */
+		private static final int OPEN_PLATES = 4;
+		private final int wellCount;
+		/** The maximal number of plates collected at once. */
+		private final int openPlates;
+		/** parameter code, {@link StatTypes#ordinal()} */
+		private RangeSketch[][] sketches = new RangeSketch[0][];
+		/**
+		 * The values of the open plates, plate key -> {@link #bufferKey(int,
+		 * int, StatTypes) buffer key} -> values of the wells.
+		 */
+		private final LinkedHashMap<Long, Map<Long, double[]>> open = new LinkedHashMap<Long, Map<Long, double[]>>() {
+			private static final long serialVersionUID = -2479532395340235208L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					final Map.Entry<Long, Map<Long, double[]>> eldest) {
+				if (size() <= openPlates) {
+					return false;
+				}
+				flush(eldest.getKey(), eldest.getValue());
+				return true;
+			}
+		};
+		/** The keys of the plates already added to the sketches. */
+		private final Set<Long> flushed = new HashSet<Long>();
+		/** No row of the {@link #flushed} plates appeared again. */
+		private boolean exact = true;
+
+		/**
+		 * @param wellCount
+		 *            The number of wells on a plate.
+		 * @param cachedPlates
+		 *            The number of plates kept in memory, at least
+		 *            {@link #OPEN_PLATES} plates are collected at once.
+		 */
+		RangeValues(final int wellCount, final int cachedPlates) {
+			super();
+			this.wellCount = wellCount;
+			openPlates = Math.max(OPEN_PLATES, cachedPlates);
+		}
+
+		/**
+		 * Adds the values of a row.
+		 * 
+		 * @param chunk
+		 *            The parsed rows (with values).
+		 * @param r
+		 *            The index of the row in {@code chunk}.
+		 * @param plateKey
+		 *            The {@link PlateCube#plateKey(int, int, int) key} of the
+		 *            plate of the row.
+		 * @param rep
+		 *            The replicate code of the row.
+		 * @param valueParams
+		 *            The parameter codes of the
+		 *            {@link SpecAnalyser#getValueIndices() value columns}.
+		 * @param params
+		 *            The parameter codes of the
+		 *            {@link SpecAnalyser#getParameters() parameters}.
+		 */
+		void add(final Chunk chunk, final int r, final long plateKey,
+				final int rep, final int[] valueParams, final int[] params) {
+			final Long plate = Long.valueOf(plateKey);
+			Map<Long, double[]> buffers = open.get(plate);
+			if (buffers == null) {
+				if (flushed.contains(plate)) {
+					exact = false;
+				}
+				buffers = new HashMap<Long, double[]>();
+				open.put(plate, buffers);
+			}
+			final Layout layout = chunk.layout;
+			final int base = r * layout.width;
+			final int well = chunk.wells[r];
+			if (layout.hasReplicate) {
+				if (layout.hasOtherNumeric) {
+					for (int i = 0; i < valueParams.length; ++i) {
+						buffer(buffers, rep, valueParams[i],
+								StatTypes.otherNumeric)[well] = chunk.values[base
+								+ layout.valuePositions[i]];
+					}
+				}
+				for (int i = 0; i < params.length; ++i) {
+					for (int t = 0; t < StatTypes.replicateTypes.size(); ++t) {
+						if (layout.replicatePositions[t] != null) {
+							buffer(buffers, rep, params[i],
+									StatTypes.replicateTypes.get(t))[well] = chunk.values[base
+									+ layout.replicatePositions[t][i]];
+						}
+					}
+				}
+			}
+			if (layout.hasScores) {
+				for (int i = 0; i < params.length; ++i) {
+					for (int t = 0; t < StatTypes.scoreTypes.size(); ++t) {
+						buffer(buffers, PlateCube.NO_REPLICATE, params[i],
+								StatTypes.scoreTypes.get(t))[well] = layout.scorePositions[t] == null ? Double.NaN
+								: chunk.values[base
+										+ layout.scorePositions[t][i]];
+					}
+				}
+			}
+		}
+
+		/**
+		 * @param buffers
+		 *            The buffers of a plate.
+		 * @param rep
+		 *            A replicate code (or {@link PlateCube#NO_REPLICATE}).
+		 * @param param
+		 *            A parameter code.
+		 * @param type
+		 *            A {@link StatTypes}.
+		 * @return The (possibly new, {@link Double#NaN} filled) buffer of the
+		 *         wells.
+		 */
+		private double[] buffer(final Map<Long, double[]> buffers,
+				final int rep, final int param, final StatTypes type) {
+			final Long key = Long.valueOf(bufferKey(rep, param, type));
+			double[] ret = buffers.get(key);
+			if (ret == null) {
+				ret = createPlateValues(wellCount);
+				buffers.put(key, ret);
+			}
+			return ret;
+		}
+
+		private static long bufferKey(final int rep, final int param,
+				final StatTypes type) {
+			return (long) (rep + 1) << 32 | (long) param << 8 | type.ordinal();
+		}
+
+		/**
+		 * Adds the buffers of a plate to the sketches.
+		 * 
+		 * @param plate
+		 *            The key of the plate.
+		 * @param buffers
+		 *            The buffers of the plate.
+		 */
+		private void flush(final Long plate,
+				final Map<Long, double[]> buffers) {
+			final StatTypes[] types = StatTypes.values();
+			for (final Entry<Long, double[]> entry : buffers.entrySet()) {
+				final long key = entry.getKey().longValue();
+				addSlice((int) (key >>> 8 & 0xffffff), types[(int) (key & 0xff)],
+						entry.getValue());
+			}
+			flushed.add(plate);
+		}
+
+		/**
+		 * Adds the finite values of a slice. (The parameter and type is
+		 * registered even if there are none.)
+		 * 
+		 * @param param
+		 *            A parameter code.
+		 * @param type
+		 *            A {@link StatTypes}.
+		 * @param slice
+		 *            The values of the wells.
+		 */
+		void addSlice(final int param, final StatTypes type,
+				final double[] slice) {
+			if (param >= sketches.length) {
+				sketches = Arrays.copyOf(sketches, param + 1);
+			}
+			if (sketches[param] == null) {
+				sketches[param] = new RangeSketch[StatTypes.values().length];
+			}
+			RangeSketch sketch = sketches[param][type.ordinal()];
+			if (sketch == null) {
+				sketch = new RangeSketch();
+				sketches[param][type.ordinal()] = sketch;
+			}
+			for (final double value : slice) {
+				if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+					sketch.add(value);
+				}
+			}
+		}
+
+		/**
+		 * @param parameters
+		 *            The parameter names.
+		 * @return The statistics of the collected values (in the same form
+		 *         as {@link ModelBuilder#getRanges()}), or {@code null} if
+		 *         the rows of a plate were not close enough to compute them
+		 *         in a single pass.
+		 */
+		@Nullable
+		Map<String, Map<StatTypes, Map<RangeType, Double>>> compute(
+				final PlateCube.StringAxis parameters) {
+			for (final Entry<Long, Map<Long, double[]>> entry : open
+					.entrySet()) {
+				flush(entry.getKey(), entry.getValue());
+			}
+			open.clear();
+			if (!exact) {
+				return null;
+			}
+			final Map<String, Map<StatTypes, Map<RangeType, Double>>> ret = new HashMap<String, Map<StatTypes, Map<RangeType, Double>>>();
+			final RobustStatistics statistics = new RobustStatistics();
+			for (int param = 0; param < sketches.length; ++param) {
+				if (sketches[param] == null) {
+					continue;
+				}
+				final Map<StatTypes, Map<RangeType, Double>> map = new EnumMap<StatTypes, Map<RangeType, Double>>(
+						StatTypes.class);
+				for (final StatTypes type : StatTypes.values()) {
+					final RangeSketch sketch = sketches[param][type.ordinal()];
+					if (sketch != null) {
+						final Map<RangeType, Double> values = new EnumMap<RangeType, Double>(
+								RangeType.class);
+						sketch.compute(statistics, values);
+						map.put(type, values);
+					}
+				}
+				ret.put(parameters.get(param), map);
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * The streaming summary of the finite values of a parameter and
+	 * {@link StatTypes}: the {@link RangeType#min min}, {@link RangeType#max
+	 * max}, {@link RangeType#average average} and {@link RangeType#stdev
+	 * stdev} are exact, the order statistics are computed from a uniform
+	 * sample of at most {@link #SAMPLE_SIZE} values (reservoir sampling with
+	 * a fixed seed). Up to {@link #SAMPLE_SIZE} values every statistics is
+	 * the same as of {@link RobustStatistics}.
+	 */
+	private static final class RangeSketch {
+		/** The maximal number of the sampled values. */
+		private static final int SAMPLE_SIZE = 1 << 13;
+		/** The seed of the sampling, so the ranges are reproducible. */
+		private static final long SEED = 0x2545f4914f6cdd1dL;
+		private double[] sample = new double[16];
+		/** Selects the replaced samples, created when the sample is full. */
+		@Nullable
+		private Random random;
+		private long count;
+		private double min = Double.POSITIVE_INFINITY;
+		private double max = Double.NEGATIVE_INFINITY;
+		/** The compensated sum of the values. */
+		private double sum, compensation;
+		/** Welford's running mean and sum of squared differences. */
+		private double mean, squares;
+
+		RangeSketch() {
+			super();
+		}
+
+		/**
+		 * Adds a finite value.
+		 * 
+		 * @param value
+		 *            A finite value.
+		 */
+		void add(final double value) {
+			++count;
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			final double t = sum + value;
+			compensation += Math.abs(sum) >= Math.abs(value) ? sum - t + value
+					: value - t + sum;
+			sum = t;
+			final double diff = value - mean;
+			mean += diff / count;
+			squares += diff * (value - mean);
+			if (count <= SAMPLE_SIZE) {
+				if (count > sample.length) {
+					sample = Arrays.copyOf(sample, Math.min(SAMPLE_SIZE,
+							sample.length * 2));
+				}
+				sample[(int) count - 1] = value;
+			} else {
+				if (random == null) {
+					random = new Random(SEED);
+				}
+				final long index = (long) (random.nextDouble() * count);
+				if (index < SAMPLE_SIZE) {
+					sample[(int) index] = value;
+				}
+			}
+		}
+
+		/**
+		 * Computes the statistics of the added values.
+		 * 
+		 * @param statistics
+		 *            The {@link RobustStatistics} to compute the order
+		 *            statistics of the sample.
+		 * @param ret
+		 *            The {@link RangeType}s are put into this {@link Map}.
+		 */
+		void compute(final RobustStatistics statistics,
+				final Map<RangeType, Double> ret) {
+			final int size = (int) Math.min(count, SAMPLE_SIZE);
+			statistics.compute(sample, size, ret);
+			if (count > size) {
+				ret.put(RangeType.min, Double.valueOf(min));
+				ret.put(RangeType.max, Double.valueOf(max));
+				ret.put(RangeType.average, Double.valueOf((sum + compensation)
+						/ count));
+				ret.put(RangeType.stdev, Double.valueOf(Math.sqrt(squares
+						/ count)));
+			}
+		}
+	}
+
+	/**
+	 * The column positions used to parse the rows.
+	 */
+	private static final class Layout {
+		private final int experimentIndex;
+		private final int normMethodIndex;
+		private final int logTransformIndex;
+		private final int normKindIndex;
+		private final int varianceAdjustmentIndex;
+		private final int scoreMethodIndex;
+		private final int sumMethodIndex;
+		private final int plateIndex;
+		private final int replicateIndex;
+		private final int wellIndex;
+		private final boolean hasReplicate;
+		private final boolean hasOtherNumeric;
+		private final boolean hasScores;
+		private final Format format;
+		private final DataTableSpec spec;
+		private final String[] textNames;
+		private final int[] textColumns;
+		/** The indices of the columns read as {@code double}s. */
+		private final int[] doubleColumns;
+		/** The number of {@code double} values in a row. */
+		private final int width;
+		/** The positions of the {@link SpecAnalyser#getValueIndices()}. */
+		private final int[] valuePositions;
+		/** The positions of the replicate types (null if not present). */
+		private final int[][] replicatePositions;
+		/** The positions of the score types (null if not present). */
+		private final int[][] scorePositions;
+
+		Layout(final SpecAnalyser specAnalyser, final DataTableSpec spec) {
+			super();
+			experimentIndex = specAnalyser.getExperimentIndex();
+			normMethodIndex = specAnalyser.getNormMethodIndex();
+			logTransformIndex = specAnalyser.getLogTransformIndex();
+			normKindIndex = specAnalyser.getNormKindIndex();
+			varianceAdjustmentIndex = specAnalyser.getVarianceAdjustmentIndex();
+			scoreMethodIndex = specAnalyser.getScoreMethodIndex();
+			sumMethodIndex = specAnalyser.getSumMethodIndex();
+			plateIndex = specAnalyser.getPlateIndex();
+			replicateIndex = specAnalyser.getReplicateIndex();
+			wellIndex = specAnalyser.getWellIndex();
+			hasReplicate = specAnalyser.isHasReplicate();
+			final EnumSet<StatTypes> statistics = specAnalyser.getStatistics();
+			hasOtherNumeric = statistics.contains(StatTypes.otherNumeric);
+			hasScores = statistics.contains(StatTypes.score)
+					|| statistics.contains(StatTypes.meanOrDiff)
+					|| statistics.contains(StatTypes.median);
+			format = specAnalyser.getPredictedFormat();
+			this.spec = spec;
+			final Map<String, Integer> stringIndices = specAnalyser
+					.getStringIndices();
+			textNames = new String[stringIndices.size()];
+			textColumns = new int[textNames.length];
+			{
+				int i = 0;
+				for (final Entry<String, Integer> entry : stringIndices
+						.entrySet()) {
+					textNames[i] = entry.getKey();
+					textColumns[i++] = entry.getValue().intValue();
+				}
+			}
+			final Map<Integer, Integer> positions = new LinkedHashMap<Integer, Integer>();
+			valuePositions = new int[specAnalyser.getValueIndices().size()];
+			{
+				int i = 0;
+				for (final Integer column : specAnalyser.getValueIndices()
+						.values()) {
+					valuePositions[i++] = position(positions, column.intValue());
+				}
+			}
+			final List<String> parameters = specAnalyser.getParameters();
+			replicatePositions = columns(specAnalyser.getIndices(),
+					parameters, statistics, StatTypes.replicateTypes);
+			scorePositions = columns(specAnalyser.getIndices(), parameters,
+					statistics, StatTypes.scoreTypes);
+			for (final int[][] typePositions : new int[][][] {
+					replicatePositions, scorePositions }) {
+				for (final int[] columns : typePositions) {
+					if (columns != null) {
+						for (int i = columns.length; i-- > 0;) {
+							columns[i] = position(positions, columns[i]);
+						}
+					}
+				}
+			}
+			width = positions.size();
+			doubleColumns = new int[width];
+			for (final Entry<Integer, Integer> entry : positions.entrySet()) {
+				doubleColumns[entry.getValue().intValue()] = entry.getKey()
+						.intValue();
+			}
+		}
+
+		/**
+		 * @param positions
+		 *            The column index to position {@link Map}.
+		 * @param column
+		 *            A column index.
+		 * @return The position of {@code column}, a new one if not present
+		 *         before.
+		 */
+		private static int position(final Map<Integer, Integer> positions,
+				final int column) {
+			final Integer key = Integer.valueOf(column);
+			if (!positions.containsKey(key)) {
+				positions.put(key, Integer.valueOf(positions.size()));
+			}
+			return positions.get(key).intValue();
+		}
+	}
+
+	/**
+	 * The parsed values of consecutive rows. The experiments and the
+	 * normalisations are coded locally in order of their appearance. (The
+	 * normalisation codes are kept between the chunks parsed by the same
+	 * {@link Chunk}.)
+	 */
+	private static final class Chunk {
+		private final Layout layout;
+		private int size;
+		private final Map<String, Integer> experimentCodes = new HashMap<String, Integer>();
+		private final List<String> experimentValues = new ArrayList<String>();
+		private final NormKeyDictionary normKeys;
+		private final int[] experiments = new int[CHUNK_SIZE];
+		private final int[] norms = new int[CHUNK_SIZE];
+		private final int[] plates = new int[CHUNK_SIZE];
+		private final int[] replicates = new int[CHUNK_SIZE];
+		private final int[] wells = new int[CHUNK_SIZE];
+		/** packed ARGB */
+		private final int[] colours = new int[CHUNK_SIZE];
+		private final String[] keys = new String[CHUNK_SIZE];
+		/** text column, row */
+		private final String[][] texts;
+		/**
+		 * row * {@link Layout#width} + position (or {@code null} if not
+		 * parsed)
+		 */
+		@Nullable
+		private final double[] values;
+		/** The number of plate groups, see {@link #group()}. */
+		private int plateGroupCount;
+		/** The plate group of each row. */
+		private final int[] plateGroups = new int[CHUNK_SIZE];
+		/** The rows ordered by their plate groups. */
+		private final int[] plateGroupRows = new int[CHUNK_SIZE];
+		/** The start of each plate group in {@link #plateGroupRows} (+ end). */
+		private int[] plateGroupStarts;
+		/** The number of replicate groups, see {@link #group()}. */
+		private int replicateGroupCount;
+		/** The replicate group of each row. */
+		private final int[] replicateGroups = new int[CHUNK_SIZE];
+		/** The rows ordered by their replicate groups. */
+		private final int[] replicateGroupRows = new int[CHUNK_SIZE];
+		/**
+		 * The start of each replicate group in {@link #replicateGroupRows}
+		 * (+ end).
+		 */
+		private int[] replicateGroupStarts;
+
+		/**
+		 * @param layout
+		 *            The {@link Layout} of the rows.
+		 * @param withValues
+		 *            The {@code double} values are parsed only if
+		 *            {@code true}.
+		 */
+		Chunk(final Layout layout, final boolean withValues) {
+			super();
+			this.layout = layout;
+			normKeys = new NormKeyDictionary(layout.normMethodIndex,
+					layout.logTransformIndex, layout.normKindIndex,
+					layout.varianceAdjustmentIndex, layout.scoreMethodIndex,
+					layout.sumMethodIndex);
+			texts = new String[layout.textNames.length][CHUNK_SIZE];
+			values = withValues ? new double[CHUNK_SIZE * layout.width]
+					: null;
+		}
+
+		/**
+		 * Removes the previously parsed rows.
+		 */
+		void clear() {
+			size = 0;
+			experimentCodes.clear();
+			experimentValues.clear();
+		}
+
+		/**
+		 * Parses {@code dataRow} and appends it to the chunk.
+		 * 
+		 * @param dataRow
+		 *            A {@link DataRow}.
+		 */
+		void read(final DataRow dataRow) {
+			final int r = size;
+			experiments[r] = code(layout.experimentIndex == -1 ? ""
+					: ((StringCell) dataRow.getCell(layout.experimentIndex))
+							.getStringValue(), experimentCodes,
+					experimentValues);
+			norms[r] = normKeys.code(dataRow);
+			plates[r] = getInt(dataRow, layout.plateIndex).intValue();
+			wells[r] = layout.format
+					.convertWellToPosition(((StringCell) dataRow
+							.getCell(layout.wellIndex)).getStringValue());
+			colours[r] = layout.spec.getRowColor(dataRow).getColor().getRGB();
+			for (int t = 0; t < layout.textColumns.length; ++t) {
+				final DataCell cell = dataRow.getCell(layout.textColumns[t]);
+				texts[t][r] = cell == DataType.getMissingCell() ? ""
+						: ((StringValue) cell).getStringValue();
+			}
+			keys[r] = dataRow.getKey().getString();
+			if (layout.hasReplicate) {
+				replicates[r] = getInt(dataRow, layout.replicateIndex)
+						.intValue();
+			}
+			if (values != null) {
+				final int base = r * layout.width;
+				for (int i = 0; i < layout.width; ++i) {
+					values[base + i] = getDouble(dataRow,
+							layout.doubleColumns[i]);
+				}
+			}
+			size = r + 1;
+		}
+
+		/**
+		 * Groups the parsed rows by their plates (experiment, normalisation
+		 * and plate), and by their plates and replicates. The groups are
+		 * numbered in the order of their first rows, the rows of a group keep
+		 * their original order.
+		 */
+		void group() {
+			final LongIntMap plateCodes = new LongIntMap(64);
+			final LongIntMap replicateCodes = new LongIntMap(64);
+			plateGroupCount = 0;
+			replicateGroupCount = 0;
+			for (int r = 0; r < size; ++r) {
+				// the local codes are smaller than CHUNK_SIZE
+				final long plateKey = (long) experiments[r] << 48
+						| (long) norms[r] << 32 | plates[r] & 0xffffffffL;
+				int plateGroup = plateCodes.get(plateKey, -1);
+				if (plateGroup < 0) {
+					plateGroup = plateGroupCount++;
+					plateCodes.put(plateKey, plateGroup);
+				}
+				plateGroups[r] = plateGroup;
+				if (layout.hasReplicate) {
+					final long replicateKey = (long) plateGroup << 32
+							| replicates[r] & 0xffffffffL;
+					int replicateGroup = replicateCodes.get(replicateKey, -1);
+					if (replicateGroup < 0) {
+						replicateGroup = replicateGroupCount++;
+						replicateCodes.put(replicateKey, replicateGroup);
+					}
+					replicateGroups[r] = replicateGroup;
+				}
+			}
+			plateGroupStarts = sortRows(plateGroups, plateGroupCount,
+					plateGroupRows);
+			replicateGroupStarts = sortRows(replicateGroups,
+					replicateGroupCount, replicateGroupRows);
+		}
+
+		/**
+		 * Sorts the rows by their groups (stable counting sort).
+		 * 
+		 * @param groups
+		 *            The group of each row.
+		 * @param count
+		 *            The number of groups.
+		 * @param rows
+		 *            The sorted rows are stored here.
+		 * @return The start of each group in {@code rows}, and the end of the
+		 *         last group.
+		 */
+		private int[] sortRows(final int[] groups, final int count,
+				final int[] rows) {
+			final int[] starts = new int[count + 1];
+			if (count == 0) {
+				return starts;
+			}
+			for (int r = 0; r < size; ++r) {
+				++starts[groups[r] + 1];
+			}
+			for (int g = 0; g < count; ++g) {
+				starts[g + 1] += starts[g];
+			}
+			final int[] next = Arrays.copyOf(starts, count);
+			for (int r = 0; r < size; ++r) {
+				rows[next[groups[r]]++] = r;
+			}
+			return starts;
+		}
+
+		private static int code(final String value,
+				final Map<String, Integer> codes, final List<String> values) {
+			final Integer code = codes.get(value);
+			if (code != null) {
+				return code.intValue();
+			}
+			codes.put(value, Integer.valueOf(values.size()));
+			values.add(value);
+			return values.size() - 1;
+		}
+	}
+
+	/**
+	 * Selects the column indices of the present {@code types} for each
+	 * parameter.
+	 * 
+	 * @param indices
+	 *            The indices from {@link SpecAnalyser#getIndices()}.
+	 * @param parameters
+	 *            The parameters.
+	 * @param statistics
+	 *            The present {@link StatTypes}.
+	 * @param types
+	 *            The selected {@link StatTypes}.
+	 * @return The column indices for each type (in order of {@code types}),
+	 *         and parameter (in order of {@code parameters}). The types not
+	 *         present in {@code statistics} are {@code null}.
+	 * @throws IllegalStateException
+	 *             if a parameter has no column for a present type.
+	 */
+	private static int[][] columns(
+			final EnumMap<StatTypes, Map<String, Integer>> indices,
+			final List<String> parameters, final EnumSet<StatTypes> statistics,
+			final List<StatTypes> types) {
+		final int[][] ret = new int[types.size()][];
+		for (int t = 0; t < ret.length; ++t) {
+			final StatTypes type = types.get(t);
+			if (!statistics.contains(type)) {
+				continue;
+			}
+			ret[t] = new int[parameters.size()];
+			for (int i = 0; i < ret[t].length; ++i) {
+				final Integer index = indices.get(type).get(parameters.get(i));
+				if (index == null) {
+					throw new IllegalStateException("No " + type
+							+ " column for parameter: " + parameters.get(i));
+				}
+				ret[t][i] = index.intValue();
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @param dataRow
+	 *            A {@link DataRow}.
+	 * @param index
+	 *            A {@code 0}-based index of a cell in {@code dataRow}.
+	 * @return The {@code double} value of the cell, or {@link Double#NaN} if
+	 *         it is not a {@link DoubleValue}.
+	 */
+	private static double getDouble(final DataRow dataRow, final int index) {
+		final DataCell cell = dataRow.getCell(index);
+		return cell instanceof DoubleValue ? ((DoubleValue) cell)
+				.getDoubleValue() : Double.NaN;
+	}
+
+	/**
+	 * Add a {@link HashMap} to {@code map} if {@code key} was not previously
+	 * contained.
+	 * 
+	 * @param <K1>
+	 *            Type of keys in outer map.
+	 * @param <K2>
+	 *            Type of keys in inner map.
+	 * @param <V>
+	 *            Type of values in inner map.
+	 * @param key
+	 *            A key of {@code map}.
+	 * @param map
+	 *            The map to check the key.
+	 */
+	private static <K1, K2, V> void checkAndPutHashMap(final K1 key,
+			final Map<K1, Map<K2, V>> map) {
+		if (!map.containsKey(key)) {
+			map.put(key, new HashMap<K2, V>());
+		}
+	}
+
+	/**
+	 * Add a {@link TreeMap} to {@code map} if {@code key} was not previously
+	 * contained.
+	 * 
+	 * @param <K1>
+	 *            Type of keys in outer map.
+	 * @param <K2>
+	 *            Type of keys in inner map.
+	 * @param <V>
+	 *            Type of values in inner map.
+	 * @param key
+	 *            A key of {@code map}.
+	 * @param map
+	 *            The map to check the key.
+	 */
+	private static <K1, K2 extends Comparable<K2>, V> void checkAndPutTreeMap(
+			final K1 key, final Map<K1, Map<K2, V>> map) {
+		if (!map.containsKey(key)) {
+			map.put(key, new TreeMap<K2, V>());
+		}
+	}
+
+	/**
+	 * Creates a {@code double} array with length {@code count} and fills with
+	 * {@link Double#NaN}.
+	 * 
+	 * @param count
+	 *            The length of the returned {@code double} array.
+	 * @return An array with {@link Double#NaN}s.
 	 */
 	public static double[] createPlateValues(final int count) {
 		final double[] ds = new double[count];
@@ -736,6 +3031,85 @@ public class ModelBuilder extends SimpleModelBuilder {
 		return ds;
 	}
 
+	/**
+	 * Writes a (possibly {@code null}) {@link String} in UTF-8.
+	 * 
+	 * @param out
+	 *            The output.
+	 * @param value
+	 *            A {@link String}, or {@code null}.
+	 * @throws IOException
+	 *             If cannot write.
+	 */
+	static void writeString(final DataOutputStream out,
+			@Nullable final String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a {@link String} written by
+	 * {@link #writeString(DataOutputStream, String)}.
+	 * 
+	 * @param in
+	 *            The input.
+	 * @return The {@link String}, or {@code null}.
+	 * @throws IOException
+	 *             If cannot read.
+	 */
+	@Nullable
+	static String readString(final DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes the {@code values}.
+	 * 
+	 * @param out
+	 *            The output.
+	 * @param values
+	 *            Some {@code double} values.
+	 * @param buffer
+	 *            A buffer with at least {@code 8 * values.length} bytes.
+	 * @throws IOException
+	 *             If cannot write.
+	 */
+	static void writeDoubles(final DataOutputStream out,
+			final double[] values, final byte[] buffer) throws IOException {
+		ByteBuffer.wrap(buffer).asDoubleBuffer().put(values);
+		out.write(buffer, 0, values.length * 8);
+	}
+
+	/**
+	 * Reads the values written by
+	 * {@link #writeDoubles(DataOutputStream, double[], byte[])}.
+	 * 
+	 * @param in
+	 *            The input.
+	 * @param values
+	 *            The array to fill.
+	 * @param buffer
+	 *            A buffer with at least {@code 8 * values.length} bytes.
+	 * @throws IOException
+	 *             If cannot read.
+	 */
+	static void readDoubles(final DataInputStream in, final double[] values,
+			final byte[] buffer) throws IOException {
+		in.readFully(buffer, 0, values.length * 8);
+		ByteBuffer.wrap(buffer).asDoubleBuffer().get(values);
+	}
+
 	/**
 	 * Creates a {@link String} for the normalisation/scoring parameters.
 	 * 
@@ -757,6 +3131,7 @@ public class ModelBuilder extends SimpleModelBuilder {
 	 *            replicates.
 	 * @return A {@link String} created by the values from {@link DataRow}
 	 *         separated by {@code _}.
+	 * @see NormKeyDictionary
 	 */
 	public static String getNormKey(final DataRow dataRow,
 			final int normMethodIdx, final int logTransformIdx,
@@ -801,10 +3176,12 @@ public class ModelBuilder extends SimpleModelBuilder {
 	 *         <li>{@double double}s to for each position on plate. (May contain
 	 *         {@link Double#NaN} values)</li>
 	 *         </ul>
+	 *         The returned {@link Map} is a read-only view of the
+	 *         {@link #getCube() cube}.
 	 * @see StatTypes#isUseReplicates() {@code true}.
 	 */
 	public Map<String, Map<String, Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>>>> getReplicates() {
-		return replicates;
+		return cube.replicatesView();
 	}
 
 	/**
@@ -820,10 +3197,21 @@ public class ModelBuilder extends SimpleModelBuilder {
 	 *         <li>{@double double}s to for each position on plate. (May contain
 	 *         {@link Double#NaN} values)</li>
 	 *         </ul>
+	 *         The returned {@link Map} is a read-only view of the
+	 *         {@link #getCube() cube}.
 	 * @see StatTypes#isUseReplicates() {@code false}.
 	 */
 	public Map<String, Map<String, Map<Integer, Map<String, Map<StatTypes, double[]>>>>> getScores() {
-		return scores;
+		return cube.scoresView();
+	}
+
+	/**
+	 * @return The columnar store of the {@link #getReplicates() replicate
+	 *         dependent} and the {@link #getScores() replicate independent}
+	 *         values.
+	 */
+	public PlateCube getCube() {
+		return cube;
 	}
 
 	/**
@@ -850,11 +3238,11 @@ public class ModelBuilder extends SimpleModelBuilder {
 	 *         <li>normalisations (
 	 *         {@link #getNormKey(DataRow, int, int, int, int, int, int)})</li>
 	 *         <li>plate</li>
-	 *         <li>{@link Color}s for each position on plate. (May contain
-	 *         {@code null} values)</li>
+	 *         <li>packed ARGB {@link Color}s for each position on plate
+	 *         (the positions without rows have no colour)</li>
 	 *         </ul>
 	 */
-	public Map<String, Map<String, Map<Integer, Color[]>>> getColours() {
+	public Map<String, Map<String, Map<Integer, PackedColours>>> getColours() {
 		return colours;
 	}
 
@@ -889,8 +3277,156 @@ public class ModelBuilder extends SimpleModelBuilder {
 	/**
 	 * @return An unmodifiable {@link Map} from the row ids to a {@link Pair} of
 	 *         plate, position ({@code 0-95}) values.
+	 * @see #getRowKeyIndex()
 	 */
 	public Map<String, Pair<Integer, Integer>> getKeyToPlateAndPosition() {
-		return Collections.unmodifiableMap(keyToPlateAndPosition);
+		return rowKeyIndex.asMap();
+	}
+
+	/**
+	 * @return The index between the row ids and the plate, position (
+	 *         {@code 0-95}) values. (Please <b>do not</b> modify.)
+	 */
+	public RowKeyIndex getRowKeyIndex() {
+		return rowKeyIndex;
+	}
+
+	/**
+	 * Computes (only once) the statistics of the finite
+	 * {@link #getScores() scores} and {@link #getReplicates() replicate
+	 * values} for each parameter and {@link StatTypes}.
+	 * 
+	 * @return The map containing the {@link RangeType}s for different
+	 *         parameter/statistics types.
+	 */
+	public Map<String, Map<StatTypes, Map<RangeType, Double>>> getRanges() {
+		if (ranges != null) {
+			return ranges;
+		}
+		if (deferValues) {
+			ranges = deferredRanges();
+			return ranges;
+		}
+		final Map<String, Map<StatTypes, Map<RangeType, Double>>> ret = new HashMap<String, Map<StatTypes, Map<RangeType, Double>>>();
+		final Map<String, Map<StatTypes, DoubleArrayList>> vals = new HashMap<String, Map<StatTypes, DoubleArrayList>>();
+		for (final Map<String, Map<Integer, Map<String, Map<StatTypes, double[]>>>> experimentValues : getScores()
+				.values()) {
+			for (final Map<Integer, Map<String, Map<StatTypes, double[]>>> normValues : experimentValues
+					.values()) {
+				for (final Map<String, Map<StatTypes, double[]>> plateValues : normValues
+						.values()) {
+					addFinite(ret, vals, plateValues);
+				}
+			}
+		}
+		for (final Map<String, Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>>> experimentValues : getReplicates()
+				.values()) {
+			for (final Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>> normValues : experimentValues
+					.values()) {
+				for (final Map<Integer, Map<String, Map<StatTypes, double[]>>> plateValues : normValues
+						.values()) {
+					for (final Map<String, Map<StatTypes, double[]>> replicateValues : plateValues
+							.values()) {
+						addFinite(ret, vals, replicateValues);
+					}
+				}
+			}
+		}
+		computeStatistics(ret, vals);
+		ranges = ret;
+		return ret;
+	}
+
+	/**
+	 * Collects the finite values of the parameters.
+	 * 
+	 * @param ranges
+	 *            The ranges for each parameter and {@link StatTypes} (new
+	 *            entries are added when not yet present).
+	 * @param vals
+	 *            The collected values for each parameter and
+	 *            {@link StatTypes}.
+	 * @param paramValues
+	 *            The values for each parameter and {@link StatTypes}.
+	 */
+	private static void addFinite(
+			final Map<String, Map<StatTypes, Map<RangeType, Double>>> ranges,
+			final Map<String, Map<StatTypes, DoubleArrayList>> vals,
+			final Map<String, Map<StatTypes, double[]>> paramValues) {
+		for (final Entry<String, Map<StatTypes, double[]>> paramEntry : paramValues
+				.entrySet()) {
+			if (!ranges.containsKey(paramEntry.getKey())) {
+				ranges.put(paramEntry.getKey(),
+						new EnumMap<StatTypes, Map<RangeType, Double>>(
+								StatTypes.class));
+				vals.put(paramEntry.getKey(),
+						new EnumMap<StatTypes, DoubleArrayList>(StatTypes.class));
+			}
+			final Map<StatTypes, Map<RangeType, Double>> map = ranges
+					.get(paramEntry.getKey());
+			for (final Entry<StatTypes, double[]> statEntry : paramEntry
+					.getValue().entrySet()) {
+				if (!map.containsKey(statEntry.getKey())) {
+					map.put(statEntry.getKey(), new EnumMap<RangeType, Double>(
+							RangeType.class));
+					vals.get(paramEntry.getKey()).put(statEntry.getKey(),
+							new DoubleArrayList());
+				}
+				vals.get(paramEntry.getKey()).get(statEntry.getKey())
+						.addAllFinite(statEntry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * @return The file of the values, or {@code null} if they are not stored
+	 *         in a file.
+	 * @see #ModelBuilder(DataTable, SpecAnalyser, ExecutionMonitor, int, File)
+	 */
+	@Nullable
+	public File getStoreFile() {
+		return mappedLoader == null ? null : mappedLoader.store.getFile();
+	}
+
+	/**
+	 * Moves the file of the values to {@code target} (for example to the
+	 * internals of a node when it is saved, so saving does not copy the
+	 * values), afterwards the values are read (read-only) from
+	 * {@code target}. If the file cannot be moved (on some platforms while it
+	 * is still mapped), it is copied, and the values are read from the
+	 * {@link #getStoreFile() original file}.
+	 * 
+	 * @param target
+	 *            The new file of the values.
+	 * @throws IOException
+	 *             If the file can neither be moved nor copied, or cannot be
+	 *             mapped again.
+	 * @throws IllegalStateException
+	 *             If the values are not stored in a file.
+	 */
+	public void moveStoreFile(final File target) throws IOException {
+		if (mappedLoader == null) {
+			throw new IllegalStateException(
+					"The values are not stored in a file.");
+		}
+		synchronized (cube) {
+			mappedLoader.moveTo(target);
+		}
+	}
+
+	/**
+	 * Releases the file of the values (if present) and the row iterator of
+	 * the lazily loaded plates. The file itself is not deleted.
+	 * 
+	 * @throws IOException
+	 *             If the file cannot be closed.
+	 */
+	public void dispose() throws IOException {
+		if (plateLoader != null) {
+			plateLoader.close();
+		}
+		if (mappedLoader != null) {
+			mappedLoader.store.close();
+		}
 	}
 }
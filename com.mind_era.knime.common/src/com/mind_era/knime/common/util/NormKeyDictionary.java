@@ -0,0 +1,236 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+
+/**
+ * Assigns small {@code int} codes to the normalisation keys (see
+ * {@link ModelBuilder#getNormKey(DataRow, int, int, int, int, int, int)}) of
+ * the rows. The codes are assigned in the order of first appearance, the key
+ * {@link String}s are only created for the not yet seen combinations of the
+ * normalisation cells.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+@NotThreadSafe
+public final class NormKeyDictionary {
+	private final int normMethodIdx;
+	private final int logTransformIdx;
+	private final int normKindIdx;
+	private final int varianceAdjustmentIdx;
+	private final int scoreMethodIdx;
+	private final int summariseMethodIdx;
+	/** The indices of the present ({@code != -1}) normalisation columns. */
+	private final int[] columns;
+
+	/** The cells of the combinations, {@code slot * columns.length + i}. */
+	private DataCell[] cells;
+	/** The codes of the slots, {@code -1} for the free slots. */
+	private int[] slotCodes;
+	private int combinations;
+
+	private final Map<String, Integer> codes = new HashMap<String, Integer>();
+	private final List<String> keys = new ArrayList<String>();
+
+	/**
+	 * Constructs an empty {@link NormKeyDictionary}. The indices might be
+	 * {@code -1}, those columns are not part of the keys.
+	 *
+	 * @param normMethodIdx
+	 *            Index of the normalisation method column.
+	 * @param logTransformIdx
+	 *            Index of the log transform column.
+	 * @param normKindIdx
+	 *            Index of the normalisation kind column.
+	 * @param varianceAdjustmentIdx
+	 *            Index of the variance adjustment column.
+	 * @param scoreMethodIdx
+	 *            Index of the scoring method column.
+	 * @param summariseMethodIdx
+	 *            Index of the summarise method column.
+	 */
+	public NormKeyDictionary(final int normMethodIdx,
+			final int logTransformIdx, final int normKindIdx,
+			final int varianceAdjustmentIdx, final int scoreMethodIdx,
+			final int summariseMethodIdx) {
+		super();
+		this.normMethodIdx = normMethodIdx;
+		this.logTransformIdx = logTransformIdx;
+		this.normKindIdx = normKindIdx;
+		this.varianceAdjustmentIdx = varianceAdjustmentIdx;
+		this.scoreMethodIdx = scoreMethodIdx;
+		this.summariseMethodIdx = summariseMethodIdx;
+		final int[] indices = new int[] { normMethodIdx, logTransformIdx,
+				normKindIdx, varianceAdjustmentIdx, scoreMethodIdx,
+				summariseMethodIdx };
+		int count = 0;
+		for (final int index : indices) {
+			if (index != -1) {
+				++count;
+			}
+		}
+		columns = new int[count];
+		count = 0;
+		for (final int index : indices) {
+			if (index != -1) {
+				columns[count++] = index;
+			}
+		}
+		clearSlots();
+	}
+
+	private void clearSlots() {
+		cells = new DataCell[16 * columns.length];
+		slotCodes = new int[16];
+		Arrays.fill(slotCodes, -1);
+		combinations = 0;
+	}
+
+	/**
+	 * Finds the code of the normalisation key of {@code dataRow}.
+	 *
+	 * @param dataRow
+	 *            A {@link DataRow}.
+	 * @return The code of its normalisation key, a new one if it was not
+	 *         present before.
+	 */
+	public int code(final DataRow dataRow) {
+		final int width = columns.length;
+		int hash = 0;
+		for (final int column : columns) {
+			hash = hash * 31 + dataRow.getCell(column).hashCode();
+		}
+		final int mask = slotCodes.length - 1;
+		int slot = (hash * 0x9E3779B9 >>> 16 ^ hash) & mask;
+		while (slotCodes[slot] != -1) {
+			if (matches(dataRow, slot * width)) {
+				return slotCodes[slot];
+			}
+			slot = slot + 1 & mask;
+		}
+		final int code = intern(ModelBuilder.getNormKey(dataRow,
+				normMethodIdx, logTransformIdx, normKindIdx,
+				varianceAdjustmentIdx, scoreMethodIdx, summariseMethodIdx));
+		for (int i = 0; i < width; ++i) {
+			cells[slot * width + i] = dataRow.getCell(columns[i]);
+		}
+		slotCodes[slot] = code;
+		if (++combinations * 2 > slotCodes.length) {
+			rehash();
+		}
+		return code;
+	}
+
+	private boolean matches(final DataRow dataRow, final int offset) {
+		for (int i = 0; i < columns.length; ++i) {
+			if (!cells[offset + i].equals(dataRow.getCell(columns[i]))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehash() {
+		final int width = columns.length;
+		final DataCell[] oldCells = cells;
+		final int[] oldCodes = slotCodes;
+		cells = new DataCell[oldCodes.length * 2 * width];
+		slotCodes = new int[oldCodes.length * 2];
+		Arrays.fill(slotCodes, -1);
+		final int mask = slotCodes.length - 1;
+		for (int old = 0; old < oldCodes.length; ++old) {
+			if (oldCodes[old] == -1) {
+				continue;
+			}
+			int hash = 0;
+			for (int i = 0; i < width; ++i) {
+				hash = hash * 31 + oldCells[old * width + i].hashCode();
+			}
+			int slot = (hash * 0x9E3779B9 >>> 16 ^ hash) & mask;
+			while (slotCodes[slot] != -1) {
+				slot = slot + 1 & mask;
+			}
+			System.arraycopy(oldCells, old * width, cells, slot * width, width);
+			slotCodes[slot] = oldCodes[old];
+		}
+	}
+
+	/**
+	 * Finds the code of a normalisation {@code key}. (Different cell
+	 * combinations with the same {@link String} representation get the same
+	 * code.)
+	 *
+	 * @param key
+	 *            A normalisation key.
+	 * @return The code of {@code key}, a new one if it was not present before.
+	 */
+	public int intern(final String key) {
+		final Integer code = codes.get(key);
+		if (code != null) {
+			return code.intValue();
+		}
+		codes.put(key, Integer.valueOf(keys.size()));
+		keys.add(key);
+		return keys.size() - 1;
+	}
+
+	/**
+	 * @param key
+	 *            A normalisation key.
+	 * @return The code of {@code key}, or {@code -1} if not present.
+	 */
+	public int codeOf(final String key) {
+		final Integer code = codes.get(key);
+		return code == null ? -1 : code.intValue();
+	}
+
+	/**
+	 * @param code
+	 *            A code returned by {@link #code(DataRow)} or
+	 *            {@link #intern(String)}.
+	 * @return The normalisation key belonging to {@code code}.
+	 */
+	public String getKey(final int code) {
+		return keys.get(code);
+	}
+
+	/**
+	 * @return The normalisation keys in the order of their codes.
+	 *         (Unmodifiable.)
+	 */
+	public List<String> getKeys() {
+		return Collections.unmodifiableList(keys);
+	}
+
+	/**
+	 * @return The number of different normalisation keys.
+	 */
+	public int size() {
+		return keys.size();
+	}
+
+	/**
+	 * Removes all keys and codes.
+	 */
+	public void clear() {
+		codes.clear();
+		keys.clear();
+		clearSlots();
+	}
+}
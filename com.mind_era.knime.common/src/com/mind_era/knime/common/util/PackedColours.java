@@ -0,0 +1,121 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util;
+
+import java.awt.Color;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The packed ARGB colours of the wells of a plate. The presence of the
+ * colours is kept separately, so every ARGB value (even the transparent
+ * black {@code 0}) is a valid colour.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+public final class PackedColours implements Serializable {
+	private static final long serialVersionUID = 8316062305497364466L;
+
+	private final int[] argb;
+	private final BitSet present;
+
+	/**
+	 * Constructs {@link PackedColours} without any colours.
+	 *
+	 * @param wellCount
+	 *            The number of wells.
+	 */
+	public PackedColours(final int wellCount) {
+		super();
+		argb = new int[wellCount];
+		present = new BitSet(wellCount);
+	}
+
+	/**
+	 * @return The number of wells.
+	 */
+	public int size() {
+		return argb.length;
+	}
+
+	/**
+	 * Sets the colour of a well.
+	 *
+	 * @param well
+	 *            A ({@code 0}-based) well position.
+	 * @param colour
+	 *            The packed ARGB value of the colour.
+	 */
+	public void set(final int well, final int colour) {
+		argb[well] = colour;
+		present.set(well);
+	}
+
+	/**
+	 * @param well
+	 *            A ({@code 0}-based) well position.
+	 * @return {@code true} iff the well has a colour.
+	 */
+	public boolean isPresent(final int well) {
+		return present.get(well);
+	}
+
+	/**
+	 * @param well
+	 *            A ({@code 0}-based) well position.
+	 * @return The packed ARGB value of the colour of {@code well} (only
+	 *         meaningful if {@link #isPresent(int) present}).
+	 */
+	public int getArgb(final int well) {
+		return argb[well];
+	}
+
+	/**
+	 * @param well
+	 *            A ({@code 0}-based) well position.
+	 * @return The ({@link VisualUtils#interned(int) interned}) colour of
+	 *         {@code well}, or {@code null} if it has no colour.
+	 */
+	@Nullable
+	public Color get(final int well) {
+		return present.get(well) ? VisualUtils.interned(argb[well]) : null;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(argb) * 31 + present.hashCode();
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof PackedColours)) {
+			return false;
+		}
+		final PackedColours other = (PackedColours) obj;
+		return present.equals(other.present) && Arrays.equals(argb, other.argb);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder ret = new StringBuilder("[");
+		for (int well = 0; well < argb.length; ++well) {
+			if (well > 0) {
+				ret.append(", ");
+			}
+			ret.append(present.get(well) ? Integer.toHexString(argb[well])
+					: "-");
+		}
+		return ret.append(']').toString();
+	}
+}
@@ -0,0 +1,1199 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.mind_era.knime.common.view.StatTypes;
+
+/**
+ * A dense, columnar store for the {@code double} values of a screen. The
+ * experiments, normalisations, plates, replicates and parameters are coded to
+ * {@code int}s by their {@link Axis axes}, the {@link StatTypes} by their
+ * ordinal. Each (experiment, normalisation, plate, replicate, parameter,
+ * statistics) combination (a <em>slice</em>) is a flat {@code double[]} with
+ * one value for each well, and can be accessed in constant time.
+ * <p>
+ * The replicate independent values (scores) are stored with the
+ * {@link #NO_REPLICATE} replicate code. The {@link #replicatesView()} and the
+ * {@link #scoresView()} methods return read-only nested {@link Map} adapters
+ * of the structure previously used by {@link ModelBuilder}.
+ * <p>
+ * The slices can be loaded lazily, plate by plate, with a {@link SliceLoader}
+ * , in that case only the structure is kept for every plate, and the slices
+ * only for the recently used plates. The lazily loaded cubes can be read
+ * from more threads: the loads and every read of the structure are guarded
+ * by the lock of the cube. (The returned slices are not changed, a dropped
+ * plate is loaded to new slices.)
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+public class PlateCube implements Serializable {
+	private static final long serialVersionUID = -4290771553212516125L;
+
+	/** The replicate code of the replicate independent values. */
+	public static final int NO_REPLICATE = -1;
+	/** The code of a not specified level. */
+	public static final int ANY = -1;
+
+	private static final int EXPERIMENT_BITS = 11;
+	private static final int NORMALISATION_BITS = 11;
+	private static final int PLATE_BITS = 16;
+	private static final int REPLICATE_BITS = 8;
+	private static final int PARAMETER_BITS = 12;
+	private static final int STAT_BITS = 5;
+	private static final int STAT_SHIFT = 0;
+	private static final int PARAMETER_SHIFT = STAT_SHIFT + STAT_BITS;
+	private static final int REPLICATE_SHIFT = PARAMETER_SHIFT
+			+ PARAMETER_BITS;
+	private static final int PLATE_SHIFT = REPLICATE_SHIFT + REPLICATE_BITS;
+	private static final int NORMALISATION_SHIFT = PLATE_SHIFT + PLATE_BITS;
+	private static final int EXPERIMENT_SHIFT = NORMALISATION_SHIFT
+			+ NORMALISATION_BITS;
+	private static final int SECTION_SHIFT = EXPERIMENT_SHIFT
+			+ EXPERIMENT_BITS;
+
+	/** The shifts of the experiment, ..., parameter levels. */
+	private static final int[] LEVEL_SHIFTS = new int[] { EXPERIMENT_SHIFT,
+			NORMALISATION_SHIFT, PLATE_SHIFT, REPLICATE_SHIFT, PARAMETER_SHIFT };
+	/** The bits of the experiment, ..., parameter levels. */
+	private static final int[] LEVEL_BITS = new int[] { EXPERIMENT_BITS,
+			NORMALISATION_BITS, PLATE_BITS, REPLICATE_BITS, PARAMETER_BITS };
+
+	/** The value of the structural (non-slice) keys. */
+	private static final int STRUCTURE = -1;
+
+	private final int wellCount;
+	private final StringAxis experiments = new StringAxis("experiment",
+			(1 << EXPERIMENT_BITS) - 1, true);
+	private final StringAxis normalisations = new StringAxis("normalisation",
+			(1 << NORMALISATION_BITS) - 1, false);
+	private final IntAxis plates = new IntAxis("plate", (1 << PLATE_BITS) - 1);
+	private final IntAxis replicates = new IntAxis("replicate",
+			(1 << REPLICATE_BITS) - 1);
+	private final StringAxis parameters = new StringAxis("parameter",
+			(1 << PARAMETER_BITS) - 1, false);
+
+	/** packed coordinates -> slice index, or {@link #STRUCTURE} */
+	private final LongIntMap index = new LongIntMap(1024);
+	/**
+	 * structural key -> the number of its present children (on the next
+	 * level), see {@link #parentKey(long)}
+	 */
+	private final LongIntMap childCounts = new LongIntMap(1024);
+	private double[][] slices = new double[64][];
+	private long[] sliceKeys = new long[64];
+	private int sliceCount;
+	/** The indices of the removed slices, they are reused first. */
+	private int[] freeSlices = new int[16];
+	private int freeCount;
+
+	/** Loads the slices of the plates on demand, {@code null} if eager. */
+	@Nullable
+	private transient SliceLoader loader;
+	/** The loaded plates in access order (plate key -> codes). */
+	@Nullable
+	private transient LinkedHashMap<Long, int[]> loadedPlates;
+
+	private transient Map<String, Map<String, Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>>>> replicatesView;
+	private transient Map<String, Map<String, Map<Integer, Map<String, Map<StatTypes, double[]>>>>> scoresView;
+
+	/**
+	 * Constructs an empty {@link PlateCube}.
+	 *
+	 * @param wellCount
+	 *            The number of wells on a plate, the length of the slices.
+	 */
+	public PlateCube(final int wellCount) {
+		super();
+		this.wellCount = wellCount;
+	}
+
+	/**
+	 * @return The number of wells on each plate.
+	 */
+	public int getWellCount() {
+		return wellCount;
+	}
+
+	/**
+	 * @return The experiment {@link Axis}.
+	 */
+	public StringAxis getExperiments() {
+		return experiments;
+	}
+
+	/**
+	 * @return The normalisation {@link Axis}.
+	 */
+	public StringAxis getNormalisations() {
+		return normalisations;
+	}
+
+	/**
+	 * @return The plate {@link Axis}.
+	 */
+	public IntAxis getPlates() {
+		return plates;
+	}
+
+	/**
+	 * @return The replicate {@link Axis}.
+	 */
+	public IntAxis getReplicates() {
+		return replicates;
+	}
+
+	/**
+	 * @return The parameter {@link Axis}.
+	 */
+	public StringAxis getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * @return The number of slices.
+	 */
+	public int getSliceCount() {
+		if (loader != null) {
+			synchronized (this) {
+				return sliceCount - freeCount;
+			}
+		}
+		return sliceCount - freeCount;
+	}
+
+	/**
+	 * Selects a slice.
+	 *
+	 * @param experiment
+	 *            The experiment code.
+	 * @param normalisation
+	 *            The normalisation code.
+	 * @param plate
+	 *            The plate code.
+	 * @param replicate
+	 *            The replicate code, or {@link #NO_REPLICATE}.
+	 * @param parameter
+	 *            The parameter code.
+	 * @param stat
+	 *            The {@link StatTypes}.
+	 * @return The values for each well, or {@code null} if not present.
+	 */
+	@Nullable
+	public double[] getSlice(final int experiment, final int normalisation,
+			final int plate, final int replicate, final int parameter,
+			final StatTypes stat) {
+		if (experiment < 0 || normalisation < 0 || plate < 0 || parameter < 0) {
+			return null;
+		}
+		if (loader != null) {
+			synchronized (this) {
+				ensureLoaded(experiment, normalisation, plate);
+				return findSlice(experiment, normalisation, plate, replicate,
+						parameter, stat);
+			}
+		}
+		return findSlice(experiment, normalisation, plate, replicate,
+				parameter, stat);
+	}
+
+	@Nullable
+	private double[] findSlice(final int experiment, final int normalisation,
+			final int plate, final int replicate, final int parameter,
+			final StatTypes stat) {
+		final int idx = index.get(key(replicate != NO_REPLICATE, experiment,
+				normalisation, plate, replicate, parameter, stat.ordinal()),
+				STRUCTURE);
+		return idx == STRUCTURE ? null : slices[idx];
+	}
+
+	/**
+	 * Selects a slice, creates it (filled with {@link Double#NaN}s) with its
+	 * structure if it was not present.
+	 *
+	 * @param experiment
+	 *            The experiment code.
+	 * @param normalisation
+	 *            The normalisation code.
+	 * @param plate
+	 *            The plate code.
+	 * @param replicate
+	 *            The replicate code, or {@link #NO_REPLICATE}.
+	 * @param parameter
+	 *            The parameter code.
+	 * @param stat
+	 *            The {@link StatTypes}.
+	 * @return The values for each well.
+	 */
+	double[] getOrCreateSlice(final int experiment, final int normalisation,
+			final int plate, final int replicate, final int parameter,
+			final StatTypes stat) {
+		final boolean withReplicate = replicate != NO_REPLICATE;
+		final long key = key(withReplicate, experiment, normalisation, plate,
+				replicate, parameter, stat.ordinal());
+		final int idx = index.get(key, STRUCTURE);
+		if (idx != STRUCTURE) {
+			return slices[idx];
+		}
+		mark(withReplicate, experiment, normalisation, plate, replicate,
+				parameter);
+		return newSlice(key);
+	}
+
+	/**
+	 * Creates a new slice (filled with {@link Double#NaN}s) for a not yet
+	 * present slice key.
+	 *
+	 * @param key
+	 *            The key of the slice.
+	 * @return The values for each well.
+	 */
+	private double[] newSlice(final long key) {
+		final int slice;
+		if (freeCount > 0) {
+			slice = freeSlices[--freeCount];
+		} else {
+			if (sliceCount == slices.length) {
+				slices = Arrays.copyOf(slices, sliceCount * 2);
+				sliceKeys = Arrays.copyOf(sliceKeys, sliceCount * 2);
+			}
+			slice = sliceCount++;
+		}
+		final double[] ret = ModelBuilder.createPlateValues(wellCount);
+		slices[slice] = ret;
+		sliceKeys[slice] = key;
+		index.put(key, slice);
+		return ret;
+	}
+
+	/**
+	 * Writes the axes, the structure and the slices to {@code out}. The slices
+	 * of the {@link #isLazy() lazily loaded} cubes are not written (only their
+	 * structure), they are loaded again by the {@link SliceLoader} of the read
+	 * cube.
+	 *
+	 * @param out
+	 *            The output.
+	 * @throws IOException
+	 *             If cannot write.
+	 * @see #read(DataInputStream)
+	 */
+	synchronized void write(final DataOutputStream out) throws IOException {
+		out.writeInt(wellCount);
+		for (final StringAxis axis : new StringAxis[] { experiments,
+				normalisations, parameters }) {
+			out.writeInt(axis.size());
+			for (final String value : axis.getValues()) {
+				ModelBuilder.writeString(out, value);
+			}
+		}
+		for (final IntAxis axis : new IntAxis[] { plates, replicates }) {
+			out.writeInt(axis.size());
+			for (int i = 0; i < axis.size(); ++i) {
+				out.writeInt(axis.valueOf(i));
+			}
+		}
+		final long[] keys = index.keys();
+		int count = keys.length;
+		if (loader != null) {
+			count = 0;
+			for (final long key : keys) {
+				if (index.get(key, STRUCTURE) == STRUCTURE) {
+					++count;
+				}
+			}
+		}
+		out.writeInt(count);
+		final byte[] buffer = new byte[wellCount * 8];
+		for (final long key : keys) {
+			final int slice = index.get(key, STRUCTURE);
+			if (slice != STRUCTURE && loader != null) {
+				continue;
+			}
+			out.writeLong(key);
+			out.writeBoolean(slice != STRUCTURE);
+			if (slice != STRUCTURE) {
+				ModelBuilder.writeDoubles(out, slices[slice], buffer);
+			}
+		}
+	}
+
+	/**
+	 * Reads the content written by {@link #write(DataOutputStream)} to this
+	 * (empty) {@link PlateCube}.
+	 *
+	 * @param in
+	 *            The input.
+	 * @throws IOException
+	 *             If cannot read, or the content is not compatible.
+	 */
+	void read(final DataInputStream in) throws IOException {
+		if (in.readInt() != wellCount) {
+			throw new IOException("Different well count.");
+		}
+		for (final StringAxis axis : new StringAxis[] { experiments,
+				normalisations, parameters }) {
+			for (int i = in.readInt(); i-- > 0;) {
+				axis.intern(ModelBuilder.readString(in));
+			}
+		}
+		for (final IntAxis axis : new IntAxis[] { plates, replicates }) {
+			for (int i = in.readInt(); i-- > 0;) {
+				axis.intern(in.readInt());
+			}
+		}
+		final byte[] buffer = new byte[wellCount * 8];
+		for (int i = in.readInt(); i-- > 0;) {
+			final long key = in.readLong();
+			if (in.readBoolean()) {
+				ModelBuilder.readDoubles(in, newSlice(key), buffer);
+			} else {
+				index.put(key, STRUCTURE);
+				addChild(key, 1);
+			}
+		}
+	}
+
+	/**
+	 * Loads the slices of a plate on demand. The structure of the plate is
+	 * already {@link PlateCube#mark(boolean, int, int, int, int, int) marked}
+	 * , the {@link SliceLoader} should create the slices with
+	 * {@link PlateCube#getOrCreateSlice(int, int, int, int, int, StatTypes)}.
+	 */
+	interface SliceLoader {
+		/**
+		 * Creates the slices of a plate.
+		 *
+		 * @param experiment
+		 *            The experiment code.
+		 * @param normalisation
+		 *            The normalisation code.
+		 * @param plate
+		 *            The plate code.
+		 */
+		void load(int experiment, int normalisation, int plate);
+	}
+
+	/**
+	 * Sets the {@link SliceLoader} of the plates. The slices of a plate are
+	 * loaded when first asked for, and at most {@code cachedPlates} plates are
+	 * kept, the least recently used plates are dropped.
+	 *
+	 * @param loader
+	 *            A {@link SliceLoader}.
+	 * @param cachedPlates
+	 *            The maximal number of loaded plates (positive).
+	 */
+	synchronized void setLoader(final SliceLoader loader,
+			final int cachedPlates) {
+		if (cachedPlates < 1) {
+			throw new IllegalArgumentException(
+					"At least one plate should be cached: " + cachedPlates);
+		}
+		this.loader = loader;
+		loadedPlates = new LinkedHashMap<Long, int[]>(16, .75f, true) {
+			private static final long serialVersionUID = 5264364316096497339L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					final Map.Entry<Long, int[]> eldest) {
+				if (size() <= cachedPlates) {
+					return false;
+				}
+				final int[] codes = eldest.getValue();
+				removeSlices(codes[0], codes[1], codes[2], false);
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * @return {@code true} iff the slices are loaded on demand.
+	 */
+	public boolean isLazy() {
+		return loader != null;
+	}
+
+	private void ensureLoaded(final int experiment, final int normalisation,
+			final int plate) {
+		final Long key = Long.valueOf(plateKey(experiment, normalisation,
+				plate));
+		if (loadedPlates.get(key) != null
+				|| !contains(true, experiment, normalisation, plate, ANY, ANY)
+				&& !contains(false, experiment, normalisation, plate, ANY, ANY)) {
+			return;
+		}
+		loader.load(experiment, normalisation, plate);
+		loadedPlates.put(key, new int[] { experiment, normalisation, plate });
+	}
+
+	/**
+	 * @param experiment
+	 *            The experiment code.
+	 * @param normalisation
+	 *            The normalisation code.
+	 * @param plate
+	 *            The plate code.
+	 * @return A key identifying the plate.
+	 */
+	static long plateKey(final int experiment, final int normalisation,
+			final int plate) {
+		return key(false, experiment, normalisation, plate, ANY, ANY, ANY);
+	}
+
+	/**
+	 * Removes every slice and structure of a plate (in both the replicate
+	 * dependent and independent parts). The parents of the plate are kept,
+	 * the axes are not changed.
+	 *
+	 * @param experiment
+	 *            The experiment code.
+	 * @param normalisation
+	 *            The normalisation code.
+	 * @param plate
+	 *            The plate code.
+	 * @return {@code true} iff anything was removed.
+	 */
+	boolean removePlate(final int experiment, final int normalisation,
+			final int plate) {
+		if (loadedPlates != null) {
+			loadedPlates.remove(Long.valueOf(plateKey(experiment,
+					normalisation, plate)));
+		}
+		return removeSlices(experiment, normalisation, plate, true);
+	}
+
+	/**
+	 * Removes the slices of a plate.
+	 *
+	 * @param experiment
+	 *            The experiment code.
+	 * @param normalisation
+	 *            The normalisation code.
+	 * @param plate
+	 *            The plate code.
+	 * @param structure
+	 *            Also removes the structure if {@code true}.
+	 * @return {@code true} iff the plate was present.
+	 */
+	private boolean removeSlices(final int experiment, final int normalisation,
+			final int plate, final boolean structure) {
+		boolean ret = false;
+		final StatTypes[] stats = StatTypes.values();
+		for (final boolean withReplicate : new boolean[] { true, false }) {
+			if (!contains(withReplicate, experiment, normalisation, plate, ANY,
+					ANY)) {
+				continue;
+			}
+			ret = true;
+			final int lastReplicate = withReplicate ? replicates.size() - 1
+					: ANY;
+			for (int replicate = withReplicate ? 0 : ANY; replicate <= lastReplicate; ++replicate) {
+				for (int parameter = parameters.size(); parameter-- > 0;) {
+					for (final StatTypes stat : stats) {
+						final long key = key(withReplicate, experiment,
+								normalisation, plate, replicate, parameter,
+								stat.ordinal());
+						if (index.containsKey(key)) {
+							freeSlice(index.get(key, STRUCTURE));
+							index.remove(key);
+						}
+					}
+					if (structure) {
+						removeStructure(key(withReplicate, experiment,
+								normalisation, plate, replicate, parameter, ANY));
+					}
+				}
+				if (structure && withReplicate) {
+					removeStructure(key(withReplicate, experiment,
+							normalisation, plate, replicate, ANY, ANY));
+				}
+			}
+			if (structure) {
+				removeStructure(key(withReplicate, experiment, normalisation,
+						plate, ANY, ANY, ANY));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Removes a structural key (if present), and updates the child count of
+	 * its parent.
+	 *
+	 * @param key
+	 *            A structural key.
+	 */
+	private void removeStructure(final long key) {
+		if (index.remove(key)) {
+			addChild(key, -1);
+			childCounts.remove(key);
+		}
+	}
+
+	/**
+	 * Changes the number of children of the parent of {@code key}.
+	 *
+	 * @param key
+	 *            A structural key.
+	 * @param change
+	 *            The change of the child count.
+	 */
+	private void addChild(final long key, final int change) {
+		final long parent = parentKey(key);
+		final int count = childCounts.get(parent, 0) + change;
+		if (count == 0) {
+			childCounts.remove(parent);
+		} else {
+			childCounts.put(parent, count);
+		}
+	}
+
+	/**
+	 * @param key
+	 *            A structural key (without statistics).
+	 * @return The key of the parent level: the deepest specified level of
+	 *         {@code key} is replaced by {@link #ANY}.
+	 */
+	private static long parentKey(final long key) {
+		for (int level = LEVEL_SHIFTS.length; level-- > 0;) {
+			final long mask = (1L << LEVEL_BITS[level]) - 1 << LEVEL_SHIFTS[level];
+			if ((key & mask) != 0L) {
+				return key & ~mask;
+			}
+		}
+		throw new IllegalArgumentException("No parent: " + key);
+	}
+
+	private void freeSlice(final int slice) {
+		slices[slice] = null;
+		if (freeCount == freeSlices.length) {
+			freeSlices = Arrays.copyOf(freeSlices, freeCount * 2);
+		}
+		freeSlices[freeCount++] = slice;
+	}
+
+	/**
+	 * Marks the selected level (and its parents) as present without creating
+	 * any slices.
+	 *
+	 * @param withReplicate
+	 *            Marks the replicate dependent ({@code true}), or the replicate
+	 *            independent ({@code false}) part.
+	 * @param experiment
+	 *            The experiment code.
+	 * @param normalisation
+	 *            The normalisation code, or {@link #ANY}.
+	 * @param plate
+	 *            The plate code, or {@link #ANY}.
+	 * @param replicate
+	 *            The replicate code, or {@link #ANY}.
+	 * @param parameter
+	 *            The parameter code, or {@link #ANY}.
+	 */
+	void mark(final boolean withReplicate, final int experiment,
+			final int normalisation, final int plate, final int replicate,
+			final int parameter) {
+		final int[] path = new int[] { experiment, normalisation, plate,
+				withReplicate ? replicate : ANY, parameter };
+		for (int depth = path.length; depth > 0; --depth) {
+			if (depth < path.length) {
+				path[depth] = ANY;
+			}
+			if (path[depth - 1] == ANY) {
+				continue;
+			}
+			final long key = key(withReplicate, path[0], path[1], path[2],
+					path[3], path[4], ANY);
+			if (index.containsKey(key)) {
+				return;
+			}
+			index.put(key, STRUCTURE);
+			addChild(key, 1);
+		}
+	}
+
+	/**
+	 * @param withReplicate
+	 *            Checks the replicate dependent ({@code true}), or the
+	 *            replicate independent ({@code false}) part.
+	 * @param experiment
+	 *            The experiment code.
+	 * @param normalisation
+	 *            The normalisation code, or {@link #ANY}.
+	 * @param plate
+	 *            The plate code, or {@link #ANY}.
+	 * @param replicate
+	 *            The replicate code, or {@link #ANY}.
+	 * @param parameter
+	 *            The parameter code, or {@link #ANY}.
+	 * @return Whether the selected level is present or not.
+	 */
+	public boolean contains(final boolean withReplicate, final int experiment,
+			final int normalisation, final int plate, final int replicate,
+			final int parameter) {
+		if (experiment < 0) {
+			return false;
+		}
+		final long key = key(withReplicate, experiment, normalisation, plate,
+				withReplicate ? replicate : ANY, parameter, ANY);
+		if (loader != null) {
+			synchronized (this) {
+				return index.containsKey(key);
+			}
+		}
+		return index.containsKey(key);
+	}
+
+	/**
+	 * @param key
+	 *            A structural key.
+	 * @return The number of the present children of {@code key}.
+	 */
+	private int childCount(final long key) {
+		if (loader != null) {
+			synchronized (this) {
+				return childCounts.get(key, 0);
+			}
+		}
+		return childCounts.get(key, 0);
+	}
+
+	private static long key(final boolean withReplicate, final int experiment,
+			final int normalisation, final int plate, final int replicate,
+			final int parameter, final int stat) {
+		return (withReplicate ? 1L : 0L) << SECTION_SHIFT
+				| (long) (experiment + 1) << EXPERIMENT_SHIFT
+				| (long) (normalisation + 1) << NORMALISATION_SHIFT
+				| (long) (plate + 1) << PLATE_SHIFT
+				| (long) (replicate + 1) << REPLICATE_SHIFT
+				| (long) (parameter + 1) << PARAMETER_SHIFT
+				| (long) (stat + 1) << STAT_SHIFT;
+	}
+
+	/**
+	 * @return A read-only view of the replicate dependent values, the
+	 *         dimensions are: experiment, normalisation, plate, replicate,
+	 *         parameter, statistics type.
+	 * @see ModelBuilder#getReplicates()
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Map<String, Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>>>> replicatesView() {
+		if (replicatesView == null) {
+			replicatesView = (Map<String, Map<String, Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>>>>) (Map<?, ?>) new View(
+					true, 0, new int[] { ANY, ANY, ANY, ANY, ANY });
+		}
+		return replicatesView;
+	}
+
+	/**
+	 * @return A read-only view of the replicate independent values, the
+	 *         dimensions are: experiment, normalisation, plate, parameter,
+	 *         statistics type.
+	 * @see ModelBuilder#getScores()
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Map<String, Map<Integer, Map<String, Map<StatTypes, double[]>>>>> scoresView() {
+		if (scoresView == null) {
+			scoresView = (Map<String, Map<String, Map<Integer, Map<String, Map<StatTypes, double[]>>>>>) (Map<?, ?>) new View(
+					false, 0, new int[] { ANY, ANY, ANY, ANY, ANY });
+		}
+		return scoresView;
+	}
+
+	/** The levels of the views, the last one is the statistics. */
+	private static final int[] REPLICATE_LEVELS = new int[] { 0, 1, 2, 3, 4,
+			5 };
+	private static final int[] SCORE_LEVELS = new int[] { 0, 1, 2, 4, 5 };
+
+	/**
+	 * A read-only nested {@link Map} view of a part of the cube. The child
+	 * views are cached by their codes, the sizes are computed from the
+	 * {@link PlateCube#childCounts child counts}.
+	 */
+	private final class View extends AbstractMap<Object, Object> {
+		private final boolean withReplicate;
+		private final int depth;
+		private final int[] path;
+		/**
+		 * The child views by their codes (or {@code null} if not yet
+		 * created). It is replaced when grown, so a concurrent lookup might
+		 * create a child view again, which is harmless.
+		 */
+		private View[] children = new View[0];
+
+		View(final boolean withReplicate, final int depth, final int[] path) {
+			super();
+			this.withReplicate = withReplicate;
+			this.depth = depth;
+			this.path = path;
+		}
+
+		private int level() {
+			return (withReplicate ? REPLICATE_LEVELS : SCORE_LEVELS)[depth];
+		}
+
+		private int[] codes() {
+			switch (level()) {
+			case 0:
+				return experiments.order();
+			case 1:
+				return normalisations.order();
+			case 2:
+				return plates.order();
+			case 3:
+				return replicates.order();
+			case 4:
+				return parameters.order();
+			default:
+				throw new IllegalStateException("Unknown level: " + level());
+			}
+		}
+
+		private int codeOf(final Object key) {
+			switch (level()) {
+			case 0:
+				return experiments.codeOf(key);
+			case 1:
+				return normalisations.codeOf(key);
+			case 2:
+				return plates.codeOf(key);
+			case 3:
+				return replicates.codeOf(key);
+			case 4:
+				return parameters.codeOf(key);
+			case 5:
+				return key instanceof StatTypes ? ((StatTypes) key).ordinal()
+						: -1;
+			default:
+				throw new IllegalStateException("Unknown level: " + level());
+			}
+		}
+
+		private Object keyOf(final int code) {
+			switch (level()) {
+			case 0:
+				return experiments.get(code);
+			case 1:
+				return normalisations.get(code);
+			case 2:
+				return plates.get(code);
+			case 3:
+				return replicates.get(code);
+			case 4:
+				return parameters.get(code);
+			case 5:
+				return StatTypes.values()[code];
+			default:
+				throw new IllegalStateException("Unknown level: " + level());
+			}
+		}
+
+		/**
+		 * @param code
+		 *            A code on the current level.
+		 * @return The value belonging to {@code code} or {@code null}.
+		 */
+		@Nullable
+		private Object valueOf(final int code) {
+			final int level = level();
+			if (level == 5) {
+				return getSlice(path[0], path[1], path[2],
+						withReplicate ? path[3] : NO_REPLICATE, path[4],
+						StatTypes.values()[code]);
+			}
+			final int[] childPath = path.clone();
+			childPath[level] = code;
+			return contains(withReplicate, childPath[0], childPath[1],
+					childPath[2], childPath[3], childPath[4]) ? child(code)
+					: null;
+		}
+
+		/**
+		 * @param code
+		 *            A code on the current level.
+		 * @return The (cached) child view of {@code code}.
+		 */
+		private View child(final int code) {
+			View[] current = children;
+			if (code < current.length && current[code] != null) {
+				return current[code];
+			}
+			final int[] childPath = path.clone();
+			childPath[level()] = code;
+			final View ret = new View(withReplicate, depth + 1, childPath);
+			if (code >= current.length) {
+				current = Arrays.copyOf(current, Math.max(code + 1,
+						current.length * 2));
+			}
+			current[code] = ret;
+			children = current;
+			return ret;
+		}
+
+		@Override
+		public int size() {
+			if (level() == 5) {
+				int ret = 0;
+				for (final StatTypes stat : StatTypes.values()) {
+					if (getSlice(path[0], path[1], path[2],
+							withReplicate ? path[3] : NO_REPLICATE, path[4],
+							stat) != null) {
+						++ret;
+					}
+				}
+				return ret;
+			}
+			return childCount(key(withReplicate, path[0], path[1], path[2],
+					path[3], path[4], ANY));
+		}
+
+		@Override
+		public Object get(final Object key) {
+			final int code = codeOf(key);
+			return code < 0 ? null : valueOf(code);
+		}
+
+		@Override
+		public boolean containsKey(final Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public Set<Entry<Object, Object>> entrySet() {
+			return new AbstractSet<Entry<Object, Object>>() {
+				@Override
+				public Iterator<Entry<Object, Object>> iterator() {
+					final int[] codes = level() == 5 ? statCodes() : codes();
+					return new Iterator<Entry<Object, Object>>() {
+						private int next = advance(0);
+
+						private int advance(final int from) {
+							int i = from;
+							while (i < codes.length && valueOf(codes[i]) == null) {
+								++i;
+							}
+							return i;
+						}
+
+						@Override
+						public boolean hasNext() {
+							return next < codes.length;
+						}
+
+						@Override
+						public Entry<Object, Object> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							final int code = codes[next];
+							next = advance(next + 1);
+							return new SimpleImmutableEntry<Object, Object>(
+									keyOf(code), valueOf(code));
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException(
+									"Read-only view.");
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return View.this.size();
+				}
+			};
+		}
+
+		private int[] statCodes() {
+			final int[] ret = new int[StatTypes.values().length];
+			for (int i = ret.length; i-- > 0;) {
+				ret[i] = i;
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * Codes the values of a dimension to consecutive non-negative {@code int}s
+	 * in the order of their first appearance.
+	 *
+	 * @param <T>
+	 *            The type of the values.
+	 */
+	public abstract static class Axis<T> implements Serializable {
+		private static final long serialVersionUID = 5745064452617606346L;
+		private final String name;
+		private final int limit;
+		private transient int[] order;
+
+		/**
+		 * @param name
+		 *            The name of the dimension.
+		 * @param limit
+		 *            The maximal number of values.
+		 */
+		Axis(final String name, final int limit) {
+			super();
+			this.name = name;
+			this.limit = limit;
+		}
+
+		/**
+		 * @return The number of different values.
+		 */
+		public abstract int size();
+
+		/**
+		 * @param value
+		 *            A value.
+		 * @return The code of {@code value}, or {@code -1} if not present.
+		 */
+		public abstract int codeOf(@Nullable Object value);
+
+		/**
+		 * @param code
+		 *            A code.
+		 * @return The value belonging to {@code code}.
+		 */
+		public abstract T get(int code);
+
+		/**
+		 * @return The codes in the iteration order of the views.
+		 */
+		int[] order() {
+			if (order == null || order.length != size()) {
+				order = computeOrder();
+			}
+			return order;
+		}
+
+		/**
+		 * @return The codes in the iteration order of the views.
+		 */
+		protected int[] computeOrder() {
+			final int[] ret = new int[size()];
+			for (int i = ret.length; i-- > 0;) {
+				ret[i] = i;
+			}
+			return ret;
+		}
+
+		/**
+		 * Checks whether a new value can be added.
+		 */
+		protected void checkLimit() {
+			if (size() >= limit) {
+				throw new IllegalStateException("Too many " + name
+						+ " values: " + limit);
+			}
+		}
+	}
+
+	/**
+	 * An {@link Axis} with {@link String} values.
+	 */
+	public static final class StringAxis extends Axis<String> {
+		private static final long serialVersionUID = -1546009549386474335L;
+		private final Map<String, Integer> codes = new HashMap<String, Integer>();
+		private final List<String> values = new ArrayList<String>();
+		private final boolean sorted;
+
+		/**
+		 * @param name
+		 *            The name of the dimension.
+		 * @param limit
+		 *            The maximal number of values.
+		 * @param sorted
+		 *            The views are iterating in the natural order of the
+		 *            values if {@code true}, else in the order of appearance.
+		 */
+		StringAxis(final String name, final int limit, final boolean sorted) {
+			super(name, limit);
+			this.sorted = sorted;
+		}
+
+		/**
+		 * Finds or adds {@code value}.
+		 *
+		 * @param value
+		 *            A value.
+		 * @return The code of {@code value}.
+		 */
+		int intern(final String value) {
+			final Integer code = codes.get(value);
+			if (code != null) {
+				return code.intValue();
+			}
+			checkLimit();
+			final int ret = values.size();
+			values.add(value);
+			codes.put(value, Integer.valueOf(ret));
+			return ret;
+		}
+
+		@Override
+		public int codeOf(@Nullable final Object value) {
+			final Integer code = codes.get(value);
+			return code == null ? -1 : code.intValue();
+		}
+
+		@Override
+		public String get(final int code) {
+			return values.get(code);
+		}
+
+		@Override
+		public int size() {
+			return values.size();
+		}
+
+		/**
+		 * @return The values in order of their codes.
+		 */
+		public List<String> getValues() {
+			return Collections.unmodifiableList(values);
+		}
+
+		@Override
+		protected int[] computeOrder() {
+			final int[] ret = super.computeOrder();
+			if (sorted) {
+				final Integer[] boxed = new Integer[ret.length];
+				for (int i = ret.length; i-- > 0;) {
+					boxed[i] = Integer.valueOf(i);
+				}
+				Arrays.sort(boxed, new Comparator<Integer>() {
+					@Override
+					public int compare(final Integer o1, final Integer o2) {
+						return values.get(o1.intValue()).compareTo(
+								values.get(o2.intValue()));
+					}
+				});
+				for (int i = ret.length; i-- > 0;) {
+					ret[i] = boxed[i].intValue();
+				}
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * An {@link Axis} with {@code int} values. The views are iterating in
+	 * increasing order of the values.
+	 */
+	public static final class IntAxis extends Axis<Integer> {
+		private static final long serialVersionUID = 2707244311227151316L;
+		private final LongIntMap codes = new LongIntMap(64);
+		private int[] values = new int[16];
+		private int size;
+
+		/**
+		 * @param name
+		 *            The name of the dimension.
+		 * @param limit
+		 *            The maximal number of values.
+		 */
+		IntAxis(final String name, final int limit) {
+			super(name, limit);
+		}
+
+		/**
+		 * Finds or adds {@code value}.
+		 *
+		 * @param value
+		 *            A value.
+		 * @return The code of {@code value}.
+		 */
+		int intern(final int value) {
+			final int code = codes.get(value, -1);
+			if (code >= 0) {
+				return code;
+			}
+			checkLimit();
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size] = value;
+			codes.put(value, size);
+			return size++;
+		}
+
+		/**
+		 * @param value
+		 *            A value.
+		 * @return The code of {@code value}, or {@code -1} if not present.
+		 */
+		public int codeOf(final int value) {
+			return codes.get(value, -1);
+		}
+
+		@Override
+		public int codeOf(@Nullable final Object value) {
+			return value instanceof Integer ? codeOf(((Integer) value)
+					.intValue()) : -1;
+		}
+
+		/**
+		 * @param code
+		 *            A code.
+		 * @return The value belonging to {@code code}.
+		 */
+		public int valueOf(final int code) {
+			if (code < 0 || code >= size) {
+				throw new IndexOutOfBoundsException("Wrong code: " + code);
+			}
+			return values[code];
+		}
+
+		@Override
+		public Integer get(final int code) {
+			return Integer.valueOf(valueOf(code));
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		protected int[] computeOrder() {
+			final long[] pairs = new long[size];
+			for (int i = size; i-- > 0;) {
+				pairs[i] = (long) values[i] << 32 | i;
+			}
+			Arrays.sort(pairs);
+			final int[] ret = new int[size];
+			for (int i = size; i-- > 0;) {
+				ret[i] = (int) pairs[i];
+			}
+			return ret;
+		}
+	}
+}
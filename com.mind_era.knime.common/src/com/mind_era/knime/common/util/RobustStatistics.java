@@ -0,0 +1,295 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+
+import com.mind_era.knime.common.util.swing.colour.ColourSelector.RangeType;
+
+/**
+ * Computes the {@link RangeType} statistics of primitive {@code double}
+ * values. The order statistics are selected in place (introselect) without
+ * sorting the whole input, the sums are compensated (Neumaier's variant of
+ * Kahan summation).
+ * <p>
+ * The order statistics ({@link RangeType#min min}, {@link RangeType#max max},
+ * {@link RangeType#median median}, {@link RangeType#q1 q1},
+ * {@link RangeType#q3 q3}, {@link RangeType#iqr iqr}) are the same as the
+ * sorting based computation would give. The instances reuse their temporary
+ * buffer, so they are not thread safe.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+public final class RobustStatistics {
+	/**
+	 * The constant to make the median absolute deviation consistent with the
+	 * standard deviation of the normal distribution.
+	 */
+	public static final double MAD_SCALE = 1.4826;
+
+	/** Below this size the ranges are sorted by insertion sort. */
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	private double[] deviations = new double[16];
+
+	/**
+	 * Constructs a {@link RobustStatistics}.
+	 */
+	public RobustStatistics() {
+		super();
+	}
+
+	/**
+	 * Computes the statistics of the first {@code size} elements of
+	 * {@code values}. The {@link Double#NaN} values are ignored (except for
+	 * the {@link RangeType#min min} of only {@link Double#NaN} values, which
+	 * is {@link Double#NaN}).
+	 *
+	 * @param values
+	 *            The values. <b>The order of its first {@code size} elements
+	 *            will be changed.</b>
+	 * @param size
+	 *            The number of values to use.
+	 * @param ret
+	 *            The {@link RangeType}s are put into this {@link Map}.
+	 */
+	public void compute(final double[] values, final int size,
+			final Map<RangeType, Double> ret) {
+		final int n = moveNaNsToEnd(values, size);
+		if (n == 0) {
+			for (final RangeType type : RangeType.values()) {
+				ret.put(type, Double.valueOf(Double.NaN));
+			}
+			return;
+		}
+		double min = values[0], max = values[0];
+		for (int i = 1; i < n; ++i) {
+			final double v = values[i];
+			if (Double.compare(v, min) < 0) {
+				min = v;
+			}
+			if (Double.compare(v, max) > 0) {
+				max = v;
+			}
+		}
+		final int q1Index = n / 4, medianIndex = n / 2, q3Index = 3 * n / 4;
+		final int[] ranks = new int[] { Math.max(q1Index - 1, 0), q1Index,
+				Math.max(medianIndex - 1, 0), medianIndex,
+				Math.max(q3Index - 1, 0), q3Index };
+		selectAll(values, n, ranks);
+		final double q1Lower = values[ranks[0]], q1Upper = values[ranks[1]];
+		final double medianLower = values[ranks[2]], medianUpper = values[ranks[3]];
+		final double q3Lower = values[ranks[4]], q3Upper = values[ranks[5]];
+		final double median = n % 2 != 0 ? medianUpper
+				: (medianUpper + medianLower) / 2;
+		final double q1 = quartile(n, q1Upper, q1Lower);
+		final double q3 = quartile(n, q3Upper, q3Lower);
+		final double average = sum(values, n) / n;
+		if (deviations.length < n) {
+			deviations = new double[Math.max(n, deviations.length * 2)];
+		}
+		double squares = 0.0, compensation = 0.0, naive = 0.0;
+		for (int i = 0; i < n; ++i) {
+			final double diff = values[i] - average;
+			deviations[i] = Math.abs(diff);
+			final double square = diff * diff;
+			naive += square;
+			final double t = squares + square;
+			compensation += Math.abs(squares) >= Math.abs(square) ? squares - t
+					+ square : square - t + squares;
+			squares = t;
+		}
+		final double sumSquares = isFinite(naive) ? squares + compensation
+				: naive;
+		final double madUpper = select(deviations, 0, n, medianIndex);
+		final double madLower = n % 2 != 0 ? madUpper : select(deviations, 0,
+				medianIndex, medianIndex - 1);
+		ret.put(RangeType.min, Double.valueOf(min));
+		ret.put(RangeType.max, Double.valueOf(max));
+		ret.put(RangeType.median, Double.valueOf(median));
+		ret.put(RangeType.q1, Double.valueOf(q1));
+		ret.put(RangeType.q3, Double.valueOf(q3));
+		ret.put(RangeType.iqr, Double.valueOf(q3 - q1));
+		ret.put(RangeType.average, Double.valueOf(average));
+		ret.put(RangeType.stdev, Double.valueOf(Math.sqrt(sumSquares / n)));
+		ret.put(RangeType.mad, Double.valueOf((n % 2 != 0 ? madUpper
+				: (madUpper + madLower) / 2)
+				* MAD_SCALE));
+	}
+
+	/**
+	 * The quartile estimate used by HiTS.
+	 *
+	 * @param n
+	 *            The number of (non-{@link Double#NaN}) values.
+	 * @param upper
+	 *            The value at the quartile index ({@code n/4}, or
+	 *            {@code 3n/4}).
+	 * @param lower
+	 *            The value before the quartile index (or at the quartile
+	 *            index if that is {@code 0}).
+	 * @return The weighted mean of {@code upper} and {@code lower}.
+	 */
+	private static double quartile(final int n, final double upper,
+			final double lower) {
+		return n % 4 == 1 ? upper : ((3 * n + 5) % 4 * upper + (n - 1) % 4
+				* lower) / 4;
+	}
+
+	/**
+	 * Compensated sum of the first {@code n} values.
+	 *
+	 * @param values
+	 *            Some values.
+	 * @param n
+	 *            The number of values to sum.
+	 * @return The sum of values.
+	 */
+	public static double sum(final double[] values, final int n) {
+		double sum = 0.0, compensation = 0.0, naive = 0.0;
+		for (int i = 0; i < n; ++i) {
+			final double v = values[i];
+			naive += v;
+			final double t = sum + v;
+			compensation += Math.abs(sum) >= Math.abs(v) ? sum - t + v : v - t
+					+ sum;
+			sum = t;
+		}
+		return isFinite(naive) ? sum + compensation : naive;
+	}
+
+	private static boolean isFinite(final double d) {
+		return !Double.isNaN(d) && !Double.isInfinite(d);
+	}
+
+	/**
+	 * Moves the {@link Double#NaN}s to the end of the first {@code size}
+	 * elements.
+	 *
+	 * @param values
+	 *            Some values.
+	 * @param size
+	 *            The number of values to check.
+	 * @return The number of non-{@link Double#NaN} values.
+	 */
+	static int moveNaNsToEnd(final double[] values, final int size) {
+		int end = size;
+		for (int i = 0; i < end;) {
+			if (Double.isNaN(values[i])) {
+				values[i] = values[--end];
+				values[end] = Double.NaN;
+			} else {
+				++i;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Selects (see {@link #select(double[], int, int, int)}) all of the
+	 * {@code ranks} in the first {@code n} elements of {@code values}.
+	 *
+	 * @param values
+	 *            Some values.
+	 * @param n
+	 *            The number of values to use.
+	 * @param ranks
+	 *            The indices to select.
+	 */
+	static void selectAll(final double[] values, final int n,
+			final int[] ranks) {
+		final int[] sorted = ranks.clone();
+		Arrays.sort(sorted);
+		// The elements before an already selected index are not moved by the
+		// later selections.
+		int from = 0;
+		for (final int k : sorted) {
+			if (k >= from) {
+				select(values, from, n, k);
+				from = k;
+			}
+		}
+	}
+
+	/**
+	 * Rearranges the {@code [from, to)} part of {@code values} such that the
+	 * element at {@code k} is the one which would be there if the range were
+	 * sorted (with the {@link Double#compare(double, double)} order), no
+	 * element before is larger, and no element after it is smaller.
+	 *
+	 * @param values
+	 *            Some values.
+	 * @param from
+	 *            The first index (inclusive).
+	 * @param to
+	 *            The last index (exclusive).
+	 * @param k
+	 *            The selected index ({@code from <= k < to}).
+	 * @return The value at {@code k}.
+	 */
+	public static double select(final double[] values, final int from,
+			final int to, final int k) {
+		if (k < from || k >= to) {
+			throw new IndexOutOfBoundsException("k: " + k + " not in [" + from
+					+ ", " + to + ")");
+		}
+		int lo = from, hi = to - 1;
+		// Falls back to sorting after too many bad pivots.
+		int budget = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+		while (hi - lo >= INSERTION_SORT_THRESHOLD) {
+			if (--budget < 0) {
+				Arrays.sort(values, lo, hi + 1);
+				return values[k];
+			}
+			final double pivot = medianOf3(values[lo], values[lo + hi >>> 1],
+					values[hi]);
+			int i = lo, j = hi;
+			do {
+				while (Double.compare(values[i], pivot) < 0) {
+					++i;
+				}
+				while (Double.compare(pivot, values[j]) < 0) {
+					--j;
+				}
+				if (i <= j) {
+					final double tmp = values[i];
+					values[i++] = values[j];
+					values[j--] = tmp;
+				}
+			} while (i <= j);
+			if (k <= j) {
+				hi = j;
+			} else if (k >= i) {
+				lo = i;
+			} else {
+				return values[k];
+			}
+		}
+		for (int i = lo + 1; i <= hi; ++i) {
+			final double v = values[i];
+			int j = i - 1;
+			while (j >= lo && Double.compare(values[j], v) > 0) {
+				values[j + 1] = values[j];
+				--j;
+			}
+			values[j + 1] = v;
+		}
+		return values[k];
+	}
+
+	private static double medianOf3(final double a, final double b,
+			final double c) {
+		if (Double.compare(a, b) < 0) {
+			return Double.compare(b, c) < 0 ? b : Double.compare(a, c) < 0 ? c
+					: a;
+		}
+		return Double.compare(a, c) < 0 ? a : Double.compare(b, c) < 0 ? c : b;
+	}
+}
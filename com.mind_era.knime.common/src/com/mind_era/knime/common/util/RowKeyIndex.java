@@ -0,0 +1,522 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.knime.core.util.Pair;
+
+/**
+ * A compact bidirectional index between the row keys and the (plate, well)
+ * positions. The rows get ordinals in order of their first appearance (the
+ * ordinals are compacted when rows are removed), the positions are stored as
+ * packed {@code long}s (see {@link #pack(int, int)}), the keys are found by
+ * an open addressing hash table of the ordinals. Each row can have a
+ * {@code long} group (for example the experiment, normalisation and plate of
+ * the row), the rows can be removed by their groups.
+ * <p>
+ * The other direction, the rows of a (plate, well) position are stored in
+ * compressed sparse row form (the ordinals of the rows sorted by plate, well
+ * and ordinal), which is (re)built on the first query after a modification.
+ * <p>
+ * The queries can be used from multiple threads, but the modifications must
+ * not be concurrent with other modifications or queries.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+@NotThreadSafe
+public final class RowKeyIndex implements Serializable {
+	private static final long serialVersionUID = -5427150180386466522L;
+
+	/** The value of the not present positions. */
+	public static final long NOT_PRESENT = -1L;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final int wellCount;
+	/** ordinal -> key */
+	private String[] keys = new String[INITIAL_CAPACITY];
+	/** ordinal -> packed position */
+	private long[] positions = new long[INITIAL_CAPACITY];
+	/** ordinal -> group */
+	private long[] groups = new long[INITIAL_CAPACITY];
+	private int size;
+	/** The ordinals of the keys, {@code -1} for the free slots. */
+	private int[] table = newTable(2 * INITIAL_CAPACITY);
+
+	/** The rows of the positions, {@code null} if dirty. */
+	@Nullable
+	private transient volatile Rows rows;
+
+	/**
+	 * The rows of the (plate, well) positions in compressed sparse row form.
+	 */
+	private static final class Rows {
+		/** The sorted plate values of {@link #offsets}. */
+		private final int[] plates;
+		/** (plate index * wellCount + well) -> start in {@link #ordinals} */
+		private final int[] offsets;
+		/** The ordinals sorted by plate, well and ordinal. */
+		private final int[] ordinals;
+
+		Rows(final int[] plates, final int[] offsets, final int[] ordinals) {
+			super();
+			this.plates = plates;
+			this.offsets = offsets;
+			this.ordinals = ordinals;
+		}
+	}
+
+	/**
+	 * Constructs an empty {@link RowKeyIndex}.
+	 *
+	 * @param wellCount
+	 *            The number of wells on a plate.
+	 */
+	public RowKeyIndex(final int wellCount) {
+		super();
+		this.wellCount = wellCount;
+	}
+
+	private static int[] newTable(final int capacity) {
+		final int[] ret = new int[capacity];
+		Arrays.fill(ret, -1);
+		return ret;
+	}
+
+	/**
+	 * @param plate
+	 *            A plate value.
+	 * @param well
+	 *            A ({@code 0}-based) well position.
+	 * @return The packed position.
+	 */
+	public static long pack(final int plate, final int well) {
+		return (long) plate << 32 | well & 0xffffffffL;
+	}
+
+	/**
+	 * @param position
+	 *            A packed position.
+	 * @return The plate value of {@code position}.
+	 */
+	public static int plateOf(final long position) {
+		return (int) (position >> 32);
+	}
+
+	/**
+	 * @param position
+	 *            A packed position.
+	 * @return The well position of {@code position}.
+	 */
+	public static int wellOf(final long position) {
+		return (int) position;
+	}
+
+	private static int mix(final int hash) {
+		final int h = hash * 0x9E3779B9;
+		return h ^ h >>> 16;
+	}
+
+	private int slot(final Object key) {
+		final int mask = table.length - 1;
+		for (int i = mix(key.hashCode()) & mask;; i = i + 1 & mask) {
+			final int ordinal = table[i];
+			if (ordinal == -1 || keys[ordinal].equals(key)) {
+				return i;
+			}
+		}
+	}
+
+	/**
+	 * Adds (or moves) a row with the {@code 0} group.
+	 *
+	 * @param key
+	 *            The row key.
+	 * @param plate
+	 *            The plate value.
+	 * @param well
+	 *            The ({@code 0}-based) well position.
+	 * @throws IllegalArgumentException
+	 *             If {@code well} is not in {@code [0, wellCount)}.
+	 * @see #put(String, int, int, long)
+	 */
+	public void put(final String key, final int plate, final int well) {
+		put(key, plate, well, 0L);
+	}
+
+	/**
+	 * Adds (or moves) a row.
+	 *
+	 * @param key
+	 *            The row key.
+	 * @param plate
+	 *            The plate value.
+	 * @param well
+	 *            The ({@code 0}-based) well position.
+	 * @param group
+	 *            The group of the row.
+	 * @throws IllegalArgumentException
+	 *             If {@code well} is not in {@code [0, wellCount)}.
+	 * @see #removeGroups(Set)
+	 */
+	public void put(final String key, final int plate, final int well,
+			final long group) {
+		if (well < 0 || well >= wellCount) {
+			throw new IllegalArgumentException("Wrong well position for "
+					+ key + ": " + well + " (well count: " + wellCount + ")");
+		}
+		rows = null;
+		final int slot = slot(key);
+		if (table[slot] != -1) {
+			positions[table[slot]] = pack(plate, well);
+			groups[table[slot]] = group;
+			return;
+		}
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			positions = Arrays.copyOf(positions, size * 2);
+			groups = Arrays.copyOf(groups, size * 2);
+		}
+		keys[size] = key;
+		positions[size] = pack(plate, well);
+		groups[size] = group;
+		table[slot] = size;
+		if (++size * 2 > table.length) {
+			rehash(table.length * 2);
+		}
+	}
+
+	private void rehash(final int capacity) {
+		table = newTable(capacity);
+		final int mask = capacity - 1;
+		for (int ordinal = 0; ordinal < size; ++ordinal) {
+			int i = mix(keys[ordinal].hashCode()) & mask;
+			while (table[i] != -1) {
+				i = i + 1 & mask;
+			}
+			table[i] = ordinal;
+		}
+	}
+
+	/**
+	 * @param key
+	 *            A row key.
+	 * @return The packed position of {@code key}, or {@link #NOT_PRESENT}.
+	 */
+	public long find(@Nullable final Object key) {
+		if (key == null) {
+			return NOT_PRESENT;
+		}
+		final int ordinal = table[slot(key)];
+		return ordinal == -1 ? NOT_PRESENT : positions[ordinal];
+	}
+
+	/**
+	 * Removes the rows of {@code removedPlates}. The ordinals of the
+	 * remaining rows are compacted (keeping their order), so the ordinals
+	 * after the first removed row change.
+	 *
+	 * @param removedPlates
+	 *            Some plate values.
+	 */
+	public void removePlates(final Set<Integer> removedPlates) {
+		final BitSet removed = new BitSet(size);
+		for (int ordinal = 0; ordinal < size; ++ordinal) {
+			if (removedPlates.contains(Integer
+					.valueOf(plateOf(positions[ordinal])))) {
+				removed.set(ordinal);
+			}
+		}
+		remove(removed);
+	}
+
+	/**
+	 * Removes the rows of {@code removedGroups}. The ordinals of the
+	 * remaining rows are compacted (keeping their order), so the ordinals
+	 * after the first removed row change.
+	 *
+	 * @param removedGroups
+	 *            Some groups.
+	 * @see #put(String, int, int, long)
+	 */
+	public void removeGroups(final Set<Long> removedGroups) {
+		final BitSet removed = new BitSet(size);
+		for (int ordinal = 0; ordinal < size; ++ordinal) {
+			if (removedGroups.contains(Long.valueOf(groups[ordinal]))) {
+				removed.set(ordinal);
+			}
+		}
+		remove(removed);
+	}
+
+	/**
+	 * Removes the {@code removed} ordinals, and compacts the remaining ones.
+	 *
+	 * @param removed
+	 *            The removed ordinals.
+	 */
+	private void remove(final BitSet removed) {
+		if (removed.isEmpty()) {
+			return;
+		}
+		int kept = 0;
+		for (int ordinal = 0; ordinal < size; ++ordinal) {
+			if (!removed.get(ordinal)) {
+				keys[kept] = keys[ordinal];
+				positions[kept] = positions[ordinal];
+				groups[kept] = groups[ordinal];
+				++kept;
+			}
+		}
+		Arrays.fill(keys, kept, size, null);
+		size = kept;
+		rows = null;
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < size) {
+			capacity *= 2;
+		}
+		if (capacity < keys.length) {
+			keys = Arrays.copyOf(keys, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+			groups = Arrays.copyOf(groups, capacity);
+		}
+		rehash(2 * capacity);
+	}
+
+	/**
+	 * @return The number of rows.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The number of row ordinals (the same as {@link #size()}, the
+	 *         ordinals are from {@code 0} to {@code size() - 1}).
+	 */
+	public int getOrdinalCount() {
+		return size;
+	}
+
+	/**
+	 * @param ordinal
+	 *            A row ordinal.
+	 * @return The key of the row.
+	 */
+	public String getKey(final int ordinal) {
+		return keys[ordinal];
+	}
+
+	/**
+	 * @param ordinal
+	 *            A row ordinal.
+	 * @return The packed position of the row.
+	 */
+	public long getPosition(final int ordinal) {
+		return positions[ordinal];
+	}
+
+	/**
+	 * @param ordinal
+	 *            A row ordinal.
+	 * @return The group of the row.
+	 * @see #put(String, int, int, long)
+	 */
+	public long getGroup(final int ordinal) {
+		return groups[ordinal];
+	}
+
+	/**
+	 * @param plate
+	 *            A plate value.
+	 * @param well
+	 *            A ({@code 0}-based) well position.
+	 * @return A copy of the (increasing) ordinals of the rows at
+	 *         {@code plate}, {@code well}.
+	 * @see #forEachRow(int, int, IntConsumer)
+	 */
+	public int[] getRows(final int plate, final int well) {
+		final Rows current = currentRows();
+		final int cell = cell(current, plate, well);
+		return cell < 0 ? new int[0] : Arrays.copyOfRange(current.ordinals,
+				current.offsets[cell], current.offsets[cell + 1]);
+	}
+
+	/**
+	 * Calls {@code action} with the ordinals of the rows at {@code plate},
+	 * {@code well} in increasing order, without copying them.
+	 *
+	 * @param plate
+	 *            A plate value.
+	 * @param well
+	 *            A ({@code 0}-based) well position.
+	 * @param action
+	 *            Called with each row ordinal.
+	 */
+	public void forEachRow(final int plate, final int well,
+			final IntConsumer action) {
+		final Rows current = currentRows();
+		final int cell = cell(current, plate, well);
+		if (cell < 0) {
+			return;
+		}
+		for (int i = current.offsets[cell], end = current.offsets[cell + 1]; i < end; ++i) {
+			action.accept(current.ordinals[i]);
+		}
+	}
+
+	/**
+	 * @return The current {@link #rows}, built if necessary.
+	 */
+	private Rows currentRows() {
+		final Rows current = rows;
+		return current == null ? buildRows() : current;
+	}
+
+	/**
+	 * @param current
+	 *            The {@link Rows}.
+	 * @param plate
+	 *            A plate value.
+	 * @param well
+	 *            A ({@code 0}-based) well position.
+	 * @return The index of the {@code plate}, {@code well} cell in
+	 *         {@link Rows#offsets}, or {@code -1} if not present.
+	 */
+	private int cell(final Rows current, final int plate, final int well) {
+		final int index = Arrays.binarySearch(current.plates, plate);
+		return index < 0 || well < 0 || well >= wellCount ? -1 : index
+				* wellCount + well;
+	}
+
+	/**
+	 * Builds the {@link #rows} (if not already built by an other thread).
+	 *
+	 * @return The current {@link #rows}.
+	 */
+	private synchronized Rows buildRows() {
+		final Rows current = rows;
+		if (current != null) {
+			return current;
+		}
+		final int[] values = new int[size];
+		for (int ordinal = 0; ordinal < size; ++ordinal) {
+			values[ordinal] = plateOf(positions[ordinal]);
+		}
+		final int count = size;
+		Arrays.sort(values, 0, count);
+		int distinct = 0;
+		for (int i = 0; i < count; ++i) {
+			if (distinct == 0 || values[distinct - 1] != values[i]) {
+				values[distinct++] = values[i];
+			}
+		}
+		final int[] sortedPlates = Arrays.copyOf(values, distinct);
+		final int[] starts = new int[distinct * wellCount + 1];
+		final int[] cells = new int[size];
+		for (int ordinal = 0; ordinal < size; ++ordinal) {
+			final long position = positions[ordinal];
+			cells[ordinal] = Arrays.binarySearch(sortedPlates,
+					plateOf(position))
+					* wellCount + wellOf(position);
+			++starts[cells[ordinal] + 1];
+		}
+		for (int i = 1; i < starts.length; ++i) {
+			starts[i] += starts[i - 1];
+		}
+		final int[] next = Arrays.copyOf(starts, starts.length - 1);
+		final int[] sortedRows = new int[size];
+		for (int ordinal = 0; ordinal < size; ++ordinal) {
+			sortedRows[next[cells[ordinal]]++] = ordinal;
+		}
+		final Rows ret = new Rows(sortedPlates, starts, sortedRows);
+		rows = ret;
+		return ret;
+	}
+
+	/**
+	 * @return A read-only {@link Map} view from the row keys to the
+	 *         {@link Pair} of plate, well position values.
+	 */
+	public Map<String, Pair<Integer, Integer>> asMap() {
+		return new AbstractMap<String, Pair<Integer, Integer>>() {
+			@Override
+			public Pair<Integer, Integer> get(final Object key) {
+				final long position = find(key);
+				return position == NOT_PRESENT ? null : pair(position);
+			}
+
+			@Override
+			public boolean containsKey(final Object key) {
+				return find(key) != NOT_PRESENT;
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public Set<Entry<String, Pair<Integer, Integer>>> entrySet() {
+				return new AbstractSet<Entry<String, Pair<Integer, Integer>>>() {
+					@Override
+					public Iterator<Entry<String, Pair<Integer, Integer>>> iterator() {
+						return new Iterator<Entry<String, Pair<Integer, Integer>>>() {
+							private int ordinal;
+
+							@Override
+							public boolean hasNext() {
+								return ordinal < size;
+							}
+
+							@Override
+							public Entry<String, Pair<Integer, Integer>> next() {
+								if (!hasNext()) {
+									throw new NoSuchElementException();
+								}
+								final Entry<String, Pair<Integer, Integer>> ret = new SimpleImmutableEntry<String, Pair<Integer, Integer>>(
+										keys[ordinal], pair(positions[ordinal]));
+								++ordinal;
+								return ret;
+							}
+
+							@Override
+							public void remove() {
+								throw new UnsupportedOperationException(
+										"Read-only view.");
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return size;
+					}
+				};
+			}
+		};
+	}
+
+	private static Pair<Integer, Integer> pair(final long position) {
+		return new Pair<Integer, Integer>(Integer.valueOf(plateOf(position)),
+				Integer.valueOf(wellOf(position)));
+	}
+}
@@ -4,14 +4,8 @@
 package com.mind_era.knime.common.util;
 
 import java.io.Serializable;
-import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.EnumMap;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
@@ -34,7 +28,7 @@ import com.mind_era.knime.common.view.StatTypes;
 public class SimpleModelBuilder implements Serializable {
 	private static final long serialVersionUID = -2037522274855411494L;
 	/** The analysed table */
-	private final DataTable table;
+	private DataTable table;
 	/** The {@link SpecAnalyser} for the table. */
 	private final SpecAnalyser specAnalyser;
 
@@ -64,83 +58,24 @@ public class SimpleModelBuilder implements Serializable {
 	 * @param ret
 	 *            The result ranges map.
 	 * @param vals
-	 *            The values to analyse.
+	 *            The values to analyse. (The order of the values might be
+	 *            changed.)
+	 * @see RobustStatistics
 	 */
 	public static void computeStatistics(
 			final Map<String, Map<StatTypes, Map<RangeType, Double>>> ret,
-			final Map<String, Map<StatTypes, List<Double>>> vals) {
-		for (final Entry<String, Map<StatTypes, List<Double>>> entry : vals
+			final Map<String, Map<StatTypes, DoubleArrayList>> vals) {
+		final RobustStatistics statistics = new RobustStatistics();
+		for (final Entry<String, Map<StatTypes, DoubleArrayList>> entry : vals
 				.entrySet()) {
-			for (final Entry<StatTypes, List<Double>> subEntry : entry
+			if (!ret.containsKey(entry.getKey())) {
+				continue;
+			}
+			for (final Entry<StatTypes, DoubleArrayList> subEntry : entry
 					.getValue().entrySet()) {
-				final List<Double> values = subEntry.getValue();
-				Collections.sort(values);
-				if (!ret.containsKey(entry.getKey())) {
-					continue;
-				}
-				ret.get(entry.getKey()).get(subEntry.getKey()).put(
-						RangeType.min,
-						values.size() > 0 ? values.get(0) : Double.NaN);
-				int n = 0;
-				double sum = 0.0;
-				for (final Double d : values) {
-					if (!d.isNaN()) {
-						++n;
-						sum += d.doubleValue();
-					}
-				}
-				final double median = n > 0 ? (n % 2 != 0 ? values.get(n / 2)
-						: (values.get(n / 2) + values.get(n / 2 - 1)) / 2)
-						: Double.NaN;
-				final double q1 = n > 0 ? (n % 4 == 1 ? values.get(n / 4) : ((4
-						* n + 4 - n + 1)
-						% 4 * values.get(n / 4) + (n - 1) % 4
-						* values.get(n / 4 - 1)) / 4) : Double.NaN;
-				final double q3 = n > 0 ? (n % 4 == 1 ? values.get(3 * n / 4)
-						: ((4 * n + 4 - n + 1) % 4 * values.get(3 * n / 4) + (n - 1)
-								% 4 * values.get(3 * n / 4 - 1)) / 4)
-						: Double.NaN;
-				final double maxVal = n > 0 ? values.get(n - 1) : Double.NaN;
-				ret.get(entry.getKey()).get(subEntry.getKey()).put(
-						RangeType.max, maxVal);
-				ret.get(entry.getKey()).get(subEntry.getKey()).put(
-						RangeType.median, median);
-				ret.get(entry.getKey()).get(subEntry.getKey()).put(
-						RangeType.q1, q1);
-				ret.get(entry.getKey()).get(subEntry.getKey()).put(
-						RangeType.q3, q3);
-				ret.get(entry.getKey()).get(subEntry.getKey()).put(
-						RangeType.iqr, q3 - q1);
-				final double average = sum / n;
-				ret.get(entry.getKey()).get(subEntry.getKey()).put(
-						RangeType.average,
-						n == 0 ? Double.NaN : Double.valueOf(average));
-				final MathContext context = new MathContext(10,
-						RoundingMode.HALF_EVEN);
-				BigDecimal sumDiffSquare = new BigDecimal(0.0);
-				final List<Double> diffAbs = new ArrayList<Double>(n);
-				for (final Double d : values) {
-					if (!d.isNaN()) {
-						final double diff = d - average;
-						final BigDecimal diffBig = BigDecimal.valueOf(diff);
-						sumDiffSquare = sumDiffSquare.add(diffBig.multiply(
-								diffBig, context), context);
-						diffAbs.add(Double.valueOf(Math.abs(diff)));
-					}
-				}
-				Collections.sort(diffAbs);
-				ret.get(entry.getKey()).get(subEntry.getKey()).put(
-						RangeType.stdev,
-						n == 0 ? Double.NaN : Double.valueOf(Math
-								.sqrt(sumDiffSquare.doubleValue() / n)));
-				ret.get(entry.getKey()).get(subEntry.getKey()).put(
-						RangeType.mad,
-						n == 0 ? Double.NaN
-								: Double.valueOf((n % 2 != 0 ? diffAbs
-										.get(n / 2) : (diffAbs.get(n / 2)
-										.doubleValue() + diffAbs.get(n / 2 - 1)
-										.doubleValue()) / 2) * 1.4826));
-
+				final DoubleArrayList values = subEntry.getValue();
+				statistics.compute(values.elements(), values.size(), ret.get(
+						entry.getKey()).get(subEntry.getKey()));
 			}
 		}
 	}
@@ -166,14 +101,26 @@ public class SimpleModelBuilder implements Serializable {
 		return table;
 	}
 
+	/**
+	 * Replaces the analysed table with one of the same structure (after the
+	 * model was updated with its rows).
+	 * 
+	 * @param table
+	 *            The new table, compatible with the
+	 *            {@link #getSpecAnalyser() spec analyser}.
+	 */
+	protected void setTable(final DataTable table) {
+		this.table = table;
+	}
+
 	/**
 	 * Collects the values belonging to the parameters and statistics. (
 	 * {@link Double#NaN}s are not filtered.
 	 * 
 	 * @return The map from parameters to a map from stats to values.
 	 */
-	public Map<String, Map<StatTypes, List<Double>>> computeAllVals() {
-		final Map<String, Map<StatTypes, List<Double>>> ret = new TreeMap<String, Map<StatTypes, List<Double>>>();
+	public Map<String, Map<StatTypes, DoubleArrayList>> computeAllVals() {
+		final Map<String, Map<StatTypes, DoubleArrayList>> ret = new TreeMap<String, Map<StatTypes, DoubleArrayList>>();
 		final EnumMap<StatTypes, Map<String, Integer>> indices = specAnalyser
 				.getIndices();
 		final Map<String, Integer> valueIndices = specAnalyser
@@ -187,13 +134,12 @@ public class SimpleModelBuilder implements Serializable {
 		for (final Entry<StatTypes, Map<String, Integer>> outerEntry : indices
 				.entrySet()) {
 			for (final String param : outerEntry.getValue().keySet()) {
-				final EnumMap<StatTypes, List<Double>> valMap = new EnumMap<StatTypes, List<Double>>(
+				final EnumMap<StatTypes, DoubleArrayList> valMap = new EnumMap<StatTypes, DoubleArrayList>(
 						StatTypes.class);
 				if (!ret.containsKey(param)) {
 					ret.put(param, valMap);
 				}
-				ret.get(param)
-						.put(outerEntry.getKey(), new ArrayList<Double>());
+				ret.get(param).put(outerEntry.getKey(), new DoubleArrayList());
 			}
 		}
 		for (final DataRow row : table) {
@@ -206,7 +152,7 @@ public class SimpleModelBuilder implements Serializable {
 					if (cell instanceof DoubleValue) {
 						final DoubleValue val = (DoubleValue) cell;
 						ret.get(innerEntry.getKey()).get(outerEntry.getKey())
-								.add(Double.valueOf(val.getDoubleValue()));
+								.add(val.getDoubleValue());
 					}
 				}
 			}
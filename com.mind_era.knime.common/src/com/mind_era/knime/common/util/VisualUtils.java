@@ -4,6 +4,7 @@
 package com.mind_era.knime.common.util;
 
 import java.awt.Color;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
@@ -17,6 +18,14 @@ import javax.annotation.Nullable;
 @Nonnull
 @CheckReturnValue
 public class VisualUtils {
+	/** The packed ARGB value of a fully transparent pixel. */
+	public static final int TRANSPARENT = 0;
+
+	/** The size of the {@link #INTERNED} cache, a power of {@code 2}. */
+	private static final int INTERNED_SIZE = 1024;
+	/** The interned colours, by the hash of their ARGB values. */
+	private static final AtomicReferenceArray<Color> INTERNED = new AtomicReferenceArray<Color>(
+			INTERNED_SIZE);
 
 	/**
 	 * Selects the colour for a value {@code d} based on the other parameters.
@@ -78,4 +87,25 @@ public class VisualUtils {
 						* (red.getBlue() - black.getBlue()) / 256.0f));
 	}
 
+	/**
+	 * Finds a {@link Color} for the packed ARGB value. The recently used
+	 * colours are kept in a small cache, so the same {@link Color} instance
+	 * is returned for the frequent values.
+	 * 
+	 * @param argb
+	 *            A packed ARGB value (like {@link Color#getRGB()}).
+	 * @return The {@link Color} of {@code argb}.
+	 * @see PackedColours
+	 */
+	public static Color interned(final int argb) {
+		final int index = (argb ^ argb >>> 16) * 0x45d9f3b >>> 22
+				& INTERNED_SIZE - 1;
+		final Color cached = INTERNED.get(index);
+		if (cached != null && cached.getRGB() == argb) {
+			return cached;
+		}
+		final Color ret = new Color(argb, true);
+		INTERNED.set(index, ret);
+		return ret;
+	}
 }
@@ -0,0 +1,282 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util.interval;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.Collection;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+
+import com.mind_era.knime.common.util.interval.Interval.DefaultInterval;
+
+/**
+ * An immutable, sorted set of {@code double} {@link Interval}s stored in
+ * primitive arrays. The order of the intervals is the same as the order of
+ * the {@link DefaultInterval}s (by the low endpoint, the closed low endpoint
+ * first, then by the high endpoint, the open high endpoint first), so the
+ * queries give the same results as the {@link java.util.NavigableMap}
+ * lookups with {@link DefaultInterval} keys, without boxing.
+ * <p>
+ * The intervals are referred by their (ascending) index.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+public final class DoubleIntervalSet implements Serializable {
+	private static final long serialVersionUID = -2236403431069436585L;
+
+	/** The result of the queries when no interval found. */
+	public static final int NOT_FOUND = -1;
+
+	private final double[] lows;
+	private final double[] highs;
+	private final BitSet closedLows;
+	private final BitSet closedHighs;
+
+	/**
+	 * Constructs a {@link DoubleIntervalSet}.
+	 *
+	 * @param intervals
+	 *            The intervals in ascending order (like the keys of a
+	 *            {@link java.util.SortedMap} with {@link DefaultInterval}
+	 *            keys).
+	 * @throws IllegalArgumentException
+	 *             If {@code intervals} are not in strictly ascending order.
+	 */
+	public DoubleIntervalSet(
+			final Collection<? extends Interval<Double>> intervals) {
+		super();
+		final int size = intervals.size();
+		lows = new double[size];
+		highs = new double[size];
+		closedLows = new BitSet(size);
+		closedHighs = new BitSet(size);
+		int i = 0;
+		for (final Interval<Double> interval : intervals) {
+			lows[i] = interval.getLow().doubleValue();
+			highs[i] = interval.getHigh().doubleValue();
+			closedLows.set(i, interval.isClosedLow());
+			closedHighs.set(i, interval.isClosedHigh());
+			if (i > 0 && compare(i - 1, i) >= 0) {
+				throw new IllegalArgumentException("Not in ascending order: "
+						+ get(i - 1) + ", " + get(i));
+			}
+			++i;
+		}
+	}
+
+	/**
+	 * @return The number of intervals.
+	 */
+	public int size() {
+		return lows.length;
+	}
+
+	/**
+	 * @param index
+	 *            The index of an interval.
+	 * @return The low endpoint of the interval.
+	 */
+	public double getLow(final int index) {
+		return lows[index];
+	}
+
+	/**
+	 * @param index
+	 *            The index of an interval.
+	 * @return The high endpoint of the interval.
+	 */
+	public double getHigh(final int index) {
+		return highs[index];
+	}
+
+	/**
+	 * @param index
+	 *            The index of an interval.
+	 * @return The low endpoint of the interval is closed?
+	 */
+	public boolean isClosedLow(final int index) {
+		return closedLows.get(index);
+	}
+
+	/**
+	 * @param index
+	 *            The index of an interval.
+	 * @return The high endpoint of the interval is closed?
+	 */
+	public boolean isClosedHigh(final int index) {
+		return closedHighs.get(index);
+	}
+
+	/**
+	 * @param index
+	 *            The index of an interval.
+	 * @return The interval as a {@link DefaultInterval}.
+	 */
+	public Interval<Double> get(final int index) {
+		return new DefaultInterval<Double>(Double.valueOf(lows[index]), Double
+				.valueOf(highs[index]), isClosedLow(index), isClosedHigh(index));
+	}
+
+	/**
+	 * @param index
+	 *            The index of an interval.
+	 * @param val
+	 *            A value.
+	 * @return If {@code val} is in the interval {@code true} else
+	 *         {@code false}.
+	 * @see Interval#contains(Comparable)
+	 */
+	public boolean contains(final int index, final double val) {
+		final int compLow = Double.compare(lows[index], val);
+		final int compHigh = Double.compare(highs[index], val);
+		if (compLow <= 0 && compHigh >= 0) {
+			return (compLow != 0 || closedLows.get(index))
+					&& (compHigh != 0 || closedHighs.get(index));
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the interval containing {@code val} among its neighbours, the
+	 * {@link #lower(double) lower} is preferred.
+	 *
+	 * @param val
+	 *            A value.
+	 * @return The index of the interval containing {@code val}, or
+	 *         {@link #NOT_FOUND}.
+	 */
+	public int stab(final double val) {
+		final int lower = lower(val);
+		if (lower != NOT_FOUND && contains(lower, val)) {
+			return lower;
+		}
+		final int higher = higher(val);
+		return higher != NOT_FOUND && contains(higher, val) ? higher
+				: NOT_FOUND;
+	}
+
+	/**
+	 * {@link #stab(double) Stabs} all {@code values}.
+	 *
+	 * @param values
+	 *            Some values.
+	 * @param indicesOut
+	 *            The index of the interval containing {@code values[i]} (or
+	 *            {@link #NOT_FOUND}) is stored at {@code indicesOut[i]}. It
+	 *            must be at least as long as {@code values}.
+	 */
+	public void stabAll(final double[] values, final int[] indicesOut) {
+		for (int i = values.length; i-- > 0;) {
+			indicesOut[i] = stab(values[i]);
+		}
+	}
+
+	/**
+	 * @param val
+	 *            A value.
+	 * @return The index of the greatest interval strictly less than the
+	 *         closed interval {@code [val, val]}, or {@link #NOT_FOUND}.
+	 */
+	public int lower(final double val) {
+		int low = 0;
+		int high = lows.length;
+		while (low < high) {
+			final int mid = low + high >>> 1;
+			if (comparePoint(mid, val) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low - 1;
+	}
+
+	/**
+	 * @param val
+	 *            A value.
+	 * @return The index of the least interval strictly greater than the
+	 *         closed interval {@code [val, val]}, or {@link #NOT_FOUND}.
+	 */
+	public int higher(final double val) {
+		int low = 0;
+		int high = lows.length;
+		while (low < high) {
+			final int mid = low + high >>> 1;
+			if (comparePoint(mid, val) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low == lows.length ? NOT_FOUND : low;
+	}
+
+	/**
+	 * Compares the interval at {@code index} to the closed interval
+	 * {@code [val, val]}.
+	 *
+	 * @param index
+	 *            The index of an interval.
+	 * @param val
+	 *            A value.
+	 * @return Negative if the interval is less, {@code 0} if it is the same
+	 *         and positive if it is greater than {@code [val, val]}.
+	 */
+	private int comparePoint(final int index, final double val) {
+		final int lowComp = Double.compare(lows[index], val);
+		if (lowComp != 0) {
+			return lowComp;
+		}
+		if (!closedLows.get(index)) {
+			return 1;
+		}
+		final int highComp = Double.compare(highs[index], val);
+		if (highComp == 0 && !closedHighs.get(index)) {
+			return -1;
+		}
+		return highComp;
+	}
+
+	/**
+	 * Compares two intervals of the set.
+	 *
+	 * @param index
+	 *            The index of an interval.
+	 * @param other
+	 *            The index of another interval.
+	 * @return Negative if the interval at {@code index} is less, {@code 0} if
+	 *         it is the same and positive if it is greater than the other
+	 *         interval.
+	 */
+	private int compare(final int index, final int other) {
+		final int lowComp = Double.compare(lows[index], lows[other]);
+		if (lowComp != 0) {
+			return lowComp;
+		}
+		if (closedLows.get(index) != closedLows.get(other)) {
+			return closedLows.get(index) ? -1 : 1;
+		}
+		final int highComp = Double.compare(highs[index], highs[other]);
+		if (highComp == 0 && closedHighs.get(index) != closedHighs.get(other)) {
+			return closedHighs.get(index) ? 1 : -1;
+		}
+		return highComp;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < lows.length; ++i) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(get(i));
+		}
+		return sb.append(']').toString();
+	}
+}
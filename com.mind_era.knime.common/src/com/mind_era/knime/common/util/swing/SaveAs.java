@@ -14,7 +14,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 import javax.annotation.Nullable;
@@ -70,6 +69,48 @@ public abstract class SaveAs extends AbstractAction {
 		}
 	}
 
+	/**
+	 * Saves {@code component} to {@code file} without any dialog. The
+	 * component is painted with its current size, so it does not have to be
+	 * shown, and this method can be called outside of the event dispatch
+	 * thread if nothing else uses the {@code component}.
+	 * 
+	 * @param component
+	 *            The component to save.
+	 * @param file
+	 *            The file to write (the extension of {@code type} is added if
+	 *            missing).
+	 * @param type
+	 *            Type of the result image.
+	 * @return The written {@link File}.
+	 * @throws IOException
+	 *             If the image could not be written, or the libraries
+	 *             necessary for the {@code type} are not available.
+	 */
+	public static File saveImage(final JComponent component, final File file,
+			final ImageType type) throws IOException {
+		final File selectedFile = addMissingExtension(file, type
+				.getExtensions()[0]);
+		switch (type) {
+		case png:
+			writePng(component, selectedFile);
+			break;
+		case svg:
+			try {
+				writeSvg(component, selectedFile);
+			} catch (final ReflectiveOperationException e) {
+				throw new IOException(
+						"The Apache Batik SVG Generation or the Apache Batik DOM extension is not installed: "
+								+ e.getMessage(), e);
+			}
+			break;
+		default:
+			throw new UnsupportedOperationException(
+					"Saving not supported to format: " + type);
+		}
+		return selectedFile;
+	}
+
 	/**
 	 * @param parent
 	 *            Parent component (for file chooser).
@@ -170,7 +211,7 @@ public abstract class SaveAs extends AbstractAction {
 	 * @return A {@link File} with the given {@code extension} and same
 	 *         path/name as {@code selectedFile}.
 	 */
-	private File addMissingExtension(final File selectedFile,
+	public static File addMissingExtension(final File selectedFile,
 			final String extension) {
 		return selectedFile.getName().toLowerCase().endsWith(
 				extension.toLowerCase()) ? selectedFile : new File(selectedFile
@@ -194,6 +235,88 @@ public abstract class SaveAs extends AbstractAction {
 		return fileChooser;
 	}
 
+	/**
+	 * Paints {@code component} with its children. The components not shown
+	 * (like the off-screen ones) are printed, as
+	 * {@link Component#paintAll(java.awt.Graphics)} paints only the showing
+	 * components.
+	 * 
+	 * @param component
+	 *            The component to paint.
+	 * @param g
+	 *            The {@link Graphics2D} to paint on.
+	 */
+	private static void paint(final JComponent component, final Graphics2D g) {
+		if (component.isShowing()) {
+			component.paintAll(g);
+		} else {
+			component.printAll(g);
+		}
+	}
+
+	private static void writePng(final JComponent component,
+			final File selectedFile) throws IOException {
+		final BufferedImage bi = new BufferedImage(component.getWidth(),
+				component.getHeight(), ColorSpace.TYPE_RGB);
+		final Graphics2D g = bi.createGraphics();
+		try {
+			g.setColor(Color.BLACK);
+			g.setBackground(Color.WHITE);
+			g.setClip(0, 0, component.getWidth(), component.getHeight());
+			paint(component, g);
+		} finally {
+			g.dispose();
+		}
+		ImageIO.write(bi, "png", selectedFile);
+	}
+
+	private static void writeSvg(final JComponent component,
+			final File selectedFile) throws IOException,
+			ReflectiveOperationException {
+		final Class<?> SVGGraphics2DClass = Class
+				.forName("org.apache.batik.svggen.SVGGraphics2D");
+		final Class<?> domImplClass = Class
+				.forName("org.apache.batik.dom.GenericDOMImplementation");
+		final Method getDomImplMethod = domImplClass
+				.getMethod("getDOMImplementation");
+		final DOMImplementation domImpl = (DOMImplementation) getDomImplMethod
+				.invoke(null);
+		// Create an instance of org.w3c.dom.Document.
+		final String svgNS = "http://www.w3.org/2000/svg";
+		final Document document = domImpl.createDocument(svgNS, "svg", null);
+
+		// Create an instance of the SVG Generator.
+		final Graphics2D svgGenerator = (Graphics2D) SVGGraphics2DClass
+				.getConstructor(Document.class).newInstance(document);
+		svgGenerator.setColor(Color.BLACK);
+		svgGenerator.setBackground(Color.WHITE);
+		svgGenerator.setClip(0, 0, component.getWidth(), component
+				.getHeight());
+
+		// Ask the test to render into the SVG Graphics2D
+		// implementation.
+		paint(component, svgGenerator);
+
+		// Finally, stream out SVG to the standard output using
+		// UTF-8 encoding.
+		final boolean useCSS = true; // we want to use CSS style
+		// attributes
+		final Method stream = SVGGraphics2DClass.getMethod("stream",
+				Writer.class, boolean.class);
+		final FileOutputStream fos = new FileOutputStream(selectedFile);
+		try {
+			final Writer out = new OutputStreamWriter(fos, "UTF-8");
+			try {
+				stream.invoke(svgGenerator, out, useCSS);
+				// svgGenerator.stream(out, useCSS);
+			} finally {
+				out.close();
+			}
+		} finally {
+			fos.close();
+		}
+	}
+
 	private static final class PngSaveAs extends SaveAs {
 		private static final long serialVersionUID = 4335469648086107939L;
 
@@ -205,15 +328,8 @@ public abstract class SaveAs extends AbstractAction {
 		@Override
 		protected void saveToFile(final JComponent component,
 				final File selectedFile) {
-			final BufferedImage bi = new BufferedImage(component.getWidth(),
-					component.getHeight(), ColorSpace.TYPE_RGB);
-			final Graphics2D g = bi.createGraphics();
-			g.setColor(Color.BLACK);
-			g.setBackground(Color.WHITE);
-			g.setClip(0, 0, component.getWidth(), component.getHeight());
-			component.paintAll(g);
 			try {
-				ImageIO.write(bi, "png", selectedFile);
+				writePng(component, selectedFile);
 			} catch (final IOException e1) {
 				throw new RuntimeException(e1);
 			}
@@ -233,64 +349,13 @@ public abstract class SaveAs extends AbstractAction {
 		protected void saveToFile(final JComponent component,
 				final File selectedFile) {
 			try {
-				final Class<?> SVGGraphics2DClass = Class
-						.forName("org.apache.batik.svggen.SVGGraphics2D");
-				final Class<?> domImplClass = Class
-						.forName("org.apache.batik.dom.GenericDOMImplementation");
-				final Method getDomImplMethod = domImplClass
-						.getMethod("getDOMImplementation");
-				final DOMImplementation domImpl = (DOMImplementation) getDomImplMethod
-						.invoke(null);
-				// Create an instance of org.w3c.dom.Document.
-				final String svgNS = "http://www.w3.org/2000/svg";
-				final Document document = domImpl.createDocument(svgNS, "svg",
-						null);
-
-				// Create an instance of the SVG Generator.
-				final Graphics2D svgGenerator = (Graphics2D) SVGGraphics2DClass
-						.getConstructor(Document.class).newInstance(document);
-				svgGenerator.setColor(Color.BLACK);
-				svgGenerator.setBackground(Color.WHITE);
-				svgGenerator.setClip(0, 0, component.getWidth(), component
-						.getHeight());
-
-				// Ask the test to render into the SVG Graphics2D
-				// implementation.
-				component.paintAll(svgGenerator);
-
-				// Finally, stream out SVG to the standard output using
-				// UTF-8 encoding.
-				final boolean useCSS = true; // we want to use CSS style
-				// attributes
-				final Method stream = SVGGraphics2DClass.getMethod("stream",
-						Writer.class, boolean.class);
-				final FileOutputStream fos = new FileOutputStream(selectedFile);
-				try {
-					final Writer out = new OutputStreamWriter(fos, "UTF-8");
-					try {
-						stream.invoke(svgGenerator, out, useCSS);
-						// svgGenerator.stream(out, useCSS);
-					} finally {
-						out.close();
-					}
-				} finally {
-					fos.close();
-				}
-			} catch (final IllegalArgumentException e) {
-				handleMissingBatik();
-			} catch (final IllegalAccessException e) {
+				writeSvg(component, selectedFile);
+			} catch (final ReflectiveOperationException e) {
 				handleMissingBatik();
-
-			} catch (final InvocationTargetException e) {
+			} catch (final IllegalArgumentException e) {
 				handleMissingBatik();
 			} catch (final SecurityException e) {
 				handleMissingBatik();
-			} catch (final NoSuchMethodException e) {
-				handleMissingBatik();
-			} catch (final InstantiationException e) {
-				handleMissingBatik();
-			} catch (final ClassNotFoundException e) {
-				handleMissingBatik();
 			} catch (final IOException e) {
 				JOptionPane.showMessageDialog(super.component,
 						"Failed to save file: " + e.getMessage(),
@@ -25,6 +25,30 @@ public interface ColourComputer {
 	 */
 	public Color compute(double val);
 
+	/**
+	 * Computes the colours for all {@code values} as packed ARGB values (like
+	 * {@link Color#getRGB()}), these can be written directly to the raster of
+	 * an image.
+	 * 
+	 * @param values
+	 *            Some {@code double} values.
+	 * @param argbOut
+	 *            The ARGB value of the {@link Color} belonging to
+	 *            {@code values[i]} is stored at {@code argbOut[i]}. It must be
+	 *            at least as long as {@code values}.
+	 * @throws IllegalArgumentException
+	 *             If {@code argbOut} is shorter than {@code values}.
+	 */
+	public default void computeAll(final double[] values, final int[] argbOut) {
+		if (argbOut.length < values.length) {
+			throw new IllegalArgumentException("Too short output: "
+					+ argbOut.length + " < " + values.length);
+		}
+		for (int i = values.length; i-- > 0;) {
+			argbOut[i] = compute(values[i]).getRGB();
+		}
+	}
+
 	/**
 	 * @return The tooltip for that {@link ColourComputer}.
 	 */
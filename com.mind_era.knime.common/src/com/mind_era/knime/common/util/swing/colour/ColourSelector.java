@@ -227,12 +227,128 @@ public class ColourSelector extends JPanel implements HasMetaModel {
 			return null;
 		}
 
+		/**
+		 * @return A new {@link ColourModel} with the same
+		 *         {@link ColourComputer}s (but without the listeners).
+		 */
+		public ColourModel copy() {
+			final ColourModel ret = new ColourModel();
+			for (final Entry<String, Map<StatTypes, ColourComputer>> entry : models
+					.entrySet()) {
+				ret.models.put(entry.getKey(),
+						new EnumMap<StatTypes, ColourComputer>(entry.getValue()));
+			}
+			return ret;
+		}
+
 		/**
 		 * Sends an {@link ActionEvent} to the listeners of this model.
 		 */
 		public void notifyListeners() {
 			fireModelChanged();
 		}
+
+		/**
+		 * Adds the default {@link ColourComputer}s (based on the colour
+		 * preferences and the {@code ranges}) for the {@code parameters} and
+		 * {@code stats} without a {@link ColourComputer}. It does not notify
+		 * the listeners.
+		 * 
+		 * @param parameters
+		 *            Some parameter names.
+		 * @param stats
+		 *            Some {@link StatTypes}.
+		 * @param ranges
+		 *            The ranges of the parameter/statistics.
+		 */
+		public void addDefaultModels(final Iterable<String> parameters,
+				final Iterable<StatTypes> stats,
+				final Map<String, Map<StatTypes, Map<RangeType, Double>>> ranges) {
+			final Color defaultLowColor = ComplexModelFactory
+					.getColour(ColourPreferenceConstants.DOWN_COLOUR);
+			final Color defaultMiddleColor = ComplexModelFactory
+					.getColour(ColourPreferenceConstants.MIDDLE_COLOUR);
+			final Color defaultHighColor = ComplexModelFactory
+					.getColour(ColourPreferenceConstants.UP_COLOUR);
+			for (final String parameter : parameters) {
+				if (!models.containsKey(parameter)) {
+					models.put(parameter, new EnumMap<StatTypes, ColourComputer>(
+							StatTypes.class));
+				}
+				final Map<StatTypes, ColourComputer> map = models.get(parameter);
+				for (final StatTypes stat : stats) {
+					if (!map.containsKey(stat)) {
+						final Map<StatTypes, Map<RangeType, Double>> possMap = ranges
+								.get(parameter);
+						if (possMap == null || !possMap.containsKey(stat)) {
+							map.put(stat,
+							// DEFAULT_MODEL
+									new ComplexModelFactory().getDefaultModel());
+						} else {
+							final Map<RangeType, Double> rangeMap = possMap
+									.get(stat);
+							final Double defaultLowValue = rangeMap
+									.get(Displayable.Util
+											.findByDisplayText(
+													KNIMECommonActivator
+															.getInstance()
+															.getPreferenceStore()
+															.getString(
+																	ColourPreferenceConstants.DOWN_VALUE),
+													RangeType.values()));
+							final Double defaultMiddleValue = rangeMap
+									.get(Displayable.Util
+											.findByDisplayText(
+													KNIMECommonActivator
+															.getInstance()
+															.getPreferenceStore()
+															.getString(
+																	ColourPreferenceConstants.MIDDLE_VALUE),
+													RangeType.values()));
+							final Double defaultHighValue = rangeMap
+									.get(Displayable.Util
+											.findByDisplayText(
+													KNIMECommonActivator
+															.getInstance()
+															.getPreferenceStore()
+															.getString(
+																	ColourPreferenceConstants.UP_VALUE),
+													RangeType.values()));
+							final Map<Interval<Double>, Pair<Color, Color>> conts = new TreeMap<Interval<Double>, Pair<Color, Color>>();
+							final Map<Interval<Double>, Color> discs = new TreeMap<Interval<Double>, Color>();
+							conts
+									.put(
+											defaultLowValue == null
+													|| defaultMiddleValue == null ? new DefaultInterval<Double>(
+													ColourSelector.DEFAULT_LOW,
+													ColourSelector.DEFAULT_MID,
+													true, false)
+													: new DefaultInterval<Double>(
+															defaultLowValue,
+															defaultMiddleValue,
+															true, false),
+											new Pair<Color, Color>(defaultLowColor,
+													defaultMiddleColor));
+							conts
+									.put(
+											defaultHighValue == null
+													|| defaultMiddleValue == null ? new DefaultInterval<Double>(
+													ColourSelector.DEFAULT_MID,
+													ColourSelector.DEFAULT_HIGH,
+													true, false)
+													: new DefaultInterval<Double>(
+															defaultMiddleValue,
+															defaultHighValue, true,
+															false),
+											new Pair<Color, Color>(
+													defaultMiddleColor,
+													defaultHighColor));
+							map.put(stat, new ComplexModel(conts, discs));
+						}
+					}
+				}
+			}
+		}
 	}
 
 	/**
@@ -1258,12 +1374,6 @@ public class ColourSelector extends JPanel implements HasMetaModel {
 		doublePanel.removeAll();
 		final JPanel titles = new JPanel();
 		titles.setLayout(new GridLayout(1, 0));
-		final Color defaultLowColor = ComplexModelFactory
-				.getColour(ColourPreferenceConstants.DOWN_COLOUR);
-		final Color defaultMiddleColor = ComplexModelFactory
-				.getColour(ColourPreferenceConstants.MIDDLE_COLOUR);
-		final Color defaultHighColor = ComplexModelFactory
-				.getColour(ColourPreferenceConstants.UP_COLOUR);
 		// titles.add(new JLabel("Statistics"));
 		// titles.add(new JLabel(""));
 		titles.add(new JButton(new Line.GeneralSetter(connectNeighbours, this,
@@ -1291,86 +1401,7 @@ public class ColourSelector extends JPanel implements HasMetaModel {
 			titles.add(new JLabel(parameter));
 		}
 		doublePanel.add(titles);
-		for (final String parameter : parameters) {
-			if (!model.models.containsKey(parameter)) {
-				model.models
-						.put(parameter, new EnumMap<StatTypes, ColourComputer>(
-								StatTypes.class));
-			}
-			final Map<StatTypes, ColourComputer> map = model.models
-					.get(parameter);
-			for (final StatTypes stat : stats) {
-				if (!map.containsKey(stat)) {
-					final Map<StatTypes, Map<RangeType, Double>> possMap = ranges
-							.get(parameter);
-					if (possMap == null || !possMap.containsKey(stat)) {
-						map.put(stat,
-						// DEFAULT_MODEL
-								new ComplexModelFactory().getDefaultModel());
-					} else {
-						final Map<RangeType, Double> rangeMap = possMap
-								.get(stat);
-						final Double defaultLowValue = rangeMap
-								.get(Displayable.Util
-										.findByDisplayText(
-												KNIMECommonActivator
-														.getInstance()
-														.getPreferenceStore()
-														.getString(
-																ColourPreferenceConstants.DOWN_VALUE),
-												RangeType.values()));
-						final Double defaultMiddleValue = rangeMap
-								.get(Displayable.Util
-										.findByDisplayText(
-												KNIMECommonActivator
-														.getInstance()
-														.getPreferenceStore()
-														.getString(
-																ColourPreferenceConstants.MIDDLE_VALUE),
-												RangeType.values()));
-						final Double defaultHighValue = rangeMap
-								.get(Displayable.Util
-										.findByDisplayText(
-												KNIMECommonActivator
-														.getInstance()
-														.getPreferenceStore()
-														.getString(
-																ColourPreferenceConstants.UP_VALUE),
-												RangeType.values()));
-						final Map<Interval<Double>, Pair<Color, Color>> conts = new TreeMap<Interval<Double>, Pair<Color, Color>>();
-						final Map<Interval<Double>, Color> discs = new TreeMap<Interval<Double>, Color>();
-						conts
-								.put(
-										defaultLowValue == null
-												|| defaultMiddleValue == null ? new DefaultInterval<Double>(
-												ColourSelector.DEFAULT_LOW,
-												ColourSelector.DEFAULT_MID,
-												true, false)
-												: new DefaultInterval<Double>(
-														defaultLowValue,
-														defaultMiddleValue,
-														true, false),
-										new Pair<Color, Color>(defaultLowColor,
-												defaultMiddleColor));
-						conts
-								.put(
-										defaultHighValue == null
-												|| defaultMiddleValue == null ? new DefaultInterval<Double>(
-												ColourSelector.DEFAULT_MID,
-												ColourSelector.DEFAULT_HIGH,
-												true, false)
-												: new DefaultInterval<Double>(
-														defaultMiddleValue,
-														defaultHighValue, true,
-														false),
-										new Pair<Color, Color>(
-												defaultMiddleColor,
-												defaultHighColor));
-						map.put(stat, new ComplexModel(conts, discs));
-					}
-				}
-			}
-		}
+		model.addDefaultModels(parameters, stats, ranges);
 		for (final StatTypes stat : stats) {
 			if (!stat.isDiscrete()) {
 				doublePanel.add(new Line(this, stat, parameters,
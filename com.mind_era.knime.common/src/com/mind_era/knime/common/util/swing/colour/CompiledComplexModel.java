@@ -0,0 +1,324 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util.swing.colour;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.SortedSet;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+
+import com.mind_era.knime.common.util.VisualUtils;
+import com.mind_era.knime.common.util.interval.DoubleIntervalSet;
+
+/**
+ * The compiled form of a {@link ComplexModel}. The boundaries of the
+ * intervals are kept in a sorted {@code double} array, the colours of the
+ * boundaries and the way of computing the colours between two consecutive
+ * boundaries are precomputed, and the gradients are sampled to lookup tables.
+ * So {@link #compute(double)} does not allocate, it is a binary search and
+ * (for the gradients) a table lookup.
+ * <p>
+ * A {@link ComplexModel} is immutable, so its compiled form does not have to
+ * be updated, the changed models are new {@link ComplexModel}s.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+final class CompiledComplexModel {
+	/** The number of steps in the lookup table of a gradient. */
+	static final int STEPS = 4096;
+
+	private final ComplexModel model;
+	/** The boundaries of the intervals, in ascending order. */
+	private final double[] bounds;
+	/**
+	 * The colours of the {@link #bounds}, {@code null} elements are computed
+	 * by the {@link #model}.
+	 */
+	private final Color[] boundColours;
+	/**
+	 * The colours between the {@link #bounds}, the {@code i}th is before the
+	 * {@code i}th bound, the last is after the last bound.
+	 */
+	private final Region[] regions;
+
+	/**
+	 * Computes the colours between two consecutive boundaries.
+	 */
+	private static abstract class Region {
+		/**
+		 * @param val
+		 *            A value within the region.
+		 * @return The colour of {@code val}.
+		 */
+		abstract Color colour(double val);
+	}
+
+	/**
+	 * A region with a single colour.
+	 */
+	private static final class Constant extends Region {
+		private final Color colour;
+
+		Constant(final Color colour) {
+			super();
+			this.colour = colour;
+		}
+
+		@Override
+		Color colour(final double val) {
+			return colour;
+		}
+	}
+
+	/**
+	 * A region within a (linear) gradient, the colours are looked up from the
+	 * sampled gradient.
+	 */
+	private static final class Gradient extends Region {
+		private final double low;
+		private final double scale;
+		private final Color[] lut = new Color[STEPS + 1];
+
+		Gradient(final double low, final double high, final Color start,
+				final Color end) {
+			super();
+			this.low = low;
+			this.scale = STEPS / (high - low);
+			for (int i = STEPS + 1; i-- > 0;) {
+				lut[i] = VisualUtils.colourOf(low + i * (high - low) / STEPS,
+						start, null, end, low, Double.NaN, high);
+			}
+		}
+
+		@Override
+		Color colour(final double val) {
+			return lut[Math.max(0, Math.min(STEPS,
+					(int) ((val - low) * scale + .5)))];
+		}
+	}
+
+	/**
+	 * A region between two gradients, the colour of the nearer end is used.
+	 */
+	private static final class Nearest extends Region {
+		private final double lowerHigh;
+		private final double higherLow;
+		private final Color lower;
+		private final Color higher;
+
+		Nearest(final double lowerHigh, final double higherLow,
+				final Color lower, final Color higher) {
+			super();
+			this.lowerHigh = lowerHigh;
+			this.higherLow = higherLow;
+			this.lower = lower;
+			this.higher = higher;
+		}
+
+		@Override
+		Color colour(final double val) {
+			return val - lowerHigh > higherLow - val ? higher : lower;
+		}
+	}
+
+	/**
+	 * A region where the colours are computed by the {@link ComplexModel}
+	 * (gradients with infinite ends).
+	 */
+	private static final class Direct extends Region {
+		private final ComplexModel model;
+
+		Direct(final ComplexModel model) {
+			super();
+			this.model = model;
+		}
+
+		@Override
+		Color colour(final double val) {
+			return model.computeDirect(val);
+		}
+	}
+
+	private CompiledComplexModel(final ComplexModel model,
+			final double[] bounds, final Color[] boundColours,
+			final Region[] regions) {
+		super();
+		this.model = model;
+		this.bounds = bounds;
+		this.boundColours = boundColours;
+		this.regions = regions;
+	}
+
+	/**
+	 * Compiles {@code model}.
+	 *
+	 * @param model
+	 *            A {@link ComplexModel}.
+	 * @return The compiled form of {@code model}.
+	 */
+	static CompiledComplexModel compile(final ComplexModel model) {
+		final SortedSet<Double> values = model.getValues();
+		final double[] bounds = new double[values.size()];
+		final Color[] boundColours = new Color[bounds.length];
+		int i = 0;
+		for (final Double value : values) {
+			bounds[i] = value.doubleValue();
+			try {
+				boundColours[i] = model.computeDirect(bounds[i]);
+			} catch (final IllegalArgumentException e) {
+				// Invalid colour at an infinite end, computed on demand.
+				boundColours[i] = null;
+			}
+			++i;
+		}
+		final Gradient[] gradients = new Gradient[model
+				.getContinuousIntervals().size()];
+		final Region[] regions = new Region[bounds.length + 1];
+		for (int r = regions.length; r-- > 0;) {
+			regions[r] = region(model, gradients, inside(r == 0 ? Double.NEGATIVE_INFINITY : bounds[r - 1],
+							r == bounds.length ? Double.POSITIVE_INFINITY
+									: bounds[r]));
+		}
+		return new CompiledComplexModel(model, bounds, boundColours, regions);
+	}
+
+	/**
+	 * @param low
+	 *            A boundary.
+	 * @param high
+	 *            The next boundary.
+	 * @return A value between {@code low} and {@code high} (if there is any).
+	 */
+	private static double inside(final double low, final double high) {
+		if (low == Double.NEGATIVE_INFINITY) {
+			return high == Double.POSITIVE_INFINITY ? 0.0 : high
+					- Math.max(1.0, Math.abs(high));
+		}
+		if (high == Double.POSITIVE_INFINITY) {
+			return low + Math.max(1.0, Math.abs(low));
+		}
+		return low / 2 + high / 2;
+	}
+
+	/**
+	 * Selects the computation of the colours for the region of {@code val}
+	 * (the same way as {@link ComplexModel#computeDirect(double)}).
+	 *
+	 * @param model
+	 *            The {@link ComplexModel}.
+	 * @param gradients
+	 *            The already sampled gradients (by the index of the
+	 *            continuous intervals).
+	 * @param val
+	 *            A value within the region.
+	 * @return The {@link Region} of {@code val}.
+	 */
+	private static Region region(final ComplexModel model,
+			final Gradient[] gradients, final double val) {
+		final DoubleIntervalSet discretes = model.getDiscreteIntervals();
+		final DoubleIntervalSet continuouses = model.getContinuousIntervals();
+		final int discrete = discretes.stab(val);
+		if (discrete != DoubleIntervalSet.NOT_FOUND) {
+			return new Constant(model.getDiscreteColour(discrete));
+		}
+		final int continuous = continuouses.stab(val);
+		if (continuous != DoubleIntervalSet.NOT_FOUND) {
+			final double low = continuouses.getLow(continuous);
+			final double high = continuouses.getHigh(continuous);
+			if (Double.isInfinite(low) || Double.isInfinite(high)
+					|| !(low < high)) {
+				return new Direct(model);
+			}
+			if (gradients[continuous] == null) {
+				gradients[continuous] = new Gradient(low, high, model
+						.getContinuousStart(continuous), model
+						.getContinuousEnd(continuous));
+			}
+			return gradients[continuous];
+		}
+		final int higher = continuouses.higher(val);
+		final int lower = continuouses.lower(val);
+		if (lower != DoubleIntervalSet.NOT_FOUND
+				&& higher != DoubleIntervalSet.NOT_FOUND) {
+			return new Nearest(continuouses.getHigh(lower), continuouses
+					.getLow(higher), model.getContinuousEnd(lower), model
+					.getContinuousStart(higher));
+		}
+		return new Constant(model.computeDirect(val));
+	}
+
+	/**
+	 * Computes the same {@link Color} as {@link ComplexModel#compute(double)}
+	 * (the gradients with {@link #STEPS} resolution).
+	 *
+	 * @param val
+	 *            A {@code double} value.
+	 * @return The {@link Color} belonging to {@code val}.
+	 */
+	Color compute(final double val) {
+		if (Double.isNaN(val)) {
+			return model.computeDirect(val);
+		}
+		final int pos = Arrays.binarySearch(bounds, val);
+		if (pos >= 0) {
+			final Color colour = boundColours[pos];
+			return colour == null ? model.computeDirect(val) : colour;
+		}
+		return regions[-pos - 1].colour(val);
+	}
+
+	/**
+	 * Computes the ARGB values of the {@link #compute(double) colours} of
+	 * {@code values}.
+	 * <p>
+	 * The position of the previous value is reused: if a value is strictly
+	 * between the same boundaries (the neighbouring wells usually are), its
+	 * region is selected without the binary search. The ARGB value of the
+	 * previous colour is reused too when the same {@link Color} is computed.
+	 *
+	 * @param values
+	 *            Some {@code double} values.
+	 * @param argbOut
+	 *            The ARGB values are stored here.
+	 */
+	void computeAll(final double[] values, final int[] argbOut) {
+		// The previous region is between these (exclusive) boundaries.
+		double low = Double.NaN, high = Double.NaN;
+		Region region = null;
+		Color previous = null;
+		int previousArgb = 0;
+		for (int i = 0; i < values.length; ++i) {
+			final double val = values[i];
+			final Color colour;
+			if (val > low && val < high) {
+				colour = region.colour(val);
+			} else if (Double.isNaN(val)) {
+				colour = model.computeDirect(val);
+			} else {
+				final int pos = Arrays.binarySearch(bounds, val);
+				if (pos >= 0) {
+					final Color boundColour = boundColours[pos];
+					colour = boundColour == null ? model.computeDirect(val)
+							: boundColour;
+				} else {
+					final int r = -pos - 1;
+					region = regions[r];
+					low = r == 0 ? Double.NEGATIVE_INFINITY : bounds[r - 1];
+					high = r == bounds.length ? Double.POSITIVE_INFINITY
+							: bounds[r];
+					colour = region.colour(val);
+				}
+			}
+			if (colour != previous) {
+				previous = colour;
+				previousArgb = colour.getRGB();
+			}
+			argbOut[i] = previousArgb;
+		}
+	}
+}
@@ -7,7 +7,8 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Rectangle;
-import java.util.SortedMap;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.SortedSet;
 
 import javax.annotation.CheckReturnValue;
@@ -15,7 +16,7 @@ import javax.annotation.Nonnull;
 import javax.swing.BoxLayout;
 import javax.swing.JPanel;
 
-import com.mind_era.knime.common.util.interval.Interval;
+import com.mind_era.knime.common.util.interval.DoubleIntervalSet;
 
 /**
  * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
@@ -57,20 +58,19 @@ public class ComplexLegend extends JPanel implements ColourLegend<ComplexModel>
 				super.paintComponent(g);
 				final Rectangle bounds = getBounds();
 				final double low = ComplexSample.getOrElse(super.model
-						.getContinuouses(), true, Double.POSITIVE_INFINITY);
+						.getContinuousIntervals(), true,
+						Double.POSITIVE_INFINITY);
 				final double high = ComplexSample.getOrElse(super.model
-						.getContinuouses(), false, Double.NEGATIVE_INFINITY);
+						.getContinuousIntervals(), false,
+						Double.NEGATIVE_INFINITY);
 				final double min = Math.min(low, ComplexSample.getOrElse(
-						super.model.getDiscretes(), true,
+						super.model.getDiscreteIntervals(), true,
 						Double.POSITIVE_INFINITY));
 				final double max = Math.max(high, ComplexSample.getOrElse(
-						super.model.getDiscretes(), false,
+						super.model.getDiscreteIntervals(), false,
 						Double.NEGATIVE_INFINITY));
-				for (int i = bounds.height; i-- > 0;) {
-					g.setColor(super.model.compute(min + (max - min)
-							* (bounds.height - i) / bounds.height));
-					g.drawLine(0, i, bounds.width, i);
-				}
+				paintStrip(g, super.model, min, max, bounds.width,
+						bounds.height, true);
 			}
 
 		}
@@ -89,21 +89,61 @@ public class ComplexLegend extends JPanel implements ColourLegend<ComplexModel>
 				super.paintComponent(g);
 				final Rectangle bounds = getBounds();
 				final double low = ComplexSample.getOrElse(super.model
-						.getContinuouses(), true, Double.POSITIVE_INFINITY);
+						.getContinuousIntervals(), true,
+						Double.POSITIVE_INFINITY);
 				final double high = ComplexSample.getOrElse(super.model
-						.getContinuouses(), false, Double.NEGATIVE_INFINITY);
+						.getContinuousIntervals(), false,
+						Double.NEGATIVE_INFINITY);
 				final double min = Math.min(low, ComplexSample.getOrElse(
-						super.model.getDiscretes(), true,
+						super.model.getDiscreteIntervals(), true,
 						Double.POSITIVE_INFINITY));
 				final double max = Math.max(high, ComplexSample.getOrElse(
-						super.model.getDiscretes(), false,
+						super.model.getDiscreteIntervals(), false,
 						Double.NEGATIVE_INFINITY));
-				for (int i = bounds.width; i-- > 0;) {
-					g.setColor(super.model.compute(min + (max - min)
-							* (bounds.width - i) / bounds.width));
-					g.drawLine(i, 0, i, bounds.height);
-				}
+				paintStrip(g, super.model, min, max, bounds.width,
+						bounds.height, false);
+			}
+		}
+
+		/**
+		 * Paints the colours of equidistant values from {@code max} (at the
+		 * beginning) to {@code min} (at the end) with one value per pixel.
+		 * The colours are {@link ColourComputer#computeAll(double[], int[])
+		 * computed} to the raster of a single pixel wide image.
+		 * 
+		 * @param g
+		 *            The {@link Graphics} to paint on.
+		 * @param model
+		 *            The {@link ComplexModel}.
+		 * @param min
+		 *            The lowest value.
+		 * @param max
+		 *            The highest value.
+		 * @param width
+		 *            The width of the painted area.
+		 * @param height
+		 *            The height of the painted area.
+		 * @param isVertical
+		 *            The values change vertically ({@code true}), or
+		 *            horizontally ({@code false}).
+		 */
+		protected static void paintStrip(final Graphics g,
+				final ComplexModel model, final double min, final double max,
+				final int width, final int height, final boolean isVertical) {
+			final int length = isVertical ? height : width;
+			if (width <= 0 || height <= 0) {
+				return;
+			}
+			final double[] values = new double[length];
+			for (int i = length; i-- > 0;) {
+				values[i] = min + (max - min) * (length - i) / length;
 			}
+			final BufferedImage image = new BufferedImage(isVertical ? 1
+					: length, isVertical ? length : 1,
+					BufferedImage.TYPE_INT_ARGB);
+			model.computeAll(values, ((DataBufferInt) image.getRaster()
+					.getDataBuffer()).getData());
+			g.drawImage(image, 0, 0, width, height, null);
 		}
 
 		/**
@@ -117,20 +157,20 @@ public class ComplexLegend extends JPanel implements ColourLegend<ComplexModel>
 		}
 
 		/**
-		 * @param sortedMap
-		 *            A {@link SortedMap} with {@link Interval} keys.
+		 * @param intervals
+		 *            A {@link DoubleIntervalSet}.
 		 * @param low
 		 *            The lowest value, or the highest is interesting?
 		 * @param elseVal
-		 *            If the {@code sortedMap} is empty this will be returned.
-		 * @return The lowest or the highest value from {@code sortedMap} (or
-		 *         {@code elseVal} if not exists).
+		 *            If the {@code intervals} is empty this will be returned.
+		 * @return The low end of the first, or the high end of the last
+		 *         interval from {@code intervals} (or {@code elseVal} if not
+		 *         exists).
 		 */
-		protected static double getOrElse(
-				final SortedMap<Interval<Double>, ?> sortedMap,
+		protected static double getOrElse(final DoubleIntervalSet intervals,
 				final boolean low, final double elseVal) {
-			return sortedMap.isEmpty() ? elseVal : low ? sortedMap.firstKey()
-					.getLow() : sortedMap.lastKey().getHigh();
+			return intervals.size() == 0 ? elseVal : low ? intervals
+					.getLow(0) : intervals.getHigh(intervals.size() - 1);
 		}
 	}
 
@@ -4,6 +4,8 @@
 package com.mind_era.knime.common.util.swing.colour;
 
 import java.awt.Color;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.Map;
@@ -21,8 +23,8 @@ import javax.annotation.Nullable;
 import org.knime.core.util.Pair;
 
 import com.mind_era.knime.common.util.VisualUtils;
+import com.mind_era.knime.common.util.interval.DoubleIntervalSet;
 import com.mind_era.knime.common.util.interval.Interval;
-import com.mind_era.knime.common.util.interval.Interval.DefaultInterval;
 
 /**
  * A colour model allowing to have multiple intermediate values as constant
@@ -37,6 +39,19 @@ public class ComplexModel implements ColourComputer, Serializable {
 
 	private final NavigableMap<Interval<Double>, Color> discretes;
 	private final NavigableMap<Interval<Double>, Pair<Color, Color>> continuouses;
+	/** The compiled form of the model, created on first use. */
+	@Nullable
+	private transient volatile CompiledComplexModel compiled;
+	/** The keys of {@link #discretes}. */
+	private transient DoubleIntervalSet discreteIntervals;
+	/** The colours of the {@link #discreteIntervals}. */
+	private transient Color[] discreteColours;
+	/** The keys of {@link #continuouses}. */
+	private transient DoubleIntervalSet continuousIntervals;
+	/** The colours at the low end of the {@link #continuousIntervals}. */
+	private transient Color[] continuousStarts;
+	/** The colours at the high end of the {@link #continuousIntervals}. */
+	private transient Color[] continuousEnds;
 
 	/**
 	 * Constructs a {@link ComplexModel}.
@@ -52,92 +67,111 @@ public class ComplexModel implements ColourComputer, Serializable {
 		this.continuouses = new TreeMap<Interval<Double>, Pair<Color, Color>>(
 				continuouses);
 		this.discretes = new TreeMap<Interval<Double>, Color>(discretes);
+		index();
+	}
+
+	/**
+	 * Creates the {@link DoubleIntervalSet}s of the intervals.
+	 */
+	private void index() {
+		discreteIntervals = new DoubleIntervalSet(discretes.keySet());
+		discreteColours = discretes.values().toArray(
+				new Color[discretes.size()]);
+		continuousIntervals = new DoubleIntervalSet(continuouses.keySet());
+		continuousStarts = new Color[continuouses.size()];
+		continuousEnds = new Color[continuouses.size()];
+		int i = 0;
+		for (final Pair<Color, Color> colours : continuouses.values()) {
+			continuousStarts[i] = colours.getFirst();
+			continuousEnds[i] = colours.getSecond();
+			++i;
+		}
 	}
 
+	private void readObject(final ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		index();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The model is {@link CompiledComplexModel compiled} on the first call,
+	 * the gradients are approximated with {@value CompiledComplexModel#STEPS}
+	 * steps.
+	 */
 	@Override
 	public Color compute(final double val) {
-		final Double dval = Double.valueOf(val);
-		final DefaultInterval<Double> valInterval = new DefaultInterval<Double>(
-				dval, dval, true, true);
-		final Entry<Interval<Double>, Color> discreteEntry = selectEntry(dval,
-				valInterval, discretes);
-		if (discreteEntry != null) {
-			return discreteEntry.getValue();
+		return compiled().compute(val);
+	}
+
+	@Override
+	public void computeAll(final double[] values, final int[] argbOut) {
+		if (argbOut.length < values.length) {
+			throw new IllegalArgumentException("Too short output: "
+					+ argbOut.length + " < " + values.length);
 		}
-		final Entry<Interval<Double>, Pair<Color, Color>> continuousEntry = selectEntry(
-				dval, valInterval, continuouses);
-		if (continuousEntry != null) {
-			return VisualUtils.colourOf(val, continuousEntry.getValue()
-					.getFirst(), null, continuousEntry.getValue().getSecond(),
-					continuousEntry.getKey().getLow().doubleValue(),
-					Double.NaN, continuousEntry.getKey().getHigh()
-							.doubleValue());
-		} else {
-			final Entry<Interval<Double>, Pair<Color, Color>> higherEntry = continuouses
-					.higherEntry(valInterval);
-			final Entry<Interval<Double>, Pair<Color, Color>> lowerEntry = continuouses
-					.lowerEntry(valInterval);
-			if (lowerEntry != null && higherEntry != null) {
-				return val - lowerEntry.getKey().getHigh().doubleValue() > higherEntry
-						.getKey().getLow()
-						- val ? higherEntry.getValue().getFirst() : lowerEntry
-						.getValue().getSecond();
-			}
-			if (lowerEntry == null && higherEntry != null) {
-				return higherEntry.getValue().getFirst();
-			}
-			if (higherEntry == null && lowerEntry != null) {
-				return lowerEntry.getValue().getSecond();
-			}
-			final Entry<Interval<Double>, Color> higherEntryDisc = discretes
-					.higherEntry(valInterval);
-			final Entry<Interval<Double>, Color> lowerEntryDisc = discretes
-					.lowerEntry(valInterval);
-			if (higherEntryDisc != null && lowerEntryDisc != null) {
-				// Do nothing, in the middle parts we do not want colour things.
-			} else if (higherEntryDisc != null) {
-				return higherEntryDisc.getValue();
-			} else if (lowerEntryDisc != null) {
-				return lowerEntryDisc.getValue();
-			}
+		compiled().computeAll(values, argbOut);
+	}
+
+	/**
+	 * @return The compiled form of the model, it is compiled on the first
+	 *         call.
+	 */
+	private CompiledComplexModel compiled() {
+		CompiledComplexModel ret = compiled;
+		if (ret == null) {
+			ret = CompiledComplexModel.compile(this);
+			compiled = ret;
 		}
-		return Color.BLACK;
+		return ret;
 	}
 
 	/**
-	 * Selects the proper entry from {@code map} belonging to {@code val,
-	 * valInterval}, or {@code null} if none found.
+	 * Computes the {@link Color} for {@code val} without the compiled form.
 	 * 
-	 * @param <ValType>
-	 *            The value type of {@code map}.
 	 * @param val
-	 *            The value to find.
-	 * @param valInterval
-	 *            The same as {@code val}, but as an {@link Interval}.
-	 * @param map
-	 *            A {@link Map}.
-	 * @return The found {@link Interval} and value, or {@code null}.
+	 *            A {@code double} value.
+	 * @return The {@link Color} belonging to {@code val}.
 	 */
-	@Nullable
-	private <ValType> Entry<Interval<Double>, ValType> selectEntry(
-			final Double val, final DefaultInterval<Double> valInterval,
-			final NavigableMap<Interval<Double>, ValType> map) {
-		final Entry<Interval<Double>, ValType> higher = map
-				.higherEntry(valInterval);
-		final Entry<Interval<Double>, ValType> lower = map
-				.lowerEntry(valInterval);
-		final boolean hasResult = higher != null
-				&& higher.getKey().contains(val) || lower != null
-				&& lower.getKey().contains(val);
-
-		if (hasResult) {
-			if (lower != null && lower.getKey().contains(val)) {
-				return lower;
-			}
-			assert higher != null;
-			return higher.getKey().contains(val) ? higher : null;
+	protected Color computeDirect(final double val) {
+		final int discrete = discreteIntervals.stab(val);
+		if (discrete != DoubleIntervalSet.NOT_FOUND) {
+			return discreteColours[discrete];
+		}
+		final int continuous = continuousIntervals.stab(val);
+		if (continuous != DoubleIntervalSet.NOT_FOUND) {
+			return VisualUtils.colourOf(val, continuousStarts[continuous],
+					null, continuousEnds[continuous], continuousIntervals
+							.getLow(continuous), Double.NaN,
+					continuousIntervals.getHigh(continuous));
+		}
+		final int higher = continuousIntervals.higher(val);
+		final int lower = continuousIntervals.lower(val);
+		if (lower != DoubleIntervalSet.NOT_FOUND
+				&& higher != DoubleIntervalSet.NOT_FOUND) {
+			return val - continuousIntervals.getHigh(lower) > continuousIntervals
+					.getLow(higher)
+					- val ? continuousStarts[higher] : continuousEnds[lower];
+		}
+		if (higher != DoubleIntervalSet.NOT_FOUND) {
+			return continuousStarts[higher];
 		}
-		return null;
+		if (lower != DoubleIntervalSet.NOT_FOUND) {
+			return continuousEnds[lower];
+		}
+		final int higherDisc = discreteIntervals.higher(val);
+		final int lowerDisc = discreteIntervals.lower(val);
+		if (higherDisc != DoubleIntervalSet.NOT_FOUND
+				&& lowerDisc != DoubleIntervalSet.NOT_FOUND) {
+			// Do nothing, in the middle parts we do not want colour things.
+		} else if (higherDisc != DoubleIntervalSet.NOT_FOUND) {
+			return discreteColours[higherDisc];
+		} else if (lowerDisc != DoubleIntervalSet.NOT_FOUND) {
+			return discreteColours[lowerDisc];
+		}
+		return Color.BLACK;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -196,19 +230,65 @@ public class ComplexModel implements ColourComputer, Serializable {
 		return Collections.unmodifiableSortedMap(discretes);
 	}
 
+	/**
+	 * @return The intervals with linear gradient change (in the order of
+	 *         {@link #getContinuouses()}).
+	 */
+	protected DoubleIntervalSet getContinuousIntervals() {
+		return continuousIntervals;
+	}
+
+	/**
+	 * @return The intervals with single colour (in the order of
+	 *         {@link #getDiscretes()}).
+	 */
+	protected DoubleIntervalSet getDiscreteIntervals() {
+		return discreteIntervals;
+	}
+
+	/**
+	 * @param index
+	 *            The index of a {@link #getDiscreteIntervals() discrete
+	 *            interval}.
+	 * @return The colour of the interval.
+	 */
+	Color getDiscreteColour(final int index) {
+		return discreteColours[index];
+	}
+
+	/**
+	 * @param index
+	 *            The index of a {@link #getContinuousIntervals() continuous
+	 *            interval}.
+	 * @return The colour at the low end of the interval.
+	 */
+	Color getContinuousStart(final int index) {
+		return continuousStarts[index];
+	}
+
+	/**
+	 * @param index
+	 *            The index of a {@link #getContinuousIntervals() continuous
+	 *            interval}.
+	 * @return The colour at the high end of the interval.
+	 */
+	Color getContinuousEnd(final int index) {
+		return continuousEnds[index];
+	}
+
 	/**
 	 * @return The values appearing in one of the intervals, in ascending order.
 	 *         (Modifiable.)
 	 */
 	protected SortedSet<Double> getValues() {
 		final SortedSet<Double> ret = new TreeSet<Double>();
-		for (final Interval<Double> interval : continuouses.keySet()) {
-			ret.add(interval.getLow());
-			ret.add(interval.getHigh());
+		for (int i = continuousIntervals.size(); i-- > 0;) {
+			ret.add(Double.valueOf(continuousIntervals.getLow(i)));
+			ret.add(Double.valueOf(continuousIntervals.getHigh(i)));
 		}
-		for (final Interval<Double> interval : discretes.keySet()) {
-			ret.add(interval.getLow());
-			ret.add(interval.getHigh());
+		for (int i = discreteIntervals.size(); i-- > 0;) {
+			ret.add(Double.valueOf(discreteIntervals.getLow(i)));
+			ret.add(Double.valueOf(discreteIntervals.getHigh(i)));
 		}
 		return ret;
 	}
@@ -0,0 +1,229 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.view;
+
+import java.awt.BorderLayout;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.Collection;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.swing.AbstractAction;
+import javax.swing.Action;
+import javax.swing.Icon;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+
+import org.knime.core.node.defaultnodesettings.DialogComponentFileChooser;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+
+import com.mind_era.knime.common.util.swing.ImageType;
+import com.mind_era.knime.common.util.swing.SaveAs;
+
+/**
+ * The base of the {@link Action}s saving images to a folder: asks the folder,
+ * the size, the format of the images and whether to ask before overwriting
+ * files, and names the files.
+ * 
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+public abstract class AbstractExportImages extends AbstractAction {
+	private static final long serialVersionUID = -2043569236818327741L;
+	private final ImageType type;
+
+	private final JCheckBox askBeforeOverwrite = new JCheckBox(
+			"Ask before overwrite", true);
+
+	private final JComboBox<ImageType> fileFormat = new JComboBox<>();
+
+	/**
+	 * @param type
+	 *            Format of images to save.
+	 */
+	public AbstractExportImages(final ImageType type) {
+		this("", type);
+	}
+
+	/**
+	 * @param name
+	 *            Name of {@link Action}.
+	 * @param type
+	 *            Format of images to save.
+	 */
+	public AbstractExportImages(final String name, final ImageType type) {
+		this(name, null, type);
+	}
+
+	/**
+	 * @param name
+	 *            Name of {@link Action}.
+	 * @param icon
+	 *            Icon of {@link Action}.
+	 * @param type
+	 *            Format of images to save.
+	 */
+	public AbstractExportImages(final String name, @Nullable final Icon icon,
+			final ImageType type) {
+		super(name, icon);
+		this.type = type;
+		for (final ImageType value : ImageType.values()) {
+			fileFormat.addItem(value);
+		}
+		fileFormat.setSelectedItem(type);
+	}
+
+	@Override
+	public void actionPerformed(final ActionEvent e) {
+		final JDialog dialog = new JDialog((Frame) null,
+				"Image export parameters", true);
+		final Container contentPane = dialog.getContentPane();
+		final SettingsModelString fileNameModel = new SettingsModelString(
+				"fileName", System.getProperty("user.home"));
+		final DialogComponentFileChooser fileChooser = new DialogComponentFileChooser(
+				fileNameModel, "", JFileChooser.SAVE_DIALOG, true, type
+						.getExtensions());
+		final JPanel controls = new JPanel();
+		controls.setLayout(new FlowLayout());
+		controls.add(fileChooser.getComponentPanel());
+		final JLabel x = new JLabel("width: ");
+		controls.add(x);
+		final JSpinner width = new JSpinner(new SpinnerNumberModel(800, 50,
+				20000, 100));
+		controls.add(width);
+		final JLabel y = new JLabel("height: ");
+		controls.add(y);
+		final JSpinner height = new JSpinner(new SpinnerNumberModel(600, 50,
+				20000, 100));
+		controls.add(height);
+		// contentPane.add(fileFormat);
+		controls.add(askBeforeOverwrite);
+		final JComponent component = createAdditionalControls();
+		if (component != null) {
+			controls.add(component);
+		}
+		final JButton okButton = new JButton("OK");
+		final boolean[] ok = new boolean[1];
+		okButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				ok[0] = true;
+				dialog.setVisible(false);
+				dialog.dispose();
+			}
+		});
+		contentPane.setLayout(new BorderLayout());
+		contentPane.add(controls, BorderLayout.CENTER);
+		contentPane.add(okButton, BorderLayout.SOUTH);
+		dialog.setPreferredSize(new Dimension(400, 400));
+		dialog.pack();
+		while (true) {
+			dialog.setVisible(true);
+			if (ok[0]) {
+				if (fileNameModel.getStringValue().isEmpty()) {
+					JOptionPane
+							.showMessageDialog(
+									dialog,
+									"No folder specified for the result images. Please select one.",
+									"No folder specified",
+									JOptionPane.WARNING_MESSAGE);
+					dialog.setVisible(true);
+					continue;
+				}
+				final int w = ((Integer) width.getModel().getValue())
+						.intValue(), h = ((Integer) height.getModel()
+						.getValue()).intValue();
+				export(fileNameModel.getStringValue(), w, h,
+						(ImageType) fileFormat.getSelectedItem(),
+						askBeforeOverwrite.getModel().isSelected());
+				break;
+			} else {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Exports the images to {@code folderName}.
+	 * 
+	 * @param folderName
+	 *            The folder of the result images.
+	 * @param w
+	 *            Width of images.
+	 * @param h
+	 *            Height of images.
+	 * @param imageType
+	 *            Format of images to save.
+	 * @param askOverwrite
+	 *            Ask before overwriting files.
+	 */
+	protected abstract void export(final String folderName, final int w,
+			final int h, final ImageType imageType, final boolean askOverwrite);
+
+	/**
+	 * Creates a control on the save dialog.
+	 * 
+	 * @return A new {@link JComponent}, or {@code null} if none is needed.
+	 */
+	protected abstract @Nullable
+	JComponent createAdditionalControls();
+
+	/**
+	 * @param folderName
+	 *            The folder of the result images.
+	 * @param name
+	 *            The name of the image (without extension).
+	 * @param imageType
+	 *            Format of the image.
+	 * @return The file of the image named {@code name} in {@code folderName}.
+	 */
+	public static File imageFile(final String folderName, final String name,
+			final ImageType imageType) {
+		return SaveAs.addMissingExtension(new File(folderName
+				+ File.separatorChar + name.trim()), imageType.getExtensions()[0]);
+	}
+
+	/**
+	 * Asks whether to overwrite the already existing {@code files} (if there
+	 * are any).
+	 * 
+	 * @param folderName
+	 *            The folder of the result images.
+	 * @param files
+	 *            The files to write.
+	 * @return {@code true} iff none of the {@code files} exist, or the user
+	 *         accepted to overwrite them.
+	 */
+	protected static boolean confirmOverwrite(final String folderName,
+			final Collection<File> files) {
+		int existing = 0;
+		for (final File file : files) {
+			if (file.exists()) {
+				++existing;
+			}
+		}
+		return existing == 0
+				|| JOptionPane.showConfirmDialog(null, existing + " of the "
+						+ files.size() + " images already exist in "
+						+ folderName + ". Overwrite them?",
+						"Overwrite existing files?", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION;
+	}
+}
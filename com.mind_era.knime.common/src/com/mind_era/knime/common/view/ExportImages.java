@@ -3,13 +3,7 @@
  */
 package com.mind_era.knime.common.view;
 
-import java.awt.BorderLayout;
-import java.awt.Container;
 import java.awt.Dimension;
-import java.awt.FlowLayout;
-import java.awt.Frame;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
@@ -19,55 +13,38 @@ import java.util.concurrent.Callable;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.Icon;
-import javax.swing.JButton;
-import javax.swing.JCheckBox;
-import javax.swing.JComboBox;
 import javax.swing.JComponent;
-import javax.swing.JDialog;
-import javax.swing.JFileChooser;
 import javax.swing.JFrame;
-import javax.swing.JLabel;
 import javax.swing.JOptionPane;
-import javax.swing.JPanel;
 import javax.swing.JScrollPane;
-import javax.swing.JSpinner;
-import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingUtilities;
 
-import org.knime.core.node.defaultnodesettings.DialogComponentFileChooser;
-import org.knime.core.node.defaultnodesettings.SettingsModelString;
-
 import com.mind_era.knime.common.util.Traversable;
 import com.mind_era.knime.common.util.swing.ImageType;
 import com.mind_era.knime.common.util.swing.SaveAs;
 
 /**
- * An {@link Action} to save images to a folder.
+ * An {@link Action} to save images to a folder, by showing the
+ * {@link #createTraversable(String, int, int) traversable} components in a
+ * frame and saving them one-by-one.
  * 
  * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
  */
 @Nonnull
 @CheckReturnValue
-public abstract class ExportImages extends AbstractAction {
+public abstract class ExportImages extends AbstractExportImages {
 	private static final long serialVersionUID = 5761525362417025576L;
-	private final ImageType type;
 	/** The {@link JScrollPane} where the data image will be painted. */
 	protected JScrollPane scrollPane;
 
-	private final JCheckBox askBeforeOverwrite = new JCheckBox(
-			"Ask before overwrite", true);
-
-	private final JComboBox<ImageType> fileFormat = new JComboBox<>();
-
 	/**
 	 * @param type
 	 *            Format of images to save.
 	 */
 	public ExportImages(final ImageType type) {
-		this("", type);
+		super(type);
 	}
 
 	/**
@@ -77,7 +54,7 @@ public abstract class ExportImages extends AbstractAction {
 	 *            Format of images to save.
 	 */
 	public ExportImages(final String name, final ImageType type) {
-		this(name, null, type);
+		super(name, type);
 	}
 
 	/**
@@ -90,190 +67,105 @@ public abstract class ExportImages extends AbstractAction {
 	 */
 	public ExportImages(final String name, @Nullable final Icon icon,
 			final ImageType type) {
-		super(name, icon);
-		this.type = type;
-		for (final ImageType value : ImageType.values()) {
-			fileFormat.addItem(value);
-		}
-		fileFormat.setSelectedItem(type);
+		super(name, icon, type);
 	}
 
+	/**
+	 * Exports the images to {@code folderName}. By default the
+	 * {@link #createTraversable(String, int, int) traversable} components are
+	 * shown in a frame and saved one-by-one.
+	 */
 	@Override
-	public void actionPerformed(final ActionEvent e) {
-		final JDialog dialog = new JDialog((Frame) null,
-				"Image export parameters", true);
-		final Container contentPane = dialog.getContentPane();
-		final SettingsModelString fileNameModel = new SettingsModelString(
-				"fileName", System.getProperty("user.home"));
-		final DialogComponentFileChooser fileChooser = new DialogComponentFileChooser(
-				fileNameModel, "", JFileChooser.SAVE_DIALOG, true, type
-						.getExtensions());
-		final JPanel controls = new JPanel();
-		controls.setLayout(new FlowLayout());
-		controls.add(fileChooser.getComponentPanel());
-		final JLabel x = new JLabel("width: ");
-		controls.add(x);
-		final JSpinner width = new JSpinner(new SpinnerNumberModel(800, 50,
-				20000, 100));
-		controls.add(width);
-		final JLabel y = new JLabel("height: ");
-		controls.add(y);
-		final JSpinner height = new JSpinner(new SpinnerNumberModel(600, 50,
-				20000, 100));
-		controls.add(height);
-		// contentPane.add(fileFormat);
-		controls.add(askBeforeOverwrite);
-		final JComponent component = createAdditionalControls();
-		if (component != null) {
-			controls.add(component);
-		}
-		final JButton okButton = new JButton("OK");
-		final boolean[] ok = new boolean[1];
-		okButton.addActionListener(new ActionListener() {
+	protected void export(final String folderName, final int w, final int h,
+			final ImageType imageType, final boolean askOverwrite) {
+		final JFrame frame = new JFrame();
+		scrollPane = new JScrollPane();
+		frame.getContentPane().add(scrollPane);
+		scrollPane.getViewport().setPreferredSize(new Dimension(w, h));
+		frame.pack();
+		final boolean[] stopped = new boolean[1];
+		frame.addWindowListener(new WindowAdapter() {
 			@Override
-			public void actionPerformed(final ActionEvent e) {
-				ok[0] = true;
-				dialog.setVisible(false);
-				dialog.dispose();
+			public void windowClosing(final WindowEvent e) {
+				stopped[0] = true;
 			}
 		});
-		contentPane.setLayout(new BorderLayout());
-		contentPane.add(controls, BorderLayout.CENTER);
-		contentPane.add(okButton, BorderLayout.SOUTH);
-		dialog.setPreferredSize(new Dimension(400, 400));
-		dialog.pack();
-		while (true) {
-			dialog.setVisible(true);
-			if (ok[0]) {
-				if (fileNameModel.getStringValue().isEmpty()) {
-					JOptionPane
-							.showMessageDialog(
-									dialog,
-									"No folder specified for the result images. Please select one.",
-									"No folder specified",
-									JOptionPane.WARNING_MESSAGE);
-					dialog.setVisible(true);
-					continue;
-				}
-				final int w = ((Integer) width.getModel().getValue())
-						.intValue(), h = ((Integer) height.getModel()
-						.getValue()).intValue();
-				final JFrame frame = new JFrame();
-				scrollPane = new JScrollPane();
-				frame.getContentPane().add(scrollPane);
-				scrollPane.getViewport().setPreferredSize(new Dimension(w, h));
-				frame.pack();
-				final boolean[] stopped = new boolean[1];
-				frame.addWindowListener(new WindowAdapter() {
-					@Override
-					public void windowClosing(final WindowEvent e) {
-						stopped[0] = true;
-					}
-				});
-				frame.setVisible(true);
-				final boolean madeDirs = new File(fileNameModel
-						.getStringValue()).mkdirs();
-				assert madeDirs || !madeDirs;
-				final Traversable<JComponent, String> traversable = createTraversable(
-						fileNameModel.getStringValue(), w, h);
-				final Runnable frameDispose = new Runnable() {
-					@Override
-					public void run() {
-						frame.dispose();
+		frame.setVisible(true);
+		final boolean madeDirs = new File(folderName).mkdirs();
+		assert madeDirs || !madeDirs;
+		final Traversable<JComponent, String> traversable = createTraversable(
+				folderName, w, h);
+		final Runnable frameDispose = new Runnable() {
+			@Override
+			public void run() {
+				frame.dispose();
+			}
+		};
+		try {
+			traversable.traverse(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					if (stopped[0]) {
+						return Boolean.FALSE;
 					}
-				};
-				try {
-					traversable.traverse(new Callable<Boolean>() {
+					final File file = imageFile(folderName, traversable
+							.getState(), imageType);
+					final Runnable doRun = new Runnable() {
 						@Override
-						public Boolean call() throws Exception {
+						public void run() {
+							setupComponent(traversable);
+							final JComponent component = traversable
+									.getElement();
+							component.setDoubleBuffered(false);
+							final SaveAs action = SaveAs.createAction(null,
+									file.getPath(), component, imageType);
+							action.getFileChooser().setSelectedFile(file);
+							stopped[0] = !action.saveToFile(false,
+									askOverwrite);
 							if (stopped[0]) {
-								return Boolean.FALSE;
-							}
-							final StringBuilder fileName = new StringBuilder(
-									fileNameModel.getStringValue());
-							fileName.append(File.separatorChar);
-							fileName.append(traversable.getState().trim());
-							final Runnable doRun = new Runnable() {
-								@Override
-								public void run() {
-									setupComponent(traversable);
-									final JComponent component = traversable
-											.getElement();
-									component.setDoubleBuffered(false);
-									final SaveAs action = SaveAs.createAction(
-											null, fileName.toString(),
-											component, (ImageType) fileFormat
-													.getSelectedItem());
-									final File file = new File(fileName
-											.toString());
-									action.getFileChooser().setSelectedFile(
-											file);
-									stopped[0] = !action.saveToFile(false,
-											askBeforeOverwrite.getModel()
-													.isSelected());
-									if (stopped[0]) {
-										JOptionPane
-												.showMessageDialog(
-														null,
-														"Save cancelled.",
-														"Save cancelled",
-														JOptionPane.INFORMATION_MESSAGE);
-									}
-								}
-							};
-							if (SwingUtilities.isEventDispatchThread()) {
-								doRun.run();
-							} else {
-								try {
-									SwingUtilities.invokeAndWait(doRun);
-								} catch (final InterruptedException e1) {
-									JOptionPane.showMessageDialog(null,
-											"Interrupted", "Interrupted",
-											JOptionPane.ERROR_MESSAGE);
-								} catch (final InvocationTargetException e1) {
-									JOptionPane.showMessageDialog(null,
-											"Interrupted", "Interrupted",
-											JOptionPane.ERROR_MESSAGE);
-								}
+								JOptionPane.showMessageDialog(null,
+										"Save cancelled.", "Save cancelled",
+										JOptionPane.INFORMATION_MESSAGE);
 							}
-							return Boolean.TRUE;
 						}
-					});
-				} finally {
+					};
 					if (SwingUtilities.isEventDispatchThread()) {
-						frameDispose.run();
+						doRun.run();
 					} else {
 						try {
-							SwingUtilities.invokeAndWait(frameDispose);
+							SwingUtilities.invokeAndWait(doRun);
 						} catch (final InterruptedException e1) {
-							throw new RuntimeException(e1);
+							JOptionPane.showMessageDialog(null, "Interrupted",
+									"Interrupted", JOptionPane.ERROR_MESSAGE);
 						} catch (final InvocationTargetException e1) {
-							throw new RuntimeException(e1);
+							JOptionPane.showMessageDialog(null, "Interrupted",
+									"Interrupted", JOptionPane.ERROR_MESSAGE);
 						}
 					}
+					return Boolean.TRUE;
 				}
-				if (!stopped[0]) {
-					JOptionPane.showMessageDialog(null,
-							"Images successfully exported to "
-									+ fileNameModel.getStringValue(),
-							"Images successfully exported",
-							JOptionPane.INFORMATION_MESSAGE);
-				}
-				break;
+			});
+		} finally {
+			if (SwingUtilities.isEventDispatchThread()) {
+				frameDispose.run();
 			} else {
-				break;
+				try {
+					SwingUtilities.invokeAndWait(frameDispose);
+				} catch (final InterruptedException e1) {
+					throw new RuntimeException(e1);
+				} catch (final InvocationTargetException e1) {
+					throw new RuntimeException(e1);
+				}
 			}
 		}
+		if (!stopped[0]) {
+			JOptionPane.showMessageDialog(null,
+					"Images successfully exported to " + folderName,
+					"Images successfully exported",
+					JOptionPane.INFORMATION_MESSAGE);
+		}
 	}
 
-	/**
-	 * Creates a control on the save dialog.
-	 * 
-	 * @return A new {@link JComponent}, or {@code null} if none is needed.
-	 */
-	protected abstract @Nullable
-	JComponent createAdditionalControls();
-
 	/**
 	 * Creates the {@link Traversable} component used to visit the things to
 	 * export.
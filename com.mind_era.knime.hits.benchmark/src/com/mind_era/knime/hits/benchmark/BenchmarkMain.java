@@ -0,0 +1,58 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the HiTS benchmarks headless. The arguments are the usual JMH command
+ * line options, but by default every benchmark of this package is executed,
+ * and the results are written in JSON format to {@value #DEFAULT_RESULT}, so
+ * they can be compared between versions.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public final class BenchmarkMain {
+	/** The default result file. */
+	public static final String DEFAULT_RESULT = "jmh-result.json";
+
+	private BenchmarkMain() {
+		super();
+	}
+
+	/**
+	 * @param args
+	 *            JMH command line options.
+	 * @throws CommandLineOptionException
+	 *             If the arguments are not valid.
+	 * @throws RunnerException
+	 *             If a benchmark failed.
+	 */
+	public static void main(final String[] args)
+			throws CommandLineOptionException, RunnerException {
+		System.setProperty("java.awt.headless", "true");
+		final CommandLineOptions commandLine = new CommandLineOptions(args);
+		final ChainedOptionsBuilder options = new OptionsBuilder()
+				.parent(commandLine);
+		if (commandLine.getIncludes().isEmpty()) {
+			options.include(BenchmarkMain.class.getPackage().getName() + ".");
+		}
+		if (!commandLine.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!commandLine.getResult().hasValue()) {
+			options.result(DEFAULT_RESULT);
+		}
+		if (!commandLine.getJvmArgsAppend().hasValue()) {
+			options.jvmArgsAppend("-Djava.awt.headless=true");
+		}
+		new Runner(options.build()).run();
+	}
+}
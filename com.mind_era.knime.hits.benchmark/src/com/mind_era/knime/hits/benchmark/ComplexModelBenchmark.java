@@ -0,0 +1,91 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.benchmark;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.knime.core.util.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.mind_era.knime.common.util.interval.Interval;
+import com.mind_era.knime.common.util.interval.Interval.DefaultInterval;
+import com.mind_era.knime.common.util.swing.colour.ComplexModel;
+
+/**
+ * Benchmark of {@link ComplexModel#compute(double)} with a model of two
+ * gradients around {@code 0} and two single colour intervals at the extremes,
+ * for normally distributed values (a {@code 1536} well plate).
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ComplexModelBenchmark {
+	private ComplexModel model;
+	private double[] values;
+	private int[] argb;
+
+	/**
+	 * Creates the model and the values.
+	 */
+	@Setup
+	public void createModel() {
+		final Map<Interval<Double>, Pair<Color, Color>> continuouses = new HashMap<Interval<Double>, Pair<Color, Color>>();
+		continuouses.put(interval(-2.0, 0.0, true, false),
+				new Pair<Color, Color>(Color.GREEN, Color.BLACK));
+		continuouses.put(interval(0.0, 2.0, true, true),
+				new Pair<Color, Color>(Color.BLACK, Color.RED));
+		final Map<Interval<Double>, Color> discretes = new HashMap<Interval<Double>, Color>();
+		discretes.put(interval(Double.NEGATIVE_INFINITY, -2.0, true, false),
+				Color.BLUE);
+		discretes.put(interval(2.0, Double.POSITIVE_INFINITY, false, true),
+				Color.YELLOW);
+		model = new ComplexModel(continuouses, discretes);
+		final Random random = new Random(0L);
+		values = new double[1536];
+		for (int i = values.length; i-- > 0;) {
+			values[i] = 1.5 * random.nextGaussian();
+		}
+		argb = new int[values.length];
+	}
+
+	private static Interval<Double> interval(final double low,
+			final double high, final boolean closedLow,
+			final boolean closedHigh) {
+		return new DefaultInterval<Double>(Double.valueOf(low), Double
+				.valueOf(high), closedLow, closedHigh);
+	}
+
+	/**
+	 * @param blackhole
+	 *            Consumes the colours.
+	 */
+	@Benchmark
+	public void compute(final Blackhole blackhole) {
+		for (final double value : values) {
+			blackhole.consume(model.compute(value));
+		}
+	}
+
+	/**
+	 * @return The ARGB values of the colours.
+	 */
+	@Benchmark
+	public int[] computeAll() {
+		model.computeAll(values, argb);
+		return argb;
+	}
+}
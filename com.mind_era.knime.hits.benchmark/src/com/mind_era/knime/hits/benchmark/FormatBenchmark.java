@@ -0,0 +1,60 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.mind_era.knime.common.Format;
+
+/**
+ * Benchmark of {@link Format#convertWellToPosition(String)} converting each
+ * well name of a plate.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FormatBenchmark {
+	/** The name of the {@link Format}. */
+	@Param( { "_96", "_384", "_1536" })
+	public String format;
+
+	private Format plateFormat;
+	private String[] wells;
+
+	/**
+	 * Creates the well names.
+	 */
+	@Setup
+	public void createWells() {
+		plateFormat = Format.valueOf(format);
+		wells = new String[plateFormat.getWellCount()];
+		for (int i = wells.length; i-- > 0;) {
+			wells[i] = PlateDataGenerator.wellName(plateFormat.getRow(i),
+					plateFormat.getCol(i));
+		}
+	}
+
+	/**
+	 * @return The sum of the positions.
+	 */
+	@Benchmark
+	public int convertWellToPosition() {
+		int ret = 0;
+		for (final String well : wells) {
+			ret += plateFormat.convertWellToPosition(well);
+		}
+		return ret;
+	}
+}
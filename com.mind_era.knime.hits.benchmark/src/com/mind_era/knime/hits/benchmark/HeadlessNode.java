@@ -0,0 +1,104 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.benchmark;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.knime.core.data.DataTable;
+import org.knime.core.data.filestore.internal.NotInWorkflowDataRepository;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.DefaultNodeProgressMonitor;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.Node;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettings;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.flowvariable.FlowVariablePortObject;
+import org.knime.core.node.workflow.ExecutionEnvironment;
+import org.knime.core.node.workflow.FlowObjectStack;
+import org.knime.core.node.workflow.NodeID;
+import org.knime.core.node.workflow.SingleNodeContainer.MemoryPolicy;
+
+/**
+ * Executes a {@link NodeModel} with a single table input without a workflow
+ * (and a workbench). The outputs are kept in memory.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+@NotThreadSafe
+public final class HeadlessNode {
+	private final Node node;
+	private final ExecutionContext exec;
+	private final BufferedDataTable input;
+
+	/**
+	 * Creates the node, and converts {@code table} to a
+	 * {@link BufferedDataTable}.
+	 *
+	 * @param factory
+	 *            The {@link NodeFactory} of the node.
+	 * @param settings
+	 *            The model settings (based on the defaults of the node, see
+	 *            {@link #defaultSettings(NodeFactory)}).
+	 * @param table
+	 *            The input table.
+	 * @throws InvalidSettingsException
+	 *             If the {@code settings} are not valid.
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 */
+	@SuppressWarnings("unchecked")
+	public HeadlessNode(final NodeFactory<? extends NodeModel> factory,
+			final NodeSettings settings, final DataTable table)
+			throws InvalidSettingsException, CanceledExecutionException {
+		super();
+		node = new Node((NodeFactory<NodeModel>) factory);
+		node.validateModelSettings(settings);
+		node.loadModelSettingsFrom(settings);
+		exec = new ExecutionContext(new DefaultNodeProgressMonitor(), node,
+				MemoryPolicy.CacheInMemory, NotInWorkflowDataRepository
+						.newInstance());
+		input = exec.createBufferedDataTable(table, exec);
+	}
+
+	/**
+	 * @param factory
+	 *            A {@link NodeFactory}.
+	 * @return The default model settings of the {@link NodeModel}.
+	 */
+	@SuppressWarnings("unchecked")
+	public static NodeSettings defaultSettings(
+			final NodeFactory<? extends NodeModel> factory) {
+		final NodeSettings ret = new NodeSettings("model");
+		new Node((NodeFactory<NodeModel>) factory).saveModelSettingsTo(ret);
+		return ret;
+	}
+
+	/**
+	 * Executes the node, the previous results are discarded.
+	 *
+	 * @return The first output table.
+	 * @throws IllegalStateException
+	 *             If the execution failed.
+	 */
+	public BufferedDataTable execute() {
+		node.cleanOutPorts(false);
+		node.setFlowObjectStack(new FlowObjectStack(NodeID.ROOTID),
+				new FlowObjectStack(NodeID.ROOTID));
+		if (!node.execute(new PortObject[] { FlowVariablePortObject.INSTANCE,
+				input }, new ExecutionEnvironment(), exec)) {
+			throw new IllegalStateException("Failed to execute "
+					+ node.getName());
+		}
+		// The 0th port is the implicit flow variable port.
+		return (BufferedDataTable) node.getOutputObject(1);
+	}
+}
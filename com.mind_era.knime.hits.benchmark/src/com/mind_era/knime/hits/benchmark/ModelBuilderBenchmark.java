@@ -0,0 +1,144 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.benchmark;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.mind_era.knime.common.util.DoubleArrayList;
+import com.mind_era.knime.common.util.ModelBuilder;
+import com.mind_era.knime.common.util.ModelBuilder.SpecAnalyser;
+import com.mind_era.knime.common.util.SimpleModelBuilder;
+import com.mind_era.knime.common.util.swing.colour.ColourSelector.RangeType;
+import com.mind_era.knime.common.view.StatTypes;
+
+/**
+ * Benchmarks of the {@link ModelBuilder} construction and the
+ * {@link SimpleModelBuilder#computeStatistics(Map, Map) statistics} of the
+ * values.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ModelBuilderBenchmark {
+	/**
+	 * The collected values of {@link PlateData#table} for the statistics. The
+	 * statistics reorder the values, so they get a {@link #copy} restored
+	 * before each invocation.
+	 */
+	@State(Scope.Thread)
+	public static class Values {
+		/** The {@link SpecAnalyser} of the table. */
+		public SpecAnalyser specAnalyser;
+		/** The values of the table. */
+		public Map<String, Map<StatTypes, DoubleArrayList>> vals;
+		/** The copy of {@link #vals} for an invocation. */
+		public Map<String, Map<StatTypes, DoubleArrayList>> copy;
+
+		/**
+		 * Collects the values.
+		 *
+		 * @param data
+		 *            The generated data.
+		 */
+		@Setup
+		public void collect(final PlateData data) {
+			specAnalyser = new SpecAnalyser(data.table.getDataTableSpec(),
+					false);
+			vals = new SimpleModelBuilder(data.table, specAnalyser)
+					.computeAllVals();
+			copy = new TreeMap<String, Map<StatTypes, DoubleArrayList>>();
+			for (final Entry<String, Map<StatTypes, DoubleArrayList>> entry : vals
+					.entrySet()) {
+				final Map<StatTypes, DoubleArrayList> stats = new EnumMap<StatTypes, DoubleArrayList>(
+						StatTypes.class);
+				for (final Entry<StatTypes, DoubleArrayList> stat : entry
+						.getValue().entrySet()) {
+					stats.put(stat.getKey(), new DoubleArrayList(stat
+							.getValue().size()));
+				}
+				copy.put(entry.getKey(), stats);
+			}
+		}
+
+		/**
+		 * Restores the original order of the values in {@link #copy} (without
+		 * allocation).
+		 */
+		@Setup(Level.Invocation)
+		public void restore() {
+			for (final Entry<String, Map<StatTypes, DoubleArrayList>> entry : vals
+					.entrySet()) {
+				final Map<StatTypes, DoubleArrayList> stats = copy.get(entry
+						.getKey());
+				for (final Entry<StatTypes, DoubleArrayList> stat : entry
+						.getValue().entrySet()) {
+					final DoubleArrayList list = stats.get(stat.getKey());
+					list.clear();
+					list.addAll(stat.getValue().elements(), 0, stat.getValue()
+							.size());
+				}
+			}
+		}
+	}
+
+	/**
+	 * The number of threads parsing the rows.
+	 */
+	@State(Scope.Benchmark)
+	public static class Parallelism {
+		/** The number of threads. */
+		@Param( { "1", "4" })
+		public int threads;
+	}
+
+	/**
+	 * @param data
+	 *            The generated data.
+	 * @param parallelism
+	 *            The number of threads.
+	 * @return The {@link ModelBuilder} of the table.
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 */
+	@Benchmark
+	public ModelBuilder construct(final PlateData data,
+			final Parallelism parallelism) throws CanceledExecutionException {
+		return new ModelBuilder(data.table, new ExecutionMonitor(),
+				parallelism.threads);
+	}
+
+	/**
+	 * The statistics are computed from the {@link Values#copy copy} of the
+	 * values in their original order.
+	 *
+	 * @param values
+	 *            The collected values.
+	 * @return The computed ranges.
+	 */
+	@Benchmark
+	public Map<String, Map<StatTypes, Map<RangeType, Double>>> computeStatistics(
+			final Values values) {
+		final Map<String, Map<StatTypes, Map<RangeType, Double>>> ranges = values.specAnalyser
+				.initialRanges();
+		SimpleModelBuilder.computeStatistics(ranges, values.copy);
+		return ranges;
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeSettings;
+import org.knime.core.node.defaultnodesettings.SettingsModelFilterString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.mind_era.knime.common.PublicConstants;
+import com.mind_era.knime.util.pivot.PivotNodeFactory;
+import com.mind_era.knime.util.pivot.PivotNodeModel;
+import com.mind_era.knime.util.ranking.RankNodeFactory;
+import com.mind_era.knime.util.ranking.RankNodeModel;
+
+/**
+ * Benchmarks of the {@link RankNodeModel ranking} and the
+ * {@link PivotNodeModel pivoting} of the generated tables, executed by
+ * {@link HeadlessNode}s.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class NodeModelBenchmark {
+	/** The configuration key of the parameters in {@link RankNodeModel}. */
+	private static final String RANK_PARAMETERS = "com.mind_era.knime.util.ranking.parameters";
+
+	private HeadlessNode rank;
+	private HeadlessNode pivot;
+
+	/**
+	 * Creates the nodes, ranking all parameters' scores, and pivoting the
+	 * values by the replicates.
+	 *
+	 * @param data
+	 *            The generated data.
+	 * @throws InvalidSettingsException
+	 *             If the settings are not compatible with the nodes.
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 */
+	@Setup
+	public void createNodes(final PlateData data)
+			throws InvalidSettingsException, CanceledExecutionException {
+		final RankNodeFactory rankFactory = new RankNodeFactory();
+		final NodeSettings rankSettings = HeadlessNode
+				.defaultSettings(rankFactory);
+		rankSettings.addStringArray(RANK_PARAMETERS, data.generator
+				.getParameterNames());
+		rank = new HeadlessNode(rankFactory, rankSettings, data.table);
+		final PivotNodeFactory pivotFactory = new PivotNodeFactory();
+		final NodeSettings pivotSettings = HeadlessNode
+				.defaultSettings(pivotFactory);
+		// See the configuration keys of PivotNodeModel
+		new SettingsModelFilterString("to columns", Arrays
+				.asList(PublicConstants.REPLICATE_COLUMN), Arrays
+				.asList(new String[0])).saveSettingsTo(pivotSettings);
+		new SettingsModelFilterString("keys", Arrays.asList(
+				PublicConstants.EXPERIMENT_COLUMN,
+				PublicConstants.PLATE_COLUMN, PublicConstants.WELL_COL_NAME,
+				PlateDataGenerator.WELL_ANNOTATION), data.generator
+				.getValueColumns()).saveSettingsTo(pivotSettings);
+		pivotSettings.addString("pattern", "${}_${"
+				+ PublicConstants.REPLICATE_COLUMN + "}");
+		pivot = new HeadlessNode(pivotFactory, pivotSettings, data.table);
+	}
+
+	/**
+	 * @return The ranked table.
+	 */
+	@Benchmark
+	public BufferedDataTable rank() {
+		return rank.execute();
+	}
+
+	/**
+	 * @return The pivoted table.
+	 */
+	@Benchmark
+	public BufferedDataTable pivot() {
+		return pivot.execute();
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.benchmark;
+
+import org.knime.core.data.DataTable;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.mind_era.knime.common.Format;
+
+/**
+ * The shared synthetic plate data of the benchmarks, generated by
+ * {@link PlateDataGenerator} (with a fixed seed) for each combination of the
+ * parameters.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@State(Scope.Benchmark)
+public class PlateData {
+	/** The name of the {@link Format}. */
+	@Param( { "_96", "_384", "_1536" })
+	public String format;
+	/** The number of plates. */
+	@Param( { "10" })
+	public int plates;
+	/** The number of replicates. */
+	@Param( { "3" })
+	public int replicates;
+	/** The number of parameters. */
+	@Param( { "2" })
+	public int parameters;
+
+	/** The generator of {@link #table}. */
+	public PlateDataGenerator generator;
+	/** The generated table. */
+	public DataTable table;
+
+	/**
+	 * Generates the {@link #table}.
+	 */
+	@Setup
+	public void generate() {
+		generator = new PlateDataGenerator(Format.valueOf(format), plates,
+				replicates, parameters);
+		table = generator.generate(0L);
+	}
+}
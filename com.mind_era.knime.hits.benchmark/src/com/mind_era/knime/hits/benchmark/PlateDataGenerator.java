@@ -0,0 +1,202 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnDomainCreator;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.DefaultTable;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.StringCell;
+
+import com.mind_era.knime.common.Format;
+import com.mind_era.knime.common.PublicConstants;
+import com.mind_era.knime.common.util.ModelBuilder;
+
+/**
+ * Generates cellHTS2 like tables with random values. The rows are ordered by
+ * plate, well and replicate, each parameter has a {@code raw} (replicate
+ * dependent) and a {@code score} column, and the annotation of each well is
+ * {@code sample} except the first and last column of the plate (
+ * {@code pos}/{@code neg} controls).
+ * <p>
+ * The {@link PublicConstants#PLATE_COLUMN plate} and
+ * {@link PublicConstants#REPLICATE_COLUMN replicate} columns have their
+ * possible values in the domain, so they can be used for pivoting.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+public final class PlateDataGenerator {
+	/** The name of the well annotation column. */
+	public static final String WELL_ANNOTATION = "well annotation";
+
+	private final Format format;
+	private final int plates;
+	private final int replicates;
+	private final int parameters;
+
+	/**
+	 * @param format
+	 *            The {@link Format} of the plates.
+	 * @param plates
+	 *            The number of plates.
+	 * @param replicates
+	 *            The number of replicates.
+	 * @param parameters
+	 *            The number of parameters.
+	 */
+	public PlateDataGenerator(final Format format, final int plates,
+			final int replicates, final int parameters) {
+		super();
+		this.format = format;
+		this.plates = plates;
+		this.replicates = replicates;
+		this.parameters = parameters;
+	}
+
+	/**
+	 * @param parameter
+	 *            A {@code 0}-based parameter index.
+	 * @return The name of the parameter.
+	 */
+	public static String parameterName(final int parameter) {
+		return "Parameter" + parameter;
+	}
+
+	/**
+	 * Creates a well name accepted by
+	 * {@link Format#convertWellToPosition(String)}. The rows after {@code Z}
+	 * (on {@link Format#_1536} plates) continue from {@code a + 26}, as only
+	 * single character rows are supported.
+	 *
+	 * @param row
+	 *            A {@code 0}-based row.
+	 * @param col
+	 *            A {@code 0}-based column.
+	 * @return The name of the well.
+	 */
+	public static String wellName(final int row, final int col) {
+		return Character.toString((char) (row < 26 ? 'A' + row : 'a' + row))
+				+ (col + 1);
+	}
+
+	/**
+	 * @return The names of the parameters.
+	 */
+	public String[] getParameterNames() {
+		final String[] ret = new String[parameters];
+		for (int i = parameters; i-- > 0;) {
+			ret[i] = parameterName(i);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return The names of the value ({@code raw} and {@code score}) columns.
+	 */
+	public List<String> getValueColumns() {
+		final List<String> ret = new ArrayList<String>(2 * parameters);
+		for (final String parameter : getParameterNames()) {
+			ret.add(ModelBuilder.RAW_START + parameter);
+			ret.add(ModelBuilder.SCORE_START + parameter);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return The {@link DataTableSpec} of the generated tables.
+	 */
+	public DataTableSpec createSpec() {
+		final List<DataColumnSpec> specs = new ArrayList<DataColumnSpec>();
+		specs.add(new DataColumnSpecCreator(PublicConstants.EXPERIMENT_COLUMN,
+				StringCell.TYPE).createSpec());
+		specs.add(nominal(PublicConstants.PLATE_COLUMN, plates));
+		specs.add(nominal(PublicConstants.REPLICATE_COLUMN, replicates));
+		specs.add(new DataColumnSpecCreator(PublicConstants.WELL_COL_NAME,
+				StringCell.TYPE).createSpec());
+		specs.add(new DataColumnSpecCreator(WELL_ANNOTATION, StringCell.TYPE)
+				.createSpec());
+		for (final String column : getValueColumns()) {
+			specs.add(new DataColumnSpecCreator(column, DoubleCell.TYPE)
+					.createSpec());
+		}
+		return new DataTableSpec(specs.toArray(new DataColumnSpec[specs
+				.size()]));
+	}
+
+	private static DataColumnSpec nominal(final String name, final int count) {
+		final Set<DataCell> values = new LinkedHashSet<DataCell>();
+		for (int i = 1; i <= count; ++i) {
+			values.add(new IntCell(i));
+		}
+		final DataColumnSpecCreator creator = new DataColumnSpecCreator(name,
+				IntCell.TYPE);
+		creator.setDomain(new DataColumnDomainCreator(values, new IntCell(1),
+				new IntCell(count)).createDomain());
+		return creator.createSpec();
+	}
+
+	/**
+	 * Generates a table. Every tenth {@code score} value is missing.
+	 *
+	 * @param seed
+	 *            The seed of the random values.
+	 * @return The generated table.
+	 */
+	public DefaultTable generate(final long seed) {
+		final Random random = new Random(seed);
+		final DataCell experiment = new StringCell("Experiment");
+		final DataCell sample = new StringCell("sample");
+		final DataCell pos = new StringCell("pos");
+		final DataCell neg = new StringCell("neg");
+		final int cols = format.getCol();
+		final List<DataRow> rows = new ArrayList<DataRow>(plates
+				* format.getWellCount() * replicates);
+		for (int plate = 1; plate <= plates; ++plate) {
+			final DataCell plateCell = new IntCell(plate);
+			for (int well = 0; well < format.getWellCount(); ++well) {
+				final DataCell wellCell = new StringCell(wellName(well / cols,
+						well % cols));
+				final int column = well % cols;
+				final DataCell annotation = column == 0 ? pos
+						: column == cols - 1 ? neg : sample;
+				for (int replicate = 1; replicate <= replicates; ++replicate) {
+					final DataCell[] cells = new DataCell[5 + 2 * parameters];
+					cells[0] = experiment;
+					cells[1] = plateCell;
+					cells[2] = new IntCell(replicate);
+					cells[3] = wellCell;
+					cells[4] = annotation;
+					for (int parameter = 0; parameter < parameters; ++parameter) {
+						cells[5 + 2 * parameter] = new DoubleCell(
+								1000 + 100 * random.nextGaussian());
+						cells[6 + 2 * parameter] = random.nextInt(10) == 0 ? DataType
+								.getMissingCell()
+								: new DoubleCell(random.nextGaussian());
+					}
+					rows.add(new DefaultRow("Row" + rows.size(), cells));
+				}
+			}
+		}
+		return new DefaultTable(rows.toArray(new DataRow[rows.size()]),
+				createSpec());
+	}
+}
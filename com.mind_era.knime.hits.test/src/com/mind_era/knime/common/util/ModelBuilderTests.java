@@ -0,0 +1,932 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTable;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.RowIterator;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.DefaultTable;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.DefaultNodeProgressMonitor;
+import org.knime.core.node.ExecutionMonitor;
+
+import com.mind_era.knime.common.PublicConstants;
+import com.mind_era.knime.common.util.ModelBuilder.SpecAnalyser;
+import com.mind_era.knime.common.util.swing.colour.ColourSelector.RangeType;
+import com.mind_era.knime.common.view.StatTypes;
+
+/**
+ * Tests for the {@link PlateCube} based {@link ModelBuilder} and its
+ * {@link ModelBuilder#getScores()}, {@link ModelBuilder#getReplicates()}
+ * views.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class ModelBuilderTests {
+	private static final DataTableSpec SPEC = new DataTableSpec(
+			new DataColumnSpec[] {
+					new DataColumnSpecCreator(
+							PublicConstants.EXPERIMENT_COLUMN, StringCell.TYPE)
+							.createSpec(),
+					new DataColumnSpecCreator(PublicConstants.PLATE_COLUMN,
+							IntCell.TYPE).createSpec(),
+					new DataColumnSpecCreator(
+							PublicConstants.REPLICATE_COLUMN, IntCell.TYPE)
+							.createSpec(),
+					new DataColumnSpecCreator(PublicConstants.WELL_COL_NAME,
+							StringCell.TYPE).createSpec(),
+					new DataColumnSpecCreator(ModelBuilder.SCORE_START + "A",
+							DoubleCell.TYPE).createSpec(),
+					new DataColumnSpecCreator(ModelBuilder.RAW_START + "A",
+							DoubleCell.TYPE).createSpec() });
+
+	private static DataRow row(final String key, final String experiment,
+			final int plate, final int replicate, final String well,
+			final double score, final double raw) {
+		return new DefaultRow(key, new DataCell[] {
+				new StringCell(experiment), new IntCell(plate),
+				new IntCell(replicate), new StringCell(well),
+				Double.isNaN(score) ? DataType.getMissingCell()
+						: new DoubleCell(score), new DoubleCell(raw) });
+	}
+
+	private static ModelBuilder createModelBuilder() {
+		return new ModelBuilder(new DefaultTable(new DataRow[] {
+				row("r0", "b", 3, 1, "A1", 1.0, 10.0),
+				row("r1", "b", 3, 2, "A1", 1.0, 11.0),
+				row("r2", "a", 3, 1, "B2", Double.NaN, 12.0),
+				row("r3", "b", 1, 1, "A3", 2.0, 13.0) }, SPEC));
+	}
+
+	/**
+	 * Checks the structure of the views.
+	 */
+	@Test
+	public void structure() {
+		final ModelBuilder builder = createModelBuilder();
+		Assert.assertEquals(Arrays.asList("a", "b"), Arrays.asList(builder
+				.getScores().keySet().toArray()));
+		Assert.assertEquals(Arrays.asList("a", "b"), Arrays.asList(builder
+				.getReplicates().keySet().toArray()));
+		final Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>> plates = builder
+				.getReplicates().get("b").get("");
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(1), Integer
+				.valueOf(3)), Arrays.asList(plates.keySet().toArray()));
+		Assert.assertEquals(2, plates.get(Integer.valueOf(3)).size());
+		Assert.assertEquals(1, plates.get(Integer.valueOf(1)).size());
+		Assert.assertNull(plates.get(Integer.valueOf(2)));
+		Assert.assertEquals(StatTypes.scoreTypes.size(), builder.getScores()
+				.get("a").get("").get(Integer.valueOf(3)).get("A").size());
+		Assert.assertEquals(1, builder.getMinPlate());
+		Assert.assertEquals(3, builder.getMaxPlate());
+		Assert.assertEquals(1, builder.getMinReplicate());
+		Assert.assertEquals(2, builder.getMaxReplicate());
+	}
+
+	/**
+	 * Checks the values in the views and in the {@link PlateCube}.
+	 */
+	@Test
+	public void values() {
+		final ModelBuilder builder = createModelBuilder();
+		final double[] raw = builder.getReplicates().get("b").get("").get(
+				Integer.valueOf(3)).get(Integer.valueOf(2)).get("A").get(
+				StatTypes.raw);
+		Assert.assertEquals(11.0, raw[0], 0.0);
+		Assert.assertTrue(Double.isNaN(raw[1]));
+		final PlateCube cube = builder.getCube();
+		Assert.assertSame(raw, cube.getSlice(cube.getExperiments()
+				.codeOf("b"), cube.getNormalisations().codeOf(""), cube
+				.getPlates().codeOf(3), cube.getReplicates().codeOf(2), cube
+				.getParameters().codeOf("A"), StatTypes.raw));
+		final Map<StatTypes, double[]> scores = builder.getScores().get("a")
+				.get("").get(Integer.valueOf(3)).get("A");
+		final int b2 = builder.getSpecAnalyser().getPredictedFormat()
+				.convertWellToPosition("B2");
+		Assert.assertTrue(Double.isNaN(scores.get(StatTypes.score)[b2]));
+		Assert.assertTrue(Double.isNaN(scores.get(StatTypes.median)[b2]));
+		Assert.assertEquals(2.0, builder.getScores().get("b").get("").get(
+				Integer.valueOf(1)).get("A").get(StatTypes.score)[2], 0.0);
+		Assert.assertEquals(Integer.valueOf(b2), builder
+				.getKeyToPlateAndPosition().get("r2").getSecond());
+	}
+
+	/**
+	 * The parallel model building gives the same results as the sequential.
+	 * 
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 */
+	@Test
+	public void parallel() throws CanceledExecutionException {
+		final List<DataRow> rows = new ArrayList<DataRow>();
+		final Random random = new Random(3);
+		for (int plate = 1; plate <= 40; ++plate) {
+			for (int replicate = 1; replicate <= 3; ++replicate) {
+				for (int well = 0; well < 96; ++well) {
+					rows.add(row("r" + rows.size(), random.nextBoolean() ? "a"
+							: "b", plate, replicate, (char) ('A' + well / 12)
+							+ Integer.toString(well % 12 + 1), random.nextInt(9) == 0 ? Double.NaN
+							: random.nextGaussian(), random.nextGaussian()));
+				}
+			}
+		}
+		Collections.shuffle(rows, random);
+		// the same positions again, the later rows overwrite the values
+		for (int i = 0; i < 500; ++i) {
+			final DataRow row = rows.get(random.nextInt(rows.size()));
+			rows.add(random.nextInt(rows.size()), row("d" + i, ((StringCell) row
+					.getCell(0)).getStringValue(), ((IntCell) row.getCell(1))
+					.getIntValue(), ((IntCell) row.getCell(2)).getIntValue(),
+					((StringCell) row.getCell(3)).getStringValue(), i, -i));
+		}
+		final DefaultTable table = new DefaultTable(rows
+				.toArray(new DataRow[rows.size()]), SPEC);
+		final ModelBuilder sequential = new ModelBuilder(table);
+		final ModelBuilder parallel = new ModelBuilder(table,
+				new ExecutionMonitor(), 3);
+		assertSameModel(sequential, parallel);
+		assertSameAxes(sequential.getCube(), parallel.getCube());
+		Assert.assertEquals(sequential.getMinPlate(), parallel.getMinPlate());
+		Assert.assertEquals(sequential.getMaxPlate(), parallel.getMaxPlate());
+		Assert.assertEquals(sequential.getMinReplicate(), parallel
+				.getMinReplicate());
+		Assert.assertEquals(sequential.getMaxReplicate(), parallel
+				.getMaxReplicate());
+	}
+
+	/**
+	 * The values are coded the same way (in the order of their first rows).
+	 * 
+	 * @param expected
+	 *            The expected {@link PlateCube}.
+	 * @param actual
+	 *            The actual {@link PlateCube}.
+	 */
+	private static void assertSameAxes(final PlateCube expected,
+			final PlateCube actual) {
+		Assert.assertEquals(expected.getExperiments().getValues(), actual
+				.getExperiments().getValues());
+		Assert.assertEquals(expected.getNormalisations().getValues(), actual
+				.getNormalisations().getValues());
+		Assert.assertEquals(expected.getParameters().getValues(), actual
+				.getParameters().getValues());
+		Assert.assertEquals(expected.getPlates().size(), actual.getPlates()
+				.size());
+		for (int i = expected.getPlates().size(); i-- > 0;) {
+			Assert.assertEquals(expected.getPlates().valueOf(i), actual
+					.getPlates().valueOf(i));
+		}
+		Assert.assertEquals(expected.getReplicates().size(), actual
+				.getReplicates().size());
+		for (int i = expected.getReplicates().size(); i-- > 0;) {
+			Assert.assertEquals(expected.getReplicates().valueOf(i), actual
+					.getReplicates().valueOf(i));
+		}
+	}
+
+	/**
+	 * The lazily loaded model gives the same results as the eager one, and
+	 * keeps only the recently used plates.
+	 * 
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 */
+	@Test
+	public void lazy() throws CanceledExecutionException {
+		final DefaultTable table = randomTable(7);
+		final ModelBuilder eager = new ModelBuilder(table);
+		final ModelBuilder lazy = new ModelBuilder(table, new SpecAnalyser(
+				SPEC), new ExecutionMonitor(), 1, 2);
+		Assert.assertTrue(lazy.getCube().isLazy());
+		Assert.assertEquals(0, lazy.getCube().getSliceCount());
+		assertDeepEquals(eager.getReplicates(), lazy.getReplicates());
+		assertDeepEquals(eager.getScores(), lazy.getScores());
+		assertDeepEquals(eager.getTexts(), lazy.getTexts());
+		Assert.assertEquals(eager.getKeyToPlateAndPosition(), lazy
+				.getKeyToPlateAndPosition());
+		Assert.assertTrue(lazy.getCube().getSliceCount() <= 2 * (StatTypes.scoreTypes
+				.size() + 2 * 2));
+	}
+
+	/**
+	 * The statistics of the lazily loaded model are computed while building,
+	 * without loading the plates, and they are the same as the statistics
+	 * of the eager one (the scores of the replicates of a well are counted
+	 * once).
+	 * 
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 */
+	@Test
+	public void lazyRanges() throws CanceledExecutionException {
+		final DefaultTable table = randomTable(17);
+		final ModelBuilder lazy = new ModelBuilder(table, new SpecAnalyser(
+				SPEC), new ExecutionMonitor(), 1, 1);
+		Assert.assertEquals(0, lazy.getCube().getSliceCount());
+		assertSameRanges(new ModelBuilder(table).getRanges(), lazy
+				.getRanges());
+		Assert.assertEquals(0, lazy.getCube().getSliceCount());
+	}
+
+	/**
+	 * The statistics of the lazily loaded model are the same as the
+	 * statistics of the eager one even if the rows of the plates are
+	 * scattered (the plates are loaded to compute them).
+	 * 
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 */
+	@Test
+	public void lazyRangesScattered() throws CanceledExecutionException {
+		final DefaultTable table = randomTable(17, false);
+		assertSameRanges(new ModelBuilder(table).getRanges(),
+				new ModelBuilder(table, new SpecAnalyser(SPEC),
+						new ExecutionMonitor(), 1, 1).getRanges());
+	}
+
+	private static void assertSameRanges(
+			final Map<String, Map<StatTypes, Map<RangeType, Double>>> expected,
+			final Map<String, Map<StatTypes, Map<RangeType, Double>>> actual) {
+		Assert.assertEquals(expected.keySet(), actual.keySet());
+		for (final Entry<String, Map<StatTypes, Map<RangeType, Double>>> entry : expected
+				.entrySet()) {
+			final Map<StatTypes, Map<RangeType, Double>> actualStats = actual
+					.get(entry.getKey());
+			Assert.assertEquals(entry.getValue().keySet(), actualStats
+					.keySet());
+			for (final Entry<StatTypes, Map<RangeType, Double>> stats : entry
+					.getValue().entrySet()) {
+				final Map<RangeType, Double> actualRanges = actualStats
+						.get(stats.getKey());
+				Assert.assertEquals(stats.getValue().keySet(), actualRanges
+						.keySet());
+				for (final Entry<RangeType, Double> range : stats.getValue()
+						.entrySet()) {
+					Assert.assertEquals(range.getValue().doubleValue(),
+							actualRanges.get(range.getKey()).doubleValue(),
+							1E-9);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A {@link DataTable} counting its iterations.
+	 */
+	private static final class CountingTable implements DataTable {
+		private final DataTable table;
+		private int iterations;
+
+		CountingTable(final DataTable table) {
+			super();
+			this.table = table;
+		}
+
+		@Override
+		public DataTableSpec getDataTableSpec() {
+			return table.getDataTableSpec();
+		}
+
+		@Override
+		public RowIterator iterator() {
+			++iterations;
+			return table.iterator();
+		}
+	}
+
+	/**
+	 * The values stored in a file are the same as the eagerly built ones, the
+	 * completed file is reused without reading the values again, but not for
+	 * a table with the same structure and different values.
+	 * 
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 * @throws IOException
+	 *             If the temporary file cannot be used.
+	 */
+	@Test
+	public void mapped() throws CanceledExecutionException, IOException {
+		final DefaultTable table = randomTable(11);
+		final ModelBuilder eager = new ModelBuilder(table);
+		final File file = File.createTempFile("values", ".cube");
+		try {
+			for (int i = 0; i < 2; ++i) {
+				final CountingTable counting = new CountingTable(table);
+				final ModelBuilder mapped = new ModelBuilder(counting,
+						new SpecAnalyser(SPEC), new ExecutionMonitor(), 3, file);
+				try {
+					// structure pass, and the values only for the first time
+					Assert.assertEquals(i == 0 ? 2 : 1, counting.iterations);
+					Assert.assertEquals(file, mapped.getStoreFile());
+					Assert.assertTrue(mapped.getCube().isLazy());
+					assertDeepEquals(eager.getReplicates(), mapped
+							.getReplicates());
+					assertDeepEquals(eager.getScores(), mapped.getScores());
+					assertDeepEquals(eager.getTexts(), mapped.getTexts());
+				} finally {
+					mapped.dispose();
+				}
+			}
+			// same structure, different values
+			final List<DataRow> rows = new ArrayList<DataRow>();
+			for (final DataRow row : table) {
+				rows.add(row(row.getKey().getString(), ((StringCell) row
+						.getCell(0)).getStringValue(), ((IntCell) row
+						.getCell(1)).getIntValue(), ((IntCell) row.getCell(2))
+						.getIntValue(), ((StringCell) row.getCell(3))
+						.getStringValue(), rows.size(), -rows.size()));
+			}
+			final DefaultTable changed = new DefaultTable(rows
+					.toArray(new DataRow[rows.size()]), SPEC);
+			final CountingTable counting = new CountingTable(changed);
+			final ModelBuilder mapped = new ModelBuilder(counting,
+					new SpecAnalyser(SPEC), new ExecutionMonitor(), 3, file);
+			try {
+				Assert.assertEquals(2, counting.iterations);
+				final ModelBuilder changedEager = new ModelBuilder(changed);
+				assertDeepEquals(changedEager.getReplicates(), mapped
+						.getReplicates());
+				assertDeepEquals(changedEager.getScores(), mapped.getScores());
+			} finally {
+				mapped.dispose();
+			}
+		} finally {
+			Assert.assertTrue(file.delete());
+		}
+	}
+
+	/**
+	 * The file of the values is moved, the values are read from the new file
+	 * afterwards (also the plates loaded before the move).
+	 * 
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 * @throws IOException
+	 *             If the temporary files cannot be used.
+	 */
+	@Test
+	public void mappedMove() throws CanceledExecutionException, IOException {
+		final DefaultTable table = randomTable(29);
+		final ModelBuilder eager = new ModelBuilder(table);
+		final File file = File.createTempFile("values", ".cube");
+		final File target = File.createTempFile("moved", ".cube");
+		try {
+			final ModelBuilder mapped = new ModelBuilder(table,
+					new SpecAnalyser(SPEC), new ExecutionMonitor(), 2, file);
+			try {
+				final byte[] content = Files.readAllBytes(file.toPath());
+				// loads some plates
+				assertDeepEquals(eager.getScores(), mapped.getScores());
+				mapped.moveStoreFile(target);
+				Assert.assertEquals(target, mapped.getStoreFile());
+				Assert.assertFalse(file.exists());
+				Assert.assertArrayEquals(content, Files.readAllBytes(target
+						.toPath()));
+				assertDeepEquals(eager.getReplicates(), mapped
+						.getReplicates());
+				assertDeepEquals(eager.getScores(), mapped.getScores());
+			} finally {
+				mapped.dispose();
+			}
+		} finally {
+			Assert.assertTrue(target.delete());
+			Assert.assertFalse(file.exists() && !file.delete());
+		}
+	}
+
+	/**
+	 * The model read from a snapshot is the same as the written one, other
+	 * versions are rejected.
+	 * 
+	 * @throws IOException
+	 *             Should not happen.
+	 */
+	@Test
+	public void snapshot() throws IOException {
+		final DefaultTable table = randomTable(13);
+		final ModelBuilder original = new ModelBuilder(table);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		original.writeSnapshot(out);
+		final byte[] bytes = out.toByteArray();
+		final ModelBuilder read = ModelBuilder.readSnapshot(table,
+				new ByteArrayInputStream(bytes));
+		assertDeepEquals(original.getReplicates(), read.getReplicates());
+		assertDeepEquals(original.getScores(), read.getScores());
+		assertDeepEquals(original.getTexts(), read.getTexts());
+		assertDeepEquals(original.getColours(), read.getColours());
+		assertDeepEquals(original.getRanges(), read.getRanges());
+		Assert.assertEquals(original.getKeyToPlateAndPosition(), read
+				.getKeyToPlateAndPosition());
+		Assert.assertEquals(original.getMinPlate(), read.getMinPlate());
+		Assert.assertEquals(original.getMaxReplicate(), read
+				.getMaxReplicate());
+		Assert.assertEquals(original.getCube().getSliceCount(), read
+				.getCube().getSliceCount());
+		++bytes[11];
+		try {
+			ModelBuilder.readSnapshot(table, new ByteArrayInputStream(bytes));
+			Assert.fail("Different version should be rejected.");
+		} catch (final IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * The snapshot is read without iterating the rows of the table, it is
+	 * rejected for a table with different columns.
+	 * 
+	 * @throws IOException
+	 *             Should not happen.
+	 */
+	@Test
+	public void snapshotDifferentTable() throws IOException {
+		final DefaultTable table = randomTable(13);
+		final ModelBuilder original = new ModelBuilder(table);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		original.writeSnapshot(out);
+		final ModelBuilder read = ModelBuilder.readSnapshot(
+				withoutRows(SPEC), new ByteArrayInputStream(out.toByteArray()));
+		assertDeepEquals(original.getScores(), read.getScores());
+		final DataColumnSpec[] columns = new DataColumnSpec[SPEC
+				.getNumColumns()];
+		for (int i = columns.length; i-- > 0;) {
+			columns[i] = SPEC.getColumnSpec(i);
+		}
+		columns[columns.length - 1] = new DataColumnSpecCreator(
+				ModelBuilder.RAW_START + "B", DoubleCell.TYPE).createSpec();
+		try {
+			ModelBuilder.readSnapshot(withoutRows(new DataTableSpec(columns)),
+					new ByteArrayInputStream(out.toByteArray()));
+			Assert.fail("Different table should be rejected.");
+		} catch (final IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * @param spec
+	 *            A {@link DataTableSpec}.
+	 * @return A {@link DataTable} with {@code spec}, its rows cannot be read.
+	 */
+	private static DataTable withoutRows(final DataTableSpec spec) {
+		return new DataTable() {
+			@Override
+			public DataTableSpec getDataTableSpec() {
+				return spec;
+			}
+
+			@Override
+			public RowIterator iterator() {
+				throw new UnsupportedOperationException("The rows are read.");
+			}
+		};
+	}
+
+	/**
+	 * The snapshot of a lazily loaded model does not contain the values, they
+	 * are loaded from the table again.
+	 * 
+	 * @throws IOException
+	 *             Should not happen.
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 */
+	@Test
+	public void snapshotLazy() throws IOException, CanceledExecutionException {
+		final DefaultTable table = randomTable(19);
+		final ModelBuilder eager = new ModelBuilder(table);
+		final ModelBuilder lazy = new ModelBuilder(table, new SpecAnalyser(
+				SPEC), new ExecutionMonitor(), 1, 2);
+		// loads some plates
+		assertDeepEquals(eager.getScores(), lazy.getScores());
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		lazy.writeSnapshot(out);
+		final ByteArrayOutputStream eagerOut = new ByteArrayOutputStream();
+		eager.writeSnapshot(eagerOut);
+		Assert.assertTrue(out.size() < eagerOut.size());
+		final ModelBuilder read = ModelBuilder.readSnapshot(table,
+				new ByteArrayInputStream(out.toByteArray()), 2, null);
+		Assert.assertTrue(read.getCube().isLazy());
+		Assert.assertEquals(0, read.getCube().getSliceCount());
+		assertDeepEquals(eager.getReplicates(), read.getReplicates());
+		assertDeepEquals(eager.getScores(), read.getScores());
+		assertDeepEquals(eager.getTexts(), read.getTexts());
+		assertDeepEquals(lazy.getRanges(), read.getRanges());
+		Assert.assertEquals(eager.getKeyToPlateAndPosition(), read
+				.getKeyToPlateAndPosition());
+		assertSizes(read.getReplicates());
+	}
+
+	/**
+	 * The snapshot of a model stored in a file is read with the same
+	 * (read-only) file, the file is not modified. Without the file the
+	 * snapshot cannot be read.
+	 * 
+	 * @throws IOException
+	 *             Should not happen.
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 */
+	@Test
+	public void snapshotMapped() throws IOException,
+			CanceledExecutionException {
+		final DefaultTable table = randomTable(23);
+		final ModelBuilder eager = new ModelBuilder(table);
+		final File file = File.createTempFile("values", ".cube");
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final ModelBuilder mapped = new ModelBuilder(table,
+					new SpecAnalyser(SPEC), new ExecutionMonitor(), 3, file);
+			try {
+				mapped.writeSnapshot(out);
+			} finally {
+				mapped.dispose();
+			}
+			final byte[] content = Files.readAllBytes(file.toPath());
+			final ModelBuilder read = ModelBuilder.readSnapshot(table,
+					new ByteArrayInputStream(out.toByteArray()), 3, file);
+			try {
+				Assert.assertEquals(file, read.getStoreFile());
+				assertDeepEquals(eager.getReplicates(), read.getReplicates());
+				assertDeepEquals(eager.getScores(), read.getScores());
+				assertDeepEquals(eager.getColours(), read.getColours());
+			} finally {
+				read.dispose();
+			}
+			Assert.assertArrayEquals(content, Files.readAllBytes(file
+					.toPath()));
+			try {
+				ModelBuilder.readSnapshot(table, new ByteArrayInputStream(out
+						.toByteArray()));
+				Assert.fail("The file of the values is necessary.");
+			} catch (final IOException e) {
+				// expected
+			}
+		} finally {
+			Assert.assertTrue(file.delete());
+		}
+	}
+
+	private static DefaultTable randomTable(final long seed) {
+		return randomTable(seed, true);
+	}
+
+	/**
+	 * @param seed
+	 *            The seed of the random values.
+	 * @param plateMajor
+	 *            The rows are ordered by plate, then by replicate if
+	 *            {@code true}, else by replicate, then by plate.
+	 * @return A table with 2 replicates of 8 plates, with random wells and
+	 *         values.
+	 */
+	private static DefaultTable randomTable(final long seed,
+			final boolean plateMajor) {
+		final List<DataRow> rows = new ArrayList<DataRow>();
+		final Random random = new Random(seed);
+		for (int outer = 1; outer <= (plateMajor ? 8 : 2); ++outer) {
+			for (int inner = 1; inner <= (plateMajor ? 2 : 8); ++inner) {
+				final int plate = plateMajor ? outer : inner;
+				final int replicate = plateMajor ? inner : outer;
+				for (int well = 0; well < 96; well += 1 + random.nextInt(3)) {
+					rows.add(row("r" + rows.size(), random.nextInt(4) == 0 ? "a"
+							: "b", plate, replicate, (char) ('A' + well / 12)
+							+ Integer.toString(well % 12 + 1), random.nextInt(9) == 0 ? Double.NaN
+							: random.nextGaussian(), random.nextGaussian()));
+				}
+			}
+		}
+		return new DefaultTable(rows.toArray(new DataRow[rows.size()]), SPEC);
+	}
+
+	/**
+	 * The incrementally updated model is the same as the one built from the
+	 * final rows.
+	 * 
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 */
+	@Test
+	public void update() throws CanceledExecutionException {
+		final List<DataRow> initial = new ArrayList<DataRow>();
+		final List<DataRow> delta = new ArrayList<DataRow>();
+		final List<DataRow> all = new ArrayList<DataRow>();
+		final Random random = new Random(5);
+		for (int plate = 1; plate <= 6; ++plate) {
+			for (int replicate = 1; replicate <= 2; ++replicate) {
+				for (int well = 0; well < 96; ++well) {
+					final String wellName = (char) ('A' + well / 12)
+							+ Integer.toString(well % 12 + 1);
+					final String experiment = well % 3 == 0 ? "a" : "b";
+					if (plate <= 4) {
+						final DataRow row = row("r" + plate + "_" + replicate
+								+ "_" + well, experiment, plate, replicate,
+								wellName, random.nextGaussian(), random
+										.nextGaussian());
+						initial.add(row);
+						if (plate != 3) {
+							all.add(row);
+						}
+					}
+					if (plate >= 5 || plate == 3 && well % 2 == 0) {
+						final DataRow row = row("d" + plate + "_" + replicate
+								+ "_" + well, experiment, plate, replicate,
+								wellName, random.nextGaussian(), random
+										.nextGaussian());
+						delta.add(row);
+						all.add(row);
+					}
+				}
+			}
+		}
+		final ModelBuilder updated = new ModelBuilder(new DefaultTable(initial
+				.toArray(new DataRow[initial.size()]), SPEC));
+		updated.update(new DefaultTable(delta
+				.toArray(new DataRow[delta.size()]), SPEC), null);
+		final ModelBuilder expected = new ModelBuilder(new DefaultTable(all
+				.toArray(new DataRow[all.size()]), SPEC));
+		assertDeepEquals(expected.getReplicates(), updated.getReplicates());
+		assertDeepEquals(expected.getScores(), updated.getScores());
+		assertDeepEquals(expected.getTexts(), updated.getTexts());
+		Assert.assertEquals(expected.getKeyToPlateAndPosition(), updated
+				.getKeyToPlateAndPosition());
+		Assert.assertEquals(expected.getCube().getSliceCount(), updated
+				.getCube().getSliceCount());
+		Assert.assertEquals(6, updated.getMaxPlate());
+	}
+
+	/**
+	 * New plates are added to the model, the statistics are the same as the
+	 * ones of the model built from every row.
+	 * 
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 */
+	@Test
+	public void updateAdd() throws CanceledExecutionException {
+		final List<DataRow> initial = new ArrayList<DataRow>();
+		final List<DataRow> delta = new ArrayList<DataRow>();
+		final Random random = new Random(7);
+		for (int plate = 1; plate <= 5; ++plate) {
+			for (int well = 0; well < 96; well += 2) {
+				(plate <= 3 ? initial : delta).add(row("r" + plate + "_"
+						+ well, well % 4 == 0 ? "a" : "b", plate, 1,
+						wellName(well), random.nextGaussian(), random
+								.nextGaussian()));
+			}
+		}
+		final ModelBuilder updated = new ModelBuilder(table(initial));
+		// the statistics are computed before the update
+		Assert.assertFalse(updated.getRanges().isEmpty());
+		updated.update(table(delta), new ExecutionMonitor());
+		final List<DataRow> all = new ArrayList<DataRow>(initial);
+		all.addAll(delta);
+		assertSameModel(new ModelBuilder(table(all)), updated);
+		Assert.assertEquals(1, updated.getMinPlate());
+		Assert.assertEquals(5, updated.getMaxPlate());
+	}
+
+	/**
+	 * Replacing a plate of an experiment keeps the plate with the same number
+	 * in the other experiment, and removes only the keys of the replaced
+	 * rows.
+	 * 
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 */
+	@Test
+	public void updateReplaceSharedPlate() throws CanceledExecutionException {
+		final List<DataRow> initial = new ArrayList<DataRow>();
+		final List<DataRow> delta = new ArrayList<DataRow>();
+		final List<DataRow> all = new ArrayList<DataRow>();
+		final Random random = new Random(9);
+		for (final String experiment : new String[] { "a", "b" }) {
+			for (int plate = 1; plate <= 3; ++plate) {
+				for (int well = 0; well < 96; ++well) {
+					final DataRow row = row(experiment + plate + "_" + well,
+							experiment, plate, 1, wellName(well), random
+									.nextGaussian(), random.nextGaussian());
+					initial.add(row);
+					if (!experiment.equals("b") || plate != 2) {
+						all.add(row);
+					}
+				}
+			}
+		}
+		for (int well = 0; well < 96; well += 3) {
+			final DataRow row = row("d" + well, "b", 2, 1, wellName(well),
+					random.nextGaussian(), random.nextGaussian());
+			delta.add(row);
+			all.add(row);
+		}
+		final ModelBuilder updated = new ModelBuilder(table(initial));
+		updated.update(table(delta), null);
+		assertSameModel(new ModelBuilder(table(all)), updated);
+		Assert.assertNull(updated.getKeyToPlateAndPosition().get("b2_1"));
+		Assert.assertNotNull(updated.getKeyToPlateAndPosition().get("a2_1"));
+		final RowKeyIndex index = updated.getRowKeyIndex();
+		for (final int row : index.getRows(2, 1)) {
+			Assert.assertEquals("a2_1", index.getKey(row));
+		}
+	}
+
+	/**
+	 * A cancelled update does not change the model.
+	 */
+	@Test
+	public void updateCancelled() {
+		final DefaultTable table = randomTable(19);
+		final ModelBuilder updated = new ModelBuilder(table);
+		final DefaultNodeProgressMonitor monitor = new DefaultNodeProgressMonitor();
+		monitor.setExecuteCanceled();
+		try {
+			updated.update(randomTable(23), new ExecutionMonitor(monitor));
+			Assert.fail("The update should be cancelled.");
+		} catch (final CanceledExecutionException e) {
+			// expected
+		}
+		assertSameModel(new ModelBuilder(table), updated);
+	}
+
+	/**
+	 * The model is updated to the table with appended rows (only the new
+	 * rows are parsed), the result is the same as the model built from the
+	 * new table, also its snapshot is accepted for the new table.
+	 * 
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 * @throws IOException
+	 *             Should not happen.
+	 */
+	@Test
+	public void updateToAppended() throws CanceledExecutionException,
+			IOException {
+		final List<DataRow> all = new ArrayList<DataRow>();
+		for (final DataRow row : randomTable(37)) {
+			all.add(row);
+		}
+		final List<DataRow> initial = all.subList(0, all.size() / 2);
+		final ModelBuilder updated = new ModelBuilder(table(initial));
+		final DefaultTable table = table(all);
+		final CountingTable counting = new CountingTable(table);
+		Assert.assertTrue(updated.isUpdatable());
+		Assert.assertTrue(updated.updateTo(counting, new ExecutionMonitor()));
+		Assert.assertEquals(1, counting.iterations);
+		Assert.assertSame(counting, updated.getTable());
+		assertSameModel(new ModelBuilder(table), updated);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		updated.writeSnapshot(out);
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		new ModelBuilder(table).writeSnapshot(expected);
+		Assert.assertArrayEquals(expected.toByteArray(), out.toByteArray());
+	}
+
+	/**
+	 * The model is not updated to a table which does not start with the
+	 * rows of the model, or when the values are loaded lazily.
+	 * 
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 */
+	@Test
+	public void updateToChanged() throws CanceledExecutionException {
+		final List<DataRow> all = new ArrayList<DataRow>();
+		for (final DataRow row : randomTable(41)) {
+			all.add(row);
+		}
+		final DefaultTable initial = table(all.subList(0, all.size() / 2));
+		final ModelBuilder model = new ModelBuilder(initial);
+		Assert.assertFalse(model.updateTo(table(all.subList(1, all.size())),
+				null));
+		Assert.assertFalse(model.updateTo(table(all.subList(0,
+				all.size() / 2 - 1)), null));
+		Assert.assertSame(initial, model.getTable());
+		assertSameModel(new ModelBuilder(initial), model);
+		final ModelBuilder lazy = new ModelBuilder(initial, new SpecAnalyser(
+				SPEC), new ExecutionMonitor(), 1, 2);
+		Assert.assertFalse(lazy.isUpdatable());
+		Assert.assertFalse(lazy.updateTo(table(all), null));
+	}
+
+	private static String wellName(final int well) {
+		return (char) ('A' + well / 12) + Integer.toString(well % 12 + 1);
+	}
+
+	private static DefaultTable table(final List<DataRow> rows) {
+		return new DefaultTable(rows.toArray(new DataRow[rows.size()]), SPEC);
+	}
+
+	private static void assertSameModel(final ModelBuilder expected,
+			final ModelBuilder actual) {
+		assertDeepEquals(expected.getReplicates(), actual.getReplicates());
+		assertDeepEquals(expected.getScores(), actual.getScores());
+		assertDeepEquals(expected.getTexts(), actual.getTexts());
+		assertDeepEquals(expected.getColours(), actual.getColours());
+		Assert.assertEquals(expected.getKeyToPlateAndPosition(), actual
+				.getKeyToPlateAndPosition());
+		Assert.assertEquals(expected.getCube().getSliceCount(), actual
+				.getCube().getSliceCount());
+		final Map<String, Map<StatTypes, Map<RangeType, Double>>> expectedRanges = expected
+				.getRanges(), actualRanges = actual.getRanges();
+		Assert.assertEquals(expectedRanges.keySet(), actualRanges.keySet());
+		for (final Entry<String, Map<StatTypes, Map<RangeType, Double>>> entry : expectedRanges
+				.entrySet()) {
+			Assert.assertEquals(entry.getValue().keySet(), actualRanges.get(
+					entry.getKey()).keySet());
+			for (final Entry<StatTypes, Map<RangeType, Double>> stats : entry
+					.getValue().entrySet()) {
+				for (final Entry<RangeType, Double> range : stats.getValue()
+						.entrySet()) {
+					Assert.assertEquals(range.getValue().doubleValue(),
+							actualRanges.get(entry.getKey()).get(
+									stats.getKey()).get(range.getKey())
+									.doubleValue(), 1E-9);
+				}
+			}
+		}
+	}
+
+	private static void assertDeepEquals(final Object expected,
+			final Object actual) {
+		if (expected instanceof Map<?, ?>) {
+			final Map<?, ?> expectedMap = (Map<?, ?>) expected, actualMap = (Map<?, ?>) actual;
+			Assert.assertEquals(Arrays.asList(expectedMap.keySet().toArray()),
+					Arrays.asList(actualMap.keySet().toArray()));
+			for (final Entry<?, ?> entry : expectedMap.entrySet()) {
+				assertDeepEquals(entry.getValue(), actualMap.get(entry.getKey()));
+			}
+		} else if (expected instanceof double[]) {
+			Assert.assertTrue(Arrays.equals((double[]) expected,
+					(double[]) actual));
+		} else if (expected instanceof int[]) {
+			Assert.assertArrayEquals((int[]) expected, (int[]) actual);
+		} else if (expected instanceof Object[]) {
+			Assert.assertArrayEquals((Object[]) expected, (Object[]) actual);
+		} else {
+			Assert.assertEquals(expected, actual);
+		}
+	}
+
+	/**
+	 * The sizes of the views are the same as the number of their entries
+	 * (also after removing plates), and the nested views are reused.
+	 * 
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 */
+	@Test
+	public void viewSizes() throws CanceledExecutionException {
+		final ModelBuilder builder = new ModelBuilder(randomTable(29));
+		builder.update(randomTable(31), null);
+		assertSizes(builder.getReplicates());
+		assertSizes(builder.getScores());
+		Assert.assertSame(builder.getScores().get("b").get(""), builder
+				.getScores().get("b").get(""));
+	}
+
+	private static void assertSizes(final Map<?, ?> map) {
+		int count = 0;
+		for (final Entry<?, ?> entry : map.entrySet()) {
+			++count;
+			if (entry.getValue() instanceof Map<?, ?>) {
+				assertSizes((Map<?, ?>) entry.getValue());
+			}
+		}
+		Assert.assertEquals(count, map.size());
+		Assert.assertEquals(count, map.entrySet().size());
+	}
+
+	/**
+	 * The views cannot be modified.
+	 */
+	@Test(expected = UnsupportedOperationException.class)
+	public void readOnlyViews() {
+		createModelBuilder().getScores().get("a").remove("");
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataType;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.StringCell;
+
+/**
+ * Tests for {@link NormKeyDictionary}.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class NormKeyDictionaryTests {
+	private static DataRow row(final DataCell... cells) {
+		return new DefaultRow("row", cells);
+	}
+
+	/**
+	 * The codes are assigned in order of appearance, the keys are the same as
+	 * {@link ModelBuilder#getNormKey(DataRow, int, int, int, int, int, int)}
+	 * .
+	 */
+	@Test
+	public void codes() {
+		final NormKeyDictionary dictionary = new NormKeyDictionary(0, -1, 2,
+				-1, -1, 1);
+		final DataRow[] rows = new DataRow[] {
+				row(new StringCell("median"), new StringCell("mean"),
+						new StringCell("additive")),
+				row(new StringCell("none"), new StringCell("mean"),
+						new StringCell("additive")),
+				row(new StringCell("median"), new StringCell("mean"),
+						new StringCell("additive")),
+				row(new StringCell("median"), DataType.getMissingCell(),
+						new StringCell("multiplicative")) };
+		final int[] codes = new int[rows.length];
+		for (int i = 0; i < rows.length; ++i) {
+			codes[i] = dictionary.code(rows[i]);
+			Assert.assertEquals(ModelBuilder.getNormKey(rows[i], 0, -1, 2, -1,
+					-1, 1), dictionary.getKey(codes[i]));
+		}
+		Assert.assertArrayEquals(new int[] { 0, 1, 0, 2 }, codes);
+		Assert.assertEquals(3, dictionary.size());
+		Assert.assertEquals(1, dictionary.codeOf(dictionary.getKey(1)));
+		Assert.assertEquals(-1, dictionary.codeOf("none"));
+	}
+
+	/**
+	 * Different cells with the same {@link String} representation get the
+	 * same code, and many combinations are handled.
+	 */
+	@Test
+	public void sameKey() {
+		final NormKeyDictionary dictionary = new NormKeyDictionary(0, 1, -1,
+				-1, -1, -1);
+		Assert.assertEquals(0, dictionary.code(row(new StringCell("1"),
+				new StringCell("x"))));
+		Assert.assertEquals(0, dictionary.code(row(new IntCell(1),
+				new StringCell("x"))));
+		for (int i = 0; i < 100; ++i) {
+			Assert.assertEquals(i + 1, dictionary.code(row(new IntCell(i + 2),
+					new StringCell("x"))));
+		}
+		for (int i = 0; i < 100; ++i) {
+			Assert.assertEquals(i + 1, dictionary.code(row(new IntCell(i + 2),
+					new StringCell("x"))));
+		}
+		Assert.assertEquals(Arrays.asList("1_x_", "2_x_"), dictionary
+				.getKeys().subList(0, 2));
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util;
+
+import java.awt.Color;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PackedColours}, every ARGB value (even the transparent
+ * black) is different from the missing colours.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class PackedColoursTests {
+	/**
+	 * The transparent black colour is present, the not set wells are not.
+	 */
+	@Test
+	public void transparentBlack() {
+		final PackedColours colours = new PackedColours(4);
+		colours.set(1, 0x00000000);
+		colours.set(2, Color.RED.getRGB());
+		Assert.assertFalse(colours.isPresent(0));
+		Assert.assertNull(colours.get(0));
+		Assert.assertTrue(colours.isPresent(1));
+		Assert.assertEquals(new Color(0, 0, 0, 0), colours.get(1));
+		Assert.assertEquals(0, colours.get(1).getAlpha());
+		Assert.assertEquals(Color.RED, colours.get(2));
+		Assert.assertFalse(colours.isPresent(3));
+		final PackedColours other = new PackedColours(4);
+		other.set(2, Color.RED.getRGB());
+		Assert.assertFalse(colours.equals(other));
+		other.set(1, 0);
+		Assert.assertEquals(colours, other);
+		Assert.assertEquals(colours.hashCode(), other.hashCode());
+	}
+
+	/**
+	 * The interned transparent black is a {@link Color}, and it is reused.
+	 */
+	@Test
+	public void internedTransparentBlack() {
+		final Color colour = VisualUtils.interned(0);
+		Assert.assertNotNull(colour);
+		Assert.assertEquals(0, colour.getRGB());
+		Assert.assertSame(colour, VisualUtils.interned(0));
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.mind_era.knime.common.util.swing.colour.ColourSelector.RangeType;
+
+/**
+ * Tests for {@link RobustStatistics}, the results are compared to the sorting
+ * based computations.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@RunWith(Parameterized.class)
+public class RobustStatisticsTests {
+	private final double[] values;
+
+	/**
+	 * @param size
+	 *            The number of values.
+	 * @param kind
+	 *            The kind of the random values.
+	 */
+	public RobustStatisticsTests(final Integer size, final Integer kind) {
+		super();
+		final Random random = new Random(size.intValue() * 31L
+				+ kind.intValue());
+		values = new double[size.intValue()];
+		for (int i = values.length; i-- > 0;) {
+			switch (kind.intValue()) {
+			case 0:
+				values[i] = random.nextGaussian() * 1000;
+				break;
+			case 1:
+				// many ties
+				values[i] = random.nextInt(5) - 2;
+				break;
+			case 2:
+				values[i] = random.nextInt(10) == 0 ? Double.NaN : random
+						.nextBoolean() ? -0.0 : 0.0;
+				break;
+			default:
+				values[i] = random.nextInt(7) == 0 ? Double.NaN : random
+						.nextDouble();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return The sizes and kinds of the tests.
+	 */
+	@Parameters
+	public static List<Object[]> parameters() {
+		final List<Object[]> ret = new ArrayList<Object[]>();
+		for (final int size : new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 17, 100,
+				1001, 4096 }) {
+			for (int kind = 0; kind < 4; ++kind) {
+				ret.add(new Object[] { Integer.valueOf(size),
+						Integer.valueOf(kind) });
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Compares the results to the sorting based results.
+	 */
+	@Test
+	public void compareToSorted() {
+		final double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int n = 0;
+		while (n < sorted.length && !Double.isNaN(sorted[n])) {
+			++n;
+		}
+		final Map<RangeType, Double> ret = new EnumMap<RangeType, Double>(
+				RangeType.class);
+		new RobustStatistics().compute(values.clone(), values.length, ret);
+		if (n == 0) {
+			for (final RangeType type : RangeType.values()) {
+				Assert.assertTrue(type.name(), ret.get(type).isNaN());
+			}
+			return;
+		}
+		Assert.assertEquals(Double.valueOf(sorted[0]), ret.get(RangeType.min));
+		Assert.assertEquals(Double.valueOf(sorted[n - 1]), ret
+				.get(RangeType.max));
+		Assert.assertEquals(Double.valueOf(n % 2 != 0 ? sorted[n / 2]
+				: (sorted[n / 2] + sorted[n / 2 - 1]) / 2), ret
+				.get(RangeType.median));
+		final double q1 = quartile(sorted, n, n / 4);
+		final double q3 = quartile(sorted, n, 3 * n / 4);
+		Assert.assertEquals(Double.valueOf(q1), ret.get(RangeType.q1));
+		Assert.assertEquals(Double.valueOf(q3), ret.get(RangeType.q3));
+		Assert.assertEquals(Double.valueOf(q3 - q1), ret.get(RangeType.iqr));
+		BigDecimal sum = BigDecimal.ZERO;
+		for (int i = 0; i < n; ++i) {
+			sum = sum.add(new BigDecimal(sorted[i]));
+		}
+		final double average = ret.get(RangeType.average).doubleValue();
+		Assert.assertEquals(sum.doubleValue() / n, average, Math
+				.ulp(average) * 2);
+		BigDecimal squares = BigDecimal.ZERO;
+		final double[] deviations = new double[n];
+		for (int i = 0; i < n; ++i) {
+			final BigDecimal diff = new BigDecimal(sorted[i] - average);
+			squares = squares.add(diff.multiply(diff));
+			deviations[i] = Math.abs(sorted[i] - average);
+		}
+		final double stdev = ret.get(RangeType.stdev).doubleValue();
+		Assert.assertEquals(Math.sqrt(squares.doubleValue() / n), stdev, Math
+				.ulp(stdev) * 2);
+		Arrays.sort(deviations);
+		Assert.assertEquals(Double.valueOf((n % 2 != 0 ? deviations[n / 2]
+				: (deviations[n / 2] + deviations[n / 2 - 1]) / 2)
+				* RobustStatistics.MAD_SCALE), ret.get(RangeType.mad));
+	}
+
+	private static double quartile(final double[] sorted, final int n,
+			final int index) {
+		return n % 4 == 1 ? sorted[index] : ((3 * n + 5) % 4 * sorted[index] + (n - 1)
+				% 4 * sorted[Math.max(index - 1, 0)]) / 4;
+	}
+
+	/**
+	 * Checks the selection of every index.
+	 */
+	@Test
+	public void select() {
+		final double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		for (int k = 0; k < values.length; k += Math.max(1,
+				values.length / 50)) {
+			final double[] copy = values.clone();
+			Assert.assertEquals(Double.valueOf(sorted[k]), Double
+					.valueOf(RobustStatistics.select(copy, 0, copy.length, k)));
+			for (int i = 0; i < k; ++i) {
+				Assert.assertTrue(Double.compare(copy[i], copy[k]) <= 0);
+			}
+			for (int i = k + 1; i < copy.length; ++i) {
+				Assert.assertTrue(Double.compare(copy[i], copy[k]) >= 0);
+			}
+		}
+	}
+}
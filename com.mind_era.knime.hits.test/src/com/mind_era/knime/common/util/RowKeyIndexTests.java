@@ -0,0 +1,133 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.knime.core.util.Pair;
+
+/**
+ * Tests for {@link RowKeyIndex}, the results are compared to a {@link HashMap}
+ * based index.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class RowKeyIndexTests {
+	/**
+	 * Finds, moves and removes some rows.
+	 */
+	@Test
+	public void simple() {
+		final RowKeyIndex index = new RowKeyIndex(96);
+		index.put("r0", 3, 0);
+		index.put("r1", 3, 0);
+		index.put("r2", 1, 95);
+		Assert.assertEquals(RowKeyIndex.pack(3, 0), index.find("r1"));
+		Assert.assertEquals(RowKeyIndex.NOT_PRESENT, index.find("r3"));
+		Assert.assertArrayEquals(new int[] { 0, 1 }, index.getRows(3, 0));
+		index.put("r0", 1, 95);
+		Assert.assertArrayEquals(new int[] { 1 }, index.getRows(3, 0));
+		Assert.assertArrayEquals(new int[] { 0, 2 }, index.getRows(1, 95));
+		Assert.assertEquals(0, index.getRows(2, 0).length);
+		index.removePlates(Collections.singleton(Integer.valueOf(1)));
+		Assert.assertEquals(1, index.size());
+		Assert.assertEquals(1, index.getOrdinalCount());
+		Assert.assertEquals("r1", index.getKey(0));
+		Assert.assertArrayEquals(new int[] { 0 }, index.getRows(3, 0));
+		Assert.assertEquals(RowKeyIndex.NOT_PRESENT, index.find("r0"));
+		Assert.assertEquals(0, index.getRows(1, 95).length);
+		Assert.assertEquals(Collections.singletonMap("r1",
+				new Pair<Integer, Integer>(Integer.valueOf(3), Integer
+						.valueOf(0))), index.asMap());
+	}
+
+	/**
+	 * Compares many random modifications to a {@link Map}.
+	 */
+	@Test
+	public void random() {
+		final Random random = new Random(3);
+		final RowKeyIndex index = new RowKeyIndex(384);
+		final Map<String, Pair<Integer, Integer>> expected = new LinkedHashMap<String, Pair<Integer, Integer>>();
+		for (int round = 0; round < 5; ++round) {
+			for (int i = 0; i < 3000; ++i) {
+				final String key = "Row" + random.nextInt(5000);
+				final int plate = random.nextInt(20) - 5;
+				final int well = random.nextInt(384);
+				index.put(key, plate, well);
+				expected.put(key, new Pair<Integer, Integer>(Integer
+						.valueOf(plate), Integer.valueOf(well)));
+			}
+			final Integer removed = Integer.valueOf(random.nextInt(20) - 5);
+			index.removePlates(Collections.singleton(removed));
+			for (final Entry<String, Pair<Integer, Integer>> entry : new ArrayList<Entry<String, Pair<Integer, Integer>>>(
+					expected.entrySet())) {
+				if (entry.getValue().getFirst().equals(removed)) {
+					expected.remove(entry.getKey());
+				}
+			}
+			Assert.assertEquals(expected, index.asMap());
+			Assert.assertEquals(expected.size(), index.size());
+			Assert.assertEquals(expected.size(), index.getOrdinalCount());
+			final Map<Pair<Integer, Integer>, List<String>> byPosition = new HashMap<Pair<Integer, Integer>, List<String>>();
+			for (int ordinal = 0; ordinal < index.getOrdinalCount(); ++ordinal) {
+				final String key = index.getKey(ordinal);
+				if (key != null) {
+					final Pair<Integer, Integer> position = expected.get(key);
+					if (!byPosition.containsKey(position)) {
+						byPosition.put(position, new ArrayList<String>());
+					}
+					byPosition.get(position).add(key);
+				}
+			}
+			for (final Entry<Pair<Integer, Integer>, List<String>> entry : byPosition
+					.entrySet()) {
+				final List<String> keys = new ArrayList<String>();
+				for (final int row : index.getRows(entry.getKey().getFirst()
+						.intValue(), entry.getKey().getSecond().intValue())) {
+					keys.add(index.getKey(row));
+				}
+				Assert.assertEquals(entry.getValue(), keys);
+				final List<String> visited = new ArrayList<String>();
+				index.forEachRow(entry.getKey().getFirst().intValue(), entry
+						.getKey().getSecond().intValue(), new IntConsumer() {
+					@Override
+					public void accept(final int row) {
+						visited.add(index.getKey(row));
+					}
+				});
+				Assert.assertEquals(keys, visited);
+			}
+		}
+	}
+
+	/**
+	 * The wells out of the plate are rejected.
+	 */
+	@Test
+	public void wrongWell() {
+		final RowKeyIndex index = new RowKeyIndex(96);
+		index.put("r0", 1, 95);
+		for (final int well : new int[] { -1, 96 }) {
+			try {
+				index.put("r1", 1, well);
+				Assert.fail("Wrong well accepted: " + well);
+			} catch (final IllegalArgumentException e) {
+				// expected
+			}
+		}
+		Assert.assertEquals(1, index.size());
+		Assert.assertArrayEquals(new int[] { 0 }, index.getRows(1, 95));
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util.interval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mind_era.knime.common.util.interval.Interval.DefaultInterval;
+
+/**
+ * Tests for {@link DoubleIntervalSet}, the results are compared to the
+ * lookups in a {@link NavigableMap} with {@link DefaultInterval} keys.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class DoubleIntervalSetTests {
+	private static final double[] ENDPOINTS = new double[] {
+			Double.NEGATIVE_INFINITY, -3.0, -2.0, -1.0, 0.0, 1.0, 2.0, 3.0,
+			Double.POSITIVE_INFINITY };
+
+	private static Interval<Double> interval(final double low,
+			final double high, final boolean closedLow,
+			final boolean closedHigh) {
+		return new DefaultInterval<Double>(Double.valueOf(low), Double
+				.valueOf(high), closedLow, closedHigh);
+	}
+
+	/**
+	 * Some simple queries.
+	 */
+	@Test
+	public void simple() {
+		final DoubleIntervalSet set = new DoubleIntervalSet(Arrays.asList(
+				interval(-2.0, 0.0, true, false), interval(0.0, 2.0, true,
+						true), interval(3.0, 4.0, false, true)));
+		Assert.assertEquals(3, set.size());
+		Assert.assertEquals(0, set.stab(-2.0));
+		Assert.assertEquals(1, set.stab(0.0));
+		Assert.assertEquals(1, set.stab(2.0));
+		Assert.assertEquals(DoubleIntervalSet.NOT_FOUND, set.stab(2.5));
+		Assert.assertEquals(DoubleIntervalSet.NOT_FOUND, set.stab(3.0));
+		Assert.assertEquals(2, set.stab(4.0));
+		Assert.assertEquals(1, set.lower(2.5));
+		Assert.assertEquals(2, set.higher(2.5));
+		Assert.assertEquals(DoubleIntervalSet.NOT_FOUND, set.lower(-2.0));
+		Assert.assertEquals(DoubleIntervalSet.NOT_FOUND, set.higher(5.0));
+		final int[] indices = new int[4];
+		set.stabAll(new double[] { -1.0, 1.0, 3.5, 5.0 }, indices);
+		Assert.assertArrayEquals(new int[] { 0, 1, 2,
+				DoubleIntervalSet.NOT_FOUND }, indices);
+	}
+
+	/**
+	 * The intervals must be in ascending order.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void unordered() {
+		new DoubleIntervalSet(Arrays.asList(interval(0.0, 2.0, true, true),
+				interval(-2.0, 0.0, true, false)));
+	}
+
+	/**
+	 * Compares the queries on random (possibly overlapping) intervals to the
+	 * {@link NavigableMap} lookups.
+	 */
+	@Test
+	public void random() {
+		final Random random = new Random(5);
+		for (int round = 0; round < 1000; ++round) {
+			final NavigableMap<Interval<Double>, Integer> map = new TreeMap<Interval<Double>, Integer>();
+			for (int i = random.nextInt(6); i-- > 0;) {
+				final double a = ENDPOINTS[random.nextInt(ENDPOINTS.length)];
+				final double b = ENDPOINTS[random.nextInt(ENDPOINTS.length)];
+				map.put(interval(Math.min(a, b), Math.max(a, b), random
+						.nextBoolean(), random.nextBoolean()), null);
+			}
+			final List<Interval<Double>> keys = new ArrayList<Interval<Double>>(
+					map.keySet());
+			for (int i = keys.size(); i-- > 0;) {
+				map.put(keys.get(i), Integer.valueOf(i));
+			}
+			final DoubleIntervalSet set = new DoubleIntervalSet(keys);
+			for (int i = 0; i < 100; ++i) {
+				final double val = i < ENDPOINTS.length ? ENDPOINTS[i] : (random
+						.nextInt(13) - 6) / 2.0;
+				final Interval<Double> point = interval(val, val, true, true);
+				Assert.assertEquals(index(map.lowerEntry(point)), set
+						.lower(val));
+				Assert.assertEquals(index(map.higherEntry(point)), set
+						.higher(val));
+				final int expected = map.lowerEntry(point) != null
+						&& map.lowerEntry(point).getKey().contains(
+								Double.valueOf(val)) ? index(map
+						.lowerEntry(point)) : map.higherEntry(point) != null
+						&& map.higherEntry(point).getKey().contains(
+								Double.valueOf(val)) ? index(map
+						.higherEntry(point)) : DoubleIntervalSet.NOT_FOUND;
+				Assert.assertEquals(expected, set.stab(val));
+			}
+		}
+	}
+
+	private static int index(final Entry<Interval<Double>, Integer> entry) {
+		return entry == null ? DoubleIntervalSet.NOT_FOUND : entry.getValue()
+				.intValue();
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.common.util.swing.colour;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.knime.core.util.Pair;
+
+import com.mind_era.knime.common.util.interval.Interval;
+import com.mind_era.knime.common.util.interval.Interval.DefaultInterval;
+
+/**
+ * Tests for the compiled {@link ComplexModel#compute(double)}, the results
+ * are compared to the direct computation.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class ComplexModelTests {
+	/** Exposes the direct computation. */
+	private static final class DirectModel extends ComplexModel {
+		private static final long serialVersionUID = 5416932946374419131L;
+
+		DirectModel(
+				final Map<Interval<Double>, Pair<Color, Color>> continuouses,
+				final Map<Interval<Double>, Color> discretes) {
+			super(continuouses, discretes);
+		}
+
+		Color direct(final double val) {
+			return computeDirect(val);
+		}
+	}
+
+	private static Interval<Double> interval(final double low,
+			final double high, final boolean closedLow,
+			final boolean closedHigh) {
+		return new DefaultInterval<Double>(Double.valueOf(low), Double
+				.valueOf(high), closedLow, closedHigh);
+	}
+
+	private static DirectModel createModel() {
+		final Map<Interval<Double>, Pair<Color, Color>> continuouses = new HashMap<Interval<Double>, Pair<Color, Color>>();
+		continuouses.put(interval(-2.0, 0.0, true, false),
+				new Pair<Color, Color>(Color.GREEN, Color.BLACK));
+		continuouses.put(interval(0.0, 2.0, true, true),
+				new Pair<Color, Color>(Color.BLACK, Color.RED));
+		continuouses.put(interval(5.0, 7.0, false, true),
+				new Pair<Color, Color>(Color.BLUE, Color.WHITE));
+		final Map<Interval<Double>, Color> discretes = new HashMap<Interval<Double>, Color>();
+		discretes.put(interval(Double.NEGATIVE_INFINITY, -2.0, true, false),
+				Color.BLUE);
+		discretes.put(interval(3.0, 4.0, true, true), Color.YELLOW);
+		discretes.put(interval(9.0, Double.POSITIVE_INFINITY, false, true),
+				Color.PINK);
+		return new DirectModel(continuouses, discretes);
+	}
+
+	private static void assertClose(final Color expected, final Color actual) {
+		Assert.assertEquals(expected.getRed(), actual.getRed(), 1);
+		Assert.assertEquals(expected.getGreen(), actual.getGreen(), 1);
+		Assert.assertEquals(expected.getBlue(), actual.getBlue(), 1);
+		Assert.assertEquals(expected.getAlpha(), actual.getAlpha());
+	}
+
+	/**
+	 * The boundaries, the gaps and the discrete intervals give the same
+	 * colours.
+	 */
+	@Test
+	public void boundaries() {
+		final DirectModel model = createModel();
+		for (final double val : new double[] { Double.NEGATIVE_INFINITY,
+				-10.0, -2.0, -0.0, 0.0, 2.0, 2.5, 3.0, 3.5, 3.6, 4.0, 4.5,
+				5.0, 7.0, 8.0, 9.0, 10.0, Double.POSITIVE_INFINITY }) {
+			Assert.assertEquals(String.valueOf(val), model.direct(val), model
+					.compute(val));
+		}
+	}
+
+	/**
+	 * The gradients are approximated at most with one unit difference in
+	 * each channel.
+	 */
+	@Test
+	public void random() {
+		final DirectModel model = createModel();
+		final Random random = new Random(7);
+		for (int i = 0; i < 100000; ++i) {
+			final double val = 5 * random.nextGaussian();
+			assertClose(model.direct(val), model.compute(val));
+		}
+	}
+
+	/**
+	 * The batch computation gives the same colours.
+	 */
+	@Test
+	public void computeAll() {
+		final DirectModel model = createModel();
+		final Random random = new Random(11);
+		final double[] values = new double[1536];
+		for (int i = values.length; i-- > 0;) {
+			values[i] = 5 * random.nextGaussian();
+		}
+		final int[] argb = new int[values.length];
+		model.computeAll(values, argb);
+		for (int i = values.length; i-- > 0;) {
+			Assert.assertEquals(model.compute(values[i]).getRGB(), argb[i]);
+		}
+	}
+
+	/**
+	 * The batch computation reuses the position of the previous value, the
+	 * runs within a region, the boundaries, {@link Double#NaN} and the
+	 * infinities between them give the same colours.
+	 */
+	@Test
+	public void computeAllRuns() {
+		final DirectModel model = createModel();
+		final double[] values = new double[] { 1.0, 1.5, 1.9, 2.0, 1.9, 0.0,
+				-0.0, -1.0, Double.NaN, -1.5, 6.0, 6.5, 7.0, 8.0, 8.5, 9.0,
+				10.0, Double.POSITIVE_INFINITY, 11.0, -3.0,
+				Double.NEGATIVE_INFINITY, -4.0, 3.5, 3.5, 4.0 };
+		final int[] argb = new int[values.length];
+		model.computeAll(values, argb);
+		for (int i = values.length; i-- > 0;) {
+			Assert.assertEquals(String.valueOf(values[i]), model.compute(
+					values[i]).getRGB(), argb[i]);
+		}
+	}
+
+	/**
+	 * Too short output array is rejected.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void computeAllShort() {
+		createModel().computeAll(new double[2], new int[1]);
+	}
+
+	/**
+	 * An empty model gives black.
+	 */
+	@Test
+	public void empty() {
+		final ComplexModel model = new ComplexModel(
+				new HashMap<Interval<Double>, Pair<Color, Color>>(),
+				new HashMap<Interval<Double>, Color>());
+		Assert.assertEquals(Color.BLACK, model.compute(1.0));
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the rectangles of the changed wells of the {@link Heatmap}.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class DirtyWellsTests {
+	private static final int COLS = 12;
+	/** The bounds of the first well. */
+	private static final Rectangle FIRST = new Rectangle(5, 3, 10, 8);
+
+	private static Rectangle wells(final int row, final int col,
+			final int rows, final int cols) {
+		return new Rectangle(FIRST.x + col * FIRST.width, FIRST.y + row
+				* FIRST.height, cols * FIRST.width, rows * FIRST.height);
+	}
+
+	/**
+	 * The distant wells are repainted separately, not with their bounding
+	 * rectangle.
+	 */
+	@Test
+	public void distantWells() {
+		final DirtyWells dirty = new DirtyWells();
+		dirty.mark(0);
+		dirty.mark(7 * COLS + 11);
+		Assert.assertEquals(Arrays.asList(wells(0, 0, 1, 1), wells(7, 11, 1,
+				1)), dirty.rectangles(FIRST, COLS));
+	}
+
+	/**
+	 * The consecutive wells of a row are joined, but not across the rows.
+	 */
+	@Test
+	public void rowRuns() {
+		final DirtyWells dirty = new DirtyWells();
+		for (int i = 9; i < 15; ++i) {
+			dirty.mark(i);
+		}
+		Assert.assertEquals(Arrays.asList(wells(0, 9, 1, 3), wells(1, 0, 1,
+				3)), dirty.rectangles(FIRST, COLS));
+	}
+
+	/**
+	 * The same runs of consecutive rows are joined, the different ones are
+	 * not.
+	 */
+	@Test
+	public void columns() {
+		final DirtyWells dirty = new DirtyWells();
+		for (int row = 2; row < 6; ++row) {
+			dirty.mark(row * COLS + 4);
+			dirty.mark(row * COLS + 5);
+		}
+		dirty.mark(6 * COLS + 4);
+		// Not consecutive with the others.
+		dirty.mark(8 * COLS + 4);
+		dirty.mark(8 * COLS + 5);
+		Assert.assertEquals(Arrays.asList(wells(2, 4, 4, 2), wells(6, 4, 1,
+				1), wells(8, 4, 1, 2)), dirty.rectangles(FIRST, COLS));
+	}
+
+	/**
+	 * Too many rectangles are replaced by their bounds, the cleared wells are
+	 * not repainted.
+	 */
+	@Test
+	public void tooManyRectangles() {
+		final DirtyWells dirty = new DirtyWells();
+		Assert.assertTrue(dirty.isEmpty());
+		// A checkerboard, none of the wells can be joined.
+		for (int i = 0; i < 8 * COLS; ++i) {
+			if ((i / COLS + i % COLS) % 2 == 0) {
+				dirty.mark(i);
+			}
+		}
+		final List<Rectangle> rectangles = dirty.rectangles(FIRST, COLS);
+		Assert.assertEquals(1, rectangles.size());
+		Assert.assertEquals(wells(0, 0, 8, COLS), rectangles.get(0));
+		dirty.clear();
+		Assert.assertTrue(dirty.isEmpty());
+		Assert.assertTrue(dirty.rectangles(FIRST, COLS).isEmpty());
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.util.concurrent.CancellationException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the pending and cancelled computations of the {@link Heatmap}
+ * values.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class GenerationsTests {
+	/**
+	 * The values are pending from the request until they are shown.
+	 */
+	@Test
+	public void pending() {
+		final Generations generations = new Generations();
+		Assert.assertFalse(generations.isPending());
+		final int generation = generations.request();
+		Assert.assertTrue(generations.isPending());
+		Assert.assertTrue(generations.isCurrent(generation));
+		generations.checkCurrent(generation);
+		generations.show(generation);
+		Assert.assertFalse(generations.isPending());
+	}
+
+	/**
+	 * The values of an older request are not shown (the shown values stay
+	 * pending), and its computation is cancelled.
+	 */
+	@Test
+	public void newerRequest() {
+		final Generations generations = new Generations();
+		final int first = generations.request();
+		generations.checkCurrent(first);
+		final int second = generations.request();
+		Assert.assertFalse(generations.isCurrent(first));
+		try {
+			generations.checkCurrent(first);
+			Assert.fail("Not cancelled");
+		} catch (final CancellationException e) {
+			// expected
+		}
+		generations.checkCurrent(second);
+		generations.show(first);
+		Assert.assertTrue(generations.isPending());
+		generations.show(second);
+		Assert.assertFalse(generations.isPending());
+		// Requested again, the shown values are stale.
+		generations.request();
+		Assert.assertTrue(generations.isPending());
+	}
+
+	/**
+	 * The reset cancels the computations without pending values.
+	 */
+	@Test
+	public void reset() {
+		final Generations generations = new Generations();
+		final int generation = generations.request();
+		generations.reset();
+		Assert.assertFalse(generations.isPending());
+		Assert.assertFalse(generations.isCurrent(generation));
+		try {
+			generations.checkCurrent(generation);
+			Assert.fail("Not cancelled");
+		} catch (final CancellationException e) {
+			// expected
+		}
+		generations.show(generation);
+		Assert.assertFalse(generations.isPending());
+	}
+}
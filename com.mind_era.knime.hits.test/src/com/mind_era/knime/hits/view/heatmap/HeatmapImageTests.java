@@ -0,0 +1,115 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.knime.core.util.Pair;
+
+import com.mind_era.knime.common.util.select.Selectable;
+import com.mind_era.knime.common.util.swing.ImageType;
+import com.mind_era.knime.common.view.AbstractExportImages;
+import com.mind_era.knime.common.view.StatTypes;
+import com.mind_era.knime.hits.view.heatmap.SliderModel.SliderFactory;
+import com.mind_era.knime.hits.view.heatmap.SliderModel.Type;
+import com.mind_era.knime.hits.view.heatmap.ViewModel.ParameterModel;
+
+/**
+ * Tests for the names of the exported {@link HeatmapImage}s, these should be
+ * the same as the names of the previous, view based export.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class HeatmapImageTests {
+	private static final ParameterModel plate = new ParameterModel("plate",
+			StatTypes.plate, null, Collections.singletonList("plate"), Arrays
+					.asList("1", "2"));
+	private static final ParameterModel experiment = new ParameterModel(
+			"experiment", StatTypes.experimentName, null, Collections
+					.singletonList("experiment"), Arrays.asList("Exp 1",
+					"Exp/2.b"));
+
+	private final SliderFactory sliderFactory = new SliderFactory();
+	private final SliderModel plateSlider = slider(Type.Selector, plate);
+	private final SliderModel experimentSlider = slider(Type.Hidden,
+			experiment);
+
+	private SliderModel slider(final Type type,
+			final ParameterModel parameterModel) {
+		final Map<Integer, Pair<ParameterModel, Object>> valueMapping = new TreeMap<Integer, Pair<ParameterModel, Object>>();
+		int i = 1;
+		for (final String val : parameterModel.getColumnValues()) {
+			valueMapping.put(Integer.valueOf(i++),
+					new Pair<ParameterModel, Object>(parameterModel, val));
+		}
+		return sliderFactory.get(type,
+				Collections.singletonList(parameterModel), valueMapping)
+				.iterator().next();
+	}
+
+	private Map<Selectable<?>, List<Integer>> selections() {
+		final Map<Selectable<?>, List<Integer>> ret = new IdentityHashMap<Selectable<?>, List<Integer>>();
+		ret.put(plateSlider, Collections.singletonList(Integer.valueOf(1)));
+		ret.put(experimentSlider, Collections
+				.singletonList(Integer.valueOf(1)));
+		return ret;
+	}
+
+	/**
+	 * Every combination of the values gets a different name, the non-word
+	 * characters are replaced by {@code _}.
+	 */
+	@Test
+	public void names() {
+		final List<SliderModel> others = Arrays.asList(plateSlider,
+				experimentSlider);
+		final List<String> names = new ArrayList<String>();
+		for (final Map<Selectable<?>, List<Integer>> combination : HeatmapImage
+				.combinations(selections(), others)) {
+			names.add(HeatmapImage.name(others, combination));
+		}
+		Assert.assertEquals(Arrays.asList("plate-1 experiment-Exp_1",
+				"plate-1 experiment-Exp_2_b", "plate-2 experiment-Exp_1",
+				"plate-2 experiment-Exp_2_b"), names);
+	}
+
+	/**
+	 * Without other sliders there is a single image with empty name.
+	 */
+	@Test
+	public void noOthers() {
+		final List<SliderModel> others = Collections.emptyList();
+		final List<Map<Selectable<?>, List<Integer>>> combinations = HeatmapImage
+				.combinations(selections(), others);
+		Assert.assertEquals(1, combinations.size());
+		Assert.assertEquals("", HeatmapImage.name(others, combinations
+				.get(0)));
+	}
+
+	/**
+	 * The files are in the folder, with the extension of the image type.
+	 */
+	@Test
+	public void files() {
+		final List<SliderModel> others = Collections
+				.singletonList(experimentSlider);
+		final String name = HeatmapImage.name(others, selections());
+		Assert.assertEquals("experiment-Exp_1", name);
+		Assert.assertEquals(new File("images" + File.separatorChar
+				+ "experiment-Exp_1.png"), AbstractExportImages.imageFile(
+				"images", name, ImageType.png));
+		Assert.assertEquals(new File("images" + File.separatorChar
+				+ "experiment-Exp_1.svg"), AbstractExportImages.imageFile(
+				"images", name + " ", ImageType.svg));
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTable;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.DefaultTable;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+
+import com.mind_era.knime.common.PublicConstants;
+import com.mind_era.knime.common.util.ModelBuilder;
+import com.mind_era.knime.common.view.StatTypes;
+
+/**
+ * Tests for the incremental update of the model of {@link HeatmapNodeModel}
+ * when its input changes between the executions.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class HeatmapNodeModelTests {
+	private static final DataTableSpec SPEC = new DataTableSpec(
+			new DataColumnSpec[] {
+					new DataColumnSpecCreator(
+							PublicConstants.EXPERIMENT_COLUMN, StringCell.TYPE)
+							.createSpec(),
+					new DataColumnSpecCreator(PublicConstants.PLATE_COLUMN,
+							IntCell.TYPE).createSpec(),
+					new DataColumnSpecCreator(
+							PublicConstants.REPLICATE_COLUMN, IntCell.TYPE)
+							.createSpec(),
+					new DataColumnSpecCreator(PublicConstants.WELL_COL_NAME,
+							StringCell.TYPE).createSpec(),
+					new DataColumnSpecCreator(ModelBuilder.SCORE_START + "A",
+							DoubleCell.TYPE).createSpec(),
+					new DataColumnSpecCreator(ModelBuilder.RAW_START + "A",
+							DoubleCell.TYPE).createSpec() });
+
+	/** Exposes the execution and the reset of the node. */
+	private static final class TestNodeModel extends HeatmapNodeModel {
+		TestNodeModel() {
+			super();
+		}
+
+		void execute(final DataTable table)
+				throws CanceledExecutionException, IOException {
+			buildModel(table, new ExecutionMonitor(), 1, 0, null);
+		}
+
+		void resetNode() {
+			reset();
+		}
+	}
+
+	private static List<DataRow> plates(final int from, final int to,
+			final String prefix) {
+		final List<DataRow> ret = new ArrayList<DataRow>();
+		for (int plate = from; plate <= to; ++plate) {
+			for (int well = 0; well < 96; ++well) {
+				ret.add(new DefaultRow(prefix + plate + "_" + well,
+						new DataCell[] {
+								new StringCell("e"),
+								new IntCell(plate),
+								new IntCell(1),
+								new StringCell((char) ('A' + well / 12)
+										+ Integer.toString(well % 12 + 1)),
+								new DoubleCell(plate + well / 96.0),
+								new DoubleCell(well) }));
+			}
+		}
+		return ret;
+	}
+
+	private static DefaultTable table(final List<DataRow> rows) {
+		return new DefaultTable(rows.toArray(new DataRow[rows.size()]), SPEC);
+	}
+
+	/**
+	 * The model of the previous execution is updated when new plates are
+	 * appended to the input, it is rebuilt when the previous rows changed.
+	 *
+	 * @throws CanceledExecutionException
+	 *             Should not happen.
+	 * @throws IOException
+	 *             Should not happen.
+	 */
+	@Test
+	public void changedInput() throws CanceledExecutionException,
+			IOException {
+		final TestNodeModel node = new TestNodeModel();
+		final List<DataRow> rows = plates(1, 2, "r");
+		node.execute(table(rows));
+		final ModelBuilder first = node.getModelBuilder();
+		Assert.assertNotNull(first);
+		Assert.assertEquals(2, first.getMaxPlate());
+		node.resetNode();
+		Assert.assertNull(node.getModelBuilder());
+		Assert.assertTrue(node.getPossibleParameters().isEmpty());
+		// new plates appended
+		rows.addAll(plates(3, 4, "r"));
+		final DefaultTable appended = table(rows);
+		node.execute(appended);
+		Assert.assertSame(first, node.getModelBuilder());
+		Assert.assertSame(appended, node.getTable());
+		Assert.assertEquals(4, first.getMaxPlate());
+		Assert.assertFalse(node.getPossibleParameters().isEmpty());
+		final ModelBuilder rebuilt = new ModelBuilder(appended);
+		Assert.assertEquals(rebuilt.getKeyToPlateAndPosition(), first
+				.getKeyToPlateAndPosition());
+		Assert.assertEquals(rebuilt.getRanges(), first.getRanges());
+		final double[] expected = rebuilt.getScores().get("e").get("").get(
+				Integer.valueOf(4)).get("A").get(StatTypes.score);
+		Assert.assertTrue(Arrays.equals(expected, first.getScores().get("e")
+				.get("").get(Integer.valueOf(4)).get("A").get(StatTypes.score)));
+		node.resetNode();
+		// the previous rows changed
+		final DefaultTable changed = table(plates(1, 3, "x"));
+		node.execute(changed);
+		Assert.assertNotSame(first, node.getModelBuilder());
+		Assert.assertSame(changed, node.getTable());
+		Assert.assertEquals(3, node.getModelBuilder().getMaxPlate());
+	}
+}
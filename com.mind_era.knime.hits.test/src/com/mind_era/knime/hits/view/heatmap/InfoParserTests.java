@@ -0,0 +1,303 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.DefaultTable;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.StringCell;
+
+import com.mind_era.knime.common.Format;
+import com.mind_era.knime.common.PublicConstants;
+import com.mind_era.knime.common.util.ModelBuilder;
+import com.mind_era.knime.common.view.StatTypes;
+import com.mind_era.knime.hits.view.heatmap.InfoParser.Labels;
+
+/**
+ * Tests for {@link InfoParser.Template#bind(List, List, List, ModelBuilder)},
+ * the labels should be the same as the labels of the previous, not compiled
+ * parser.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class InfoParserTests {
+	private static final String GENE = "Gene";
+	private static final DataTableSpec SPEC = new DataTableSpec(
+			new DataColumnSpec[] {
+					new DataColumnSpecCreator(
+							PublicConstants.EXPERIMENT_COLUMN, StringCell.TYPE)
+							.createSpec(),
+					new DataColumnSpecCreator(PublicConstants.PLATE_COLUMN,
+							IntCell.TYPE).createSpec(),
+					new DataColumnSpecCreator(
+							PublicConstants.REPLICATE_COLUMN, IntCell.TYPE)
+							.createSpec(),
+					new DataColumnSpecCreator(PublicConstants.WELL_COL_NAME,
+							StringCell.TYPE).createSpec(),
+					new DataColumnSpecCreator(ModelBuilder.SCORE_START + "A",
+							DoubleCell.TYPE).createSpec(),
+					new DataColumnSpecCreator(ModelBuilder.RAW_START + "A",
+							DoubleCell.TYPE).createSpec(),
+					new DataColumnSpecCreator(GENE, StringCell.TYPE)
+							.createSpec() });
+
+	private static final String[] FORMATS = new String[] {
+			"${plate} ${well}: ${" + GENE + "}", "<table>${raw}</table>",
+			"<table>${score}</table>${" + GENE + "}", "plain text",
+			"${unknown} and ${raw(1)}", "" };
+
+	private static DataRow row(final String key, final String experiment,
+			final int plate, final int replicate, final String well,
+			final double score, final double raw, final String gene) {
+		return new DefaultRow(key, new DataCell[] {
+				new StringCell(experiment), new IntCell(plate),
+				new IntCell(replicate), new StringCell(well),
+				new DoubleCell(score), new DoubleCell(raw),
+				new StringCell(gene) });
+	}
+
+	private static ModelBuilder createModelBuilder() {
+		return new ModelBuilder(new DefaultTable(new DataRow[] {
+				row("r0", "b", 1, 1, "A1", 1.0, 10.0, "g0"),
+				row("r1", "b", 1, 2, "A1", 1.0, 11.0, "g0"),
+				row("r2", "b", 1, 1, "B2", 2.0, 12.0, "multi\nline"),
+				row("r3", "b", 2, 1, "A1", 3.0, 13.0, "g3"),
+				row("r4", "a", 1, 1, "A1", 4.0, 14.0, "g4") }, SPEC));
+	}
+
+	/**
+	 * The labels of the single selections are the same as of the previous
+	 * parser.
+	 */
+	@Test
+	public void sameAsLegacy() {
+		final ModelBuilder modelBuilder = createModelBuilder();
+		final Format format = modelBuilder.getSpecAnalyser()
+				.getPredictedFormat();
+		for (final String formatString : FORMATS) {
+			for (final String experiment : new String[] { "a", "b" }) {
+				for (final int plate : new int[] { 1, 2, 5 }) {
+					final Labels labels = InfoParser.compile(formatString)
+							.bind(Collections.singletonList(experiment),
+									Collections.singletonList(""),
+									Collections.singletonList(Integer
+											.valueOf(plate)), modelBuilder);
+					for (int row = 0; row < format.getRow(); ++row) {
+						for (int col = 0; col < format.getCol(); ++col) {
+							Assert.assertEquals(formatString + " " + experiment
+									+ " " + plate + " " + row + " " + col,
+									legacyParse(experiment, "", formatString,
+											plate, row, col, modelBuilder),
+									labels.label(row, col));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Some labels with the values.
+	 */
+	@Test
+	public void labels() {
+		final ModelBuilder modelBuilder = createModelBuilder();
+		final Labels labels = InfoParser.compile(FORMATS[0]).bind(
+				Collections.singletonList("b"), Collections.singletonList(""),
+				Collections.singletonList(Integer.valueOf(1)), modelBuilder);
+		Assert.assertEquals("1 A1: g0", labels.label(0, 0));
+		Assert.assertEquals("1 B2: multi<p>line", labels.label(1, 1));
+		Assert.assertEquals("plain text", InfoParser.compile(FORMATS[3]).bind(
+				Collections.singletonList("b"), Collections.singletonList(""),
+				Collections.singletonList(Integer.valueOf(1)), modelBuilder)
+				.label(0, 0));
+	}
+
+	/**
+	 * The labels of the multiple selections are the same as of the previous
+	 * parser: a row for each selection with the cells of the selected
+	 * experiments and plates, the texts of the first selection.
+	 */
+	@Test
+	public void multipleSelections() {
+		final ModelBuilder modelBuilder = createModelBuilder();
+		final List<String> experiments = Arrays.asList("b", "a");
+		final List<String> normalisations = Collections.singletonList("");
+		final List<Integer> plates = Arrays.asList(Integer.valueOf(1),
+				Integer.valueOf(2));
+		Assert.assertEquals("[1, 2] A1: g0", InfoParser.compile(FORMATS[0])
+				.bind(Collections.singletonList("b"), normalisations, plates,
+						modelBuilder).label(0, 0));
+		Assert.assertEquals("<th><td>A</td><td>experiment</td><td>plate</td>"
+				+ "</th>\n<tr><td>1</td><td>10.0</td><td>b</td><td>1</td>"
+				+ "</tr>\n<tr><td>2</td><td>11.0</td><td>b</td><td>1</td>"
+				+ "</tr>\n<tr><td>1</td><td>13.0</td><td>b</td><td>2</td>"
+				+ "</tr>\n<tr><td>1</td><td>14.0</td><td>a</td><td>1</td>"
+				+ "</tr>\n", InfoParser.compile("${raw}").bind(experiments,
+				normalisations, plates, modelBuilder).label(0, 0));
+		Assert.assertEquals("<table><th><td>A</td><td>experiment</td></th>\n"
+				+ "<tr><td></td><td>1.0</td><td>b</td></tr>\n"
+				+ "<tr><td></td><td>4.0</td><td>a</td></tr>\n</table>g0",
+				InfoParser.compile(FORMATS[2]).bind(experiments,
+						normalisations,
+						Collections.singletonList(Integer.valueOf(1)),
+						modelBuilder).label(0, 0));
+	}
+
+	/**
+	 * Without data the labels are empty.
+	 */
+	@Test
+	public void noData() {
+		Assert.assertEquals("", InfoParser.compile(FORMATS[0]).bind(
+				Collections.singletonList("b"), Collections.singletonList(""),
+				Collections.singletonList(Integer.valueOf(1)),
+				(ModelBuilder) null).label(0, 0));
+	}
+
+	private static final Pattern pattern = Pattern
+			.compile("(\\$\\{[^}(]+(\\([^\\)]+\\))?\\})");
+
+	/**
+	 * The previous implementation of
+	 * {@link InfoParser#parse(String, String, String, int, int, int, HeatmapNodeModel)}
+	 * using the {@link ModelBuilder} of the model.
+	 */
+	private static String legacyParse(final String experiment,
+			final String normalisation, final String format, final int plate,
+			final int row, final int col, final ModelBuilder modelBuilder) {
+		final StringBuilder sb = new StringBuilder();
+		final Format predictedFormat = modelBuilder.getSpecAnalyser()
+				.getPredictedFormat();
+		final Matcher matcher = pattern.matcher(format);
+		int lastEnd = 0;
+		while (matcher.find()) {
+			sb.append(format.substring(lastEnd, matcher.start()));
+			lastEnd = matcher.end();
+			final String code = format.substring(matcher.start() + 2, matcher
+					.group(2) != null ? matcher.start(2)
+					: matcher.end() - 1);
+			final String additionalParams = matcher.groupCount() > 1 ? matcher
+					.group(2) : null;
+			if ("plate".equalsIgnoreCase(code)) {
+				sb.append(plate);
+			} else if ("well".equalsIgnoreCase(code)) {
+				sb.append((char) (row + 'A')).append(col + 1);
+			} else {
+				try {
+					final StatTypes statTypes = StatTypes.valueOf(code);
+					final List<String> parameters = new ArrayList<String>();
+					if (statTypes.isUseReplicates()) {
+						final Map<Integer, Map<String, Map<StatTypes, double[]>>> replicates = modelBuilder
+								.getReplicates().get(experiment).get(
+										normalisation).get(
+										Integer.valueOf(plate));
+						if (replicates != null) {
+							for (final Entry<Integer, Map<String, Map<StatTypes, double[]>>> replEntry : replicates
+									.entrySet()) {
+								final Map<String, Map<StatTypes, double[]>> paramMap = replEntry
+										.getValue();
+								if (paramMap == null) {
+									continue;
+								}
+								if (parameters.isEmpty()) {
+									parameters.addAll(paramMap.keySet());
+									if (additionalParams == null) {
+										sb.append("<th>");
+										for (final String string : parameters) {
+											sb.append("<td>").append(string)
+													.append("</td>");
+										}
+										sb.append("</th>\n");
+									}
+								}
+								if (additionalParams == null) {
+									sb.append("<tr><td>").append(
+											replEntry.getKey()).append("</td>");
+								}
+								for (final String parameter : parameters) {
+									final Map<StatTypes, double[]> stats = paramMap
+											.get(parameter);
+									if (stats != null && additionalParams == null) {
+										sb.append("<td>").append(
+												stats.get(statTypes)[predictedFormat
+														.getPos(row, col)])
+												.append("</td>");
+									}
+								}
+								if (additionalParams == null) {
+									sb.append("</tr>\n");
+								}
+							}
+						}
+					} else {
+						final Map<String, Map<StatTypes, double[]>> map = modelBuilder
+								.getScores().get(experiment).get(normalisation)
+								.get(Integer.valueOf(plate));
+						if (map != null) {
+							parameters.addAll(map.keySet());
+							if (additionalParams == null) {
+								sb.append("<th>");
+								for (final String param : parameters) {
+									sb.append("<td>").append(param).append(
+											"</td>");
+								}
+								sb.append("</th>\n");
+								sb.append("<tr><td></td>");
+							}
+							for (final String param : parameters) {
+								final Map<StatTypes, double[]> stats = map
+										.get(param);
+								if (additionalParams == null) {
+									sb.append("<td>");
+									if (stats != null) {
+										sb.append(stats.get(statTypes)[predictedFormat
+												.getPos(row, col)]);
+									}
+									sb.append("</td>");
+								}
+							}
+							if (additionalParams == null) {
+								sb.append("</tr>\n");
+							}
+						}
+					}
+				} catch (final RuntimeException e) {
+					// No problem
+				}
+			}
+			final Map<String, String[]> map = modelBuilder.getTexts().get(
+					experiment).get(normalisation).get(Integer.valueOf(plate));
+			if (map != null) {
+				final String[] values = map.get(code);
+				if (values != null) {
+					final String value = values[predictedFormat
+							.getPos(row, col)];
+					if (value != null) {
+						sb.append(value.replaceAll("\n", "<p>"));
+					}
+				}
+			}
+		}
+		sb.append(format.substring(lastEnd));
+		return sb.toString();
+	}
+}
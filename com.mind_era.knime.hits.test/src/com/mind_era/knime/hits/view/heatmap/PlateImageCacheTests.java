@@ -0,0 +1,135 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.awt.event.ActionEvent;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the size bounded eviction of {@link PlateImageCache}.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class PlateImageCacheTests {
+	private static final int SIZE = 10;
+	/** The size of a {@value #SIZE}x{@value #SIZE} image in bytes. */
+	private static final long IMAGE_BYTES = 4L * SIZE * SIZE;
+
+	private static PlateImageCache.Key key(final int row) {
+		return new PlateImageCache.Key(null, Collections
+				.<SliderModel> emptyList(), row, 0, SIZE, SIZE);
+	}
+
+	private static BufferedImage image(final int width, final int height) {
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+	}
+
+	/**
+	 * The least recently used image is dropped when the limit is exceeded.
+	 */
+	@Test
+	public void leastRecentlyUsed() {
+		final PlateImageCache cache = new PlateImageCache(3 * IMAGE_BYTES);
+		final BufferedImage[] images = new BufferedImage[4];
+		for (int i = 0; i < images.length - 1; ++i) {
+			images[i] = image(SIZE, SIZE);
+			cache.put(key(i), images[i]);
+		}
+		// The first becomes the most recently used.
+		Assert.assertSame(images[0], cache.get(key(0)));
+		images[3] = image(SIZE, SIZE);
+		cache.put(key(3), images[3]);
+		Assert.assertNull(cache.get(key(1)));
+		Assert.assertSame(images[0], cache.get(key(0)));
+		Assert.assertSame(images[2], cache.get(key(2)));
+		Assert.assertSame(images[3], cache.get(key(3)));
+	}
+
+	/**
+	 * The size of the replaced image is not counted any more, the size of the
+	 * new is.
+	 */
+	@Test
+	public void replace() {
+		final PlateImageCache cache = new PlateImageCache(3 * IMAGE_BYTES);
+		final BufferedImage first = image(SIZE, SIZE);
+		cache.put(key(0), first);
+		final BufferedImage second = image(SIZE, SIZE);
+		cache.put(key(1), second);
+		for (int i = 0; i < 5; ++i) {
+			cache.put(key(2), image(SIZE, SIZE));
+		}
+		Assert.assertSame(first, cache.get(key(0)));
+		Assert.assertSame(second, cache.get(key(1)));
+		final BufferedImage larger = image(SIZE, 2 * SIZE);
+		cache.put(key(2), larger);
+		Assert.assertNull(cache.get(key(0)));
+		Assert.assertSame(second, cache.get(key(1)));
+		Assert.assertSame(larger, cache.get(key(2)));
+	}
+
+	/**
+	 * The images larger than the limit are not cached, and the others are
+	 * kept.
+	 */
+	@Test
+	public void tooLarge() {
+		final PlateImageCache cache = new PlateImageCache(3 * IMAGE_BYTES);
+		final BufferedImage small = image(SIZE, SIZE);
+		cache.put(key(0), small);
+		cache.put(key(1), image(2 * SIZE, 2 * SIZE));
+		Assert.assertNull(cache.get(key(1)));
+		Assert.assertSame(small, cache.get(key(0)));
+		final PlateImageCache disabled = new PlateImageCache(0L);
+		disabled.put(key(0), small);
+		Assert.assertNull(disabled.get(key(0)));
+	}
+
+	/**
+	 * The events drop every image, and the freed space is available again.
+	 */
+	@Test
+	public void invalidate() {
+		final PlateImageCache cache = new PlateImageCache(3 * IMAGE_BYTES);
+		for (int i = 0; i < 3; ++i) {
+			cache.put(key(i), image(SIZE, SIZE));
+		}
+		cache.actionPerformed(new ActionEvent(this, 0, "modelChanged"));
+		for (int i = 0; i < 3; ++i) {
+			Assert.assertNull(cache.get(key(i)));
+		}
+		final BufferedImage[] images = new BufferedImage[3];
+		for (int i = 0; i < images.length; ++i) {
+			images[i] = image(SIZE, SIZE);
+			cache.put(key(i + 3), images[i]);
+		}
+		for (int i = 0; i < images.length; ++i) {
+			Assert.assertSame(images[i], cache.get(key(i + 3)));
+		}
+	}
+
+	/**
+	 * The {@link PlateImageCache.Key}s of different positions or sizes are
+	 * different.
+	 */
+	@Test
+	public void keys() {
+		Assert.assertEquals(key(1), key(1));
+		Assert.assertEquals(key(1).hashCode(), key(1).hashCode());
+		Assert.assertFalse(key(1).equals(key(2)));
+		final PlateImageCache.Key key = key(1);
+		Assert.assertSame(key, key.resize(SIZE, SIZE));
+		final PlateImageCache.Key resized = key.resize(SIZE, 2 * SIZE);
+		Assert.assertFalse(key.equals(resized));
+		Assert.assertEquals(new PlateImageCache.Key(null, Collections
+				.<SliderModel> emptyList(), 1, 0, SIZE, 2 * SIZE), resized);
+		final PlateImageCache cache = new PlateImageCache(3 * IMAGE_BYTES);
+		cache.put(resized, image(SIZE, SIZE));
+		Assert.assertNull(cache.get(key));
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mind_era.knime.common.util.select.Selectable;
+import com.mind_era.knime.common.util.select.Selector;
+import com.mind_era.knime.common.util.swing.colour.ColourComputer;
+import com.mind_era.knime.common.util.swing.colour.ComplexModelFactory;
+import com.mind_era.knime.common.util.swing.colour.ColourSelector.ColourModel;
+import com.mind_era.knime.common.view.StatTypes;
+
+/**
+ * Tests for {@link RenderPlan#isFor(Map)} and
+ * {@link RenderPlan#fill(int[][], ColourModel)}.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class RenderPlanTests {
+	/** Red with the value as intensity. */
+	private static final ColourComputer RED = new ColourComputer() {
+		@Override
+		public Color compute(final double val) {
+			return new Color((int) val, 0, 0);
+		}
+
+		@Override
+		public String getTooltip() {
+			return "red";
+		}
+	};
+
+	/** Green with the value as intensity. */
+	private static final ColourComputer GREEN = new ColourComputer() {
+		@Override
+		public Color compute(final double val) {
+			return new Color(0, (int) val, 0);
+		}
+
+		@Override
+		public String getTooltip() {
+			return "green";
+		}
+	};
+
+	/** The {@link ColourModel} with {@link #RED} and {@link #GREEN}. */
+	private static final ColourModel COLOUR_MODEL = new ColourModel() {
+		private static final long serialVersionUID = 1L;
+		{
+			setModel("A", StatTypes.raw, RED);
+			setModel("B", StatTypes.score, GREEN);
+		}
+	};
+
+	private static Selector<String> slider(final Integer... selected) {
+		final Map<Integer, String> mapping = new HashMap<Integer, String>();
+		for (int i = 0; i < 4; ++i) {
+			mapping.put(Integer.valueOf(i), "v" + i);
+		}
+		return new Selector<String>(mapping, new HashSet<Integer>(Arrays
+				.asList(selected)));
+	}
+
+	private static Map<Selectable<?>, List<Integer>> selections(
+			final Selector<?> slider, final Integer... selected) {
+		final Map<Selectable<?>, List<Integer>> ret = new IdentityHashMap<Selectable<?>, List<Integer>>();
+		ret.put(slider, new ArrayList<Integer>(Arrays.asList(selected)));
+		return ret;
+	}
+
+	/**
+	 * The plan is only for the same selections of the same sliders.
+	 */
+	@Test
+	public void isFor() {
+		final Selector<String> slider = slider(Integer.valueOf(1));
+		final RenderPlan plan = new RenderPlan.Builder().build(selections(
+				slider, Integer.valueOf(1)));
+		Assert.assertTrue(plan.isFor(selections(slider, Integer.valueOf(1))));
+		Assert.assertFalse(plan.isFor(selections(slider, Integer.valueOf(2))));
+		Assert.assertFalse(plan.isFor(selections(slider, Integer.valueOf(1),
+				Integer.valueOf(2))));
+		// An equal, but different slider.
+		Assert.assertFalse(plan.isFor(selections(slider(Integer.valueOf(1)),
+				Integer.valueOf(1))));
+		Assert.assertFalse(plan.isFor(Collections
+				.<Selectable<?>, List<Integer>> emptyMap()));
+	}
+
+	/**
+	 * The colours are computed by the {@link ColourComputer} of the parameter
+	 * and the statistics, to the column of the entry.
+	 */
+	@Test
+	public void fill() {
+		final RenderPlan.Builder builder = new RenderPlan.Builder();
+		final double[] first = new double[] { 10, 20, 30 };
+		final double[] second = new double[] { 40, 50, 60 };
+		builder.add(first, 1, "A", StatTypes.raw);
+		builder.add(second, 0, "B", StatTypes.score);
+		final int[][] colors = new int[first.length][2];
+		builder.build(selections(slider())).fill(colors, COLOUR_MODEL);
+		for (int well = first.length; well-- > 0;) {
+			Assert.assertEquals(RED.compute(first[well]).getRGB(),
+					colors[well][1]);
+			Assert.assertEquals(GREEN.compute(second[well]).getRGB(),
+					colors[well][0]);
+		}
+	}
+
+	/**
+	 * The later entries overwrite the previous ones in the same column, and
+	 * the default model is used without a {@link ColourComputer}.
+	 */
+	@Test
+	public void fillOverwriteAndDefault() {
+		final RenderPlan.Builder builder = new RenderPlan.Builder();
+		final double[] first = new double[] { 10, 20 };
+		final double[] second = new double[] { 40, 50 };
+		final double[] third = new double[] { -3.0, 1.0 };
+		builder.add(first, 0, "A", StatTypes.raw);
+		builder.add(second, 0, "B", StatTypes.score);
+		builder.add(third, 1, "A", StatTypes.score);
+		final int[][] colors = new int[first.length][2];
+		builder.build(selections(slider())).fill(colors, COLOUR_MODEL);
+		final ColourComputer defaultModel = new ComplexModelFactory()
+				.getDefaultModel();
+		for (int well = first.length; well-- > 0;) {
+			Assert.assertEquals(GREEN.compute(second[well]).getRGB(),
+					colors[well][0]);
+			Assert.assertEquals(defaultModel.compute(third[well]).getRGB(),
+					colors[well][1]);
+		}
+	}
+}
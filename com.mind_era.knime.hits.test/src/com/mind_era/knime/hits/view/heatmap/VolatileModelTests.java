@@ -0,0 +1,125 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.knime.core.data.RowKey;
+
+import com.mind_era.knime.common.util.RowKeyIndex;
+import com.mind_era.knime.hits.view.heatmap.HeatmapNodeView.VolatileModel;
+
+/**
+ * Tests for the translation of the HiLited {@link RowKey}s to the wells of
+ * the plates in {@link VolatileModel#setHilites(Iterable, boolean)}.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class VolatileModelTests {
+	private VolatileModel model;
+
+	/**
+	 * Sets up a {@link VolatileModel} with two plates (plate values {@code 1}
+	 * and {@code 3}).
+	 */
+	@Before
+	public void setUp() {
+		final RowKeyIndex index = new RowKeyIndex(96);
+		index.put("r1", 1, 0);
+		index.put("r2", 1, 5);
+		index.put("r3", 3, 7);
+		index.put("r4", 9, 1);
+		final Map<Integer, Integer> plateIndices = new HashMap<Integer, Integer>();
+		plateIndices.put(Integer.valueOf(1), Integer.valueOf(0));
+		plateIndices.put(Integer.valueOf(3), Integer.valueOf(1));
+		model = new VolatileModel();
+		model.setPlates(2, plateIndices, index);
+	}
+
+	private static Iterable<RowKey> keys(final String... keys) {
+		final RowKey[] ret = new RowKey[keys.length];
+		for (int i = keys.length; i-- > 0;) {
+			ret[i] = new RowKey(keys[i]);
+		}
+		return Arrays.asList(ret);
+	}
+
+	private static BitSet bits(final int... indices) {
+		final BitSet ret = new BitSet();
+		for (final int i : indices) {
+			ret.set(i);
+		}
+		return ret;
+	}
+
+	/**
+	 * The keys are set on the wells of the indices of the plates.
+	 */
+	@Test
+	public void hilite() {
+		Assert.assertEquals(bits(0, 1), model.setHilites(keys("r1", "r3"),
+				true));
+		Assert.assertEquals(bits(0), model.getHiliteValues(0));
+		Assert.assertEquals(bits(7), model.getHiliteValues(1));
+	}
+
+	/**
+	 * Only the plates with changed wells are returned.
+	 */
+	@Test
+	public void changedPlates() {
+		model.setHilites(keys("r1", "r3"), true);
+		Assert.assertEquals(bits(), model.setHilites(keys("r1", "r3"), true));
+		Assert.assertEquals(bits(0), model.setHilites(keys("r2", "r3"), true));
+		Assert.assertEquals(bits(0, 5), model.getHiliteValues(0));
+		Assert.assertEquals(bits(1), model.setHilites(keys("r3"), false));
+		Assert.assertEquals(bits(), model.getHiliteValues(1));
+		Assert.assertEquals(bits(), model.setHilites(keys("r3"), false));
+	}
+
+	/**
+	 * The keys with a suffix after {@code _} are found by their prefix.
+	 */
+	@Test
+	public void suffix() {
+		Assert.assertEquals(bits(0), model.setHilites(keys("r2_1"), true));
+		Assert.assertEquals(bits(5), model.getHiliteValues(0));
+		Assert.assertEquals(bits(0), model.setHilites(keys("r2_1_2"), false));
+		Assert.assertEquals(bits(), model.getHiliteValues(0));
+	}
+
+	/**
+	 * The unknown keys and the keys of unknown plates are ignored.
+	 */
+	@Test
+	public void unknown() {
+		Assert.assertEquals(bits(), model.setHilites(keys("x", "x_1", "r4"),
+				true));
+		Assert.assertEquals(bits(), model.getHiliteValues(0));
+		Assert.assertEquals(bits(), model.getHiliteValues(1));
+		Assert.assertEquals(bits(), model.setHilites(Collections
+				.<RowKey> emptyList(), true));
+	}
+
+	/**
+	 * The HiLites are cleared when the plates are reset.
+	 */
+	@Test
+	public void setPlates() {
+		model.setHilites(keys("r1", "r3"), true);
+		final RowKeyIndex index = new RowKeyIndex(96);
+		index.put("r1", 1, 2);
+		model.setPlates(1, Collections.<Integer, Integer> emptyMap(), index);
+		Assert.assertEquals(bits(), model.getHiliteValues(0));
+		Assert.assertEquals(bits(0), model.setHilites(keys("r1", "r3"), true));
+		Assert.assertEquals(bits(2), model.getHiliteValues(0));
+	}
+}
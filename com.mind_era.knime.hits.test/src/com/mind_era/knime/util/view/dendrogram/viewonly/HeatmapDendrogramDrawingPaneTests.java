@@ -0,0 +1,120 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.util.view.dendrogram.viewonly;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mind_era.knime.common.util.VisualUtils;
+import com.mind_era.knime.common.util.swing.colour.ColourComputer;
+import com.mind_era.knime.common.util.swing.colour.ComplexModelFactory;
+
+/**
+ * Tests for the colours of the leaves computed by
+ * {@link HeatmapDendrogramDrawingPane#leafImage(int, double[][], BitSet[], ColourComputer[])}
+ * , these should be the same as the colours of
+ * {@link ColourComputer#compute(double)}, and for the leaves and nodes painted
+ * in a clip.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class HeatmapDendrogramDrawingPaneTests {
+	/** Red with the value as intensity. */
+	private static final ColourComputer RED = new ColourComputer() {
+		@Override
+		public Color compute(final double val) {
+			return new Color((int) val, 0, 0);
+		}
+
+		@Override
+		public String getTooltip() {
+			return "red";
+		}
+	};
+
+	/**
+	 * The pixels of the leaves (rows) and columns are the computed colours,
+	 * the missing values are {@link VisualUtils#TRANSPARENT}.
+	 */
+	@Test
+	public void leafColours() {
+		final double[][] values = new double[][] { { 10, 20, 30, 40 },
+				{ -3.0, -2.0, 0.5, 2.25 }, { 1, 2, 3, 4 } };
+		final int leafCount = values[0].length;
+		final BitSet[] missing = new BitSet[values.length];
+		for (int col = values.length; col-- > 0;) {
+			missing[col] = new BitSet();
+		}
+		missing[0].set(2);
+		missing[1].set(0);
+		final ColourComputer[] computers = new ColourComputer[] { RED,
+				new ComplexModelFactory().getDefaultModel(), null };
+		final BufferedImage image = HeatmapDendrogramDrawingPane.leafImage(
+				leafCount, values, missing, computers);
+		Assert.assertEquals(values.length, image.getWidth());
+		Assert.assertEquals(leafCount, image.getHeight());
+		for (int leaf = 0; leaf < leafCount; ++leaf) {
+			for (int col = 0; col < values.length; ++col) {
+				final int expected = computers[col] == null
+						|| missing[col].get(leaf) ? VisualUtils.TRANSPARENT
+						: computers[col].compute(values[col][leaf]).getRGB();
+				Assert.assertEquals(leaf + " " + col, expected, image.getRGB(
+						col, leaf));
+			}
+		}
+	}
+
+	/**
+	 * The visible leaves are found with their neighbours in both orders of
+	 * the positions.
+	 */
+	@Test
+	public void visibleLeaves() {
+		final int[] ascending = new int[] { 10, 20, 30, 40, 50 };
+		Assert.assertArrayEquals(new int[] { 1, 3 },
+				HeatmapDendrogramDrawingPane.visibleLeaves(ascending, 22, 38));
+		Assert.assertArrayEquals(new int[] { 0, 4 },
+				HeatmapDendrogramDrawingPane.visibleLeaves(ascending, 0, 100));
+		// Between two leaves.
+		Assert.assertArrayEquals(new int[] { 1, 2 },
+				HeatmapDendrogramDrawingPane.visibleLeaves(ascending, 21, 29));
+		// After the last.
+		Assert.assertArrayEquals(new int[] { 4, 4 },
+				HeatmapDendrogramDrawingPane
+						.visibleLeaves(ascending, 200, 300));
+		final int[] descending = new int[] { 50, 40, 30, 20, 10 };
+		Assert.assertArrayEquals(new int[] { 1, 3 },
+				HeatmapDendrogramDrawingPane.visibleLeaves(descending, 22, 38));
+		Assert.assertArrayEquals(new int[] { 0, 0 },
+				HeatmapDendrogramDrawingPane.visibleLeaves(descending, 60, 70));
+		final int[] none = HeatmapDendrogramDrawingPane.visibleLeaves(
+				new int[0], 0, 100);
+		Assert.assertTrue(none[0] > none[1]);
+	}
+
+	/**
+	 * The nodes between the visible leaves and their ancestors are painted.
+	 */
+	@Test
+	public void visibleNodes() {
+		// In-order: leaf 0, (0, 1), leaf 1, root, leaf 2, (2, 3), leaf 3
+		final int[] parents = new int[] { 1, 3, 1, -1, 5, 3, 5 };
+		final int[] leafNodes = new int[] { 0, 2, 4, 6 };
+		Assert.assertArrayEquals(new int[] { 0, 1, 3 },
+				HeatmapDendrogramDrawingPane.visibleNodes(parents, leafNodes,
+						new int[] { 0, 0 }));
+		Assert.assertArrayEquals(new int[] { 3, 4, 5, 6 },
+				HeatmapDendrogramDrawingPane.visibleNodes(parents, leafNodes,
+						new int[] { 2, 3 }));
+		Assert.assertArrayEquals(new int[] { 1, 2, 3, 4, 5 },
+				HeatmapDendrogramDrawingPane.visibleNodes(parents, leafNodes,
+						new int[] { 1, 2 }));
+		Assert.assertEquals(0, HeatmapDendrogramDrawingPane.visibleNodes(
+				parents, leafNodes, new int[] { 0, -1 }).length);
+	}
+}
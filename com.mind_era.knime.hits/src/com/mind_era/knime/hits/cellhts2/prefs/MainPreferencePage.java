@@ -9,6 +9,7 @@ import javax.annotation.concurrent.NotThreadSafe;
 
 import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 import org.eclipse.ui.PlatformUI;
@@ -97,6 +98,39 @@ public class MainPreferencePage extends FieldEditorPreferencePage implements
 						.getListControl(getFieldEditorParent()),
 				"ie.tcd.imm.hits.help.pref.columnSelection");
 		addField(columnSelectionFieldEditor);
+		final IntegerFieldEditor modelBuilderThreadsFieldEditor = new IntegerFieldEditor(
+				PreferenceConstants.MODEL_BUILDER_THREADS,
+				"&Threads to build the heatmap models:",
+				getFieldEditorParent());
+		modelBuilderThreadsFieldEditor.setValidRange(1, Runtime.getRuntime()
+				.availableProcessors() * 4);
+		addField(modelBuilderThreadsFieldEditor);
+		final IntegerFieldEditor cachedPlatesFieldEditor = new IntegerFieldEditor(
+				PreferenceConstants.MODEL_BUILDER_CACHED_PLATES,
+				"&Plates kept in memory by the heatmaps (0: all):",
+				getFieldEditorParent());
+		cachedPlatesFieldEditor.setValidRange(0, Integer.MAX_VALUE);
+		addField(cachedPlatesFieldEditor);
+		addField(new BooleanFieldEditor(
+				PreferenceConstants.MODEL_BUILDER_MAPPED,
+				"Store the heatmap &values in a memory-mapped file",
+				getFieldEditorParent()));
+		addField(new BooleanFieldEditor(
+				PreferenceConstants.HEATMAP_SINGLE_CANVAS,
+				"Paint the heatmap &wells on a single canvas",
+				getFieldEditorParent()));
+		final IntegerFieldEditor imageCacheFieldEditor = new IntegerFieldEditor(
+				PreferenceConstants.HEATMAP_IMAGE_CACHE_SIZE,
+				"&Memory for the cached heatmap images (MB, 0: none):",
+				getFieldEditorParent());
+		imageCacheFieldEditor.setValidRange(0, 4096);
+		addField(imageCacheFieldEditor);
+		final IntegerFieldEditor detailThresholdFieldEditor = new IntegerFieldEditor(
+				PreferenceConstants.HEATMAP_DETAIL_THRESHOLD,
+				"Minimal well size for the &detailed heatmaps (pixels, 0: always):",
+				getFieldEditorParent());
+		detailThresholdFieldEditor.setValidRange(0, 100);
+		addField(detailThresholdFieldEditor);
 	}
 
 	/*
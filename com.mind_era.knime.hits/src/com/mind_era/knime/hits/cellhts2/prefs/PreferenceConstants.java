@@ -19,4 +19,44 @@ public class PreferenceConstants {
 	 * (Should be available only if used with TCD extensions.)
 	 */
 	public static final String USE_NAMES_INSTEAD_OF_CHANNELS = "com.mind_era.knime.hits.namesInsteadOfChannels";
+
+	/**
+	 * Key for the number of threads used to build the heatmap models. With
+	 * {@code 1} the rows are processed sequentially.
+	 */
+	public static final String MODEL_BUILDER_THREADS = "com.mind_era.knime.hits.modelBuilderThreads";
+
+	/**
+	 * Key for the number of plates kept in memory by the heatmap models. With
+	 * {@code 0} every plate is loaded when the model is built.
+	 */
+	public static final String MODEL_BUILDER_CACHED_PLATES = "com.mind_era.knime.hits.modelBuilderCachedPlates";
+
+	/**
+	 * Key for storing the values of the heatmap models in a memory-mapped
+	 * file (in the internal directory of the node) instead of the heap.
+	 */
+	public static final String MODEL_BUILDER_MAPPED = "com.mind_era.knime.hits.modelBuilderMapped";
+
+	/**
+	 * Key for painting the wells of a heatmap on a single component instead
+	 * of a component for each well. It is read when the heatmap is created,
+	 * the change applies to the views opened afterwards.
+	 */
+	public static final String HEATMAP_SINGLE_CANVAS = "com.mind_era.knime.hits.heatmapSingleCanvas";
+
+	/**
+	 * Key for the size (in MB) of the cached heatmap images. With {@code 0}
+	 * the wells are painted on every repaint.
+	 */
+	public static final String HEATMAP_IMAGE_CACHE_SIZE = "com.mind_era.knime.hits.heatmapImageCacheSize";
+
+	/**
+	 * Key for the minimal size (in pixels) of the wells painted in detail.
+	 * The smaller wells are painted as a single pixel block of the primary
+	 * colour, without borders and labels. With {@code 0} every well is
+	 * painted in detail. It is read when the heatmap is created, the change
+	 * applies to the views opened afterwards.
+	 */
+	public static final String HEATMAP_DETAIL_THRESHOLD = "com.mind_era.knime.hits.heatmapDetailThreshold";
 }
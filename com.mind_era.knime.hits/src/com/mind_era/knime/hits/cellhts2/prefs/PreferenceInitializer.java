@@ -66,5 +66,11 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
 		store.setDefault(PreferenceConstants.USE_TCD_EXTENSIONS, true);
 		store.setDefault(PreferenceConstants.USE_NAMES_INSTEAD_OF_CHANNELS,
 				true);
+		store.setDefault(PreferenceConstants.MODEL_BUILDER_THREADS, 1);
+		store.setDefault(PreferenceConstants.MODEL_BUILDER_CACHED_PLATES, 0);
+		store.setDefault(PreferenceConstants.MODEL_BUILDER_MAPPED, false);
+		store.setDefault(PreferenceConstants.HEATMAP_SINGLE_CANVAS, true);
+		store.setDefault(PreferenceConstants.HEATMAP_IMAGE_CACHE_SIZE, 64);
+		store.setDefault(PreferenceConstants.HEATMAP_DETAIL_THRESHOLD, 4);
 	}
 }
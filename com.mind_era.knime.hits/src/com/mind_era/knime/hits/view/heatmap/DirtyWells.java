@@ -0,0 +1,130 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * The changed wells of a {@link Heatmap} painted on a single canvas. The
+ * wells are collected by their indices, and converted to a few rectangles
+ * only when they are repainted (with the current size of the wells). The
+ * rectangles are painted one by one (the {@link javax.swing.RepaintManager}
+ * merges the separate repaint requests to their bounding rectangle), so the
+ * distant changes (for example a few HiLites in the opposite corners) do not
+ * repaint the wells between them.
+ * <p>
+ * The consecutive changed wells of a row are joined to a single rectangle,
+ * and the rectangles of the same columns in the consecutive rows are joined
+ * too. If there would be more than {@link #MAX_RECTANGLES} rectangles, their
+ * bounding rectangle is used instead.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+@NotThreadSafe
+public final class DirtyWells {
+	/** The maximal number of rectangles repainted separately. */
+	public static final int MAX_RECTANGLES = 16;
+
+	private final BitSet wells = new BitSet();
+
+	/**
+	 * Constructs an empty {@link DirtyWells}.
+	 */
+	public DirtyWells() {
+		super();
+	}
+
+	/**
+	 * Marks a well as changed.
+	 *
+	 * @param index
+	 *            The ({@code 0}-based, row-major) index of the well.
+	 */
+	public void mark(final int index) {
+		wells.set(index);
+	}
+
+	/**
+	 * @return {@code true} iff no well has changed since the last
+	 *         {@link #clear()}.
+	 */
+	public boolean isEmpty() {
+		return wells.isEmpty();
+	}
+
+	/**
+	 * Forgets the changed wells.
+	 */
+	public void clear() {
+		wells.clear();
+	}
+
+	/**
+	 * Computes the rectangles covering the changed wells.
+	 *
+	 * @param first
+	 *            The bounds of the top-left well, the others are shifted by
+	 *            multiples of its width and height. (Should not be empty.)
+	 * @param cols
+	 *            The number of columns of the wells.
+	 * @return The rectangles to repaint, at most {@link #MAX_RECTANGLES}.
+	 */
+	public List<Rectangle> rectangles(final Rectangle first, final int cols) {
+		final List<Rectangle> ret = new ArrayList<Rectangle>();
+		// The rectangles ending in the previous row, and in the current row.
+		List<Rectangle> previous = new ArrayList<Rectangle>();
+		List<Rectangle> current = new ArrayList<Rectangle>();
+		int currentRow = -1;
+		for (int start = wells.nextSetBit(0); start >= 0; start = wells
+				.nextSetBit(start)) {
+			final int row = start / cols;
+			final int rowEnd = (row + 1) * cols;
+			int end = wells.nextClearBit(start);
+			if (end > rowEnd) {
+				end = rowEnd;
+			}
+			if (row != currentRow) {
+				previous = row == currentRow + 1 ? current
+						: new ArrayList<Rectangle>();
+				current = new ArrayList<Rectangle>();
+				currentRow = row;
+			}
+			final int x = first.x + start % cols * first.width;
+			final int width = (end - start) * first.width;
+			Rectangle rectangle = null;
+			for (final Rectangle above : previous) {
+				if (above.x == x && above.width == width) {
+					rectangle = above;
+					rectangle.height += first.height;
+					break;
+				}
+			}
+			if (rectangle == null) {
+				rectangle = new Rectangle(x, first.y + row * first.height,
+						width, first.height);
+				ret.add(rectangle);
+			}
+			current.add(rectangle);
+			start = end;
+		}
+		if (ret.size() > MAX_RECTANGLES) {
+			final Rectangle union = new Rectangle(ret.get(0));
+			for (final Rectangle rectangle : ret) {
+				union.add(rectangle);
+			}
+			ret.clear();
+			ret.add(union);
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.util.concurrent.CancellationException;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+
+/**
+ * The generations of the values computed for a {@link Heatmap}. Every
+ * {@link #request() request} starts a new generation, the computations of
+ * the previous generations are {@link #check(int) cancelled}, and their
+ * results are not {@link #show(int) shown}. While the shown generation is not
+ * the requested one, the shown values are {@link #isPending() pending}.
+ * <p>
+ * Only {@link #check(int)} and {@link #checkCurrent(int)} might be called
+ * outside the event dispatch thread.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+public final class Generations {
+	/** The generation of the last request. */
+	private volatile int requested;
+	/** The generation of the shown values. */
+	private int shown;
+
+	/**
+	 * Constructs a {@link Generations} without pending requests.
+	 */
+	public Generations() {
+		super();
+	}
+
+	/**
+	 * Starts a new generation, the shown values become pending.
+	 *
+	 * @return The new generation.
+	 */
+	public int request() {
+		return ++requested;
+	}
+
+	/**
+	 * Abandons the computations of the previous generations without
+	 * requesting new values (the values are reset), so nothing is pending.
+	 */
+	public void reset() {
+		shown = ++requested;
+	}
+
+	/**
+	 * @param generation
+	 *            A generation.
+	 * @return {@code true} iff {@code generation} is the last requested one.
+	 */
+	public boolean isCurrent(final int generation) {
+		return generation == requested;
+	}
+
+	/**
+	 * @param generation
+	 *            The generation of a computation.
+	 * @return A {@link HeatmapValues.Check} throwing
+	 *         {@link CancellationException} once a newer generation is
+	 *         requested.
+	 */
+	HeatmapValues.Check check(final int generation) {
+		return new HeatmapValues.Check() {
+			@Override
+			public void check() {
+				checkCurrent(generation);
+			}
+		};
+	}
+
+	/**
+	 * Checks whether the computation of {@code generation} should go on, the
+	 * same as the {@link #check(int) check} of {@code generation}.
+	 *
+	 * @param generation
+	 *            The generation of a computation.
+	 * @throws CancellationException
+	 *             If a newer generation is requested.
+	 */
+	public void checkCurrent(final int generation) {
+		if (!isCurrent(generation)) {
+			throw new CancellationException();
+		}
+	}
+
+	/**
+	 * Records that the values of {@code generation} are shown. The older
+	 * generations are ignored, the shown values stay pending.
+	 *
+	 * @param generation
+	 *            The generation of the computed values.
+	 */
+	public void show(final int generation) {
+		if (isCurrent(generation)) {
+			shown = generation;
+		}
+	}
+
+	/**
+	 * @return {@code true} iff the shown values are not of the last requested
+	 *         generation.
+	 */
+	public boolean isPending() {
+		return shown != requested;
+	}
+}
@@ -5,53 +5,127 @@ package com.mind_era.knime.hits.view.heatmap;
 
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Graphics;
 import java.awt.GridLayout;
+import java.awt.Insets;
+import java.awt.Rectangle;
 import java.awt.event.InputEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
 
 import javax.annotation.Nullable;
 import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.ToolTipManager;
+import javax.swing.UIManager;
 
-import org.knime.core.data.RowKey;
-import org.knime.core.data.property.ColorAttr;
+import org.knime.core.node.NodeLogger;
 import org.knime.core.node.property.hilite.HiLiteListener;
 import org.knime.core.node.property.hilite.KeyEvent;
 import org.knime.core.util.Pair;
 
 import com.mind_era.knime.common.Format;
-import com.mind_era.knime.common.util.ModelBuilder;
-import com.mind_era.knime.common.util.select.Selectable;
-import com.mind_era.knime.common.util.select.Selector;
-import com.mind_era.knime.common.util.swing.colour.ColourComputer;
-import com.mind_era.knime.common.util.swing.colour.ComplexModelFactory;
-import com.mind_era.knime.common.util.swing.colour.ColourSelector.ColourModel;
 import com.mind_era.knime.common.view.StatTypes;
+import com.mind_era.knime.hits.cellhts2.prefs.PreferenceConstants;
+import com.mind_era.knime.hits.internal.Activator;
 import com.mind_era.knime.hits.view.heatmap.HeatmapNodeView.VolatileModel;
 import com.mind_era.knime.hits.view.heatmap.SliderModel.Type;
 import com.mind_era.knime.hits.view.heatmap.ViewModel.ParameterModel;
 
 /**
  * Shows a heatmap of values.
+ * <p>
+ * By default (see {@link PreferenceConstants#HEATMAP_SINGLE_CANVAS}) every
+ * well is painted on this component by a {@link WellPainter}, and the wells
+ * under the mouse are computed from the coordinates, else each well is a
+ * separate {@link WellViewPanel}.
  * 
  * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
  */
 public class Heatmap extends JComponent implements HiLiteListener {
 	private static final long serialVersionUID = 7832090816939923780L;
-	private static final Integer ZERO = Integer.valueOf(0);
+	private static final NodeLogger logger = NodeLogger
+			.getLogger(Heatmap.class);
 	private ViewModel viewModel;
-	private final WellViewPanel[] wells = new WellViewPanel[384];
-	private Map<String, Pair<Integer, Integer>> keyToPlateAndPosition;
+	/** The wells, {@code null} if they are painted on a single canvas. */
+	@Nullable
+	private WellViewPanel[] wells;
+	/**
+	 * The {@link PreferenceConstants#HEATMAP_SINGLE_CANVAS} preference, read
+	 * only on construction (the changes apply to the new views).
+	 */
+	private final boolean singleCanvas;
+	/**
+	 * The wells smaller than this (in pixels) are painted with a single pixel
+	 * block on the single canvas. The
+	 * {@link PreferenceConstants#HEATMAP_DETAIL_THRESHOLD} preference, read
+	 * only on construction (the changes apply to the new views).
+	 */
+	private final int detailThreshold;
+	/**
+	 * The packed ARGB colours of the wells ({@code null} elements for the
+	 * defaults).
+	 */
+	private int[][] wellColors = new int[0][];
+	/** The backgrounds of the wells ({@code null} elements for the default). */
+	private Color[] wellBackgrounds = new Color[0];
+	/** The values of the wells (with their labels), {@code null} if pending. */
+	@Nullable
+	private HeatmapValues wellValues;
+	private boolean[] wellHilites = new boolean[0];
+	private boolean[] wellSelections = new boolean[0];
+	/** The positions on the plate of the wells. */
+	private int[] positions = new int[0];
+	/** The listeners of the well clicks on the single canvas. */
+	private final List<MouseListener> clickListeners = new ArrayList<MouseListener>();
+	/** The cache of the rendered wells on the single canvas. */
+	@Nullable
+	private PlateImageCache imageCache;
+	/** The key of the current state of the wells, without the size. */
+	@Nullable
+	private PlateImageCache.Key imageKey;
+	/**
+	 * The painter of the wells on the single canvas, {@code null} if the
+	 * splits of the wells might have changed.
+	 */
+	@Nullable
+	private WellPainter painter;
+	/**
+	 * The raster of the wells painted with low detail, {@code null} if it was
+	 * not rendered yet.
+	 */
+	@Nullable
+	private BufferedImage lowDetail;
+	/**
+	 * {@link #lowDetail} has the current colours, HiLites and selections of
+	 * the wells.
+	 */
+	private boolean lowDetailValid;
+	/**
+	 * The changed wells on the single canvas since the last
+	 * {@link #repaintDirty()}.
+	 */
+	private final DirtyWells dirty = new DirtyWells();
+	/**
+	 * The generations of the values to show, the computations of the previous
+	 * generations are abandoned.
+	 */
+	private final Generations generations = new Generations();
+	/** The lookup of the values for the current slider selections. */
+	@Nullable
+	private RenderPlan renderPlan;
 	private VolatileModel volatileModel;
 	/** From 0. */
 	private int plate;
@@ -73,6 +147,25 @@ public class Heatmap extends JComponent implements HiLiteListener {
 		super();
 		this.viewModel = viewModel;
 		this.volatileModel = volatileModel;
+		singleCanvas = Activator.getInstance().getPreferenceStore()
+				.getBoolean(PreferenceConstants.HEATMAP_SINGLE_CANVAS);
+		detailThreshold = Activator.getInstance().getPreferenceStore()
+				.getInt(PreferenceConstants.HEATMAP_DETAIL_THRESHOLD);
+		if (singleCanvas) {
+			addMouseListener(new MouseAdapter() {
+				@Override
+				public void mouseClicked(final MouseEvent e) {
+					final int well = wellAt(e.getX(), e.getY());
+					if (well >= 0) {
+						wellClicked(well, e);
+						for (final MouseListener listener : clickListeners) {
+							listener.mouseClicked(e);
+						}
+					}
+				}
+			});
+			ToolTipManager.sharedInstance().registerComponent(this);
+		}
 		internalUpdateViewModel();
 	}
 
@@ -94,400 +187,159 @@ public class Heatmap extends JComponent implements HiLiteListener {
 		// this.volatileModel.removeActionListener(this);
 		this.volatileModel = volatileModel;
 		// volatileModel.addActionListener(this);
-		keyToPlateAndPosition = nodeModel.getModelBuilder()
-				.getKeyToPlateAndPosition();
 		setHilites();
-		replicates(nodeModel);
-		repaint();
+		replicates(nodeModel, new PlateImageCache.Key(viewModel, viewModel
+				.getMain().getArrangementModel().getSliderModels(), row, col,
+				0, 0));
+		repaintDirty();
 	}
 
-	private void setHilites() {
+	/**
+	 * Sets the cache of the rendered wells. It is only used when the wells
+	 * are painted on a single canvas.
+	 * 
+	 * @param imageCache
+	 *            The (possibly shared) {@link PlateImageCache}, or
+	 *            {@code null} to paint the wells on every repaint.
+	 */
+	void setImageCache(@Nullable final PlateImageCache imageCache) {
+		this.imageCache = imageCache;
+	}
+
+	/**
+	 * Drops the {@link RenderPlan} of the values, it should be called when
+	 * the values of the model change.
+	 */
+	void dataChanged() {
+		renderPlan = null;
+	}
+
+	/**
+	 * @return The ({@code 0}-based) plate of the HiLites and selections.
+	 */
+	private int currentPlate() {
 		final Collection<SliderModel> sliders = viewModel.getMain()
 				.getArrangementModel().getSliders().get(Type.Selector);
-		final int currentPlate = (sliders.size() > 0 ? sliders.iterator()
-				.next().getSelections().iterator().next() : 1) - 1;
-		final boolean[] hiliteValues = volatileModel
+		return (sliders.size() > 0 ? sliders.iterator().next().getSelections()
+				.iterator().next() : 1) - 1;
+	}
+
+	private void setHilites() {
+		final int currentPlate = currentPlate();
+		final BitSet hiliteValues = volatileModel
 				.getHiliteValues(currentPlate);
-		final boolean[] selections = volatileModel
+		final BitSet selections = volatileModel
 				.getSelectionValues(currentPlate);
-		assert hiliteValues.length == volatileModel.format.getWellCount();
-		assert selections.length == volatileModel.format.getWellCount();
 		for (int i = volatileModel.format.getWellCount(); i-- > 0;) {
 			final int convI = i % volatileModel.format.getCol()
 					% viewModel.getFormat().getCol() + i
 					/ volatileModel.format.getCol()
 					% viewModel.getFormat().getRow()
 					* viewModel.getFormat().getCol();
-			wells[convI].setHilited(hiliteValues[i]);
-			wells[convI].setSelected(selections[i]);
-		}
-	}
-
-	private void replicates(final HeatmapNodeModel nodeModel) {
-		final Format predictedFormat = nodeModel.getModelBuilder()
-				.getSpecAnalyser().getPredictedFormat();
-		/* 0-MAX_INDEPENDENT_FACTORS -> selected plate values. */
-		final Map<Integer, List<Integer>> platePos = new HashMap<Integer, List<Integer>>();
-		/* 0-MAX_INDEPENDENT_FACTORS -> selected experiment values. */
-		final Map<Integer, List<String>> experimentPos = new HashMap<Integer, List<String>>();
-		/* 0-MAX_INDEPENDENT_FACTORS -> selected normalisation values. */
-		final Map<Integer, List<String>> normalisationPos = new HashMap<Integer, List<String>>();
-		/* 0-MAX_INDEPENDENT_FACTORS -> selected parameter values. */
-		final Map<Integer, List<String>> parameterPos = new HashMap<Integer, List<String>>();
-		/* 0-MAX_INDEPENDENT_FACTORS -> selected statistics values. */
-		final Map<Integer, List<StatTypes>> statPos = new HashMap<Integer, List<StatTypes>>();
-		/* 0-MAX_INDEPENDENT_FACTORS -> selected replicate values. */
-		final Map<Integer, List<Integer>> replicatePos = new HashMap<Integer, List<Integer>>();
-		for (int i = SliderModel.MAX_INDEPENDENT_FACTORS; i-- > 0;) {
-			platePos.put(Integer.valueOf(i), new ArrayList<Integer>());
-			experimentPos.put(Integer.valueOf(i), new ArrayList<String>());
-			normalisationPos.put(Integer.valueOf(i), new ArrayList<String>());
-			parameterPos.put(Integer.valueOf(i), new ArrayList<String>());
-			statPos.put(Integer.valueOf(i), new ArrayList<StatTypes>());
-			replicatePos.put(Integer.valueOf(i), new ArrayList<Integer>());
-		}
-		SliderModel experimentSlider = null;
-		SliderModel normalisationSlider = null;
-		SliderModel parameterSlider = null;
-		SliderModel statSlider = null;
-		SliderModel plateSlider = null;
-		SliderModel replicateSlider = null;
-		for (final SliderModel slider : viewModel.getMain()
-				.getArrangementModel().getSliderModels()) {
-
-			for (final ParameterModel model : slider.getParameters()) {
-				switch (model.getType()) {
-				case plate:
-					selectionToPos(platePos, slider, Integer.class);
-					plateSlider = slider;
-					break;
-				case experimentName:
-					selectionToPos(experimentPos, slider, String.class);
-					experimentSlider = slider;
-					break;
-				case normalisation:
-					selectionToPos(normalisationPos, slider, String.class);
-					normalisationSlider = slider;
-					break;
-				case parameter:
-					selectionToPos(parameterPos, slider, String.class);
-					parameterSlider = slider;
-					break;
-				case metaStatType: {
-					selectionToPos(statPos, slider, StatTypes.class);
-					statSlider = slider;
-					break;
-				}
-				case replicate: {
-					selectionToPos(replicatePos, slider, Integer.class);
-					replicateSlider = slider;
-					break;
-				}
-
-				default:
-					// Do nothing.
-					break;
-				}
-			}
-		}
-		final SliderModel firstParamSlider = findSlider(viewModel.getMain()
-				.getArrangementModel().getSliderModels(), viewModel.getMain()
-				.getPrimerParameters());
-		final SliderModel secondParamSlider = findSlider(viewModel.getMain()
-				.getArrangementModel().getSliderModels(), viewModel.getMain()
-				.getSeconderParameters());
-		final int size = computeSplitterCount(Arrays.asList(firstParamSlider,
-				secondParamSlider));
-		plate = plateSlider.getSelections().size() == 1 ? ((Number) plateSlider
-				.getValueMapping().get(
-						plateSlider.getSelections().iterator().next())
-				.getSecond()).intValue() - 1 : -1;
-		final Color[][] colors = new Color[predictedFormat.getWellCount()][size];
-		final ColourModel colourModel = viewModel.getMain().getColourModel();
-		final ModelBuilder modelBuilder = nodeModel.getModelBuilder();
-		final Map<String, Map<String, Map<Integer, Map<String, Map<StatTypes, double[]>>>>> scores = modelBuilder
-				.getScores();
-		// ENH use Berkeley DB
-		final List<SliderModel> scoreSliderList = Arrays.asList(
-				experimentSlider, normalisationSlider, plateSlider,
-				parameterSlider, statSlider);
-		if (secondParamSlider != null
-				&& secondParamSlider.equals(replicateSlider)) {
-			for (int i = replicateSlider.getSelections().size(); i-- > 0;) {
-				findColourValues(predictedFormat, colors, scores, colourModel,
-						firstParamSlider, null, 0, secondParamSlider, null, i,
-						scoreSliderList, 0);
-			}
-		} else if (firstParamSlider.equals(replicateSlider)) {
-			for (int i = replicateSlider.getSelections().size(); i-- > 0;) {
-				findColourValues(predictedFormat, colors, scores, colourModel,
-						firstParamSlider, null, i, secondParamSlider, null, i,
-						scoreSliderList, 0);
-			}
-		} else {
-			findColourValues(predictedFormat, colors, scores, colourModel,
-					firstParamSlider, null, 0, secondParamSlider, null, 0,
-					scoreSliderList, 0);
-		}
-		final Map<String, Map<String, Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>>>> replicates = modelBuilder
-				.getReplicates();
-		final List<SliderModel> replicateSliderList = Arrays.asList(
-				experimentSlider, normalisationSlider, plateSlider,
-				replicateSlider, parameterSlider, statSlider);
-		findColourValues(predictedFormat, colors, replicates, colourModel,
-				firstParamSlider, null, 0, secondParamSlider, null, 0,
-				replicateSliderList, 0);
-		// exp, norm, plate, col
-		final Map<String, Map<String, Map<Integer, Color[]>>> colours = modelBuilder
-				.getColours();
-		assert colours != null;
-		// norm, plate, col
-		final Map<String, Map<Integer, Color[]>> normColors = colours == null ? null
-				: experimentPos.get(Heatmap.ZERO).size() > 0 ? colours
-						.get(experimentPos.get(Heatmap.ZERO).get(0)) : null;
-		if (normColors != null) {
-			final Map<Integer, Color[]> plateColours = normalisationPos.get(
-					Heatmap.ZERO).size() > 0 ? normColors.get(normalisationPos
-					.get(Heatmap.ZERO).get(0)) : null;
-			if (plateColours != null) {
-				final Color[] array = plateColours.get(Integer
-						.valueOf(plate + 1));
-				if (array != null) {
-					for (int i = viewModel.getFormat().getWellCount(); i-- > 0;) {
-						final Color color = i / viewModel.getFormat().getCol() < predictedFormat
-								.getRow()
-								&& i % viewModel.getFormat().getCol() < predictedFormat
-										.getCol() ? array[i
-								% viewModel.getFormat().getCol() + i
-								/ viewModel.getFormat().getCol()
-								* predictedFormat.getCol()] : null;
-						wells[i]
-								.setBackground(color == null ? ColorAttr.BACKGROUND
-										: color);
-					}
-				}
-			}
-		}
-		for (int i = viewModel.getFormat().getWellCount(); i-- > 0;) {
-			wells[i]
-					.setColors(i / viewModel.getFormat().getCol() < predictedFormat
-							.getRow()
-							&& i % viewModel.getFormat().getCol() < predictedFormat
-									.getCol() ? colors[i
-							/ viewModel.getFormat().getCol()
-							* predictedFormat.getCol() + i
-							% viewModel.getFormat().getCol()] : null);
-		}
-		for (int i = viewModel.getFormat().getWellCount(); i-- > 0;) {
-			final String l = i / viewModel.getFormat().getCol() < predictedFormat
-					.getRow()
-					&& i % viewModel.getFormat().getCol() < predictedFormat
-							.getCol() ? InfoParser.parse(experimentPos
-					.get(Heatmap.ZERO), normalisationPos.get(Heatmap.ZERO),
-					viewModel.getLabelPattern(), platePos.get(Heatmap.ZERO), i
-							/ viewModel.getFormat().getCol(), i
-							% viewModel.getFormat().getCol(), nodeModel) : null;
-			wells[i].setLabels(l);
+			setWellHilited(convI, hiliteValues.get(i));
+			setWellSelected(convI, selections.get(i));
 		}
+		repaintDirty();
 	}
 
 	/**
-	 * Finds the proper colour values for the selected parameters.
-	 * <p>
-	 * Recursive implementation.
+	 * Updates the HiLites of the wells if the shown plate is among the
+	 * changed {@code plates}.
 	 * 
-	 * @param format
-	 *            The {@link Format} is used to compute the positions.
-	 * @param colors
-	 *            The results will be in this array. The first dimension is the
-	 *            position, the second is the selected primary & secondary
-	 *            parameter.
-	 * @param scores
-	 *            The values associated to the parameters.
-	 * @param colourModel
-	 *            The colourModel to have the colours from.
-	 * @param firstParamSlider
-	 *            The primary parameter {@link SliderModel}.
-	 * @param firstSelection
-	 *            The actual selection of primary {@link SliderModel}.
-	 * @param firstIndex
-	 *            The position in the second dimension of {@code colors}. This
-	 *            is for the primary parameter.
-	 * @param secondParamSlider
-	 *            The secondary parameter {@link SliderModel}.
-	 * @param secondSelection
-	 *            The actual selection of secondary {@link SliderModel}.
-	 * @param secondIndex
-	 *            The position in the second dimension of {@code colors}. This
-	 *            is for the secondary parameter.
-	 * @param sliderList
-	 *            This list describes the layout of {@code scores}.
-	 * @param sliderIndex
-	 *            The actual position in the {@code sliderList} (the recursion
-	 *            depth).
+	 * @param plates
+	 *            The ({@code 0}-based) plates with changed HiLites.
 	 */
-	private void findColourValues(final Format format, final Color[][] colors,
-			final Object scores, final ColourModel colourModel,
-			final Selectable<Pair<ParameterModel, Object>> firstParamSlider,
-			@Nullable final Integer firstSelection, final int firstIndex,
-			final Selectable<Pair<ParameterModel, Object>> secondParamSlider,
-			@Nullable final Integer secondSelection, final int secondIndex,
-			final List<SliderModel> sliderList, final int sliderIndex) {
-		final int firstParamCount = firstParamSlider == null ? 1
-				: firstParamSlider.getSelections().size();
-		double[] array = null;
-		if (sliderList.size() > sliderIndex) {
-			Map<?, ?> map = (Map<?, ?>) scores;
-
-			for (int i = sliderIndex; i < sliderList.size(); ++i) {
-				final Selectable<Pair<ParameterModel, Object>> sliderModel = sliderList
-						.get(i);
-				if (map == null) {
-					return;
-				}
-				if (sliderModel == firstParamSlider) {
-					int j = 0;
-					for (final Integer selected : sliderModel.getSelections()) {
-						findColourValues(format, colors, map.get(sliderModel
-								.getValueMapping().get(selected).getSecond()),
-								colourModel, firstParamSlider, selected, j,
-								secondParamSlider, secondSelection,
-								secondIndex, sliderList, i + 1);
-						++j;
-					}
-					return;
-				}
-				if (sliderModel == secondParamSlider) {
-					int j = 0;
-					for (final Integer selected : sliderModel.getSelections()) {
-						findColourValues(format, colors, map.get(sliderModel
-								.getValueMapping().get(selected).getSecond()),
-								colourModel, firstParamSlider, firstSelection,
-								firstIndex, secondParamSlider, selected, j,
-								sliderList, i + 1);
-						++j;
-					}
-					return;
-				} else {
-					assert sliderModel.getSelections().size() == 1;
-					final Object obj = map.get(sliderModel.getValueMapping()
-							.get(sliderModel.getSelections().iterator().next())
-							.getSecond());
-					if (i < sliderList.size() - 1) {
-						map = (Map<?, ?>) obj;
-					} else {
-						array = (double[]) obj;
-					}
-				}
-			}
-		} else {
-			array = (double[]) scores;
-		}
-		Selector<Pair<ParameterModel, Object>> paramSlider = null;
-		Selector<Pair<ParameterModel, Object>> statSlider = null;
-		for (final SliderModel sliderModel : sliderList) {
-			switch (sliderModel.getParameters().get(0).getType()) {
-			case parameter:
-				paramSlider = sliderModel;
-				break;
-			case metaStatType:
-				statSlider = sliderModel;
-				break;
-			default:
-				break;
-			}
-		}
-		final ColourComputer model0 = colourModel.getModel(
-				(String) (paramSlider.getSelections().size() == 1 ? paramSlider
-						.getValueMapping().get(
-								paramSlider.getSelections().iterator().next())
-						.getSecond()
-						: firstParamSlider == paramSlider ? firstParamSlider
-								.getValueMapping().get(firstSelection)
-								.getSecond() : secondParamSlider
-								.getValueMapping().get(secondSelection)
-								.getSecond()), (StatTypes) (statSlider
-						.getSelections().size() == 1 ? statSlider
-						.getValueMapping().get(
-								statSlider.getSelections().iterator().next())
-						.getSecond()
-						: firstParamSlider == statSlider ? firstParamSlider
-								.getValueMapping().get(firstSelection)
-								.getSecond() : secondParamSlider
-								.getValueMapping().get(secondSelection)
-								.getSecond()));
-		final ColourComputer model = model0 == null ? new ComplexModelFactory()
-				.getDefaultModel() : model0;
-		if (array != null) {
-			for (int p = format.getCol() * format.getRow(); p-- > 0;) {
-				colors[p][secondIndex * firstParamCount + firstIndex] = model
-						.compute(array[p]);
-			}
+	void hilitesChanged(final BitSet plates) {
+		if (volatileModel != null && plates.get(currentPlate())) {
+			setHilites();
 		}
 	}
 
 	/**
-	 * Finds a {@link SliderModel} with similar
-	 * {@link SliderModel#getParameters() parameters}.
+	 * Starts the computation of the colours and labels of the wells in the
+	 * background. Until the result is available the previous colours are
+	 * covered by the {@link WellPainter#PENDING_OVERLAY pending overlay} (the
+	 * new wells show the {@link WellPainter#PENDING_COLORS placeholder}). The
+	 * current selections of the sliders are used, so the result is only shown
+	 * if no newer computation was started meanwhile.
 	 * 
-	 * @param sliderModels
-	 *            Some {@link SliderModel}s.
-	 * @param parameters
-	 *            Some {@link ParameterModel}s. Only the fist will be used.
-	 * @return The {@link SliderModel} with fist
-	 *         {@link SliderModel#getParameters() parameter} same as the first
-	 *         {@code parameters}, or {@code null} if not found in {@code
-	 *         sliderModels}.
+	 * @param nodeModel
+	 *            The {@link HeatmapNodeModel} with the values.
+	 * @param key
+	 *            The {@link PlateImageCache.Key} of the result.
 	 */
-	private @Nullable
-	SliderModel findSlider(final Set<SliderModel> sliderModels,
-			final List<ParameterModel> parameters) {
-		if (parameters.size() == 0) {
-			return null;
-		}
-		for (final SliderModel sliderModel : sliderModels) {
-			if (sliderModel.getParameters().iterator().next().equals(
-					parameters.get(0))) {
-				return sliderModel;
+	private void replicates(final HeatmapNodeModel nodeModel,
+			final PlateImageCache.Key key) {
+		final HeatmapValues.Snapshot snapshot = HeatmapValues
+				.snapshot(viewModel);
+		plate = snapshot.selectedPlate();
+		final boolean wasPending = generations.isPending();
+		final int current = generations.request();
+		final ViewModel model = viewModel;
+		final Format format = model.getFormat();
+		final RenderPlan previousPlan = renderPlan;
+		imageKey = null;
+		painter = null;
+		if (wells != null) {
+			for (final WellViewPanel well : wells) {
+				well.resetPainter();
 			}
 		}
-		return null;
-	}
-
-	/**
-	 * Converts the selections to the proper values for the
-	 * {@link SliderModel#getSubId()}s.
-	 * 
-	 * @param <T>
-	 *            The type of the values in {@code posMap}.
-	 * @param posMap
-	 *            The map of the positions ({@code 0} (inclusive) to
-	 *            {@link SliderModel#MAX_INDEPENDENT_FACTORS}{@code -1}
-	 *            exclusive) to the values. The values will be added to the
-	 *            lists. It is a good choice to have these lists modifiable and
-	 *            empty at the beginning.
-	 * @param slider
-	 *            A {@link SliderModel}.
-	 * @param cls
-	 *            The class of the types.
-	 */
-	private <T> void selectionToPos(final Map<Integer, List<T>> posMap,
-			final SliderModel slider, final Class<? extends T> cls) {
-		final List<T> list = posMap.get(Integer.valueOf(slider.getSubId()));
-		for (final Integer selection : slider.getSelections()) {
-			list.add(cls.cast(slider.getValueMapping().get(selection)
-					.getSecond()));
+		lowDetailValid = false;
+		wellValues = null;
+		for (int i = format.getWellCount(); i-- > 0;) {
+			if (wellColors[i] == null) {
+				setWellColors(i, WellPainter.PENDING_COLORS);
+			}
+			setWellLabel(i, null);
 		}
-	}
+		if (!wasPending) {
+			// Shows the overlay.
+			repaint();
+		}
+		new SwingWorker<HeatmapValues, Void>() {
+			@Override
+			protected HeatmapValues doInBackground() {
+				return HeatmapValues.compute(snapshot, nodeModel,
+						previousPlan, true, generations.check(current));
+			}
 
-	private int computeSplitterCount(final Collection<SliderModel> sliders) {
-		int ret = 1;
-		for (final Selectable<?> slider : sliders) {
-			if (slider != null) {
-				ret *= slider.getSelections().size();
+			@Override
+			protected void done() {
+				if (!generations.isCurrent(current)) {
+					return;
+				}
+				HeatmapValues values = null;
+				try {
+					values = get();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (final ExecutionException e) {
+					final Throwable cause = e.getCause();
+					logger.error("Unable to compute the colours of the wells: "
+							+ (cause.getMessage() == null ? cause.toString()
+									: cause.getMessage()), cause);
+				}
+				if (values != null) {
+					for (int i = format.getWellCount(); i-- > 0;) {
+						setWellBackground(i, values.getBackgrounds()[i]);
+						setWellColors(i, values.getColors()[i]);
+						if (wells != null) {
+							setWellLabel(i, values.getLabel(i));
+						}
+					}
+					wellValues = values;
+					renderPlan = values.getPlan();
+					imageKey = key;
+				}
+				// Not pending even if failed, the pending colours are shown
+				// then without the overlay.
+				generations.show(current);
+				// The overlay covered every well.
+				dirty.clear();
+				repaint();
 			}
-		}
-		return ret;
+		}.execute();
 	}
 
 	/**
@@ -504,86 +356,389 @@ public class Heatmap extends JComponent implements HiLiteListener {
 
 	private void internalUpdateViewModel() {
 		removeAll();
+		clickListeners.clear();
+		imageKey = null;
+		painter = null;
+		lowDetail = null;
+		lowDetailValid = false;
+		dirty.clear();
+		renderPlan = null;
+		generations.reset();
 		final Format format = viewModel.getFormat();
 		final int rows = format.getRow();
 		final int cols = format.getCol();
-		setLayout(new GridLayout(rows, cols));
 		final Format vFormat = volatileModel == null ? Format._96
 				: volatileModel.format;
+		final int wellCount = format.getWellCount();
+		wellColors = new int[wellCount][];
+		wellBackgrounds = new Color[wellCount];
+		wellValues = null;
+		wellHilites = new boolean[wellCount];
+		wellSelections = new boolean[wellCount];
+		positions = new int[wellCount];
+		for (int i = wellCount; i-- > 0;) {
+			positions[i] = vFormat.unsafeConvertPos(i, format);
+		}
+		if (singleCanvas) {
+			wells = null;
+			setLayout(null);
+			validate();
+			return;
+		}
+		setLayout(new GridLayout(rows, cols));
+		wells = new WellViewPanel[wellCount];
 		for (int j = 0; j < cols; ++j) {
 			for (int i = 0; i < rows; ++i) {
-				final int pos = vFormat.unsafeConvertPos(j * rows + i, format);
+				final int index = j * rows + i;
 				final WellViewPanel well = new WellViewPanel(true, viewModel,
-				// j
-						// % vFormat.getRow() * rows + i % vFormat.getRow()
-						pos);
+						positions[index]);
 				well.setPreferredSize(new Dimension(getBounds().width / cols,
 						getBounds().height / rows));
 				well.addMouseListener(new MouseAdapter() {
 					@Override
 					public void mouseClicked(final MouseEvent e) {
 						super.mouseClicked(e);
-						final WellViewPanel source = (WellViewPanel) e
-								.getSource();
-						final boolean oldSelection = source.isSelected();
-						if ((e.getModifiersEx() & InputEvent.CTRL_DOWN_MASK) == 0) {
-							volatileModel.clearSelection();
-							for (final WellViewPanel well : wells) {
-								if (well != null) {
-									well.setSelected(false);
-								}
-							}
-						}
-						source.setSelected(!oldSelection);
-						if (plate == -1) {
-							final Collection<Number> selectedPlates = new ArrayList<Number>();
-							for (final SliderModel slider : viewModel.getMain()
-									.getArrangementModel().getSliderModels()) {
-								if (slider.getParameters().iterator().next()
-										.getType() == StatTypes.plate) {
-									final Set<Integer> selections = slider
-											.getSelections();
-									for (final Integer integer : selections) {
-										selectedPlates.add((Number) slider
-												.getValueMapping().get(integer)
-												.getSecond());
-									}
-									break;
-								}
-							}
-							for (final Number selectedPlate : selectedPlates) {
-								volatileModel.setSelection(selectedPlate
-										.intValue() - 1, source
-										.getPositionOnPlate(), source
-										.isSelected());
-							}
-						} else {
-							final Map<Integer, Pair<ParameterModel, Object>> valueMapping = viewModel
-									.getMain().getArrangementModel()
-									.getSliders().get(Type.Selector).iterator()
-									.next().getValueMapping();
-							int plateFrom0 = -1;
-							for (final Entry<Integer, ? extends Pair<?, ?>> entry : valueMapping
-									.entrySet()) {
-								if (entry.getValue().getSecond().equals(
-										Integer.valueOf(plate + 1))) {
-									plateFrom0 = entry.getKey() - 1;
-								}
-							}
-							assert plateFrom0 != -1;
-							volatileModel.setSelection(plateFrom0, source
-									.getPositionOnPlate(), source.isSelected());
-						}
-						repaint();
+						wellClicked(index, e);
 					}
 				});
-				wells[j * rows + i] = well;
+				wells[index] = well;
 				add(well);
 			}
 		}
 		validate();
 	}
 
+	/**
+	 * Toggles the selection of a well (clears the other selections without
+	 * the {@code Ctrl} modifier), and updates the {@link VolatileModel}.
+	 * 
+	 * @param index
+	 *            The index of the well.
+	 * @param e
+	 *            The click event.
+	 */
+	private void wellClicked(final int index, final MouseEvent e) {
+		final boolean oldSelection = wellSelections[index];
+		if ((e.getModifiersEx() & InputEvent.CTRL_DOWN_MASK) == 0) {
+			volatileModel.clearSelection();
+			for (int i = wellSelections.length; i-- > 0;) {
+				setWellSelected(i, false);
+			}
+		}
+		setWellSelected(index, !oldSelection);
+		final boolean selected = wellSelections[index];
+		if (plate == -1) {
+			final Collection<Number> selectedPlates = new ArrayList<Number>();
+			for (final SliderModel slider : viewModel.getMain()
+					.getArrangementModel().getSliderModels()) {
+				if (slider.getParameters().iterator().next().getType() == StatTypes.plate) {
+					final Set<Integer> selections = slider.getSelections();
+					for (final Integer integer : selections) {
+						selectedPlates.add((Number) slider.getValueMapping()
+								.get(integer).getSecond());
+					}
+					break;
+				}
+			}
+			for (final Number selectedPlate : selectedPlates) {
+				volatileModel.setSelection(selectedPlate.intValue() - 1,
+						positions[index], selected);
+			}
+		} else {
+			final Map<Integer, Pair<ParameterModel, Object>> valueMapping = viewModel
+					.getMain().getArrangementModel().getSliders().get(
+							Type.Selector).iterator().next().getValueMapping();
+			int plateFrom0 = -1;
+			for (final Entry<Integer, ? extends Pair<?, ?>> entry : valueMapping
+					.entrySet()) {
+				if (entry.getValue().getSecond().equals(
+						Integer.valueOf(plate + 1))) {
+					plateFrom0 = entry.getKey() - 1;
+				}
+			}
+			assert plateFrom0 != -1;
+			volatileModel.setSelection(plateFrom0, positions[index], selected);
+		}
+		repaintDirty();
+	}
+
+	private void setWellSelected(final int index, final boolean selected) {
+		if (wellSelections[index] != selected) {
+			wellSelections[index] = selected;
+			markDirty(index);
+		}
+		if (wells != null) {
+			wells[index].setSelected(selected);
+		}
+	}
+
+	private void setWellHilited(final int index, final boolean hilited) {
+		if (wellHilites[index] != hilited) {
+			wellHilites[index] = hilited;
+			markDirty(index);
+		}
+		if (wells != null) {
+			wells[index].setHilited(hilited);
+		}
+	}
+
+	private void setWellColors(final int index, @Nullable final int[] colors) {
+		if (!Arrays.equals(wellColors[index], colors)) {
+			markDirty(index);
+		}
+		wellColors[index] = colors;
+		if (wells != null) {
+			wells[index].setColors(colors);
+		}
+	}
+
+	private void setWellBackground(final int index, final Color background) {
+		if (background == null ? wellBackgrounds[index] != null : !background
+				.equals(wellBackgrounds[index])) {
+			markDirty(index);
+		}
+		wellBackgrounds[index] = background;
+		if (wells != null) {
+			wells[index].setBackground(background);
+		}
+	}
+
+	/**
+	 * Adds the well at {@code index} to the {@link #dirty} wells of the
+	 * single canvas. (The {@link WellViewPanel}s repaint themselves.)
+	 * 
+	 * @param index
+	 *            The index of the changed well.
+	 */
+	private void markDirty(final int index) {
+		lowDetailValid = false;
+		if (wells == null) {
+			dirty.mark(index);
+		}
+	}
+
+	/**
+	 * Repaints the {@link #dirty} wells of the single canvas. When shown, each
+	 * {@link DirtyWells#rectangles(Rectangle, int) rectangle} is painted
+	 * immediately on its own, so the unchanged wells between the distant
+	 * changes are not repainted. (The {@link javax.swing.RepaintManager}
+	 * would merge the separate {@link #repaint(Rectangle) repaint requests}
+	 * to their bounding rectangle.) Otherwise the bounding rectangle is
+	 * repainted later.
+	 */
+	private void repaintDirty() {
+		if (dirty.isEmpty()) {
+			return;
+		}
+		final Rectangle first = firstWellBounds();
+		if (first.width <= 0 || first.height <= 0) {
+			repaint();
+		} else {
+			final boolean immediately = isShowing()
+					&& SwingUtilities.isEventDispatchThread();
+			for (final Rectangle rectangle : dirty.rectangles(first, viewModel
+					.getFormat().getCol())) {
+				if (immediately) {
+					paintImmediately(rectangle);
+				} else {
+					repaint(rectangle);
+				}
+			}
+		}
+		dirty.clear();
+	}
+
+	/**
+	 * Sets the label of a {@link WellViewPanel}. (On the single canvas the
+	 * labels are created when the tooltip is shown.)
+	 */
+	private void setWellLabel(final int index, @Nullable final String label) {
+		if (wells != null) {
+			wells[index].setLabels(label);
+		}
+	}
+
+	/**
+	 * Computes the bounds of the top-left well on the single canvas, the
+	 * others are shifted by multiples of the width and height. (The same
+	 * arrangement as of a {@link GridLayout}.)
+	 * 
+	 * @return The bounds of the first well.
+	 */
+	private Rectangle firstWellBounds() {
+		final Format format = viewModel.getFormat();
+		final Insets insets = getInsets();
+		final int width = getWidth() - insets.left - insets.right;
+		final int height = getHeight() - insets.top - insets.bottom;
+		final int wellWidth = width / format.getCol();
+		final int wellHeight = height / format.getRow();
+		return new Rectangle(insets.left + (width - wellWidth
+				* format.getCol()) / 2, insets.top + (height - wellHeight
+				* format.getRow()) / 2, wellWidth, wellHeight);
+	}
+
+	/**
+	 * Finds the well on the single canvas at the {@code x}, {@code y}
+	 * coordinates.
+	 * 
+	 * @param x
+	 *            The horizontal coordinate.
+	 * @param y
+	 *            The vertical coordinate.
+	 * @return The index of the well, or {@code -1} if there is no well at
+	 *         that point.
+	 */
+	private int wellAt(final int x, final int y) {
+		final Rectangle first = firstWellBounds();
+		if (first.width <= 0 || first.height <= 0 || x < first.x
+				|| y < first.y) {
+			return -1;
+		}
+		final Format format = viewModel.getFormat();
+		final int col = (x - first.x) / first.width;
+		final int row = (y - first.y) / first.height;
+		return col < format.getCol() && row < format.getRow() ? row
+				* format.getCol() + col : -1;
+	}
+
+	@Override
+	protected void paintComponent(final Graphics g) {
+		super.paintComponent(g);
+		if (wells != null) {
+			return;
+		}
+		final Rectangle first = firstWellBounds();
+		if (Math.min(first.width, first.height) < detailThreshold) {
+			paintLowDetail(g, first);
+			return;
+		}
+		if (imageCache == null || imageKey == null || getWidth() <= 0
+				|| getHeight() <= 0) {
+			paintWells(g, true, false);
+			return;
+		}
+		final PlateImageCache.Key key = imageKey.resize(getWidth(),
+				getHeight());
+		BufferedImage image = imageCache.get(key);
+		if (image == null) {
+			image = new BufferedImage(getWidth(), getHeight(),
+					BufferedImage.TYPE_INT_ARGB);
+			final Graphics imageGraphics = image.createGraphics();
+			try {
+				paintWells(imageGraphics, false, false);
+			} finally {
+				imageGraphics.dispose();
+			}
+			imageCache.put(key, image);
+		}
+		g.drawImage(image, 0, 0, null);
+		paintWells(g, true, true);
+	}
+
+	/**
+	 * Paints the wells (on the single canvas, or the {@link WellViewPanel}s),
+	 * and covers them with the {@link WellPainter#PENDING_OVERLAY pending
+	 * overlay} while their colours are not of the last requested values.
+	 */
+	@Override
+	protected void paintChildren(final Graphics g) {
+		super.paintChildren(g);
+		if (generations.isPending()) {
+			final Insets insets = getInsets();
+			g.setColor(WellPainter.PENDING_OVERLAY);
+			g.fillRect(insets.left, insets.top, getWidth() - insets.left
+					- insets.right, getHeight() - insets.top - insets.bottom);
+		}
+	}
+
+	/**
+	 * Paints the wells on the single canvas with a single pixel block for
+	 * each well (only the primary colour and the marks). The raster of the
+	 * wells is reused until their colours, HiLites or selections change.
+	 * 
+	 * @param g
+	 *            The {@link Graphics} to paint on.
+	 * @param first
+	 *            The bounds of the first well.
+	 */
+	private void paintLowDetail(final Graphics g, final Rectangle first) {
+		final Format format = viewModel.getFormat();
+		final Rectangle area;
+		if (first.width > 0 && first.height > 0) {
+			area = new Rectangle(first.x, first.y, first.width
+					* format.getCol(), first.height * format.getRow());
+		} else {
+			// Less than a pixel for a well, the whole area is used.
+			final Insets insets = getInsets();
+			area = new Rectangle(insets.left, insets.top, getWidth()
+					- insets.left - insets.right, getHeight() - insets.top
+					- insets.bottom);
+		}
+		if (!lowDetailValid) {
+			lowDetail = painter().lowDetail(lowDetail, format, wellColors,
+					wellHilites, wellSelections);
+			lowDetailValid = true;
+		}
+		g.drawImage(lowDetail, area.x, area.y, area.width, area.height, null);
+	}
+
+	/**
+	 * @return The {@link WellPainter} of the current splits of the wells.
+	 */
+	private WellPainter painter() {
+		if (painter == null) {
+			painter = new WellPainter(viewModel);
+		}
+		return painter;
+	}
+
+	/**
+	 * Paints the wells on the single canvas.
+	 * 
+	 * @param g
+	 *            The {@link Graphics} to paint on.
+	 * @param marks
+	 *            Paint the hilite and selection of the wells.
+	 * @param onlyMarked
+	 *            Paint only the hilited or selected wells.
+	 */
+	private void paintWells(final Graphics g, final boolean marks,
+			final boolean onlyMarked) {
+		final int cols = viewModel.getFormat().getCol();
+		final Rectangle first = firstWellBounds();
+		final Rectangle clip = g.getClipBounds();
+		final Color defaultBackground = UIManager.getColor("Panel.background");
+		final WellPainter wellPainter = painter();
+		for (int i = 0; i < wellColors.length; ++i) {
+			if (onlyMarked && !wellHilites[i] && !wellSelections[i]) {
+				continue;
+			}
+			final int x = first.x + i % cols * first.width;
+			final int y = first.y + i / cols * first.height;
+			if (clip != null
+					&& !clip.intersects(x, y, first.width, first.height)) {
+				continue;
+			}
+			g.setColor(wellBackgrounds[i] == null ? defaultBackground
+					: wellBackgrounds[i]);
+			g.fillRect(x, y, first.width, first.height);
+			wellPainter.paint(g, x, y, first.width, first.height,
+					wellColors[i] == null ? WellPainter.SAMPLE_COLORS
+							: wellColors[i], marks && wellHilites[i], marks
+							&& wellSelections[i]);
+		}
+	}
+
+	@Override
+	public String getToolTipText(final MouseEvent event) {
+		if (wells != null) {
+			return super.getToolTipText(event);
+		}
+		final int well = wellAt(event.getX(), event.getY());
+		final HeatmapValues values = wellValues;
+		return well < 0 || values == null ? null : values.getLabel(well);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -593,35 +748,7 @@ public class Heatmap extends JComponent implements HiLiteListener {
 	}
 
 	private void hilite(final KeyEvent event, final boolean hilite) {
-		final Collection<SliderModel> sliders = viewModel.getMain()
-				.getArrangementModel().getSliders().get(Type.Selector);
-		// Should be only plate here.
-		final Map<Integer, Pair<ParameterModel, Object>> mapping = sliders
-				.size() == 1 ? sliders.iterator().next().getValueMapping()
-				: null;
-		final Map<Integer, Integer> inverseMap = new HashMap<Integer, Integer>();
-		for (final Entry<Integer, ? extends Pair<?, ?>> entry : (mapping == null ? Collections
-				.<Integer, Pair<?, ?>> emptyMap()
-				: mapping).entrySet()) {
-			final Pair<?, ?> pair = entry.getValue();
-			if (pair.getSecond() instanceof Number) {
-				final Number valNum = (Number) pair.getSecond();
-				inverseMap.put(Integer.valueOf(valNum.intValue()), entry
-						.getKey());
-			}
-		}
-		for (final RowKey key : event.keys()) {
-			final Pair<Integer, Integer> pair = keyToPlateAndPosition.get(key
-					.getString());
-			if (pair != null) {
-				assert pair != null;
-				final int plate = (mapping == null ? pair.getSecond().intValue()
-						: ((Number) inverseMap.get(pair.getSecond())).intValue()) - 1;
-				final int pos = pair.getSecond().intValue();
-				volatileModel.setHilite(plate, pos, hilite);
-			}
-		}
-		setHilites();
+		hilitesChanged(volatileModel.setHilites(event.keys(), hilite));
 	}
 
 	/**
@@ -637,26 +764,25 @@ public class Heatmap extends JComponent implements HiLiteListener {
 	 */
 	@Override
 	public void unHiLiteAll(final KeyEvent event) {
-		for (final WellViewPanel well : wells) {
-			if (well != null) {
-				well.setHilited(false);
-			}
-		}
-		volatileModel.unHiliteAll();
+		hilitesChanged(volatileModel.clearHilites());
 	}
 
 	/**
 	 * This method adds a {@link MouseListener} for each well of the
-	 * {@link Heatmap}.
+	 * {@link Heatmap}. On the single canvas only the
+	 * {@link MouseListener#mouseClicked(MouseEvent) clicks} on the wells are
+	 * reported (with the {@link Heatmap} as the source).
 	 * 
 	 * @param listener
 	 *            A non-{@code null} {@link MouseListener}.
 	 */
 	public void addClickListenerForEveryWell(final MouseListener listener) {
+		if (wells == null) {
+			clickListeners.add(listener);
+			return;
+		}
 		for (final WellViewPanel well : wells) {
-			if (well != null) {
-				well.addMouseListener(listener);
-			}
+			well.addMouseListener(listener);
 		}
 	}
 }
@@ -0,0 +1,300 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.swing.JComponent;
+import javax.swing.UIManager;
+
+import com.mind_era.knime.common.Format;
+import com.mind_era.knime.common.util.select.Selectable;
+import com.mind_era.knime.hits.view.heatmap.HeatmapNodeView.VolatileModel;
+import com.mind_era.knime.hits.view.heatmap.SliderModel.Type;
+import com.mind_era.knime.hits.view.heatmap.ViewModel.ParameterModel;
+
+/**
+ * An off-screen component showing the same plate in a grid, like the
+ * {@link Heatmap}s of the view. It is not added to any container, so it can
+ * be painted (and saved) outside of the event dispatch thread, even in
+ * headless mode.
+ * <p>
+ * The images of every combination of the values of the
+ * {@link #others(ViewModel) other} (not splitting) sliders are used by the
+ * export of the view and the {@link HeatmapImagesNodeModel}.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+public final class HeatmapImage extends JComponent {
+	private static final long serialVersionUID = -3406400780569519566L;
+
+	private final ViewModel viewModel;
+	private final WellPainter painter;
+	private final HeatmapValues values;
+	private final boolean[] hilites;
+	private final boolean[] selections;
+	private final int rows;
+	private final int cols;
+	private final Color defaultBackground;
+
+	/**
+	 * Constructs a {@link HeatmapImage}.
+	 *
+	 * @param viewModel
+	 *            The {@link ViewModel} of the wells.
+	 * @param painter
+	 *            The {@link WellPainter} of {@code viewModel}, it might be
+	 *            shared by the images of an export.
+	 * @param values
+	 *            The computed values of the wells.
+	 * @param marks
+	 *            The hilites and selections of the wells (see
+	 *            {@link #marks(ViewModel, VolatileModel, Map)}).
+	 * @param rows
+	 *            The number of plates vertically.
+	 * @param cols
+	 *            The number of plates horizontally.
+	 * @param width
+	 *            The width of the image.
+	 * @param height
+	 *            The height of the image.
+	 */
+	HeatmapImage(final ViewModel viewModel, final WellPainter painter,
+			final HeatmapValues values, final boolean[][] marks,
+			final int rows, final int cols, final int width, final int height) {
+		super();
+		this.viewModel = viewModel;
+		this.painter = painter;
+		this.values = values;
+		this.hilites = marks[0];
+		this.selections = marks[1];
+		this.rows = rows;
+		this.cols = cols;
+		defaultBackground = UIManager.getColor("Panel.background");
+		setDoubleBuffered(false);
+		setSize(width, height);
+	}
+
+	/**
+	 * @param viewModel
+	 *            A {@link ViewModel}.
+	 * @return The non-primary, non-secondary {@link SliderModel}s of
+	 *         {@code viewModel}, a single value of these is shown on an image.
+	 */
+	static List<SliderModel> others(final ViewModel viewModel) {
+		final List<ParameterModel> primerParameters = viewModel.getMain()
+				.getPrimerParameters();
+		final List<ParameterModel> seconderParameters = viewModel.getMain()
+				.getSeconderParameters();
+		final Collection<SliderModel> sliderModels = viewModel.getMain()
+				.getArrangementModel().getSliderModels();
+		final List<SliderModel> ret = new ArrayList<SliderModel>(sliderModels
+				.size());
+		for (final SliderModel sliderModel : sliderModels) {
+			if (primerParameters.get(0).getType() != sliderModel
+					.getParameters().get(0).getType()
+					&& (seconderParameters.size() == 0 || seconderParameters
+							.get(0).getType() != sliderModel.getParameters()
+							.get(0).getType())) {
+				ret.add(sliderModel);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Collects the selections for every combination of the values of
+	 * {@code others}.
+	 * 
+	 * @param selections
+	 *            The selections of the {@link SliderModel}s.
+	 * @param others
+	 *            The {@link #others(ViewModel) other} {@link SliderModel}s.
+	 * @return The selections of the combinations, in each a single value is
+	 *         selected from {@code others}.
+	 */
+	public static List<Map<Selectable<?>, List<Integer>>> combinations(
+			final Map<Selectable<?>, List<Integer>> selections,
+			final List<SliderModel> others) {
+		final List<Map<Selectable<?>, List<Integer>>> ret = new ArrayList<Map<Selectable<?>, List<Integer>>>();
+		combinations(selections, others, 0, ret);
+		return ret;
+	}
+
+	/**
+	 * Collects the selections for every combination of the values of
+	 * {@code others} from {@code actual}.
+	 * 
+	 * @param selections
+	 *            The selections of the {@link SliderModel}s, the selections
+	 *            of {@code others} before {@code actual} are already set.
+	 * @param others
+	 *            The non-primary, non-secondary {@link SliderModel}s.
+	 * @param actual
+	 *            The actually modified {@link SliderModel} in {@code others}.
+	 * @param result
+	 *            The selections of the combinations are added to this
+	 *            {@link List}.
+	 */
+	private static void combinations(
+			final Map<Selectable<?>, List<Integer>> selections,
+			final List<SliderModel> others, final int actual,
+			final List<Map<Selectable<?>, List<Integer>>> result) {
+		if (actual < others.size()) {
+			final Selectable<?> slider = others.get(actual);
+			for (final Integer key : slider.getValueMapping().keySet()) {
+				final Map<Selectable<?>, List<Integer>> copy = new IdentityHashMap<Selectable<?>, List<Integer>>(
+						selections);
+				copy.put(slider, Collections.singletonList(key));
+				combinations(copy, others, actual + 1, result);
+			}
+		} else {
+			result.add(selections);
+		}
+	}
+
+	/**
+	 * @param others
+	 *            The {@link #others(ViewModel) other} {@link SliderModel}s.
+	 * @param selections
+	 *            The selections of a {@link #combinations(Map, List)
+	 *            combination}.
+	 * @return The name of the image (without extension), like
+	 *         {@code plate-1 experiment-Exp1}.
+	 */
+	public static String name(final List<SliderModel> others,
+			final Map<Selectable<?>, List<Integer>> selections) {
+		final StringBuilder ret = new StringBuilder();
+		for (final SliderModel sliderModel : others) {
+			ret.append(sliderModel.getParameters().get(0).getShortName());
+			ret.append("-").append(
+					sliderModel.getValueMapping().get(
+							selections.get(sliderModel).get(0)).getSecond()
+							.toString().replaceAll("[^\\d\\w]+", "_")).append(
+					" ");
+		}
+		return ret.toString().trim();
+	}
+
+	/**
+	 * @param viewModel
+	 *            The {@link ViewModel} of the wells.
+	 * @return No hilites and selections for the wells (see
+	 *         {@link #marks(ViewModel, VolatileModel, Map)}).
+	 */
+	static boolean[][] noMarks(final ViewModel viewModel) {
+		return new boolean[2][viewModel.getFormat().getWellCount()];
+	}
+
+	/**
+	 * Copies the hilites and selections of the wells of the selected plate.
+	 *
+	 * @param viewModel
+	 *            The {@link ViewModel} of the wells.
+	 * @param volatileModel
+	 *            The {@link VolatileModel} with the hilites and selections.
+	 * @param sliderSelections
+	 *            The selections of the {@link SliderModel}s.
+	 * @return The hilites (first) and the selections (second) of the wells.
+	 */
+	static boolean[][] marks(final ViewModel viewModel,
+			final VolatileModel volatileModel,
+			final Map<Selectable<?>, List<Integer>> sliderSelections) {
+		final Collection<SliderModel> sliders = viewModel.getMain()
+				.getArrangementModel().getSliders().get(Type.Selector);
+		final int currentPlate = (sliders.size() > 0 ? sliderSelections.get(
+				sliders.iterator().next()).get(0).intValue() : 1) - 1;
+		final BitSet hiliteValues = volatileModel
+				.getHiliteValues(currentPlate);
+		final BitSet selectionValues = volatileModel
+				.getSelectionValues(currentPlate);
+		final Format format = viewModel.getFormat();
+		final Format vFormat = volatileModel.format;
+		final boolean[][] ret = new boolean[2][format.getWellCount()];
+		for (int i = vFormat.getWellCount(); i-- > 0;) {
+			final int convI = i % vFormat.getCol() % format.getCol() + i
+					/ vFormat.getCol() % format.getRow() * format.getCol();
+			ret[0][convI] = hiliteValues.get(i);
+			ret[1][convI] = selectionValues.get(i);
+		}
+		return ret;
+	}
+
+	/**
+	 * @param sliderSelections
+	 *            The selections of the {@link SliderModel}s.
+	 * @param sliders
+	 *            The {@link SliderModel}s distributed across a scrollbar.
+	 * @return The number of plates along that scrollbar.
+	 */
+	static int gridSize(
+			final Map<Selectable<?>, List<Integer>> sliderSelections,
+			final Collection<SliderModel> sliders) {
+		int count = 0;
+		for (final SliderModel slider : sliders) {
+			count += sliderSelections.get(slider).size();
+		}
+		return Math.max(1, count);
+	}
+
+	/**
+	 * @return The painted image (without transparency).
+	 */
+	BufferedImage toImage() {
+		final BufferedImage image = new BufferedImage(getWidth(), getHeight(),
+				BufferedImage.TYPE_INT_RGB);
+		final Graphics2D g = image.createGraphics();
+		try {
+			paintComponent(g);
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+	@Override
+	protected void paintComponent(final Graphics g) {
+		g.setColor(defaultBackground);
+		g.fillRect(0, 0, getWidth(), getHeight());
+		final Format format = viewModel.getFormat();
+		final int plateWidth = getWidth() / cols;
+		final int plateHeight = getHeight() / rows;
+		final int wellWidth = plateWidth / format.getCol();
+		final int wellHeight = plateHeight / format.getRow();
+		final int[][] colors = values.getColors();
+		final Color[] backgrounds = values.getBackgrounds();
+		for (int row = 0; row < rows; ++row) {
+			for (int col = 0; col < cols; ++col) {
+				final int left = col * plateWidth
+						+ (plateWidth - wellWidth * format.getCol()) / 2;
+				final int top = row * plateHeight
+						+ (plateHeight - wellHeight * format.getRow()) / 2;
+				for (int i = 0; i < colors.length; ++i) {
+					final int x = left + i % format.getCol() * wellWidth;
+					final int y = top + i / format.getCol() * wellHeight;
+					g.setColor(backgrounds[i] == null ? defaultBackground
+							: backgrounds[i]);
+					g.fillRect(x, y, wellWidth, wellHeight);
+					painter.paint(g, x, y, wellWidth, wellHeight,
+							colors[i] == null ? WellPainter.SAMPLE_COLORS
+									: colors[i], hilites[i], selections[i]);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+import org.knime.core.node.defaultnodesettings.DialogComponentStringSelection;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+
+import com.mind_era.knime.hits.view.heatmap.ViewModel.Shape;
+
+/**
+ * <code>NodeDialog</code> for the "Heatmap Images" Node. Renders the heatmap
+ * of the plates to images.
+ * 
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class HeatmapImagesNodeDialog extends DefaultNodeSettingsPane {
+
+	/**
+	 * New pane for configuring the Heatmap Images node.
+	 */
+	protected HeatmapImagesNodeDialog() {
+		super();
+		addDialogComponent(new DialogComponentNumber(
+				new SettingsModelIntegerBounded(
+						HeatmapImagesNodeModel.CFGKEY_WIDTH,
+						HeatmapImagesNodeModel.DEFAULT_WIDTH, 1,
+						HeatmapImagesNodeModel.MAX_SIZE), "Width", Integer
+						.valueOf(10)));
+		addDialogComponent(new DialogComponentNumber(
+				new SettingsModelIntegerBounded(
+						HeatmapImagesNodeModel.CFGKEY_HEIGHT,
+						HeatmapImagesNodeModel.DEFAULT_HEIGHT, 1,
+						HeatmapImagesNodeModel.MAX_SIZE), "Height", Integer
+						.valueOf(10)));
+		final String[] shapes = new String[Shape.values().length];
+		for (int i = shapes.length; i-- > 0;) {
+			shapes[i] = Shape.values()[i].name();
+		}
+		addDialogComponent(new DialogComponentStringSelection(
+				new SettingsModelString(HeatmapImagesNodeModel.CFGKEY_SHAPE,
+						HeatmapImagesNodeModel.DEFAULT_SHAPE), "Shape", shapes));
+		addDialogComponent(new DialogComponentBoolean(new SettingsModelBoolean(
+				HeatmapImagesNodeModel.CFGKEY_DRAW_BORDERS,
+				HeatmapImagesNodeModel.DEFAULT_DRAW_BORDERS), "Draw borders"));
+	}
+}
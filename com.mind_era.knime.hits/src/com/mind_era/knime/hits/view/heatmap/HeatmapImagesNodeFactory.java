@@ -0,0 +1,60 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import org.knime.core.node.NodeDialogPane;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeView;
+
+/**
+ * <code>NodeFactory</code> for the "Heatmap Images" Node. Renders the heatmap
+ * of the plates to images.
+ * 
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class HeatmapImagesNodeFactory extends
+		NodeFactory<HeatmapImagesNodeModel> {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public HeatmapImagesNodeModel createNodeModel() {
+		return new HeatmapImagesNodeModel();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNrNodeViews() {
+		return 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public NodeView<HeatmapImagesNodeModel> createNodeView(
+			final int viewIndex, final HeatmapImagesNodeModel nodeModel) {
+		throw new IndexOutOfBoundsException("No views: " + viewIndex);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasDialog() {
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public NodeDialogPane createNodeDialogPane() {
+		return new HeatmapImagesNodeDialog();
+	}
+
+}
@@ -0,0 +1,422 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.data.image.png.PNGImageContent;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+
+import com.mind_era.knime.common.util.ModelBuilder;
+import com.mind_era.knime.common.util.ModelBuilder.SpecAnalyser;
+import com.mind_era.knime.common.util.select.Selectable;
+import com.mind_era.knime.common.util.swing.colour.ColourSelector.ColourModel;
+import com.mind_era.knime.common.view.StatTypes;
+import com.mind_era.knime.hits.view.heatmap.ControlPanel.ArrangementModel;
+import com.mind_era.knime.hits.view.heatmap.SliderModel.Type;
+import com.mind_era.knime.hits.view.heatmap.ViewModel.OverviewModel;
+import com.mind_era.knime.hits.view.heatmap.ViewModel.ParameterModel;
+import com.mind_era.knime.hits.view.heatmap.ViewModel.Shape;
+import com.mind_era.knime.hits.view.heatmap.ViewModel.ShapeModel;
+
+/**
+ * This is the model implementation of Heatmap Images. Renders the heatmap of
+ * the plates to a table of images, without a view.
+ * <p>
+ * The arrangement is the default arrangement of the Heatmap view (parameters
+ * as primary, replicates as secondary split), with the default colours. An
+ * image is generated for every plate, experiment, normalisation and
+ * statistics.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+public class HeatmapImagesNodeModel extends HeatmapNodeModel {
+	/** Configuration key for the width of the images. */
+	static final String CFGKEY_WIDTH = "com.mind_era.knime.hits.view.heatmap.images.width";
+	/** Default value for the width of the images. */
+	static final int DEFAULT_WIDTH = 800;
+
+	/** Configuration key for the height of the images. */
+	static final String CFGKEY_HEIGHT = "com.mind_era.knime.hits.view.heatmap.images.height";
+	/** Default value for the height of the images. */
+	static final int DEFAULT_HEIGHT = 600;
+
+	/** The maximal width/height of the images. */
+	static final int MAX_SIZE = 10000;
+
+	/** Configuration key for the shape of the wells. */
+	static final String CFGKEY_SHAPE = "com.mind_era.knime.hits.view.heatmap.images.shape";
+	/** Default value for the shape of the wells. */
+	static final String DEFAULT_SHAPE = Shape.Circle.name();
+
+	/** Configuration key for the draw borders option. */
+	static final String CFGKEY_DRAW_BORDERS = "com.mind_era.knime.hits.view.heatmap.images.borders";
+	/** Default value for the draw borders option. */
+	static final boolean DEFAULT_DRAW_BORDERS = true;
+
+	/** The name of the image column. */
+	static final String IMAGE_COLUMN = "Image";
+
+	private final SettingsModelIntegerBounded widthModel = new SettingsModelIntegerBounded(
+			CFGKEY_WIDTH, DEFAULT_WIDTH, 1, MAX_SIZE);
+	private final SettingsModelIntegerBounded heightModel = new SettingsModelIntegerBounded(
+			CFGKEY_HEIGHT, DEFAULT_HEIGHT, 1, MAX_SIZE);
+	private final SettingsModelString shapeModel = new SettingsModelString(
+			CFGKEY_SHAPE, DEFAULT_SHAPE);
+	private final SettingsModelBoolean drawBordersModel = new SettingsModelBoolean(
+			CFGKEY_DRAW_BORDERS, DEFAULT_DRAW_BORDERS);
+
+	/** The output table specification. */
+	private static final DataTableSpec SPEC = new DataTableSpec(
+			new DataColumnSpecCreator("Experiment", StringCell.TYPE)
+					.createSpec(), new DataColumnSpecCreator("Normalisation",
+					StringCell.TYPE).createSpec(), new DataColumnSpecCreator(
+					"Plate", IntCell.TYPE).createSpec(),
+			new DataColumnSpecCreator("Statistics", StringCell.TYPE)
+					.createSpec(), new DataColumnSpecCreator(IMAGE_COLUMN,
+					PNGImageContent.TYPE).createSpec());
+
+	/**
+	 * Constructor for the node model.
+	 */
+	protected HeatmapImagesNodeModel() {
+		super(1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
+			final ExecutionContext exec) throws Exception {
+		super.execute(inData, exec.createSubExecutionContext(.3));
+		try {
+			return render(exec);
+		} finally {
+			// The images are in the result table, the values are not needed
+			// anymore (there is no view).
+			releaseModelBuilder();
+		}
+	}
+
+	/**
+	 * Renders the images of the {@link #getModelBuilder() model builder}.
+	 *
+	 * @param exec
+	 *            The {@link ExecutionContext} of
+	 *            {@link #execute(BufferedDataTable[], ExecutionContext)}.
+	 * @return The table of the images.
+	 * @throws Exception
+	 *             If the rendering failed or was cancelled.
+	 */
+	private BufferedDataTable[] render(final ExecutionContext exec)
+			throws Exception {
+		final ViewModel viewModel = createViewModel(getModelBuilder());
+		final List<SliderModel> others = HeatmapImage.others(viewModel);
+		final Map<Type, Collection<SliderModel>> sliders = viewModel
+				.getMain().getArrangementModel().getSliders();
+		final HeatmapValues.Snapshot snapshot = HeatmapValues
+				.snapshot(viewModel);
+		final List<Map<Selectable<?>, List<Integer>>> combinations = HeatmapImage
+				.combinations(snapshot.getSelections(), others);
+		final boolean[][] marks = HeatmapImage.noMarks(viewModel);
+		final WellPainter painter = new WellPainter(viewModel);
+		final int width = widthModel.getIntValue();
+		final int height = heightModel.getIntValue();
+		final HeatmapValues.Check check = new HeatmapValues.Check() {
+			@Override
+			public void check() {
+				try {
+					exec.checkCanceled();
+				} catch (final CanceledExecutionException e) {
+					throw new CancellationException(e.getMessage());
+				}
+			}
+		};
+		final int parallelism = Runtime.getRuntime().availableProcessors();
+		final ExecutorService executor = Executors.newFixedThreadPool(
+				parallelism, new ThreadFactory() {
+					private int count;
+
+					@Override
+					public synchronized Thread newThread(final Runnable r) {
+						final Thread thread = new Thread(r,
+								"HiTS heatmap images " + ++count);
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		final BufferedDataContainer container = exec.createDataContainer(SPEC);
+		try {
+			// The rows are added in order, at most 2 * parallelism images are
+			// kept in memory.
+			final Deque<Future<DataRow>> pending = new ArrayDeque<Future<DataRow>>();
+			int submitted = 0;
+			for (int done = 0; done < combinations.size(); ++done) {
+				while (submitted < combinations.size()
+						&& pending.size() < 2 * parallelism) {
+					final Map<Selectable<?>, List<Integer>> selections = combinations
+							.get(submitted);
+					final String name = HeatmapImage.name(others, selections);
+					final String key = name.isEmpty() ? "Row" + submitted
+							: name;
+					final int rows = HeatmapImage.gridSize(selections, sliders
+							.get(Type.ScrollVertical));
+					final int cols = HeatmapImage.gridSize(selections, sliders
+							.get(Type.ScrollHorisontal));
+					pending.add(executor.submit(new Callable<DataRow>() {
+						@Override
+						public DataRow call() throws IOException {
+							check.check();
+							final HeatmapImage image = new HeatmapImage(
+									viewModel, painter, HeatmapValues.compute(
+											snapshot.withSelections(selections),
+											HeatmapImagesNodeModel.this, null,
+											false, check),
+									marks, rows, cols, width, height);
+							check.check();
+							final ByteArrayOutputStream out = new ByteArrayOutputStream();
+							ImageIO.write(image.toImage(), "png", out);
+							return new DefaultRow(key, createCells(others,
+									selections, new PNGImageContent(out
+											.toByteArray()).toImageCell()));
+						}
+					}));
+					++submitted;
+				}
+				final DataRow row;
+				try {
+					row = pending.remove().get();
+				} catch (final ExecutionException e) {
+					for (final Future<DataRow> future : pending) {
+						future.cancel(true);
+					}
+					final Throwable cause = e.getCause();
+					if (cause instanceof CancellationException) {
+						exec.checkCanceled();
+					}
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					}
+					if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new IllegalStateException(cause);
+				}
+				container.addRowToTable(row);
+				exec.setProgress(.3 + .7 * (done + 1) / combinations.size(),
+						"Rendered " + row.getKey());
+			}
+		} finally {
+			executor.shutdownNow();
+			container.close();
+		}
+		return new BufferedDataTable[] { container.getTable() };
+	}
+
+	/**
+	 * Creates a {@link ViewModel} with the default arrangement of the view,
+	 * with a single value selected on the not splitting sliders.
+	 *
+	 * @param modelBuilder
+	 *            The {@link ModelBuilder} with the values.
+	 * @return The {@link ViewModel} for the images.
+	 */
+	private ViewModel createViewModel(final ModelBuilder modelBuilder) {
+		final Collection<ParameterModel> possibleParameters = getPossibleParameters();
+		final ArrangementModel arrangementModel = new ArrangementModel();
+		arrangementModel.mutate(possibleParameters);
+		for (final Type type : new Type[] { Type.Hidden, Type.Selector }) {
+			for (final Selectable<?> slider : arrangementModel.getSliders()
+					.get(type)) {
+				if (slider.getSelections().size() > 1) {
+					slider.selectSingle(slider.getSelections().iterator()
+							.next());
+				}
+			}
+		}
+		final ShapeModel main = new ShapeModel(arrangementModel,
+				Collections.singletonList(new ParameterModel("parameters",
+						StatTypes.parameter, null, Collections
+								.singletonList("parameters"), Collections
+								.<String> emptyList())), Collections
+						.singletonList(new ParameterModel("replicate",
+								StatTypes.replicate, null, Collections
+										.singletonList("replicate"),
+								Collections.<String> emptyList())),
+				Collections.<ParameterModel> emptyList(), drawBordersModel
+						.getBooleanValue());
+		main.updateParameters(possibleParameters);
+		final SpecAnalyser specAnalyser = modelBuilder.getSpecAnalyser();
+		final ColourModel colourModel = new ColourModel();
+		colourModel.addDefaultModels(specAnalyser.getParameters(),
+				specAnalyser.getStatistics(), modelBuilder.getRanges());
+		main.setColourModel(colourModel);
+		return new ViewModel(specAnalyser.getPredictedFormat(), Shape
+				.valueOf(shapeModel.getStringValue()), new OverviewModel(
+				Collections.<ParameterModel> emptyList(), Collections
+						.<ParameterModel> emptyList(), Collections
+						.singletonList(new ParameterModel("plate",
+								StatTypes.plate, null, Collections
+										.singletonList("plate"), Collections
+										.singletonList("plate")))), main);
+	}
+
+	/**
+	 * Creates the cells of a row.
+	 *
+	 * @param others
+	 *            The {@link HeatmapImage#others(ViewModel) other}
+	 *            {@link SliderModel}s.
+	 * @param selections
+	 *            The selections of the {@link SliderModel}s.
+	 * @param image
+	 *            The image cell.
+	 * @return The cells for the {@link #SPEC}.
+	 */
+	private static DataCell[] createCells(final List<SliderModel> others,
+			final Map<Selectable<?>, List<Integer>> selections,
+			final DataCell image) {
+		final DataCell[] ret = new DataCell[SPEC.getNumColumns()];
+		for (int i = ret.length - 1; i-- > 0;) {
+			ret[i] = DataType.getMissingCell();
+		}
+		ret[ret.length - 1] = image;
+		for (final SliderModel slider : others) {
+			final Object value = slider.getValueMapping().get(
+					selections.get(slider).get(0)).getSecond();
+			switch (slider.getParameters().get(0).getType()) {
+			case experimentName:
+				ret[0] = new StringCell(value.toString());
+				break;
+			case normalisation:
+				ret[1] = new StringCell(value.toString());
+				break;
+			case plate:
+				ret[2] = new IntCell(((Number) value).intValue());
+				break;
+			case metaStatType:
+				ret[3] = new StringCell(value.toString());
+				break;
+			default:
+				break;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
+			throws InvalidSettingsException {
+		super.configure(inSpecs);
+		return new DataTableSpec[] { SPEC };
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveSettingsTo(final NodeSettingsWO settings) {
+		super.saveSettingsTo(settings);
+		widthModel.saveSettingsTo(settings);
+		heightModel.saveSettingsTo(settings);
+		shapeModel.saveSettingsTo(settings);
+		drawBordersModel.saveSettingsTo(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+		super.loadValidatedSettingsFrom(settings);
+		widthModel.loadSettingsFrom(settings);
+		heightModel.loadSettingsFrom(settings);
+		shapeModel.loadSettingsFrom(settings);
+		drawBordersModel.loadSettingsFrom(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void validateSettings(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+		super.validateSettings(settings);
+		widthModel.validateSettings(settings);
+		heightModel.validateSettings(settings);
+		shapeModel.validateSettings(settings);
+		drawBordersModel.validateSettings(settings);
+		final String shape = ((SettingsModelString) shapeModel
+				.createCloneWithValidatedValue(settings)).getStringValue();
+		try {
+			Shape.valueOf(shape);
+		} catch (final IllegalArgumentException e) {
+			throw new InvalidSettingsException("Not supported shape: "
+					+ shape);
+		}
+	}
+
+	/**
+	 * The images are in the output table, the values are not needed after
+	 * the execution.
+	 * <p>
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadInternals(final File internDir,
+			final ExecutionMonitor exec) throws IOException,
+			CanceledExecutionException {
+		// No internals.
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveInternals(final File internDir,
+			final ExecutionMonitor exec) throws IOException,
+			CanceledExecutionException {
+		// No internals.
+	}
+}
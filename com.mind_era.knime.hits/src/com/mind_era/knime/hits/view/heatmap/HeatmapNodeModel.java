@@ -5,25 +5,31 @@ package com.mind_era.knime.hits.view.heatmap;
 
 import java.awt.Color;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.Map.Entry;
 
 import javax.annotation.Nullable;
 
 import org.eclipse.core.runtime.Assert;
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.knime.base.node.mine.sota.view.interaction.HiliteManager;
 import org.knime.core.data.DataTable;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.IntValue;
+import org.knime.core.data.RowIterator;
 import org.knime.core.data.container.ContainerTable;
 import org.knime.core.data.container.DataContainer;
 import org.knime.core.node.BufferedDataTable;
@@ -31,8 +37,10 @@ import org.knime.core.node.CanceledExecutionException;
 import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.ExecutionMonitor;
 import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.KNIMEConstants;
 import org.knime.core.node.NodeLogger;
 import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettings;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
@@ -41,8 +49,11 @@ import org.knime.core.node.property.hilite.HiLiteManager;
 
 import com.mind_era.knime.common.PublicConstants;
 import com.mind_era.knime.common.util.ModelBuilder;
+import com.mind_era.knime.common.util.PlateCube;
 import com.mind_era.knime.common.util.ModelBuilder.SpecAnalyser;
 import com.mind_era.knime.common.view.StatTypes;
+import com.mind_era.knime.hits.cellhts2.prefs.PreferenceConstants;
+import com.mind_era.knime.hits.internal.Activator;
 import com.mind_era.knime.hits.view.heatmap.ViewModel.ParameterModel;
 
 /**
@@ -52,6 +63,12 @@ import com.mind_era.knime.hits.view.heatmap.ViewModel.ParameterModel;
  */
 public class HeatmapNodeModel extends NodeModel {
 	private static final String INPUT_TABLE_ZIP = "inputtable.zip";
+	/** The file name of the columns of the saved input table. */
+	private static final String INPUT_SPEC = "inputspec.xml";
+	/** The file name of the memory-mapped values. */
+	private static final String VALUES_CUBE = "values.cube";
+	/** The file name of the binary snapshot of the model. */
+	private static final String MODEL_SNAPSHOT = "model.snapshot";
 
 	/** Configuration key for the save settings option. */
 	static final String CFGKEY_SAVE_SETTINGS = "com.mind_era.knime.hits.view.heatmap.settings";
@@ -76,14 +93,35 @@ public class HeatmapNodeModel extends NodeModel {
 
 	private @Nullable
 	ModelBuilder modelBuilder;
+	/**
+	 * The model of the previous execution (kept by {@link #reset()}), it is
+	 * updated by the next execution if only new rows were appended to the
+	 * input.
+	 */
+	private @Nullable
+	ModelBuilder previousModelBuilder;
 
 	private File internDir;
 
+	/** The temporary file of the values (before saving the internals). */
+	private @Nullable
+	File temporaryStoreFile;
+
 	/**
 	 * Constructor for the node model.
 	 */
 	protected HeatmapNodeModel() {
-		super(1, 0);
+		this(0);
+	}
+
+	/**
+	 * Constructor for the node models with output ports.
+	 * 
+	 * @param nrOutDataPorts
+	 *            The number of output ports.
+	 */
+	protected HeatmapNodeModel(final int nrOutDataPorts) {
+		super(1, nrOutDataPorts);
 		// setAutoExecutable(true);
 		setInHiLiteHandler(0, hiliteManager.getFromHiLiteHandler());
 	}
@@ -94,17 +132,107 @@ public class HeatmapNodeModel extends NodeModel {
 	@Override
 	protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
 			final ExecutionContext exec) throws Exception {
-		executeInner(inData[0], exec);
+		executeInner(inData[0], exec, createStoreFile());
 		return new BufferedDataTable[] { /*
 										 * (BufferedDataTable) modelBuilder
 										 * .getTable()
 										 */};
 	}
 
-	private void executeInner(final DataTable table, final ExecutionMonitor exec)
-			throws CanceledExecutionException {
-		modelBuilder = new ModelBuilder(table);
+	/**
+	 * Creates the {@link #temporaryStoreFile temporary file} of the values
+	 * when they should be stored in a file. It is created in the temporary
+	 * directory of KNIME (usually on the file system of the workflows), so
+	 * it can be moved to the internals when they are saved. It is deleted
+	 * when the node is {@link #reset() reset} or {@link #onDispose()
+	 * disposed} (not on exit, that would keep a reference to every file
+	 * created in the session).
+	 * 
+	 * @return The new temporary file, or {@code null} if the values are kept
+	 *         in memory.
+	 * @throws IOException
+	 *             If the file cannot be created.
+	 */
+	@Nullable
+	private File createStoreFile() throws IOException {
+		if (!Activator.getInstance().getPreferenceStore().getBoolean(
+				PreferenceConstants.MODEL_BUILDER_MAPPED)) {
+			return null;
+		}
+		final File storeFile = File.createTempFile("heatmap", ".cube",
+				new File(KNIMEConstants.getKNIMETempDir()));
+		temporaryStoreFile = storeFile;
+		return storeFile;
+	}
+
+	private void executeInner(final DataTable table,
+			final ExecutionMonitor exec, @Nullable final File storeFile)
+			throws CanceledExecutionException, IOException {
+		final IPreferenceStore preferences = Activator.getInstance()
+				.getPreferenceStore();
+		buildModel(table, exec, Math.max(1, preferences
+				.getInt(PreferenceConstants.MODEL_BUILDER_THREADS)), Math.max(
+				0, preferences
+						.getInt(PreferenceConstants.MODEL_BUILDER_CACHED_PLATES)),
+				storeFile);
+	}
+
+	/**
+	 * Builds the {@link #getModelBuilder() model} of {@code table}. When the
+	 * model of the previous execution was kept by {@link #reset()} and
+	 * {@code table} is its table with new rows appended, that model is
+	 * {@link ModelBuilder#updateTo(DataTable, ExecutionMonitor) updated}
+	 * instead (only the new rows are parsed), else the model is rebuilt.
+	 * 
+	 * @param table
+	 *            The input table.
+	 * @param exec
+	 *            The {@link ExecutionMonitor} to report progress and check
+	 *            cancellation.
+	 * @param threads
+	 *            The number of threads parsing the rows (positive).
+	 * @param cachedPlates
+	 *            The number of plates kept in memory when the values are
+	 *            loaded lazily, {@code 0} to keep every value in memory.
+	 * @param storeFile
+	 *            The file of the values, or {@code null} if they are kept in
+	 *            memory.
+	 * @throws CanceledExecutionException
+	 *             If the execution was cancelled.
+	 * @throws IOException
+	 *             If {@code storeFile} cannot be written.
+	 */
+	protected void buildModel(final DataTable table,
+			final ExecutionMonitor exec, final int threads,
+			final int cachedPlates, @Nullable final File storeFile)
+			throws CanceledExecutionException, IOException {
+		final ModelBuilder previous = previousModelBuilder;
+		if (previous != null) {
+			if (cachedPlates == 0 && storeFile == null
+					&& previous.updateTo(table, exec)) {
+				previousModelBuilder = null;
+				modelBuilder = previous;
+				createParameters();
+				return;
+			}
+			logger.info("The input is not the previous one with new rows "
+					+ "appended, the model is rebuilt.");
+			previousModelBuilder = null;
+		}
+		modelBuilder = storeFile == null ? new ModelBuilder(table,
+				new SpecAnalyser(table.getDataTableSpec()), exec, threads,
+				cachedPlates) : new ModelBuilder(table, new SpecAnalyser(table
+				.getDataTableSpec()), exec, Math.max(1, cachedPlates),
+				storeFile);
 		exec.checkCanceled();
+		createParameters();
+	}
+
+	/**
+	 * Creates the {@link #getPossibleParameters() possible parameters} of the
+	 * {@link #modelBuilder}.
+	 */
+	private void createParameters() {
 		final SpecAnalyser sa = modelBuilder.getSpecAnalyser();
 		if (sa.isHasReplicate()) {
 			final ParameterModel replicates = new ParameterModel("replicate",
@@ -171,23 +299,16 @@ public class HeatmapNodeModel extends NodeModel {
 			}
 		}
 		possibleParameters.add(statsParamModel);
-		final Set<String> experiments = new TreeSet<String>(modelBuilder
-				.getReplicates().keySet());
-		experiments.addAll(modelBuilder.getScores().keySet());
+		final PlateCube cube = modelBuilder.getCube();
+		final Set<String> experiments = new TreeSet<String>(cube
+				.getExperiments().getValues());
 		logger.debug(experiments);
 		possibleParameters.add(new ParameterModel("experiment",
 				StatTypes.experimentName, null, Collections
 						.singletonList(PublicConstants.EXPERIMENT_COLUMN),
 				new ArrayList<String>(experiments)));
-		final Set<String> normalisations = new TreeSet<String>();
-		for (final Entry<String, Map<String, Map<Integer, Map<String, Map<StatTypes, double[]>>>>> entry : modelBuilder
-				.getScores().entrySet()) {
-			normalisations.addAll(entry.getValue().keySet());
-		}
-		for (final Entry<String, Map<String, Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>>>> entry : modelBuilder
-				.getReplicates().entrySet()) {
-			normalisations.addAll(entry.getValue().keySet());
-		}
+		final Set<String> normalisations = new TreeSet<String>(cube
+				.getNormalisations().getValues());
 		logger.debug(normalisations);
 		possibleParameters.add(new ParameterModel("normalisation",
 				StatTypes.normalisation, null, Arrays.asList(new String[] {
@@ -222,11 +343,65 @@ public class HeatmapNodeModel extends NodeModel {
 	 */
 	@Override
 	protected void reset() {
-		// TODO Code executed on reset.
+		// The model with every value in memory is kept, so the next execution
+		// can update it with the appended rows.
+		final ModelBuilder previous = modelBuilder != null
+				&& modelBuilder.isUpdatable() ? modelBuilder
+				: previousModelBuilder;
+		if (previous == modelBuilder) {
+			modelBuilder = null;
+		} else if (modelBuilder != null) {
+			logger.debug("The model with lazily loaded values is rebuilt "
+					+ "by the next execution.");
+		}
+		releaseModelBuilder();
+		previousModelBuilder = previous;
+		// Also data handled in load/saveInternals will be erased here.
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Releases the values and deletes their temporary file.
+	 */
+	@Override
+	protected void onDispose() {
+		releaseModelBuilder();
+		super.onDispose();
+	}
+
+	/**
+	 * Disposes the {@link #getModelBuilder() model builder} (and deletes its
+	 * temporary file), so the values are no longer kept.
+	 */
+	protected void releaseModelBuilder() {
 		possibleParameters.clear();
+		previousModelBuilder = null;
+		if (modelBuilder != null) {
+			try {
+				modelBuilder.dispose();
+			} catch (final IOException e) {
+				logger.debug("Unable to close the values: " + e.getMessage(),
+						e);
+			}
+		}
 		modelBuilder = null;
-		// Models build during execute are cleared here.
-		// Also data handled in load/saveInternals will be erased here.
+		if (temporaryStoreFile != null) {
+			delete(temporaryStoreFile);
+			temporaryStoreFile = null;
+		}
+	}
+
+	/**
+	 * Deletes {@code file} (if exists), logs when it cannot be deleted.
+	 * 
+	 * @param file
+	 *            A {@link File}.
+	 */
+	private static void delete(final File file) {
+		if (file.exists() && !file.delete()) {
+			logger.debug("Unable to delete: " + file);
+		}
 	}
 
 	/**
@@ -292,8 +467,36 @@ public class HeatmapNodeModel extends NodeModel {
 		// TODO load internal data.
 		final File file = new File(internDir, INPUT_TABLE_ZIP);
 		if (file.isFile() && file.exists()) {
-			final ContainerTable table = DataContainer.readFromZip(file);
-			executeInner(table, exec);
+			final File snapshot = new File(internDir, MODEL_SNAPSHOT);
+			final File spec = new File(internDir, INPUT_SPEC);
+			if (snapshot.isFile() && spec.isFile()) {
+				final File values = new File(internDir, VALUES_CUBE);
+				final int cachedPlates = Math.max(1, Activator.getInstance()
+						.getPreferenceStore().getInt(
+								PreferenceConstants.MODEL_BUILDER_CACHED_PLATES));
+				try {
+					final InputStream in = new FileInputStream(snapshot);
+					try {
+						// The values are mapped read-only, the internals are
+						// not modified while loading, the input table is not
+						// read.
+						modelBuilder = ModelBuilder.readSnapshot(new SavedTable(
+								readSpec(spec), file), in, cachedPlates, values
+								.isFile() ? values : null);
+					} finally {
+						in.close();
+					}
+					createParameters();
+					return;
+				} catch (final IOException e) {
+					logger.debug("Unable to read the model snapshot, "
+							+ "rebuilding the model: " + e.getMessage(), e);
+				}
+			}
+			// Rebuilt to a temporary file, the internals are written only by
+			// saveInternals.
+			executeInner(DataContainer.readFromZip(file), exec,
+					createStoreFile());
 		}
 		// Everything handed to output ports is loaded automatically (data
 		// returned by the execute method, models loaded in loadModelContent,
@@ -311,11 +514,53 @@ public class HeatmapNodeModel extends NodeModel {
 			CanceledExecutionException {
 		// TODO save internal models.
 		final File file = new File(internDir, INPUT_TABLE_ZIP);
-		if (getTable() != null) {
-			DataContainer.writeToZip(getTable(), file, exec);
+		final File spec = new File(internDir, INPUT_SPEC);
+		final DataTable table = getTable();
+		if (table instanceof SavedTable) {
+			// Not changed since loaded, the saved file is reused.
+			final File saved = ((SavedTable) table).file;
+			if (!saved.equals(file)) {
+				Files.copy(saved.toPath(), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		} else if (table != null) {
+			DataContainer.writeToZip(table, file, exec);
+		} else {
+			delete(file);
+		}
+		if (table != null) {
+			writeSpec(table.getDataTableSpec(), spec);
+		} else {
+			delete(spec);
+		}
+		final File snapshot = new File(internDir, MODEL_SNAPSHOT);
+		if (modelBuilder != null) {
+			final OutputStream out = new FileOutputStream(snapshot);
+			try {
+				modelBuilder.writeSnapshot(out);
+			} finally {
+				out.close();
+			}
 		} else {
-			final boolean deleted = file.delete();
-			assert deleted || !deleted;
+			delete(snapshot);
+		}
+		final File storeFile = modelBuilder == null ? null : modelBuilder
+				.getStoreFile();
+		final File values = new File(internDir, VALUES_CUBE);
+		if (storeFile != null && storeFile.equals(temporaryStoreFile)) {
+			// The completed file is moved (it is reused when the internals are
+			// loaded), saving to the same directory again does nothing.
+			modelBuilder.moveStoreFile(values);
+			if (!storeFile.equals(modelBuilder.getStoreFile())) {
+				temporaryStoreFile = null;
+			}
+		} else if (storeFile != null && !storeFile.equals(values)) {
+			// Saved to a different directory, the values of the previous
+			// internals are kept there.
+			Files.copy(storeFile.toPath(), values.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		} else if (storeFile == null) {
+			delete(values);
 		}
 		// Everything written to output ports is saved automatically (data
 		// returned by the execute method, models saved in the saveModelContent,
@@ -324,6 +569,94 @@ public class HeatmapNodeModel extends NodeModel {
 		// (e.g. data used by the views).
 	}
 
+	/**
+	 * Reads the columns of the saved input table.
+	 * 
+	 * @param file
+	 *            The file written by {@link #writeSpec(DataTableSpec, File)}.
+	 * @return The read {@link DataTableSpec}.
+	 * @throws IOException
+	 *             If cannot read, or the content is not a valid spec.
+	 */
+	private static DataTableSpec readSpec(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			return DataTableSpec.load(NodeSettings.loadFromXML(in));
+		} catch (final InvalidSettingsException e) {
+			throw new IOException("Not a valid spec: " + e.getMessage(), e);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the columns of the input table, so they can be read without
+	 * reading the table.
+	 * 
+	 * @param spec
+	 *            The {@link DataTableSpec} of the input table.
+	 * @param file
+	 *            The file to write.
+	 * @throws IOException
+	 *             If cannot write.
+	 */
+	private static void writeSpec(final DataTableSpec spec, final File file)
+			throws IOException {
+		final NodeSettings settings = new NodeSettings(INPUT_SPEC);
+		spec.save(settings);
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			settings.saveToXML(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * The input table saved with the internals. Its columns are read from
+	 * {@value #INPUT_SPEC}, the rows are read from the zip file only when
+	 * they are first iterated (by the table of the view or the lazily loaded
+	 * plates), so loading the snapshot of the model does not read the table.
+	 */
+	private static final class SavedTable implements DataTable {
+		private final DataTableSpec spec;
+		/** The zip file of the table. */
+		final File file;
+		private @Nullable
+		ContainerTable table;
+
+		/**
+		 * @param spec
+		 *            The columns of the saved table.
+		 * @param file
+		 *            The zip file of the table.
+		 */
+		SavedTable(final DataTableSpec spec, final File file) {
+			super();
+			this.spec = spec;
+			this.file = file;
+		}
+
+		@Override
+		public DataTableSpec getDataTableSpec() {
+			return spec;
+		}
+
+		@Override
+		public synchronized RowIterator iterator() {
+			if (table == null) {
+				try {
+					table = DataContainer.readFromZip(file);
+				} catch (final IOException e) {
+					throw new IllegalStateException(
+							"Unable to read the saved table: "
+									+ e.getMessage(), e);
+				}
+			}
+			return table.iterator();
+		}
+	}
+
 	@Override
 	protected void setInHiLiteHandler(final int inIndex,
 			final HiLiteHandler hiLiteHdl) {
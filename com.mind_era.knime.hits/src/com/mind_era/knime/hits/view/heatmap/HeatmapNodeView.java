@@ -20,9 +20,10 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
@@ -33,6 +34,17 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
@@ -52,9 +64,9 @@ import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
 import javax.swing.JTabbedPane;
-import javax.swing.JViewport;
+import javax.swing.ProgressMonitor;
 import javax.swing.ScrollPaneConstants;
-import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -70,21 +82,21 @@ import org.knime.core.node.tableview.TableView;
 import org.knime.core.util.Pair;
 
 import com.mind_era.knime.common.Format;
-import com.mind_era.knime.common.util.ModelBuilder;
-import com.mind_era.knime.common.util.SimpleModelBuilder;
-import com.mind_era.knime.common.util.Traversable;
+import com.mind_era.knime.common.util.RowKeyIndex;
 import com.mind_era.knime.common.util.select.Selectable;
 import com.mind_era.knime.common.util.swing.ImageType;
+import com.mind_era.knime.common.util.swing.SaveAs;
 import com.mind_era.knime.common.util.swing.VariableControl.ControlTypes;
 import com.mind_era.knime.common.util.swing.colour.ColourSelector;
 import com.mind_era.knime.common.util.swing.colour.ComplexModel;
-import com.mind_era.knime.common.util.swing.colour.ColourSelector.RangeType;
+import com.mind_era.knime.common.view.AbstractExportImages;
 import com.mind_era.knime.common.view.ControlsHandler;
-import com.mind_era.knime.common.view.ExportImages;
 import com.mind_era.knime.common.view.SplitType;
 import com.mind_era.knime.common.view.StatTypes;
 import com.mind_era.knime.common.view.heatmap.ExportLegendAction;
 import com.mind_era.knime.common.view.heatmap.SettingsPanel;
+import com.mind_era.knime.hits.cellhts2.prefs.PreferenceConstants;
+import com.mind_era.knime.hits.internal.Activator;
 import com.mind_era.knime.hits.view.heatmap.ControlPanel.ArrangementModel;
 import com.mind_era.knime.hits.view.heatmap.SliderModel.Type;
 import com.mind_era.knime.hits.view.heatmap.ViewModel.OverviewModel;
@@ -106,14 +118,11 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 	/**
 	 * An action to save all possible views of plates in the experiment.
 	 */
-	public class ExportAllAction extends ExportImages {
+	public class ExportAllAction extends AbstractExportImages {
 		private static final long serialVersionUID = 7782954593253996267L;
 		/** The default action description. */
 		public static final String EXPORT_ALL = "Export all...";
 
-		private JViewport viewport;
-		private String fileName;
-
 		/**
 		 * Creates the action with value of {@link #EXPORT_ALL} default
 		 * description ({@value #EXPORT_ALL}).
@@ -163,153 +172,167 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 			return null;
 		}
 
+		/**
+		 * Renders the images of every combination of the non-primary,
+		 * non-secondary slider values off-screen, without changing the
+		 * sliders or the view. The images are computed and encoded in
+		 * parallel, the progress is shown in a {@link ProgressMonitor}.
+		 */
 		@Override
-		protected Traversable<JComponent, String> createTraversable(
-				final String folderName, final int width, final int height) {
-			return new Traversable<JComponent, String>() {
-
+		protected void export(final String folderName, final int w,
+				final int h, final ImageType imageType,
+				final boolean askOverwrite) {
+			final ViewModel viewModel = getCurrentViewModel();
+			final HeatmapNodeModel nodeModel = getNodeModel();
+			final VolatileModel volatileModel = getVolatileModel();
+			final List<SliderModel> others = HeatmapImage.others(viewModel);
+			final HeatmapValues.Snapshot snapshot = HeatmapValues
+					.snapshot(viewModel);
+			final List<Map<Selectable<?>, List<Integer>>> combinations = HeatmapImage
+					.combinations(snapshot.getSelections(), others);
+			final List<File> files = new ArrayList<File>(combinations.size());
+			for (final Map<Selectable<?>, List<Integer>> selections : combinations) {
+				files.add(imageFile(folderName, HeatmapImage.name(others,
+						selections), imageType));
+			}
+			if (askOverwrite && !confirmOverwrite(folderName, files)) {
+				return;
+			}
+			final boolean madeDirs = new File(folderName).mkdirs();
+			assert madeDirs || !madeDirs;
+			final Map<Type, Collection<SliderModel>> sliders = viewModel
+					.getMain().getArrangementModel().getSliders();
+			final List<boolean[][]> marks = new ArrayList<boolean[][]>(
+					combinations.size());
+			for (final Map<Selectable<?>, List<Integer>> selections : combinations) {
+				marks.add(HeatmapImage.marks(viewModel, volatileModel,
+						selections));
+			}
+			final WellPainter painter = new WellPainter(viewModel);
+			final ProgressMonitor monitor = new ProgressMonitor(null,
+					"Exporting heatmap images to " + folderName, null, 0,
+					combinations.size());
+			final AtomicBoolean cancelled = new AtomicBoolean();
+			final HeatmapValues.Check check = new HeatmapValues.Check() {
 				@Override
-				public void traverse(final Callable<?> callable) {
-					final List<ParameterModel> primerParameters = getCurrentViewModel()
-							.getMain().getPrimerParameters();
-					final List<ParameterModel> seconderParameters = getCurrentViewModel()
-							.getMain().getSeconderParameters();
-					final Set<SliderModel> sliderModels = getCurrentViewModel()
-							.getMain().getArrangementModel().getSliderModels();
-					final List<SliderModel> others = new ArrayList<SliderModel>(
-							sliderModels.size());
-					final Map<StatTypes, Integer> origSelections = new EnumMap<StatTypes, Integer>(
-							StatTypes.class);
-					for (final SliderModel sliderModel : sliderModels) {
-						if (primerParameters.get(0).getType() != sliderModel
-								.getParameters().get(0).getType()
-								&& (seconderParameters.size() == 0 || seconderParameters
-										.get(0).getType() != sliderModel
-										.getParameters().get(0).getType())) {
-							others.add(sliderModel);
-							assert sliderModel.getSelections().size() == 1 : sliderModel
-									.getSelections();
-							origSelections.put(sliderModel.getParameters().get(
-									0).getType(), sliderModel.getSelections()
-									.iterator().next());
-						}
+				public void check() {
+					if (cancelled.get()) {
+						throw new CancellationException();
 					}
-					final boolean[] stopped = new boolean[1];
-					final boolean madeDirs = new File(folderName).mkdirs();
-					assert madeDirs || !madeDirs;
-					saveImages(stopped, callable, width, height, folderName,
-							others, 0);
 				}
-
+			};
+			new SwingWorker<Integer, Integer>() {
 				@Override
-				public String getState() {
-					return fileName;
+				protected Integer doInBackground() throws Exception {
+					final int parallelism = Runtime.getRuntime()
+							.availableProcessors();
+					final ExecutorService executor = Executors
+							.newFixedThreadPool(parallelism,
+									new ThreadFactory() {
+										private int count;
+
+										@Override
+										public synchronized Thread newThread(
+												final Runnable r) {
+											final Thread thread = new Thread(
+													r, "HiTS heatmap export "
+															+ ++count);
+											thread.setDaemon(true);
+											return thread;
+										}
+									});
+					try {
+						final CompletionService<File> completion = new ExecutorCompletionService<File>(
+								executor);
+						for (int i = 0; i < combinations.size(); ++i) {
+							final Map<Selectable<?>, List<Integer>> selections = combinations
+									.get(i);
+							final boolean[][] wellMarks = marks.get(i);
+							final File file = files.get(i);
+							final int rows = HeatmapImage.gridSize(selections,
+									sliders.get(Type.ScrollVertical));
+							final int cols = HeatmapImage.gridSize(selections,
+									sliders.get(Type.ScrollHorisontal));
+							completion.submit(new Callable<File>() {
+								@Override
+								public File call() throws IOException {
+									check.check();
+									final HeatmapImage image = new HeatmapImage(
+											viewModel, painter, HeatmapValues.compute(
+													snapshot.withSelections(selections),
+													nodeModel, null, false,
+													check), wellMarks, rows,
+											cols, w, h);
+									check.check();
+									return SaveAs.saveImage(image, file,
+											imageType);
+								}
+							});
+						}
+						int done = 0;
+						while (done < combinations.size() && !cancelled.get()) {
+							final Future<File> future = completion.poll(200,
+									TimeUnit.MILLISECONDS);
+							if (future != null) {
+								try {
+									future.get();
+								} catch (final ExecutionException e) {
+									if (e.getCause() instanceof CancellationException) {
+										break;
+									}
+									cancelled.set(true);
+									throw e;
+								}
+								++done;
+							}
+							publish(Integer.valueOf(done));
+						}
+						return Integer.valueOf(done);
+					} finally {
+						executor.shutdownNow();
+					}
 				}
 
 				@Override
-				public JComponent getElement() {
-					return viewport;
-				}
-			};
-		}
-
-		@Override
-		protected void setupComponent(
-				final Traversable<JComponent, String> traversable) {
-			scrollPane.setViewport((JViewport) traversable.getElement());
-		}
-
-		/**
-		 * Saves the images with all possible different parameter values.
-		 * 
-		 * @param stopped
-		 *            The stopped pointer
-		 * @param callable
-		 *            The {@link Callable} for the drawing.
-		 * @param w
-		 *            The width of the image.
-		 * @param h
-		 *            The height of the image.
-		 * @param folderName
-		 *            The name of the destination folder.
-		 * @param others
-		 *            The non-primary, non-secondary {@link SliderModel}s.
-		 * @param actual
-		 *            The actually modified {@link SliderModel} in {@code
-		 *            others}.
-		 */
-		private void saveImages(final boolean[] stopped,
-				final Callable<?> callable, final int w, final int h,
-				final String folderName, final List<SliderModel> others,
-				final int actual) {
-			if (stopped[0]) {
-				return;
-			}
-			if (actual < others.size()) {
-				final Selectable<?> slider = others.get(actual);
-				final Integer original = slider.getSelections().iterator()
-						.next();
-				for (final Integer key : slider.getValueMapping().keySet()) {
-					if (!stopped[0]) {
-						slider.selectSingle(key);
-						saveImages(stopped, callable, w, h, folderName, others,
-								actual + 1);
+				protected void process(final List<Integer> chunks) {
+					monitor.setProgress(chunks.get(chunks.size() - 1)
+							.intValue());
+					if (monitor.isCanceled()) {
+						cancelled.set(true);
 					}
 				}
-				slider.selectSingle(original);
-			} else {
-				final Runnable paint = new Runnable() {
-					@Override
-					public void run() {
-						final HeatmapPanel hp = new HeatmapPanel(
-								HeatmapNodeView.this.getCurrentViewModel(),
-								HeatmapNodeView.this.getNodeModel(),
-								HeatmapNodeView.this.getVolatileModel());
-						scrollPane.setViewportView(hp.heatmapsPanel);
-						viewport = scrollPane.getViewport();
-						viewport.setPreferredSize(new Dimension(w, h));
-						viewport.setMinimumSize(new Dimension(w, h));
-						viewport.setMaximumSize(new Dimension(w, h));
-						hp.setModel(getNodeModel());
-						hp.heatmapsPanel.setSize(w, h);
-						hp.heatmapsPanel.setBounds(0, 0, w, h);
-					}
-				};
-				if (SwingUtilities.isEventDispatchThread()) {
-					paint.run();
-				} else {
+
+				@Override
+				protected void done() {
+					monitor.close();
 					try {
-						SwingUtilities.invokeAndWait(paint);
-					} catch (final InterruptedException e1) {
-						JOptionPane.showMessageDialog(null, "Interrupted",
-								"Interrupted", JOptionPane.ERROR_MESSAGE);
-					} catch (final InvocationTargetException e1) {
-						JOptionPane.showMessageDialog(null, "Interrupted",
-								"Interrupted", JOptionPane.ERROR_MESSAGE);
+						final int done = get().intValue();
+						if (done < combinations.size()) {
+							JOptionPane.showMessageDialog(null,
+									"Export cancelled after " + done
+											+ " images.", "Export cancelled",
+									JOptionPane.INFORMATION_MESSAGE);
+						} else {
+							JOptionPane.showMessageDialog(null,
+									"Images successfully exported to "
+											+ folderName,
+									"Images successfully exported",
+									JOptionPane.INFORMATION_MESSAGE);
+						}
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} catch (final ExecutionException e) {
+						final Throwable cause = e.getCause() instanceof ExecutionException ? e
+								.getCause().getCause()
+								: e.getCause();
+						logger.warn("Problem: " + cause.getMessage(), cause);
+						JOptionPane.showMessageDialog(null,
+								"Error occured during export: "
+										+ cause.getMessage(), "Error saving",
+								JOptionPane.ERROR_MESSAGE);
 					}
 				}
-				final StringBuilder fileNameBuilder = new StringBuilder();
-				for (final SliderModel sliderModel : others) {
-					fileNameBuilder.append(sliderModel.getParameters().get(0)
-							.getShortName());
-					fileNameBuilder.append("-").append(
-							sliderModel.getValueMapping().get(
-									sliderModel.getSelections().iterator()
-											.next()).getSecond().toString()
-									.replaceAll("[^\\d\\w]+", "_")).append(" ");
-				}
-				// fileNameBuilder.append(".png");
-				fileName = fileNameBuilder.toString();
-				try {
-					callable.call();
-				} catch (final RuntimeException e) {
-					logger.warn("Problem: " + e.getMessage(), e);
-					throw e;
-				} catch (final Exception e) {
-					logger.warn("Problem: " + e.getMessage(), e);
-					throw new RuntimeException(e);
-				}
-			}
+			}.execute();
 		}
 	}
 
@@ -367,12 +390,7 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 			 */
 			@Override
 			public void unHiLiteAll(final KeyEvent event) {
-				for (final Map<Integer, Heatmap> map : heatmap.heatmaps
-						.values()) {
-					for (final Heatmap heatmap : map.values()) {
-						heatmap.unHiLiteAll(event);
-					}
-				}
+				hilitesChanged(heatmap.volatileModel.clearHilites());
 			}
 
 			/**
@@ -380,12 +398,8 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 			 */
 			@Override
 			public void unHiLite(final KeyEvent event) {
-				for (final Map<Integer, Heatmap> map : heatmap.heatmaps
-						.values()) {
-					for (final Heatmap heatmap : map.values()) {
-						heatmap.unHiLite(event);
-					}
-				}
+				hilitesChanged(heatmap.volatileModel.setHilites(event.keys(),
+						false));
 			}
 
 			/**
@@ -393,10 +407,24 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 			 */
 			@Override
 			public void hiLite(final KeyEvent event) {
+				hilitesChanged(heatmap.volatileModel.setHilites(event.keys(),
+						true));
+			}
+
+			/**
+			 * Updates the {@link Heatmap}s showing the changed plates.
+			 * 
+			 * @param plates
+			 *            The ({@code 0}-based) plates with changed HiLites.
+			 */
+			private void hilitesChanged(final BitSet plates) {
+				if (plates.isEmpty()) {
+					return;
+				}
 				for (final Map<Integer, Heatmap> map : heatmap.heatmaps
 						.values()) {
 					for (final Heatmap heatmap : map.values()) {
-						heatmap.hiLite(event);
+						heatmap.hilitesChanged(plates);
 					}
 				}
 			}
@@ -410,6 +438,9 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		private final VolatileModel volatileModel;
 		private final JPanel controlPanel = new JPanel();
 		private final JPanel heatmapsPanel = new JPanel();
+		/** The shared cache of the {@link Heatmap}s, {@code null} if disabled. */
+		private final @Nullable
+		PlateImageCache imageCache;
 
 		/**
 		 * Constructs the {@link HeatmapPanel}.
@@ -432,6 +463,13 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 			this.model = model;
 			this.dataModel = dataModel;
 			this.volatileModel = volatileModel;
+			final int cacheSize = Activator.getInstance().getPreferenceStore()
+					.getInt(PreferenceConstants.HEATMAP_IMAGE_CACHE_SIZE);
+			imageCache = cacheSize > 0 ? new PlateImageCache(
+					cacheSize * 1024L * 1024L) : null;
+			if (imageCache != null) {
+				model.addActionListener(imageCache);
+			}
 			internalSetModel();
 			hiliteListener = new HeatmapHiLiteListener(this);
 		}
@@ -481,6 +519,7 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 					final Integer jVal = Integer.valueOf(j);
 					final Heatmap heatmap = new Heatmap(model, dataModel,
 							volatileModel);
+					heatmap.setImageCache(imageCache);
 					if (dataModel != null) {
 						heatmap.setModel(dataModel, volatileModel, i, j);
 					}
@@ -505,9 +544,17 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		 *            The new layout model.
 		 */
 		public void setViewModel(final ViewModel model) {
+			this.model.getMain().getArrangementModel().removeListener(this);
+			if (imageCache != null) {
+				this.model.removeActionListener(imageCache);
+			}
 			model.getMain().getArrangementModel().removeListener(this);
 			this.model = model;
 			model.getMain().getArrangementModel().addListener(this);
+			if (imageCache != null) {
+				imageCache.invalidate();
+				model.addActionListener(imageCache);
+			}
 			internalSetModel();
 			revalidate();
 		}
@@ -535,8 +582,8 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		 *            The new {@link HeatmapNodeModel}.
 		 */
 		public void setModel(final HeatmapNodeModel nodeModel) {
-			volatileModel.setKeyToPlateAndPosition(nodeModel.getModelBuilder()
-					.getKeyToPlateAndPosition());
+			volatileModel.setRowKeyIndex(nodeModel.getModelBuilder()
+					.getRowKeyIndex());
 			setModel(nodeModel, volatileModel);
 		}
 
@@ -549,10 +596,41 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 
 		@Override
 		public void actionPerformed(final ActionEvent e) {
+			final String command = e.getActionCommand();
+			if (HiLiteHandler.HILITE_SELECTED.equals(command)
+					|| HiLiteHandler.UNHILITE_SELECTED.equals(command)
+					|| HiLiteHandler.CLEAR_HILITE.equals(command)) {
+				// The changed wells are updated by the hiliteListener.
+				return;
+			}
 			// internalSetModel();
 			setModel(dataModel);
 		}
 
+		/**
+		 * @return The cache of the rendered {@link Heatmap}s (to notify on
+		 *         the changes of the colours), or {@code null} if disabled.
+		 */
+		@Nullable
+		PlateImageCache getImageCache() {
+			return imageCache;
+		}
+
+		/**
+		 * Drops the cached images and lookups of the {@link Heatmap}s, as the
+		 * values of the model changed.
+		 */
+		void dataChanged() {
+			if (imageCache != null) {
+				imageCache.invalidate();
+			}
+			for (final Map<Integer, Heatmap> row : heatmaps.values()) {
+				for (final Heatmap heatmap : row.values()) {
+					heatmap.dataChanged();
+				}
+			}
+		}
+
 		/**
 		 * Adds a {@link MouseListener} to every {@link Heatmap}'s every well.
 		 * 
@@ -626,7 +704,8 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 	private final JSplitPane mainSplit;
 
 	/** This class is responsible to hold the changing parameters. */
-	static class VolatileModel implements Serializable, ActionListener {
+	public static class VolatileModel implements Serializable,
+			ActionListener {
 		private static final long serialVersionUID = 6675568415910804477L;
 		/** The prefix for the show colour legend action. */
 		public static final String SHOW_COLOUR_LEGEND_PREFIX = "show colour legend: ";
@@ -673,9 +752,11 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		/** The plate's row and column positions at the upper left corner. */
 		private int leftX, upperY;
 		/** Plate/position hilite. (indices start from 0.) */
-		private boolean[][] hilites;
+		private BitSet[] hilites = new BitSet[0];
 		/** Plate/position selections. (indices start from 0.) */
-		private boolean[][] selections;
+		private BitSet[] selections = new BitSet[0];
+		/** The plate values &rarr; ({@code 0}-based) plate indices. */
+		private final Map<Integer, Integer> plateIndices = new HashMap<Integer, Integer>();
 		/** The current {@link SliderModel} positions. */
 		private final Map<SliderModel, Integer> sliderPositions = new HashMap<SliderModel, Integer>();
 
@@ -685,11 +766,11 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		private ArrangementModel arrangementModel;
 
 		/**
-		 * This {@link Map} tells that which {@link DataCell} represents which
-		 * row's ids (rowId &Rarr; (plate, position)). The plate and position
-		 * values are {@code 0}-based.
+		 * This index tells that which {@link DataCell} represents which row's
+		 * ids (rowId &harr; (plate, position)). The position values are
+		 * {@code 0}-based.
 		 */
-		private Map<String, Pair<Integer, Integer>> keyToPlateAndPosition;
+		private RowKeyIndex rowKeyIndex;
 
 		/** The {@link HiLiteHandler} used. */
 		private HiLiteHandler hiliteHandler;
@@ -707,16 +788,15 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		}
 
 		/**
-		 * Sets the new row key &Rarr; (plate, position) {@link Map}. Every
-		 * change will have effect on the {@link VolatileModel}, so please <b>do
+		 * Sets the new row key &harr; (plate, position) index. Every change
+		 * will have effect on the {@link VolatileModel}, so please <b>do
 		 * not</b> modify.
 		 * 
-		 * @param keyToPlateAndPosition
-		 *            The new key &Rarr; (plate, position) {@link Map}.
+		 * @param rowKeyIndex
+		 *            The new key &harr; (plate, position) {@link RowKeyIndex}.
 		 */
-		public void setKeyToPlateAndPosition(
-				final Map<String, Pair<Integer, Integer>> keyToPlateAndPosition) {
-			this.keyToPlateAndPosition = keyToPlateAndPosition;
+		public void setRowKeyIndex(final RowKeyIndex rowKeyIndex) {
+			this.rowKeyIndex = rowKeyIndex;
 		}
 
 		/**
@@ -779,13 +859,74 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 			final int plateCount = count(StatTypes.plate);
 			format = nodeModel.getModelBuilder().getSpecAnalyser()
 					.getPredictedFormat();
-			hilites = new boolean[plateCount][format.getWellCount()];
-			final Set<RowKey> hilitKeys = nodeModel.getInHiLiteHandler(0)
-					.getHiLitKeys();
-			keyToPlateAndPosition = nodeModel.getModelBuilder()
-					.getKeyToPlateAndPosition();
-			setHilites(hilitKeys);
-			selections = new boolean[plateCount][format.getWellCount()];
+			final Map<Integer, Integer> indices = new HashMap<Integer, Integer>();
+			for (final Entry<Integer, Pair<ParameterModel, Object>> entry : plateSlider()
+					.getValueMapping().entrySet()) {
+				if (entry.getValue().getSecond() instanceof Number) {
+					indices.put(Integer.valueOf(((Number) entry.getValue()
+							.getSecond()).intValue()), Integer.valueOf(entry
+							.getKey().intValue() - 1));
+				}
+			}
+			setPlates(plateCount, indices, nodeModel.getModelBuilder()
+					.getRowKeyIndex());
+			setHilites(nodeModel.getInHiLiteHandler(0).getHiLitKeys());
+		}
+
+		/**
+		 * Resets the plates: the HiLites and selections are cleared.
+		 * 
+		 * @param plateCount
+		 *            The number of plates.
+		 * @param plateIndices
+		 *            The plate values &rarr; ({@code 0}-based) plate indices.
+		 *            The plate values not present here are mapped to
+		 *            {@code value - 1}.
+		 * @param rowKeyIndex
+		 *            The new key &harr; (plate, position) {@link RowKeyIndex}.
+		 */
+		public void setPlates(final int plateCount,
+				final Map<Integer, Integer> plateIndices,
+				final RowKeyIndex rowKeyIndex) {
+			this.plateIndices.clear();
+			this.plateIndices.putAll(plateIndices);
+			hilites = createBitSets(plateCount);
+			selections = createBitSets(plateCount);
+			this.rowKeyIndex = rowKeyIndex;
+		}
+
+		/**
+		 * @param plateCount
+		 *            The number of plates.
+		 * @return {@code plateCount} empty {@link BitSet}s.
+		 */
+		private static BitSet[] createBitSets(final int plateCount) {
+			final BitSet[] ret = new BitSet[plateCount];
+			for (int i = plateCount; i-- > 0;) {
+				ret[i] = new BitSet();
+			}
+			return ret;
+		}
+
+		/**
+		 * @return The plate {@link SliderModel} of the
+		 *         {@link #arrangementModel}.
+		 */
+		private SliderModel plateSlider() {
+			SliderModel plateSlider = null;
+			for (final SliderModel possPlate : arrangementModel
+					.getSliderModels()) {
+				for (final ParameterModel paramModel : possPlate
+						.getParameters()) {
+					if (paramModel.getShortName().equals(
+							plateParamModel.getShortName())
+							&& paramModel.getAggregateType() == null) {
+						plateSlider = possPlate;
+					}
+				}
+			}
+			assert plateSlider != null;
+			return plateSlider;
 		}
 
 		/**
@@ -803,7 +944,7 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		 *            The new HiLite value for that well.
 		 */
 		void setHilite(final int plate, final int position, final boolean value) {
-			hilites[plate][position] = value;
+			hilites[plate].set(position, value);
 		}
 
 		/**
@@ -812,7 +953,7 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		 * @return The HiLite values for that plate. This is modifiable, but
 		 *         please <b>do not</b> modify it. ({@link #format} well plate)
 		 */
-		boolean[] getHiliteValues(final int plate) {
+		public BitSet getHiliteValues(final int plate) {
 			return hilites[plate];
 		}
 
@@ -832,20 +973,42 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		 */
 		void setSelection(final int plate, final int position,
 				final boolean value) {
-			selections[plate][position] = value;
+			selections[plate].set(position, value);
 		}
 
 		/**
 		 * UnHiLites every well. (Clears all HiLite.)
+		 * <p>
+		 * With a {@link HiLiteHandler} the wells are cleared when its event
+		 * arrives to the {@link HiLiteListener}.
 		 */
 		public void unHiliteAll() {
-			final int plateCount = count(StatTypes.plate);
-			hilites = new boolean[plateCount][format.getWellCount()];
 			if (hiliteHandler != null) {
 				hiliteHandler.fireClearHiLiteEvent();
+			} else {
+				clearHilites();
 			}
 		}
 
+		/**
+		 * Clears the HiLite of every well, without notifying the
+		 * {@link HiLiteHandler}.
+		 * <p>
+		 * This call <b>does not </b> repaint the wells!
+		 * 
+		 * @return The ({@code 0}-based) plates which had HiLited wells.
+		 */
+		BitSet clearHilites() {
+			final BitSet changedPlates = new BitSet(hilites.length);
+			for (int i = hilites.length; i-- > 0;) {
+				if (!hilites[i].isEmpty()) {
+					hilites[i].clear();
+					changedPlates.set(i);
+				}
+			}
+			return changedPlates;
+		}
+
 		/**
 		 * @param param
 		 *            A {@link StatTypes}.
@@ -880,40 +1043,35 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 				unHiliteAll();
 			}
 			if (hiliteRelated) {
-				final Set<Pair<Integer, Integer>> hilitesChange = new HashSet<Pair<Integer, Integer>>();
-				SliderModel plateSlider = null;
-				for (final SliderModel possPlate : arrangementModel
-						.getSliderModels()) {
-					for (final ParameterModel paramModel : possPlate
-							.getParameters()) {
-						if (paramModel.getShortName().equals(
-								plateParamModel.getShortName())
-								&& paramModel.getAggregateType() == null) {
-							plateSlider = possPlate;
-						}
+				final Set<RowKey> change = new HashSet<RowKey>();
+				final RowKeyIndex index = rowKeyIndex;
+				final IntConsumer addRow = new IntConsumer() {
+					@Override
+					public void accept(final int row) {
+						change.add(new RowKey(index.getKey(row)));
 					}
-				}
-				assert plateSlider != null;
+				};
+				final SliderModel plateSlider = plateSlider();
 				for (int i = 0; i < selections.length; i++) {
-					for (int j = 0; j < selections[i].length; j++) {
-						if (selections[i][j] && hilites[i][j] != hilite) {
-							final Pair<ParameterModel, Object> pair = plateSlider
-									.getValueMapping().get(
-											Integer.valueOf(i + 1));
-							hilitesChange.add(new Pair<Integer, Integer>(
-									(Integer) pair.getSecond(), j));
-							// hilites[i][j] = hilite;
-						}
+					if (selections[i].isEmpty()) {
+						continue;
+					}
+					// The selected wells with different HiLite.
+					final BitSet wells = (BitSet) selections[i].clone();
+					if (hilite) {
+						wells.andNot(hilites[i]);
+					} else {
+						wells.and(hilites[i]);
+					}
+					final int plate = ((Integer) plateSlider.getValueMapping()
+							.get(Integer.valueOf(i + 1)).getSecond())
+							.intValue();
+					for (int j = wells.nextSetBit(0); j >= 0; j = wells
+							.nextSetBit(j + 1)) {
+						index.forEachRow(plate, j, addRow);
 					}
 				}
 				if (hiliteHandler != null) {
-					final Set<RowKey> change = new HashSet<RowKey>();
-					for (final Entry<String, Pair<Integer, Integer>> entry : keyToPlateAndPosition
-							.entrySet()) {
-						if (hilitesChange.contains(entry.getValue())) {
-							change.add(new RowKey(entry.getKey()));
-						}
-					}
 					if (hilite) {
 						hiliteHandler.fireHiLiteEvent(change);
 					} else {
@@ -952,7 +1110,9 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		 * Clears all selections. (No repaint.)
 		 */
 		public void clearSelection() {
-			selections = new boolean[selections.length][selections[0].length];
+			for (final BitSet selection : selections) {
+				selection.clear();
+			}
 		}
 
 		/**
@@ -961,7 +1121,7 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		 * @return The selection values for that plate. This is modifiable, but
 		 *         please <b>do not</b> modify it.
 		 */
-		public boolean[] getSelectionValues(final int plate) {
+		public BitSet getSelectionValues(final int plate) {
 			return selections[plate];
 		}
 
@@ -989,18 +1149,47 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		 *            A {@link Set} of row ids.
 		 */
 		public void setHilites(final Set<RowKey> hiLitKeys) {
-			for (final RowKey dataCell : hiLitKeys) {
-				final String string = dataCell.getString();
-				final Pair<Integer, Integer> pair = keyToPlateAndPosition
-						.containsKey(string) ? keyToPlateAndPosition
-						.get(string)
-						: string.contains("_") ? keyToPlateAndPosition
-								.get(string.substring(0, string.indexOf('_')))
-								: null;
-				if (pair != null) {
-					hilites[pair.getFirst().intValue() - 1][pair.getSecond()] = true;
+			setHilites(hiLitKeys, true);
+		}
+
+		/**
+		 * HiLites or unHiLites the wells with {@code keys} keys. The keys are
+		 * looked up in the {@link RowKeyIndex}, only the changed wells are
+		 * modified.
+		 * <p>
+		 * This call <b>does not </b> repaint the wells!
+		 * 
+		 * @param keys
+		 *            Some row ids.
+		 * @param value
+		 *            The new HiLite value for the wells of {@code keys}.
+		 * @return The ({@code 0}-based) plates with changed wells.
+		 */
+		public BitSet setHilites(final Iterable<RowKey> keys,
+				final boolean value) {
+			final BitSet changedPlates = new BitSet(hilites.length);
+			for (final RowKey key : keys) {
+				final String string = key.getString();
+				long position = rowKeyIndex.find(string);
+				if (position == RowKeyIndex.NOT_PRESENT && string.contains("_")) {
+					position = rowKeyIndex.find(string.substring(0, string
+							.indexOf('_')));
+				}
+				if (position != RowKeyIndex.NOT_PRESENT) {
+					final int plateValue = RowKeyIndex.plateOf(position);
+					final Integer index = plateIndices.get(Integer
+							.valueOf(plateValue));
+					final int plate = index == null ? plateValue - 1 : index
+							.intValue();
+					final int well = RowKeyIndex.wellOf(position);
+					if (plate >= 0 && plate < hilites.length
+							&& hilites[plate].get(well) != value) {
+						hilites[plate].set(well, value);
+						changedPlates.set(plate);
+					}
 				}
 			}
+			return changedPlates;
 		}
 
 		/**
@@ -1231,6 +1420,10 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		unHiliteSelected.addActionListener(volatileModel);
 		unHiliteAll.addActionListener(heatmapPanel);
 		unHiliteAll.addActionListener(volatileModel);
+		if (heatmapPanel.getImageCache() != null) {
+			getColourSelector().getModel().addActionListener(
+					heatmapPanel.getImageCache());
+		}
 		getColourSelector().getModel().addActionListener(heatmapPanel);
 		getColourSelector().getModel().addActionListener(legendPanel);
 		getColourSelector().getModel().addActionListener(legendPanel2);
@@ -1388,7 +1581,8 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		getColourSelector().update(
 				nodeModel.getModelBuilder().getSpecAnalyser().getParameters(),
 				nodeModel.getModelBuilder().getSpecAnalyser().getStatistics(),
-				findRanges(nodeModel.getModelBuilder()));
+				nodeModel.getModelBuilder().getRanges());
+		heatmapPanel.dataChanged();
 		heatmapPanel.setModel(nodeModel);
 		table.setDataTable(nodeModel.getTable());
 		table.setHiLiteHandler(nodeModel.getInHiLiteHandler(0));
@@ -1396,112 +1590,6 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		getColourSelector().getModel().notifyListeners();
 	}
 
-	/**
-	 * @param modelBuilder
-	 *            A {@link ModelBuilder}.
-	 * @return The map containing the {@link RangeType}s for different
-	 *         parameter/statistics types.
-	 */
-	private Map<String, Map<StatTypes, Map<RangeType, Double>>> findRanges(
-			final ModelBuilder modelBuilder) {
-		final Map<String, Map<StatTypes, Map<RangeType, Double>>> ret = new HashMap<String, Map<StatTypes, Map<RangeType, Double>>>();
-		final Map<String, Map<StatTypes, List<Double>>> vals = new HashMap<String, Map<StatTypes, List<Double>>>();
-		for (final Entry<String, Map<String, Map<Integer, Map<String, Map<StatTypes, double[]>>>>> scoresEntry : modelBuilder
-				.getScores().entrySet()) {
-			for (final Entry<String, Map<Integer, Map<String, Map<StatTypes, double[]>>>> expEntry : scoresEntry
-					.getValue().entrySet()) {
-				for (final Entry<Integer, Map<String, Map<StatTypes, double[]>>> plateEntry : expEntry
-						.getValue().entrySet()) {
-					for (final Entry<String, Map<StatTypes, double[]>> paramEntry : plateEntry
-							.getValue().entrySet()) {
-						if (!ret.containsKey(paramEntry.getKey())) {
-							ret
-									.put(
-											paramEntry.getKey(),
-											new EnumMap<StatTypes, Map<RangeType, Double>>(
-													StatTypes.class));
-							vals.put(paramEntry.getKey(),
-									new EnumMap<StatTypes, List<Double>>(
-											StatTypes.class));
-						}
-						for (final Entry<StatTypes, double[]> statEntry : paramEntry
-								.getValue().entrySet()) {
-							final Map<StatTypes, Map<RangeType, Double>> map = ret
-									.get(paramEntry.getKey());
-							if (!map.containsKey(statEntry.getKey())) {
-								map.put(statEntry.getKey(),
-										new EnumMap<RangeType, Double>(
-												RangeType.class));
-								vals.get(paramEntry.getKey()).put(
-										statEntry.getKey(),
-										new ArrayList<Double>());
-							}
-							final List<Double> list = vals.get(
-									paramEntry.getKey())
-									.get(statEntry.getKey());
-							for (final double val : statEntry.getValue()) {
-								if (!Double.isNaN(val)
-										&& !Double.isInfinite(val)) {
-									list.add(Double.valueOf(val));
-								}
-							}
-						}
-					}
-				}
-			}
-		}
-		for (final Entry<String, Map<String, Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>>>> replicatesEntry : modelBuilder
-				.getReplicates().entrySet()) {
-			for (final Entry<String, Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>>> expEntry : replicatesEntry
-					.getValue().entrySet()) {
-				for (final Entry<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>> plateEntry : expEntry
-						.getValue().entrySet()) {
-					for (final Entry<Integer, Map<String, Map<StatTypes, double[]>>> replicateEntry : plateEntry
-							.getValue().entrySet()) {
-						for (final Entry<String, Map<StatTypes, double[]>> paramEntry : replicateEntry
-								.getValue().entrySet()) {
-
-							if (!ret.containsKey(paramEntry.getKey())) {
-								ret
-										.put(
-												paramEntry.getKey(),
-												new EnumMap<StatTypes, Map<RangeType, Double>>(
-														StatTypes.class));
-								vals.put(paramEntry.getKey(),
-										new EnumMap<StatTypes, List<Double>>(
-												StatTypes.class));
-							}
-							for (final Entry<StatTypes, double[]> statEntry : paramEntry
-									.getValue().entrySet()) {
-								final Map<StatTypes, Map<RangeType, Double>> map = ret
-										.get(paramEntry.getKey());
-								if (!map.containsKey(statEntry.getKey())) {
-									map.put(statEntry.getKey(),
-											new EnumMap<RangeType, Double>(
-													RangeType.class));
-									vals.get(paramEntry.getKey()).put(
-											statEntry.getKey(),
-											new ArrayList<Double>());
-								}
-								final List<Double> list = vals.get(
-										paramEntry.getKey()).get(
-										statEntry.getKey());
-								for (final double val : statEntry.getValue()) {
-									if (!Double.isNaN(val)
-											&& !Double.isInfinite(val)) {
-										list.add(Double.valueOf(val));
-									}
-								}
-							}
-						}
-					}
-				}
-			}
-		}
-		SimpleModelBuilder.computeStatistics(ret, vals);
-		return ret;
-	}
-
 	/**
 	 * @param model
 	 *            A {@link SliderModel}.
@@ -1606,8 +1694,8 @@ public class HeatmapNodeView extends NodeView<HeatmapNodeModel> {
 		heatmapPanel.addClickListenerToEveryWell(new MouseAdapter() {
 			@Override
 			public void mouseClicked(final MouseEvent e) {
-				infoTable.setText(((WellViewPanel) e.getSource())
-						.getToolTipText());
+				infoTable.setText(((JComponent) e.getSource())
+						.getToolTipText(e));
 			}
 		});
 		currentViewModel.addActionListener(heatmapPanel);
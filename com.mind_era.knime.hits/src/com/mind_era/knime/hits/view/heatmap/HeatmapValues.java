@@ -0,0 +1,614 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.knime.core.data.property.ColorAttr;
+import org.knime.core.util.Pair;
+
+import com.mind_era.knime.common.Format;
+import com.mind_era.knime.common.util.ModelBuilder;
+import com.mind_era.knime.common.util.PackedColours;
+import com.mind_era.knime.common.util.VisualUtils;
+import com.mind_era.knime.common.util.select.Selectable;
+import com.mind_era.knime.common.util.select.Selector;
+import com.mind_era.knime.common.util.swing.colour.ColourSelector.ColourModel;
+import com.mind_era.knime.common.view.StatTypes;
+import com.mind_era.knime.hits.view.heatmap.ViewModel.ParameterModel;
+
+/**
+ * The computed colours, backgrounds and labels of the wells of a plate shown
+ * in a {@link Heatmap}. The values are computed from a {@link Snapshot} of
+ * the {@link ViewModel} (see {@link #snapshot(ViewModel)}), so it can be done
+ * outside of the event dispatch thread, even for selections not shown in the
+ * view.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+final class HeatmapValues {
+	private static final Integer ZERO = Integer.valueOf(0);
+
+	/**
+	 * Checks whether the computation is still needed.
+	 */
+	interface Check {
+		/**
+		 * @throws CancellationException
+		 *             If the computation is no longer needed.
+		 */
+		void check();
+	}
+
+	/**
+	 * The state of a {@link ViewModel} used to compute the values: the
+	 * selections and the value mappings of the {@link SliderModel}s, the
+	 * label pattern and the {@link ColourModel}. It is created on the event
+	 * dispatch thread, and can be used from any thread.
+	 */
+	static final class Snapshot {
+		private final Format format;
+		private final List<SliderModel> sliders;
+		private final @Nullable
+		SliderModel firstParamSlider;
+		private final @Nullable
+		SliderModel secondParamSlider;
+		/** The value mappings of the {@link #sliders} (by identity). */
+		private final Map<Selectable<?>, Map<Integer, Pair<ParameterModel, Object>>> valueMappings;
+		private final String labelPattern;
+		private final ColourModel colourModel;
+		/** The selections of the {@link #sliders} (by identity). */
+		private final Map<Selectable<?>, List<Integer>> selections;
+
+		private Snapshot(final ViewModel viewModel) {
+			super();
+			format = viewModel.getFormat();
+			final Set<SliderModel> sliderModels = viewModel.getMain()
+					.getArrangementModel().getSliderModels();
+			sliders = new ArrayList<SliderModel>(sliderModels);
+			firstParamSlider = findSlider(sliderModels, viewModel.getMain()
+					.getPrimerParameters());
+			secondParamSlider = findSlider(sliderModels, viewModel.getMain()
+					.getSeconderParameters());
+			valueMappings = new IdentityHashMap<Selectable<?>, Map<Integer, Pair<ParameterModel, Object>>>();
+			selections = new IdentityHashMap<Selectable<?>, List<Integer>>();
+			for (final SliderModel slider : sliders) {
+				valueMappings.put(slider,
+						new HashMap<Integer, Pair<ParameterModel, Object>>(
+								slider.getValueMapping()));
+				selections.put(slider, new ArrayList<Integer>(slider
+						.getSelections()));
+			}
+			labelPattern = viewModel.getLabelPattern();
+			colourModel = viewModel.getMain().getColourModel().copy();
+		}
+
+		private Snapshot(final Snapshot snapshot,
+				final Map<Selectable<?>, List<Integer>> selections) {
+			super();
+			format = snapshot.format;
+			sliders = snapshot.sliders;
+			firstParamSlider = snapshot.firstParamSlider;
+			secondParamSlider = snapshot.secondParamSlider;
+			valueMappings = snapshot.valueMappings;
+			labelPattern = snapshot.labelPattern;
+			colourModel = snapshot.colourModel;
+			this.selections = selections;
+		}
+
+		/**
+		 * @param newSelections
+		 *            Some selections of the {@link SliderModel}s (by
+		 *            identity).
+		 * @return A {@link Snapshot} with the same state, but with
+		 *         {@code newSelections}.
+		 */
+		Snapshot withSelections(
+				final Map<Selectable<?>, List<Integer>> newSelections) {
+			return new Snapshot(this, newSelections);
+		}
+
+		/**
+		 * @return The selections of the {@link SliderModel}s (by identity).
+		 */
+		Map<Selectable<?>, List<Integer>> getSelections() {
+			return selections;
+		}
+
+		/**
+		 * @param slider
+		 *            A {@link SliderModel}.
+		 * @param index
+		 *            A key of its value mapping.
+		 * @return The value mapped to {@code index}.
+		 */
+		Object value(final Selectable<?> slider, final Integer index) {
+			return valueMappings.get(slider).get(index).getSecond();
+		}
+
+		/**
+		 * @return The selected plate (from {@code 0}), or {@code -1} if more
+		 *         plates are selected.
+		 */
+		int selectedPlate() {
+			for (final SliderModel slider : sliders) {
+				for (final ParameterModel model : slider.getParameters()) {
+					if (model.getType() == StatTypes.plate) {
+						final List<Integer> selected = selections.get(slider);
+						return selected.size() == 1 ? ((Number) value(slider,
+								selected.get(0))).intValue() - 1 : -1;
+					}
+				}
+			}
+			return -1;
+		}
+	}
+
+	/** A {@link Check} which never cancels. */
+	static final Check NEVER_CANCELLED = new Check() {
+		@Override
+		public void check() {
+			// Always needed.
+		}
+	};
+
+	/** The packed ARGB colours of the wells. */
+	private final int[][] colors;
+	private final Color[] backgrounds;
+	/** The labels of the wells, {@code null} if not computed. */
+	private final @Nullable
+	InfoParser.Labels labels;
+	/** The format of the wells. */
+	private final Format format;
+	/** The format of the values. */
+	private final Format predictedFormat;
+	private final RenderPlan plan;
+
+	private HeatmapValues(final Format format, final Format predictedFormat,
+			final RenderPlan plan, @Nullable final InfoParser.Labels labels) {
+		super();
+		colors = new int[format.getWellCount()][];
+		backgrounds = new Color[format.getWellCount()];
+		this.format = format;
+		this.predictedFormat = predictedFormat;
+		this.labels = labels;
+		this.plan = plan;
+	}
+
+	/**
+	 * @return The packed ARGB colours of the wells ({@code null} elements
+	 *         outside of the plate).
+	 */
+	int[][] getColors() {
+		return colors;
+	}
+
+	/**
+	 * @return The backgrounds of the wells ({@code null} elements for the
+	 *         default).
+	 */
+	Color[] getBackgrounds() {
+		return backgrounds;
+	}
+
+	/**
+	 * The labels are created on the first request.
+	 * 
+	 * @param well
+	 *            The index of the well.
+	 * @return The label of the well ({@code null} if not computed).
+	 */
+	@Nullable
+	String getLabel(final int well) {
+		final int cols = format.getCol();
+		if (labels == null || well / cols >= predictedFormat.getRow()
+				|| well % cols >= predictedFormat.getCol()) {
+			return null;
+		}
+		return labels.label(well / cols, well % cols);
+	}
+
+	/**
+	 * @return The {@link RenderPlan} used to compute the colours.
+	 */
+	RenderPlan getPlan() {
+		return plan;
+	}
+
+	/**
+	 * Copies the state of {@code viewModel} used by
+	 * {@link #compute(Snapshot, HeatmapNodeModel, RenderPlan, boolean, Check)}
+	 * . (Should be called on the event dispatch thread, when the
+	 * {@code viewModel} is shown.)
+	 *
+	 * @param viewModel
+	 *            A {@link ViewModel}.
+	 * @return The {@link Snapshot} of {@code viewModel} with the current
+	 *         selections of its {@link SliderModel}s.
+	 */
+	static Snapshot snapshot(final ViewModel viewModel) {
+		return new Snapshot(viewModel);
+	}
+
+	/**
+	 * Computes the values of the wells.
+	 *
+	 * @param snapshot
+	 *            The {@link Snapshot} of the {@link ViewModel} with the
+	 *            selections to show.
+	 * @param nodeModel
+	 *            The {@link HeatmapNodeModel} with the values.
+	 * @param previousPlan
+	 *            The previously used {@link RenderPlan}, it is reused if it
+	 *            was made for the same selections.
+	 * @param withLabels
+	 *            Prepare the labels of the wells too. (They are created on
+	 *            the first request.)
+	 * @param check
+	 *            Called regularly to check whether the computation is still
+	 *            needed.
+	 * @return The computed values.
+	 * @throws CancellationException
+	 *             When {@code check} cancelled the computation.
+	 */
+	static HeatmapValues compute(final Snapshot snapshot,
+			final HeatmapNodeModel nodeModel,
+			@Nullable final RenderPlan previousPlan, final boolean withLabels,
+			final Check check) {
+		final Map<Selectable<?>, List<Integer>> selections = snapshot.selections;
+		final Format format = snapshot.format;
+		final Format predictedFormat = nodeModel.getModelBuilder()
+				.getSpecAnalyser().getPredictedFormat();
+		/* 0-MAX_INDEPENDENT_FACTORS -> selected plate values. */
+		final Map<Integer, List<Integer>> platePos = new HashMap<Integer, List<Integer>>();
+		/* 0-MAX_INDEPENDENT_FACTORS -> selected experiment values. */
+		final Map<Integer, List<String>> experimentPos = new HashMap<Integer, List<String>>();
+		/* 0-MAX_INDEPENDENT_FACTORS -> selected normalisation values. */
+		final Map<Integer, List<String>> normalisationPos = new HashMap<Integer, List<String>>();
+		for (int i = SliderModel.MAX_INDEPENDENT_FACTORS; i-- > 0;) {
+			platePos.put(Integer.valueOf(i), new ArrayList<Integer>());
+			experimentPos.put(Integer.valueOf(i), new ArrayList<String>());
+			normalisationPos.put(Integer.valueOf(i), new ArrayList<String>());
+		}
+		SliderModel experimentSlider = null;
+		SliderModel normalisationSlider = null;
+		SliderModel parameterSlider = null;
+		SliderModel statSlider = null;
+		SliderModel plateSlider = null;
+		SliderModel replicateSlider = null;
+		for (final SliderModel slider : snapshot.sliders) {
+			for (final ParameterModel model : slider.getParameters()) {
+				switch (model.getType()) {
+				case plate:
+					selectionToPos(platePos, slider, snapshot, Integer.class);
+					plateSlider = slider;
+					break;
+				case experimentName:
+					selectionToPos(experimentPos, slider, snapshot,
+							String.class);
+					experimentSlider = slider;
+					break;
+				case normalisation:
+					selectionToPos(normalisationPos, slider, snapshot,
+							String.class);
+					normalisationSlider = slider;
+					break;
+				case parameter:
+					parameterSlider = slider;
+					break;
+				case metaStatType:
+					statSlider = slider;
+					break;
+				case replicate:
+					replicateSlider = slider;
+					break;
+				default:
+					// Do nothing.
+					break;
+				}
+			}
+		}
+		final SliderModel firstParamSlider = snapshot.firstParamSlider;
+		final SliderModel secondParamSlider = snapshot.secondParamSlider;
+		final int size = computeSplitterCount(selections, Arrays.asList(
+				firstParamSlider, secondParamSlider));
+		final int plate = snapshot.selectedPlate();
+		final ModelBuilder modelBuilder = nodeModel.getModelBuilder();
+		final RenderPlan plan;
+		if (previousPlan != null && previousPlan.isFor(selections)) {
+			plan = previousPlan;
+		} else {
+			final RenderPlan.Builder builder = new RenderPlan.Builder();
+			final Map<String, Map<String, Map<Integer, Map<String, Map<StatTypes, double[]>>>>> scores = modelBuilder
+					.getScores();
+			// ENH use Berkeley DB
+			final List<SliderModel> scoreSliderList = Arrays.asList(
+					experimentSlider, normalisationSlider, plateSlider,
+					parameterSlider, statSlider);
+			if (secondParamSlider != null
+					&& secondParamSlider.equals(replicateSlider)) {
+				for (int i = selections.get(replicateSlider).size(); i-- > 0;) {
+					compileColourValues(check, snapshot, builder, scores,
+							firstParamSlider, null, 0, secondParamSlider, null,
+							i, scoreSliderList, 0);
+				}
+			} else if (firstParamSlider.equals(replicateSlider)) {
+				for (int i = selections.get(replicateSlider).size(); i-- > 0;) {
+					compileColourValues(check, snapshot, builder, scores,
+							firstParamSlider, null, i, secondParamSlider, null,
+							i, scoreSliderList, 0);
+				}
+			} else {
+				compileColourValues(check, snapshot, builder, scores,
+						firstParamSlider, null, 0, secondParamSlider, null, 0,
+						scoreSliderList, 0);
+			}
+			final Map<String, Map<String, Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>>>> replicates = modelBuilder
+					.getReplicates();
+			final List<SliderModel> replicateSliderList = Arrays.asList(
+					experimentSlider, normalisationSlider, plateSlider,
+					replicateSlider, parameterSlider, statSlider);
+			compileColourValues(check, snapshot, builder, replicates,
+					firstParamSlider, null, 0, secondParamSlider, null, 0,
+					replicateSliderList, 0);
+			plan = builder.build(selections);
+		}
+		final int[][] colors = new int[predictedFormat.getWellCount()][size];
+		plan.fill(colors, snapshot.colourModel);
+		final List<String> experiments = experimentPos.get(ZERO);
+		final List<String> normalisations = normalisationPos.get(ZERO);
+		final List<Integer> plates = platePos.get(ZERO);
+		final int cols = format.getCol();
+		final HeatmapValues ret = new HeatmapValues(format, predictedFormat,
+				plan, withLabels ? InfoParser.compile(
+						snapshot.labelPattern).bind(experiments,
+						normalisations, plates, nodeModel) : null);
+		// exp, norm, plate, col
+		final Map<String, Map<String, Map<Integer, PackedColours>>> colours = modelBuilder
+				.getColours();
+		assert colours != null;
+		// norm, plate, col
+		final Map<String, Map<Integer, PackedColours>> normColors = colours == null ? null
+				: experiments.size() > 0 ? colours.get(experiments.get(0))
+						: null;
+		final Map<Integer, PackedColours> plateColours = normColors != null
+				&& normalisations.size() > 0 ? normColors.get(normalisations
+				.get(0)) : null;
+		final PackedColours array = plateColours == null ? null
+				: plateColours.get(Integer.valueOf(plate + 1));
+		for (int i = format.getWellCount(); i-- > 0;) {
+			check.check();
+			if (i / cols >= predictedFormat.getRow()
+					|| i % cols >= predictedFormat.getCol()) {
+				if (array != null) {
+					ret.backgrounds[i] = ColorAttr.BACKGROUND;
+				}
+				continue;
+			}
+			final int predictedPos = i / cols * predictedFormat.getCol() + i
+					% cols;
+			if (array != null) {
+				ret.backgrounds[i] = array.isPresent(predictedPos) ? VisualUtils
+						.interned(array.getArgb(predictedPos))
+						: ColorAttr.BACKGROUND;
+			}
+			ret.colors[i] = colors[predictedPos];
+		}
+		return ret;
+	}
+
+	/**
+	 * Finds the proper values for the selected parameters and adds them to
+	 * the {@link RenderPlan}.
+	 * <p>
+	 * Recursive implementation.
+	 *
+	 * @param check
+	 *            The {@link Check} of the computation.
+	 * @param snapshot
+	 *            The {@link Snapshot} with the selections of the
+	 *            {@link SliderModel}s.
+	 * @param builder
+	 *            The results will be added to this {@link RenderPlan.Builder}.
+	 *            The columns are the positions of the selected primary &
+	 *            secondary parameter.
+	 * @param scores
+	 *            The values associated to the parameters.
+	 * @param firstParamSlider
+	 *            The primary parameter {@link SliderModel}.
+	 * @param firstSelection
+	 *            The actual selection of primary {@link SliderModel}.
+	 * @param firstIndex
+	 *            The position in the columns. This is for the primary
+	 *            parameter.
+	 * @param secondParamSlider
+	 *            The secondary parameter {@link SliderModel}.
+	 * @param secondSelection
+	 *            The actual selection of secondary {@link SliderModel}.
+	 * @param secondIndex
+	 *            The position in the columns. This is for the secondary
+	 *            parameter.
+	 * @param sliderList
+	 *            This list describes the layout of {@code scores}.
+	 * @param sliderIndex
+	 *            The actual position in the {@code sliderList} (the recursion
+	 *            depth).
+	 * @throws CancellationException
+	 *             When {@code check} cancelled the computation.
+	 */
+	private static void compileColourValues(final Check check,
+			final Snapshot snapshot, final RenderPlan.Builder builder, final Object scores,
+			final Selectable<Pair<ParameterModel, Object>> firstParamSlider,
+			@Nullable final Integer firstSelection, final int firstIndex,
+			final Selectable<Pair<ParameterModel, Object>> secondParamSlider,
+			@Nullable final Integer secondSelection, final int secondIndex,
+			final List<SliderModel> sliderList, final int sliderIndex) {
+		check.check();
+		final Map<Selectable<?>, List<Integer>> selections = snapshot.selections;
+		final int firstParamCount = firstParamSlider == null ? 1
+				: selections.get(firstParamSlider).size();
+		double[] array = null;
+		if (sliderList.size() > sliderIndex) {
+			Map<?, ?> map = (Map<?, ?>) scores;
+
+			for (int i = sliderIndex; i < sliderList.size(); ++i) {
+				final Selectable<Pair<ParameterModel, Object>> sliderModel = sliderList
+						.get(i);
+				if (map == null) {
+					return;
+				}
+				if (sliderModel == firstParamSlider) {
+					int j = 0;
+					for (final Integer selected : selections.get(sliderModel)) {
+						compileColourValues(check, snapshot, builder, map
+								.get(snapshot.value(sliderModel, selected)),
+								firstParamSlider, selected, j,
+								secondParamSlider, secondSelection,
+								secondIndex, sliderList, i + 1);
+						++j;
+					}
+					return;
+				}
+				if (sliderModel == secondParamSlider) {
+					int j = 0;
+					for (final Integer selected : selections.get(sliderModel)) {
+						compileColourValues(check, snapshot, builder, map
+								.get(snapshot.value(sliderModel, selected)),
+								firstParamSlider, firstSelection, firstIndex,
+								secondParamSlider, selected, j, sliderList,
+								i + 1);
+						++j;
+					}
+					return;
+				} else {
+					assert selections.get(sliderModel).size() == 1;
+					final Object obj = map.get(snapshot.value(sliderModel,
+							selections.get(sliderModel).get(0)));
+					if (i < sliderList.size() - 1) {
+						map = (Map<?, ?>) obj;
+					} else {
+						array = (double[]) obj;
+					}
+				}
+			}
+		} else {
+			array = (double[]) scores;
+		}
+		Selector<Pair<ParameterModel, Object>> paramSlider = null;
+		Selector<Pair<ParameterModel, Object>> statSlider = null;
+		for (final SliderModel sliderModel : sliderList) {
+			switch (sliderModel.getParameters().get(0).getType()) {
+			case parameter:
+				paramSlider = sliderModel;
+				break;
+			case metaStatType:
+				statSlider = sliderModel;
+				break;
+			default:
+				break;
+			}
+		}
+		if (array != null) {
+			builder.add(array, secondIndex * firstParamCount + firstIndex,
+					(String) (selections.get(paramSlider).size() == 1 ? snapshot
+							.value(paramSlider, selections.get(paramSlider)
+									.get(0))
+							: firstParamSlider == paramSlider ? snapshot
+									.value(firstParamSlider, firstSelection)
+									: snapshot.value(secondParamSlider,
+											secondSelection)),
+					(StatTypes) (selections.get(statSlider).size() == 1 ? snapshot
+							.value(statSlider, selections.get(statSlider)
+									.get(0))
+							: firstParamSlider == statSlider ? snapshot
+									.value(firstParamSlider, firstSelection)
+									: snapshot.value(secondParamSlider,
+											secondSelection)));
+		}
+	}
+
+	/**
+	 * Finds a {@link SliderModel} with similar
+	 * {@link SliderModel#getParameters() parameters}.
+	 *
+	 * @param sliderModels
+	 *            Some {@link SliderModel}s.
+	 * @param parameters
+	 *            Some {@link ParameterModel}s. Only the fist will be used.
+	 * @return The {@link SliderModel} with fist
+	 *         {@link SliderModel#getParameters() parameter} same as the first
+	 *         {@code parameters}, or {@code null} if not found in {@code
+	 *         sliderModels}.
+	 */
+	private static @Nullable
+	SliderModel findSlider(final Set<SliderModel> sliderModels,
+			final List<ParameterModel> parameters) {
+		if (parameters.size() == 0) {
+			return null;
+		}
+		for (final SliderModel sliderModel : sliderModels) {
+			if (sliderModel.getParameters().iterator().next().equals(
+					parameters.get(0))) {
+				return sliderModel;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Converts the selections to the proper values for the
+	 * {@link SliderModel#getSubId()}s.
+	 *
+	 * @param <T>
+	 *            The type of the values in {@code posMap}.
+	 * @param posMap
+	 *            The map of the positions ({@code 0} (inclusive) to
+	 *            {@link SliderModel#MAX_INDEPENDENT_FACTORS}{@code -1}
+	 *            exclusive) to the values. The values will be added to the
+	 *            lists. It is a good choice to have these lists modifiable and
+	 *            empty at the beginning.
+	 * @param slider
+	 *            A {@link SliderModel}.
+	 * @param snapshot
+	 *            The {@link Snapshot} with the selections of the
+	 *            {@link SliderModel}s.
+	 * @param cls
+	 *            The class of the types.
+	 */
+	private static <T> void selectionToPos(final Map<Integer, List<T>> posMap,
+			final SliderModel slider, final Snapshot snapshot,
+			final Class<? extends T> cls) {
+		final List<T> list = posMap.get(Integer.valueOf(slider.getSubId()));
+		for (final Integer selection : snapshot.selections.get(slider)) {
+			list.add(cls.cast(snapshot.value(slider, selection)));
+		}
+	}
+
+	private static int computeSplitterCount(
+			final Map<Selectable<?>, List<Integer>> selections,
+			final Collection<SliderModel> sliders) {
+		int ret = 1;
+		for (final Selectable<?> slider : sliders) {
+			if (slider != null) {
+				ret *= selections.get(slider).size();
+			}
+		}
+		return ret;
+	}
+}
@@ -4,29 +4,473 @@
 package com.mind_era.knime.hits.view.heatmap;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
+
 import com.mind_era.knime.common.Format;
 import com.mind_era.knime.common.util.ModelBuilder;
 import com.mind_era.knime.common.view.StatTypes;
 
 /**
  * This class parses and creates well information descriptions.
- * 
+ * <p>
+ * The formatting {@link String} is {@link #compile(String) compiled} once to
+ * a {@link Template}, which is {@link Template#bind(List, List, List,
+ * HeatmapNodeModel) bound} to the selected values. The {@link Labels} of the
+ * wells are created only when they are first asked.
+ *
  * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
  */
 public class InfoParser {
 	private static final Pattern pattern = Pattern
 			.compile("(\\$\\{[^}(]+(\\([^\\)]+\\))?\\})");
 
+	/** The last compiled {@link Template}. */
+	private static volatile Template lastTemplate = new Template("",
+			Collections.singletonList(""), Collections.<Field> emptyList());
+
+	/** A special part of the formatting {@link String}. */
+	private static final class Field {
+		private final String code;
+		private final @Nullable
+		String additionalParams;
+		private final boolean plate;
+		private final boolean well;
+		/** The statistics to show, or {@code null}. */
+		private final @Nullable
+		StatTypes statTypes;
+
+		/**
+		 * @param code
+		 *            The name of the field.
+		 * @param additionalParams
+		 *            The parameters of the field (with parentheses), or
+		 *            {@code null}.
+		 */
+		Field(final String code, @Nullable final String additionalParams) {
+			super();
+			this.code = code;
+			this.additionalParams = additionalParams;
+			plate = "plate".equalsIgnoreCase(code);
+			well = "well".equalsIgnoreCase(code);
+			StatTypes stat = null;
+			if (!plate && !well) {
+				try {
+					stat = StatTypes.valueOf(code);
+				} catch (final IllegalArgumentException e) {
+					// Not a statistics, only texts.
+				}
+			}
+			statTypes = stat;
+		}
+	}
+
+	/**
+	 * The compiled form of a formatting {@link String}: the literal parts and
+	 * the {@link Field}s between them.
+	 */
+	public static final class Template {
+		private final String format;
+		/** One more than {@link #fields}. */
+		private final String[] literals;
+		private final Field[] fields;
+
+		private Template(final String format, final List<String> literals,
+				final List<Field> fields) {
+			super();
+			this.format = format;
+			this.literals = literals.toArray(new String[literals.size()]);
+			this.fields = fields.toArray(new Field[fields.size()]);
+		}
+
+		/**
+		 * Binds the {@link Template} to the selected values.
+		 *
+		 * @param experiments
+		 *            The name of the selected experiment.
+		 * @param normalisations
+		 *            The normalisations/scorings done for the experiment.
+		 * @param plates
+		 *            The plate number, starting from {@code 1}.
+		 * @param model
+		 *            The {@link HeatmapNodeModel}.
+		 * @return The (lazily computed) {@link Labels} of the wells.
+		 */
+		Labels bind(final List<String> experiments,
+				final List<String> normalisations, final List<Integer> plates,
+				@Nullable final HeatmapNodeModel model) {
+			return bind(experiments, normalisations, plates, model == null
+					|| model.getTable() == null ? null : model
+					.getModelBuilder());
+		}
+
+		/**
+		 * Binds the {@link Template} to the selected values.
+		 *
+		 * @param experiments
+		 *            The name of the selected experiment.
+		 * @param normalisations
+		 *            The normalisations/scorings done for the experiment.
+		 * @param plates
+		 *            The plate number, starting from {@code 1}.
+		 * @param modelBuilder
+		 *            The {@link ModelBuilder} of the data, or {@code null}
+		 *            if there is no data.
+		 * @return The (lazily computed) {@link Labels} of the wells.
+		 */
+		public Labels bind(final List<String> experiments,
+				final List<String> normalisations, final List<Integer> plates,
+				@Nullable final ModelBuilder modelBuilder) {
+			return new Labels(this, experiments, normalisations, plates,
+					modelBuilder);
+		}
+	}
+
+	/**
+	 * The values of a selected experiment, normalisation and plate. The
+	 * values of a {@link com.mind_era.knime.common.util.PlateCube#isLazy()
+	 * lazily loaded} model are copied to {@link Map}s when bound (outside the
+	 * event dispatch thread), so creating the labels later does not load the
+	 * plate again.
+	 */
+	private static final class Slice {
+		private final String experiment;
+		private final String normalisation;
+		private final Integer plate;
+		/** The model has replicate values for the normalisation. */
+		private final boolean hasReplicates;
+		private final @Nullable
+		Map<Integer, Map<String, Map<StatTypes, double[]>>> replicates;
+		/** The model has scores for the normalisation. */
+		private final boolean hasScores;
+		private final @Nullable
+		Map<String, Map<StatTypes, double[]>> scores;
+
+		Slice(final String experiment, final String normalisation,
+				final Integer plate, final ModelBuilder modelBuilder) {
+			super();
+			this.experiment = experiment;
+			this.normalisation = normalisation;
+			this.plate = plate;
+			final Map<Integer, Map<Integer, Map<String, Map<StatTypes, double[]>>>> replicatePlates = get(
+					get(modelBuilder.getReplicates(), experiment),
+					normalisation);
+			final Map<Integer, Map<String, Map<StatTypes, double[]>>> replicateValues = replicatePlates == null ? null
+					: replicatePlates.get(plate);
+			final Map<Integer, Map<String, Map<StatTypes, double[]>>> scorePlates = get(
+					get(modelBuilder.getScores(), experiment), normalisation);
+			final Map<String, Map<StatTypes, double[]>> scoreValues = scorePlates == null ? null
+					: scorePlates.get(plate);
+			hasReplicates = replicatePlates != null;
+			hasScores = scorePlates != null;
+			if (modelBuilder.getCube().isLazy()) {
+				if (replicateValues == null) {
+					replicates = null;
+				} else {
+					replicates = new LinkedHashMap<Integer, Map<String, Map<StatTypes, double[]>>>();
+					for (final Entry<Integer, Map<String, Map<StatTypes, double[]>>> entry : replicateValues
+							.entrySet()) {
+						replicates.put(entry.getKey(), copy(entry.getValue()));
+					}
+				}
+				scores = scoreValues == null ? null : copy(scoreValues);
+			} else {
+				replicates = replicateValues;
+				scores = scoreValues;
+			}
+		}
+
+		/**
+		 * @param values
+		 *            The values of the parameters of a plate.
+		 * @return A copy of {@code values} with the same iteration order,
+		 *         sharing the {@code double[]}s.
+		 */
+		private static Map<String, Map<StatTypes, double[]>> copy(
+				final Map<String, Map<StatTypes, double[]>> values) {
+			final Map<String, Map<StatTypes, double[]>> ret = new LinkedHashMap<String, Map<StatTypes, double[]>>();
+			for (final Entry<String, Map<StatTypes, double[]>> entry : values
+					.entrySet()) {
+				final Map<StatTypes, double[]> stats = new EnumMap<StatTypes, double[]>(
+						StatTypes.class);
+				stats.putAll(entry.getValue());
+				ret.put(entry.getKey(), stats);
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * The labels of the wells for a {@link Template} bound to the selected
+	 * values. The labels are created on the first request and kept.
+	 */
+	public static final class Labels {
+		private final Template template;
+		private final List<String> experiments;
+		private final List<String> normalisations;
+		private final List<Integer> plates;
+		private final List<Slice> slices = new ArrayList<Slice>();
+		/**
+		 * The texts of the first selected experiment, normalisation and
+		 * plate, or {@code null}.
+		 */
+		private final @Nullable
+		Map<String, String[]> texts;
+		private final @Nullable
+		Format predictedFormat;
+		/** The created labels by the position on {@link #predictedFormat}. */
+		private final String[] cache;
+
+		private Labels(final Template template,
+				final List<String> experiments,
+				final List<String> normalisations, final List<Integer> plates,
+				@Nullable final ModelBuilder modelBuilder) {
+			super();
+			this.template = template;
+			this.experiments = experiments;
+			this.normalisations = normalisations;
+			this.plates = plates;
+			if (modelBuilder == null) {
+				texts = null;
+				predictedFormat = null;
+				cache = new String[0];
+				return;
+			}
+			predictedFormat = modelBuilder.getSpecAnalyser()
+					.getPredictedFormat();
+			cache = new String[predictedFormat.getWellCount()];
+			for (final String experiment : experiments) {
+				for (final String normalisation : normalisations) {
+					for (final Integer plate : plates) {
+						slices.add(new Slice(experiment, normalisation, plate,
+								modelBuilder));
+					}
+				}
+			}
+			texts = experiments.isEmpty() || normalisations.isEmpty()
+					|| plates.isEmpty() ? null : get(get(modelBuilder
+					.getTexts(), experiments.get(0)), normalisations.get(0),
+					plates.get(0));
+		}
+
+		/**
+		 * @param row
+		 *            The row number, starting from {@code 0}.
+		 * @param col
+		 *            The column number, starting from {@code 0}.
+		 * @return The formatted text of the well.
+		 */
+		public synchronized String label(final int row, final int col) {
+			if (predictedFormat == null) {
+				return "";
+			}
+			final int pos = predictedFormat.getPos(row, col);
+			String ret = cache[pos];
+			if (ret == null) {
+				ret = cache[pos] = create(row, col, pos);
+			}
+			return ret;
+		}
+
+		/**
+		 * Creates the label of a well. Every field is followed by the text of
+		 * the well from the text column named as the field (if there is
+		 * such).
+		 */
+		private String create(final int row, final int col, final int pos) {
+			final StringBuilder sb = new StringBuilder(template.literals[0]);
+			for (int i = 0; i < template.fields.length; ++i) {
+				final Field field = template.fields[i];
+				if (field.plate) {
+					sb.append(plates.size() == 1 ? plates.get(0) : plates);
+				} else if (field.well) {
+					sb.append((char) (row + 'A')).append(col + 1);
+				} else if (field.statTypes != null) {
+					appendStats(sb, field.statTypes,
+							field.additionalParams == null, pos);
+				}
+				if (texts != null) {
+					final String[] values = texts.get(field.code);
+					if (values != null) {
+						final String value = values[pos];
+						if (value != null) {
+							sb.append(value.replaceAll("\n", "<p>"));
+						}
+					}
+				}
+				sb.append(template.literals[i + 1]);
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * Appends the table of the {@code statTypes} values of the selections.
+		 * The selections after the first one without values of its
+		 * normalisation are left out. Without the {@code table} (for the
+		 * fields with parameters, like <code>${raw(1)}</code>) only the
+		 * experiment, normalisation and plate cells of the rows are appended.
+		 */
+		private void appendStats(final StringBuilder sb,
+				final StatTypes statTypes, final boolean table, final int pos) {
+			final List<String> parameters = new ArrayList<String>();
+			for (final Slice slice : slices) {
+				if (statTypes.isUseReplicates()) {
+					if (!slice.hasReplicates) {
+						return;
+					}
+					if (slice.replicates == null) {
+						continue;
+					}
+					for (final Entry<Integer, Map<String, Map<StatTypes, double[]>>> replEntry : slice.replicates
+							.entrySet()) {
+						final Map<String, Map<StatTypes, double[]>> paramMap = replEntry
+								.getValue();
+						if (paramMap != null) {
+							appendRow(sb, parameters, paramMap, replEntry
+									.getKey().toString(), statTypes, table,
+									pos, slice);
+						}
+					}
+				} else {
+					if (!slice.hasScores) {
+						return;
+					}
+					if (slice.scores != null
+							&& !appendRow(sb, parameters, slice.scores, "",
+									statTypes, table, pos, slice)) {
+						return;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Appends a row of the table (and its header before the first row).
+		 *
+		 * @return {@code false} if a parameter has no score of
+		 *         {@code statTypes}, the row is cut there (after the opening
+		 *         {@code <td>}), and the table ends.
+		 */
+		private boolean appendRow(final StringBuilder sb,
+				final List<String> parameters,
+				final Map<String, Map<StatTypes, double[]>> paramMap,
+				final String first, final StatTypes statTypes,
+				final boolean table, final int pos, final Slice slice) {
+			if (parameters.isEmpty()) {
+				parameters.addAll(paramMap.keySet());
+				if (table) {
+					sb.append("<th>");
+					for (final String parameter : parameters) {
+						sb.append("<td>").append(parameter).append("</td>");
+					}
+					appendColumns(sb, "experiment", "normalisation", "plate");
+					sb.append("</th>\n");
+				}
+			}
+			if (table) {
+				sb.append("<tr><td>").append(first).append("</td>");
+				for (final String parameter : parameters) {
+					final Map<StatTypes, double[]> stats = paramMap
+							.get(parameter);
+					if (stats != null) {
+						final double[] values = stats.get(statTypes);
+						if (values == null && !statTypes.isUseReplicates()) {
+							sb.append("<td>");
+							return false;
+						}
+						sb.append("<td>").append(
+								values == null ? "" : values[pos]).append(
+								"</td>");
+					} else if (!statTypes.isUseReplicates()) {
+						sb.append("<td></td>");
+					}
+				}
+			}
+			appendColumns(sb, slice.experiment, slice.normalisation,
+					slice.plate);
+			if (table) {
+				sb.append("</tr>\n");
+			}
+			return true;
+		}
+
+		/**
+		 * Appends the cells of the experiment, normalisation and plate if
+		 * more than one is selected from them.
+		 */
+		private void appendColumns(final StringBuilder sb,
+				final Object experiment, final Object normalisation,
+				final Object plate) {
+			if (experiments.size() > 1) {
+				sb.append("<td>").append(experiment).append("</td>");
+			}
+			if (normalisations.size() > 1) {
+				sb.append("<td>").append(normalisation).append("</td>");
+			}
+			if (plates.size() > 1) {
+				sb.append("<td>").append(plate).append("</td>");
+			}
+		}
+	}
+
+	/**
+	 * Compiles the {@code format} to a {@link Template}. The last compiled
+	 * {@link Template} is reused.
+	 *
+	 * @param format
+	 *            A formatting {@link String}. The special parts should start
+	 *            with {@code $}, HTML tags are accepted.
+	 * @return The compiled {@link Template}.
+	 */
+	public static Template compile(final String format) {
+		final Template last = lastTemplate;
+		if (last.format.equals(format)) {
+			return last;
+		}
+		final List<String> literals = new ArrayList<String>();
+		final List<Field> fields = new ArrayList<Field>();
+		final Matcher matcher = pattern.matcher(format);
+		int lastEnd = 0;
+		while (matcher.find()) {
+			literals.add(format.substring(lastEnd, matcher.start()));
+			lastEnd = matcher.end();
+			final String code = format.substring(matcher.start() + 2, matcher
+					.group(2) != null ? matcher.start(2)
+					: matcher.end() - 1);
+			fields.add(new Field(code, matcher.group(2)));
+		}
+		literals.add(format.substring(lastEnd));
+		final Template ret = new Template(format, literals, fields);
+		lastTemplate = ret;
+		return ret;
+	}
+
+	@Nullable
+	private static <V> V get(@Nullable final Map<String, V> map,
+			final String key) {
+		return map == null ? null : map.get(key);
+	}
+
+	@Nullable
+	private static <V> V get(
+			@Nullable final Map<String, Map<Integer, V>> map,
+			final String normalisation, final Integer plate) {
+		final Map<Integer, V> plates = get(map, normalisation);
+		return plates == null ? null : plates.get(plate);
+	}
+
 	/**
 	 * Parses {@code format} and with the other parameters it creates a label
 	 * for the wells.
-	 * 
+	 *
 	 * @param experiment
 	 *            The name of the selected experiment.
 	 * @param normalisation
@@ -49,154 +493,15 @@ public class InfoParser {
 	public static String parse(final String experiment,
 			final String normalisation, final String format, final int plate,
 			final int row, final int col, final HeatmapNodeModel model) {
-		final StringBuilder sb = new StringBuilder();
-		if (model == null || model.getTable() == null) {
-			return "";
-		}
-		final Format predictedFormat = model.getModelBuilder()
-				.getSpecAnalyser().getPredictedFormat();
-		final Matcher matcher = pattern.matcher(format);
-		int lastEnd = 0;
-		while (matcher.find()) {
-			sb.append(format.substring(lastEnd, matcher.start()));
-			lastEnd = matcher.end();
-			final String code = format.substring(matcher.start() + 2, matcher
-					.group(2) != null ? matcher.start(1) - 1
-					: matcher.end() - 1);
-			final String additionalParams = matcher.groupCount() > 1 ? matcher
-					.group(2) : null;
-			if ("plate".equalsIgnoreCase(code)) {
-				sb.append(plate);
-			} else if ("well".equalsIgnoreCase(code)) {
-				sb.append((char) (row + 'A')).append(col + 1);
-			} else {
-				try {
-					final StatTypes statTypes = StatTypes.valueOf(code);
-					final List<String> parameters = new ArrayList<String>();
-					if (statTypes.isUseReplicates()) {
-						final Map<Integer, Map<String, Map<StatTypes, double[]>>> replicates = model
-								.getModelBuilder().getReplicates().get(
-										experiment).get(normalisation).get(
-										Integer.valueOf(plate));
-						if (replicates != null) {
-							for (final Entry<Integer, Map<String, Map<StatTypes, double[]>>> replEntry : replicates
-									.entrySet()) {
-								final Integer replicate = replEntry.getKey();
-								final Map<String, Map<StatTypes, double[]>> paramMap = replEntry
-										.getValue();
-								if (paramMap != null) {
-									if (parameters.isEmpty()) {
-										parameters.addAll(paramMap.keySet());
-										if (additionalParams == null) {
-											sb.append("<th>");
-											for (final String string : parameters) {
-												sb.append("<td>")
-														.append(string).append(
-																"</td>");
-											}
-											sb.append("</th>\n");
-										}
-									}
-									if (additionalParams == null) {
-										sb.append("<tr><td>").append(replicate)
-												.append("</td>");
-									}
-									// TODO else
-									for (final String parameter : parameters) {
-
-										final Map<StatTypes, double[]> stats = paramMap
-												.get(parameter);
-										if (stats != null) {
-											final double[] ds = stats
-													.get(statTypes);
-											if (additionalParams == null) {
-												sb.append("<td>").append(
-														ds[predictedFormat
-																.getPos(row,
-																		col)])
-														.append("</td>");
-											}
-											// TODO else handle additionalParams
-										}
-									}
-									if (additionalParams == null) {
-										sb.append("</tr>\n");
-									}
-									// TODO else
-								}
-							}
-
-						}
-					} else// Does not depend on replicates
-					{
-						final Map<String, Map<StatTypes, double[]>> map = model
-								.getModelBuilder().getScores().get(experiment)
-								.get(normalisation).get(Integer.valueOf(plate));
-						if (map != null) {
-							if (parameters.isEmpty()) {
-								parameters.addAll(map.keySet());
-								if (additionalParams == null) {
-									sb.append("<th>");
-									for (final String param : parameters) {
-										sb.append("<td>");
-										sb.append(param);
-										sb.append("</td>");
-									}
-									sb.append("</th>\n");
-								}
-							}
-							if (additionalParams == null) {
-								sb.append("<tr><td></td>");
-							}
-							for (final String param : parameters) {
-								final Map<StatTypes, double[]> stats = map
-										.get(param);
-								if (stats != null) {
-									final double[] values = stats
-											.get(statTypes);
-									if (additionalParams == null) {
-										sb.append("<td>").append(
-												values[predictedFormat.getPos(
-														row, col)]).append(
-												"</td>");
-									}
-								} else {
-									if (additionalParams == null) {
-										sb.append("<td></td>");
-									}
-								}
-							}
-							if (additionalParams == null) {
-								sb.append("</tr>\n");
-							}
-						}
-					}
-				} catch (final RuntimeException e) {
-					// No problem
-				}
-			}
-			final Map<String, String[]> map = model.getModelBuilder()
-					.getTexts().get(experiment).get(normalisation).get(
-							Integer.valueOf(plate));
-			if (map != null) {
-				final String[] values = map.get(code);
-				if (values != null) {
-					final String value = values[predictedFormat
-							.getPos(row, col)];
-					if (value != null) {
-						sb.append(value.replaceAll("\n", "<p>"));
-					}
-				}
-			}
-		}
-		sb.append(format.substring(lastEnd));
-		return sb.toString();
+		return parse(Collections.singletonList(experiment), Collections
+				.singletonList(normalisation), format, Collections
+				.singletonList(Integer.valueOf(plate)), row, col, model);
 	}
 
 	/**
 	 * Parses {@code format} and with the other parameters it creates a label
 	 * for the wells.
-	 * 
+	 *
 	 * @param experiments
 	 *            The name of the selected experiment.
 	 * @param normalisations
@@ -220,251 +525,7 @@ public class InfoParser {
 			final List<String> normalisations, final String format,
 			final List<Integer> plates, final int row, final int col,
 			final HeatmapNodeModel model) {
-		final StringBuilder sb = new StringBuilder();
-		if (model == null || model.getTable() == null) {
-			return "";
-		}
-		final Format predictedFormat = model.getModelBuilder()
-				.getSpecAnalyser().getPredictedFormat();
-		final Matcher matcher = pattern.matcher(format);
-		int lastEnd = 0;
-		while (matcher.find()) {
-			sb.append(format.substring(lastEnd, matcher.start()));
-			lastEnd = matcher.end();
-			final String code = format.substring(matcher.start() + 2, matcher
-					.group(2) != null ? matcher.start(1) - 1
-					: matcher.end() - 1);
-			final String additionalParams = matcher.groupCount() > 1 ? matcher
-					.group(2) : null;
-			if ("plate".equalsIgnoreCase(code)) {
-				sb.append(plates.size() == 1 ? plates.get(0) : plates);
-			} else if ("well".equalsIgnoreCase(code)) {
-				sb.append((char) (row + 'A')).append(col + 1);
-			} else {
-				try {
-					final StatTypes statTypes = StatTypes.valueOf(code);
-					final List<String> parameters = new ArrayList<String>();
-					if (statTypes.isUseReplicates()) {
-						for (final String experiment : experiments) {
-							for (final String normalisation : normalisations) {
-								for (final Integer plate : plates) {
-
-									final Map<Integer, Map<String, Map<StatTypes, double[]>>> replicates = model
-											.getModelBuilder().getReplicates()
-											.get(experiment).get(normalisation)
-											.get(plate);
-									if (replicates != null) {
-										for (final Entry<Integer, Map<String, Map<StatTypes, double[]>>> replEntry : replicates
-												.entrySet()) {
-											final Integer replicate = replEntry
-													.getKey();
-											final Map<String, Map<StatTypes, double[]>> paramMap = replEntry
-													.getValue();
-											if (paramMap != null) {
-												if (parameters.isEmpty()) {
-													parameters.addAll(paramMap
-															.keySet());
-													if (additionalParams == null) {
-														sb.append("<th>");
-														for (final String string : parameters) {
-															sb
-																	.append(
-																			"<td>")
-																	.append(
-																			string)
-																	.append(
-																			"</td>");
-														}
-														if (experiments.size() > 1) {
-															sb
-																	.append(
-																			"<td>")
-																	.append(
-																			"experiment")
-																	.append(
-																			"</td>");
-														}
-														if (normalisations
-																.size() > 1) {
-															sb
-																	.append(
-																			"<td>")
-																	.append(
-																			"normalisation")
-																	.append(
-																			"</td>");
-														}
-														if (plates.size() > 1) {
-															sb
-																	.append(
-																			"<td>")
-																	.append(
-																			"plate")
-																	.append(
-																			"</td>");
-														}
-														sb.append("</th>\n");
-													}
-												}
-												if (additionalParams == null) {
-													sb.append("<tr><td>")
-															.append(replicate)
-															.append("</td>");
-												}
-												// TODO else
-												for (final String parameter : parameters) {
-
-													final Map<StatTypes, double[]> stats = paramMap
-															.get(parameter);
-													if (stats != null) {
-														final double[] ds = stats
-																.get(statTypes);
-														if (additionalParams == null) {
-															sb
-																	.append(
-																			"<td>")
-																	.append(
-																			ds == null ? ""
-																					: ds[predictedFormat
-																							.getPos(
-																									row,
-																									col)])
-																	.append(
-																			"</td>");
-														}
-														// TODO else handle
-														// additionalParams
-													}
-												}
-												if (experiments.size() > 1) {
-													sb.append("<td>").append(
-															experiment).append(
-															"</td>");
-												}
-												if (normalisations.size() > 1) {
-													sb.append("<td>").append(
-															normalisation)
-															.append("</td>");
-												}
-												if (plates.size() > 1) {
-													sb.append("<td>").append(
-															plate).append(
-															"</td>");
-												}
-												if (additionalParams == null) {
-													sb.append("</tr>\n");
-												}
-												// TODO else
-											}
-										}
-									}
-								}
-							}
-						}
-					} else// Does not depend on replicates
-					{
-						for (final String experiment : experiments) {
-							for (final String normalisation : normalisations) {
-								for (final Integer plate : plates) {
-									final Map<String, Map<StatTypes, double[]>> map = model
-											.getModelBuilder().getScores().get(
-													experiment).get(
-													normalisation).get(plate);// FIXME
-									if (map != null) {
-										if (parameters.isEmpty()) {
-											parameters.addAll(map.keySet());
-											if (additionalParams == null) {
-												sb.append("<th>");
-												for (final String param : parameters) {
-													sb.append("<td>");
-													sb.append(param);
-													sb.append("</td>");
-												}
-												if (experiments.size() > 1) {
-													sb.append("<td>").append(
-															"experiment")
-															.append("</td>");
-												}
-												if (normalisations.size() > 1) {
-													sb.append("<td>").append(
-															"normalisation")
-															.append("</td>");
-												}
-												if (plates.size() > 1) {
-													sb.append("<td>").append(
-															"plate").append(
-															"</td>");
-												}
-												sb.append("</th>\n");
-											}
-										}
-										if (additionalParams == null) {
-											sb.append("<tr><td></td>");
-										}
-										for (final String param : parameters) {
-											final Map<StatTypes, double[]> stats = map
-													.get(param);
-											if (stats != null) {
-												final double[] values = stats
-														.get(statTypes);
-												if (additionalParams == null) {
-													sb
-															.append("<td>")
-															.append(
-																	values[predictedFormat
-																			.getPos(
-																					row,
-																					col)])
-															.append("</td>");
-												}
-											} else {
-												if (additionalParams == null) {
-													sb.append("<td></td>");
-												}
-											}
-										}
-										if (experiments.size() > 1) {
-											sb.append("<td>")
-													.append(experiment).append(
-															"</td>");
-										}
-										if (normalisations.size() > 1) {
-											sb.append("<td>").append(
-													normalisation).append(
-													"</td>");
-										}
-										if (plates.size() > 1) {
-											sb.append("<td>").append(plate)
-													.append("</td>");
-										}
-										if (additionalParams == null) {
-											sb.append("</tr>\n");
-										}
-									}
-								}
-							}
-						}
-					}
-				} catch (final RuntimeException e) {
-					// No problem
-				}
-			}
-			final Map<String, String[]> map = model.getModelBuilder()
-					.getTexts().get(experiments.get(0)).get(
-							normalisations.get(0)).get(
-							Integer.valueOf(plates.get(0)));// FIXME
-			if (map != null) {
-				final String[] values = map.get(code);
-				if (values != null) {
-					final String value = values[predictedFormat
-							.getPos(row, col)];
-					if (value != null) {
-						sb.append(value.replaceAll("\n", "<p>"));
-					}
-				}
-			}
-		}
-		sb.append(format.substring(lastEnd));
-		return sb.toString();
+		return compile(format).bind(experiments, normalisations, plates,
+				model).label(row, col);
 	}
 }
@@ -288,7 +288,7 @@ public class LegendPanel extends JPanel implements ActionListener {
 			}
 			image = new BufferedImage(getSize().width, getSize().height,
 					BufferedImage.TYPE_INT_ARGB);
-			final Color[] origColors = getColors();
+			final int[] origColors = getColors();
 			final boolean origShowLabels = showLabels;
 			final Collection<SliderModel> sliders = getModel().getMain()
 					.getArrangementModel().getSliderModels();
@@ -298,11 +298,11 @@ public class LegendPanel extends JPanel implements ActionListener {
 			final int secondaryCount = Math.max(1, WellViewPanel
 					.selectValueCount(getModel().getMain()
 							.getSeconderParameters(), sliders));
-			final Color[] tmpColors = new Color[primaryCount * secondaryCount];
+			final int[] tmpColors = new int[primaryCount * secondaryCount];
 			for (int i = primaryCount; i-- > 0;) {
 				for (int j = secondaryCount; j-- > 0;) {
 					final int index = i * secondaryCount + j;
-					tmpColors[j * primaryCount + i] = new Color(index + 1);
+					tmpColors[j * primaryCount + i] = 0xff000000 | index + 1;
 				}
 			}
 			showLabels = false;
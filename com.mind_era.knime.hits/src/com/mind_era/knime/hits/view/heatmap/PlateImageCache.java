@@ -0,0 +1,199 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.mind_era.knime.common.util.swing.colour.ColourSelector.ColourModel;
+
+/**
+ * A cache of the rendered plates of the {@link Heatmap}s. The images are
+ * identified by the {@link ViewModel}, the selections of the sliders, the
+ * position of the {@link Heatmap} and its size. The least recently used
+ * images are dropped when the size of the images would exceed the limit.
+ * <p>
+ * As an {@link ActionListener} it drops every image, so it should be
+ * notified when the {@link ViewModel} or the {@link ColourModel} changes.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+@NotThreadSafe
+public final class PlateImageCache implements ActionListener {
+	/**
+	 * The key of a rendered plate image.
+	 */
+	public static final class Key {
+		private final ViewModel viewModel;
+		private final List<Set<Integer>> selections;
+		private final int row;
+		private final int col;
+		private final int width;
+		private final int height;
+
+		/**
+		 * @param viewModel
+		 *            The {@link ViewModel} of the {@link Heatmap}.
+		 * @param sliders
+		 *            The {@link SliderModel}s, their current selections are
+		 *            copied.
+		 * @param row
+		 *            The row of the {@link Heatmap}.
+		 * @param col
+		 *            The column of the {@link Heatmap}.
+		 * @param width
+		 *            The width of the image.
+		 * @param height
+		 *            The height of the image.
+		 */
+		public Key(final ViewModel viewModel,
+				final Collection<SliderModel> sliders, final int row,
+				final int col, final int width, final int height) {
+			super();
+			this.viewModel = viewModel;
+			selections = new ArrayList<Set<Integer>>(sliders.size());
+			for (final SliderModel slider : sliders) {
+				selections.add(new HashSet<Integer>(slider.getSelections()));
+			}
+			this.row = row;
+			this.col = col;
+			this.width = width;
+			this.height = height;
+		}
+
+		/**
+		 * @param newWidth
+		 *            The new width.
+		 * @param newHeight
+		 *            The new height.
+		 * @return The same {@link Key} with the new size.
+		 */
+		public Key resize(final int newWidth, final int newHeight) {
+			return newWidth == width && newHeight == height ? this : new Key(
+					this, newWidth, newHeight);
+		}
+
+		private Key(final Key other, final int width, final int height) {
+			super();
+			this.viewModel = other.viewModel;
+			this.selections = other.selections;
+			this.row = other.row;
+			this.col = other.col;
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = System.identityHashCode(viewModel);
+			result = 31 * result + selections.hashCode();
+			result = 31 * result + row;
+			result = 31 * result + col;
+			result = 31 * result + width;
+			return 31 * result + height;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return viewModel == other.viewModel && row == other.row
+					&& col == other.col && width == other.width
+					&& height == other.height
+					&& selections.equals(other.selections);
+		}
+	}
+
+	private final long maxBytes;
+	private long bytes = 0L;
+	private final LinkedHashMap<Key, BufferedImage> images = new LinkedHashMap<Key, BufferedImage>(
+			16, .75f, true);
+
+	/**
+	 * Constructs a {@link PlateImageCache}.
+	 *
+	 * @param maxBytes
+	 *            The maximal size of the cached images in bytes. With
+	 *            {@code 0} nothing is cached.
+	 */
+	public PlateImageCache(final long maxBytes) {
+		super();
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @param key
+	 *            The {@link Key} of the image.
+	 * @return The cached image, or {@code null} if it is not (or no longer)
+	 *         cached.
+	 */
+	@Nullable
+	public BufferedImage get(final Key key) {
+		return images.get(key);
+	}
+
+	/**
+	 * Caches {@code image} if it is not too large, dropping the least recently
+	 * used images if necessary.
+	 *
+	 * @param key
+	 *            The {@link Key} of the image.
+	 * @param image
+	 *            The rendered image.
+	 */
+	public void put(final Key key, final BufferedImage image) {
+		final long size = size(image);
+		if (size > maxBytes) {
+			return;
+		}
+		final BufferedImage old = images.put(key, image);
+		if (old != null) {
+			bytes -= size(old);
+		}
+		bytes += size;
+		for (final Iterator<Entry<Key, BufferedImage>> it = images.entrySet()
+				.iterator(); bytes > maxBytes && it.hasNext();) {
+			bytes -= size(it.next().getValue());
+			it.remove();
+		}
+	}
+
+	/**
+	 * Drops every cached image.
+	 */
+	public void invalidate() {
+		images.clear();
+		bytes = 0L;
+	}
+
+	private static long size(final BufferedImage image) {
+		return 4L * image.getWidth() * image.getHeight();
+	}
+
+	@Override
+	public void actionPerformed(final ActionEvent e) {
+		invalidate();
+	}
+}
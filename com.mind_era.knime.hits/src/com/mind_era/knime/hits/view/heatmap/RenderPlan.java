@@ -0,0 +1,138 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+
+import com.mind_era.knime.common.util.select.Selectable;
+import com.mind_era.knime.common.util.swing.colour.ColourComputer;
+import com.mind_era.knime.common.util.swing.colour.ComplexModelFactory;
+import com.mind_era.knime.common.util.swing.colour.ColourSelector.ColourModel;
+import com.mind_era.knime.common.view.StatTypes;
+
+/**
+ * The compiled lookup of the values shown in a {@link Heatmap} for a
+ * combination of slider selections. It contains the referenced
+ * {@code double[]} arrays (with a value for each well), the position of their
+ * colours within the colours of a well, and the parameter and statistics to
+ * select their {@link ColourComputer}. So filling the colours of the wells
+ * does not need the lookups in the nested maps of the model.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+public final class RenderPlan {
+	/**
+	 * Collects the entries of a {@link RenderPlan}.
+	 */
+	public static final class Builder {
+		private final List<double[]> values = new ArrayList<double[]>();
+		private final List<Integer> columns = new ArrayList<Integer>();
+		private final List<String> parameters = new ArrayList<String>();
+		private final List<StatTypes> stats = new ArrayList<StatTypes>();
+
+		/**
+		 * Adds an entry. The later entries overwrite the colours of the
+		 * previous ones in the same column.
+		 *
+		 * @param array
+		 *            The values for each well.
+		 * @param column
+		 *            The position of the colour within the colours of a well.
+		 * @param parameter
+		 *            The parameter of the values.
+		 * @param stat
+		 *            The statistics of the values.
+		 */
+		public void add(final double[] array, final int column,
+				final String parameter, final StatTypes stat) {
+			values.add(array);
+			columns.add(Integer.valueOf(column));
+			parameters.add(parameter);
+			stats.add(stat);
+		}
+
+		/**
+		 * @param selections
+		 *            The selections of the sliders the plan is made for.
+		 * @return The new {@link RenderPlan}.
+		 */
+		public RenderPlan build(
+				final Map<Selectable<?>, List<Integer>> selections) {
+			final int[] cols = new int[columns.size()];
+			for (int i = cols.length; i-- > 0;) {
+				cols[i] = columns.get(i).intValue();
+			}
+			return new RenderPlan(selections, values
+					.toArray(new double[values.size()][]), cols, parameters
+					.toArray(new String[parameters.size()]), stats
+					.toArray(new StatTypes[stats.size()]));
+		}
+	}
+
+	private final Map<Selectable<?>, List<Integer>> selections;
+	private final double[][] values;
+	private final int[] columns;
+	private final String[] parameters;
+	private final StatTypes[] stats;
+
+	private RenderPlan(final Map<Selectable<?>, List<Integer>> selections,
+			final double[][] values, final int[] columns,
+			final String[] parameters, final StatTypes[] stats) {
+		super();
+		this.selections = selections;
+		this.values = values;
+		this.columns = columns;
+		this.parameters = parameters;
+		this.stats = stats;
+	}
+
+	/**
+	 * @param currentSelections
+	 *            The selections of the sliders.
+	 * @return {@code true} if the plan was made for {@code currentSelections}.
+	 */
+	public boolean isFor(
+			final Map<Selectable<?>, List<Integer>> currentSelections) {
+		return selections.equals(currentSelections);
+	}
+
+	/**
+	 * Fills the colours of the wells. The {@link ColourComputer}s are selected
+	 * once for each entry, and they
+	 * {@link ColourComputer#computeAll(double[], int[]) compute} the colours
+	 * of all wells of the entry at once, they are kept packed.
+	 *
+	 * @param colors
+	 *            The packed ARGB colours, the first dimension is the well, the
+	 *            second is the column of the entries.
+	 * @param colourModel
+	 *            The {@link ColourModel} with the {@link ColourComputer}s.
+	 */
+	public void fill(final int[][] colors, final ColourModel colourModel) {
+		int[] argb = new int[0];
+		for (int e = 0; e < values.length; ++e) {
+			final ColourComputer model = colourModel.getModel(parameters[e],
+					stats[e]);
+			final ColourComputer computer = model == null ? new ComplexModelFactory()
+					.getDefaultModel()
+					: model;
+			final double[] array = values[e];
+			final int column = columns[e];
+			if (argb.length < array.length) {
+				argb = new int[array.length];
+			}
+			computer.computeAll(array, argb);
+			for (int p = colors.length; p-- > 0;) {
+				colors[p][column] = argb[p];
+			}
+		}
+	}
+}
@@ -0,0 +1,327 @@
+/*
+ * All rights reserved. (C) Copyright 2009, Trinity College Dublin
+ */
+package com.mind_era.knime.hits.view.heatmap;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Collection;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.knime.core.data.property.ColorAttr;
+
+import com.mind_era.knime.common.Format;
+import com.mind_era.knime.common.util.VisualUtils;
+import com.mind_era.knime.hits.view.heatmap.ViewModel.Shape;
+
+/**
+ * Paints a well according to the {@link ViewModel.ShapeModel} of a
+ * {@link ViewModel} to an arbitrary rectangle of a {@link Graphics}. The
+ * number of primary, secondary and additional splits are computed on
+ * construction, so a single instance can be used to paint every well of a
+ * plate.
+ *
+ * @author <a href="mailto:bakosg@tcd.ie">Gabor Bakos</a>
+ */
+@Nonnull
+@CheckReturnValue
+final class WellPainter {
+	/** The (packed ARGB) colours used when no colours were set. */
+	static final int[] SAMPLE_COLORS = new int[] {
+			// Color.BLUE/* new Color(30, 30, 255, 70) */, Color.GREEN,
+			/*
+			 * Color.RED, Color.ORANGE, Color.PINK, Color.CYAN, Color.MAGENTA
+			 * Color.LIGHT_GRAY, Color.YELLOW
+			 */
+			Color.HSBtoRGB(0.2f, 0.7f, .95f),
+			Color.HSBtoRGB(0.2f, 0.7f, .9f),
+			Color.HSBtoRGB(0.2f, 0.7f, .85f),
+			Color.HSBtoRGB(0.2f, 0.7f, .8f),
+			Color.HSBtoRGB(0.2f, 0.7f, .75f),
+			Color.HSBtoRGB(0.2f, 0.7f, .7f),
+			Color.HSBtoRGB(0.2f, 0.7f, .65f) };
+	/**
+	 * The (packed ARGB) colours of the wells while their values are computed.
+	 */
+	static final int[] PENDING_COLORS = new int[] { Color.LIGHT_GRAY
+			.getRGB() };
+	/**
+	 * Covers the (previous) colours of the wells while their new values are
+	 * computed.
+	 */
+	static final Color PENDING_OVERLAY = new Color(192, 192, 192, 160);
+	private static final Color borderColor = Color.BLACK;
+
+	private final ViewModel model;
+	private final int primerParamCount;
+	private final int secCount;
+	private final int additionalParamCount;
+
+	/**
+	 * Constructs a {@link WellPainter}.
+	 *
+	 * @param model
+	 *            The {@link ViewModel} describing the shape of the wells.
+	 */
+	WellPainter(final ViewModel model) {
+		super();
+		this.model = model;
+		final Collection<SliderModel> sliders = model.getMain()
+				.getArrangementModel().getSliderModels();
+		primerParamCount = Math.max(1, WellViewPanel.selectValueCount(model
+				.getMain().getPrimerParameters(), sliders));
+		secCount = Math.max(1, WellViewPanel.selectValueCount(model.getMain()
+				.getSeconderParameters(), sliders));
+		additionalParamCount = WellViewPanel.selectValueCount(model.getMain()
+				.getAdditionalParameters(), sliders);
+	}
+
+	/**
+	 * Paints a well to the {@code x}, {@code y}, {@code width},
+	 * {@code height} rectangle. (The background is not painted.)
+	 *
+	 * @param g
+	 *            The {@link Graphics} to paint on.
+	 * @param x
+	 *            The left side of the well.
+	 * @param y
+	 *            The top side of the well.
+	 * @param width
+	 *            The width of the well.
+	 * @param height
+	 *            The height of the well.
+	 * @param colors
+	 *            The packed ARGB colours of the primary and secondary splits,
+	 *            the {@link Color}s are only made for the {@link Graphics}.
+	 * @param hilited
+	 *            The well is hilited.
+	 * @param selected
+	 *            The well is selected.
+	 */
+	void paint(final Graphics g, final int x, final int y, final int width,
+			final int height, final int[] colors, final boolean hilited,
+			final boolean selected) {
+		final int radius = Math.min(width / 2, height / 2) - 1;
+		final int cx = x + width / 2;
+		final int cy = y + height / 2;
+		if (hilited) {
+			g.setColor(selected ? ColorAttr.SELECTED_HILITE : ColorAttr.HILITE);
+			g.fillRect(x, y, width, height);
+		}
+		int colorPos = 0;
+		switch (model.getShape()) {
+		case Circle: {
+			final int[] radiuses = WellViewPanel.getRadiuses(radius, secCount);
+			assert additionalParamCount <= 4 : "Additional parameters: "
+					+ additionalParamCount;
+			switch (additionalParamCount) {
+			case 0:
+				break;
+			case 1:
+				g.setColor(VisualUtils.interned(colors[colorPos++]));
+				colorPos %= colors.length;
+				g.fillRect(cx - radius, cy - radius, 2 * radius, 2 * radius);
+				break;
+			case 2:
+				g.setColor(VisualUtils.interned(colors[colorPos++]));
+				colorPos %= colors.length;
+				g.fillRect(cx - radius, cy - radius, 2 * radius, radius);
+				g.setColor(VisualUtils.interned(colors[colorPos++]));
+				colorPos %= colors.length;
+				g.fillRect(cx - radius, cy, 2 * radius, radius);
+				break;
+			case 3:
+				g.setColor(VisualUtils.interned(colors[colorPos++]));
+				colorPos %= colors.length;
+				g.fillRect(cx - radius, cy - radius, 2 * radius, radius);
+				g.setColor(VisualUtils.interned(colors[colorPos++]));
+				colorPos %= colors.length;
+				g.fillRect(cx - radius, cy, radius, radius);
+				g.setColor(VisualUtils.interned(colors[colorPos++]));
+				colorPos %= colors.length;
+				g.fillRect(cx, cy, radius, radius);
+				break;
+			case 4:
+				g.setColor(VisualUtils.interned(colors[colorPos++]));
+				colorPos %= colors.length;
+				g.fillRect(cx - radius, cy - radius, radius, radius);
+				g.setColor(VisualUtils.interned(colors[colorPos++]));
+				colorPos %= colors.length;
+				g.fillRect(cx, cy - radius, radius, radius);
+				g.setColor(VisualUtils.interned(colors[colorPos++]));
+				colorPos %= colors.length;
+				g.fillRect(cx - radius, cy, radius, radius);
+				g.setColor(VisualUtils.interned(colors[colorPos++]));
+				colorPos %= colors.length;
+				g.fillRect(cx, cy, radius, radius);
+				break;
+			}
+			for (int j = 0; j < secCount; ++j) {
+				for (int i = 0; i < primerParamCount; ++i) {
+					g.setColor(VisualUtils.interned(colors[colorPos++]));
+					colorPos %= colors.length;
+					g.fillArc(cx - radiuses[j], cy - radiuses[j],
+							2 * radiuses[j], 2 * radiuses[j], model.getMain()
+									.getStartAngle()
+									+ i * 360 / primerParamCount,
+							360 / primerParamCount);
+				}
+			}
+			if (model.getMain().isDrawBorder()) {
+				g.setColor(borderColor);
+				drawBorderOval(g, cx, cy, radius);
+			}
+			if (selected) {
+				g.setColor(hilited ? ColorAttr.SELECTED_HILITE
+						: ColorAttr.SELECTED);
+				drawBorderOval(g, cx, cy, radius);
+				drawBorderOval(g, cx, cy, radius + 1);
+				drawBorderOval(g, cx, cy, radius - 1);
+			}
+			if (hilited & !selected) {
+				g.setColor(ColorAttr.HILITE);
+				drawBorderOval(g, cx, cy, radius);
+			}
+			if (model.getMain().isDrawAdditionalBorders()) {
+				g.setColor(borderColor);
+				g.drawRect(cx - (radius + 1), cy - (radius + 1),
+						2 * radius + 1, 2 * radius + 1);
+			}
+			if (model.getMain().isDrawPrimaryBorders()) {
+				g.setColor(borderColor);
+				if (primerParamCount > 1) {
+					for (int i = primerParamCount; i-- > 0;) {
+						final double angle = (model.getMain().getStartAngle() + i
+								* 360 / primerParamCount)
+								/ 180.0 * Math.PI;
+						g.drawLine(cx, cy, cx + (int) (Math.cos(angle) * radius),
+								cy - (int) (Math.sin(angle) * radius));
+					}
+				}
+			}
+			if (model.getMain().isDrawSecondaryBorders()) {
+				g.setColor(borderColor);
+				if (secCount > 0) {
+					for (int i = radiuses.length; i-- > 1;) {
+						final int r = radiuses[i];
+						g.drawOval(cx - r, cy - r, 2 * r, 2 * r);
+					}
+				}
+			}
+			break;
+		}
+		case Rectangle: {
+			for (int i = secCount; i-- > 0;) {
+				for (int j = primerParamCount; j-- > 0;) {
+					g.setColor(VisualUtils.interned(colors[(i
+							* primerParamCount + j)
+							% colors.length]));
+					g.fillRect(cx - radius + j * 2 * radius / primerParamCount,
+							cy - radius + i * 2 * radius / secCount,
+							(int) (radius * 2.0 / primerParamCount + .5),
+							(int) (radius * 2.0 / secCount + .5));
+				}
+			}
+			if (model.getMain().isDrawBorder()) {
+				g.setColor(borderColor);
+				drawBorderRect(g, cx, cy, radius);
+			}
+			if (selected) {
+				g.setColor(hilited ? ColorAttr.SELECTED_HILITE
+						: ColorAttr.SELECTED);
+				drawBorderRect(g, cx, cy, radius);
+				drawBorderRect(g, cx, cy, radius + 1);
+			}
+			if (hilited & !selected) {
+				g.setColor(ColorAttr.HILITE);
+				drawBorderRect(g, cx, cy, radius);
+			}
+			if (model.getMain().isDrawPrimaryBorders() && primerParamCount > 1) {
+				g.setColor(borderColor);
+				for (int i = primerParamCount - 1; i-- > 0;) {
+					final int lineX = cx - radius + (i + 1) * 2 * radius
+							/ primerParamCount;
+					g.drawLine(lineX, cy - radius, lineX, cy + radius);
+				}
+			}
+			if (model.getMain().isDrawSecondaryBorders() && secCount > 1) {
+				g.setColor(borderColor);
+				for (int j = secCount - 1; j-- > 0;) {
+					final int lineY = cy - radius + (j + 1) * 2 * radius
+							/ secCount;
+					g.drawLine(cx - radius, lineY, cx + radius, lineY);
+				}
+			}
+			break;
+		}
+		default:
+			throw new UnsupportedOperationException("Not supported yet.");
+		}
+	}
+
+	/**
+	 * Renders the wells of a plate with a single pixel for each well (for the
+	 * wells smaller than a few pixels, the pixels are scaled to the size of
+	 * the wells when painted). Only the colour of the first primary split, the
+	 * HiLite and the selection is shown, the borders are not painted.
+	 *
+	 * @param image
+	 *            The previous raster to reuse if it has the size of the
+	 *            {@code format}, or {@code null}.
+	 * @param format
+	 *            The format of the plate.
+	 * @param colors
+	 *            The packed ARGB colours of the wells ({@code null} elements
+	 *            for the {@link #SAMPLE_COLORS}).
+	 * @param hilites
+	 *            The wells are hilited.
+	 * @param selections
+	 *            The wells are selected.
+	 * @return The raster of the wells, {@code image} if it was reused.
+	 */
+	BufferedImage lowDetail(@Nullable final BufferedImage image,
+			final Format format, final int[][] colors,
+			final boolean[] hilites, final boolean[] selections) {
+		final BufferedImage ret = image != null
+				&& image.getWidth() == format.getCol()
+				&& image.getHeight() == format.getRow() ? image
+				: new BufferedImage(format.getCol(), format.getRow(),
+						BufferedImage.TYPE_INT_RGB);
+		final int[] pixels = ((DataBufferInt) ret.getRaster()
+				.getDataBuffer()).getData();
+		final int primary = model.getShape() == Shape.Circle ? additionalParamCount
+				: 0;
+		final int hiliteRgb = ColorAttr.HILITE.getRGB();
+		final int selectedRgb = ColorAttr.SELECTED.getRGB();
+		final int selectedHiliteRgb = ColorAttr.SELECTED_HILITE.getRGB();
+		for (int i = Math.min(pixels.length, colors.length); i-- > 0;) {
+			if (hilites[i]) {
+				pixels[i] = selections[i] ? selectedHiliteRgb : hiliteRgb;
+			} else if (selections[i]) {
+				pixels[i] = selectedRgb;
+			} else {
+				final int[] wellColors = colors[i] == null ? SAMPLE_COLORS
+						: colors[i];
+				pixels[i] = wellColors[primary % wellColors.length];
+			}
+		}
+		return ret;
+	}
+
+	private static void drawBorderRect(final Graphics g, final int cx,
+			final int cy, final int radius) {
+		g.drawRect(cx - radius, cy - radius, radius * 2, radius * 2);
+	}
+
+	private static void drawBorderOval(final Graphics g, final int cx,
+			final int cy, final int radius) {
+		g.drawOval(cx - radius - 1, cy - radius - 1, 2 * (radius + 1),
+				2 * (radius + 1));
+		g.drawOval(cx - radius, cy - radius, 2 * radius, 2 * radius);
+	}
+}
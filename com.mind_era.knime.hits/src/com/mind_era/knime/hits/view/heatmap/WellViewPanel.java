@@ -3,12 +3,12 @@
  */
 package com.mind_era.knime.hits.view.heatmap;
 
-import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -16,7 +16,6 @@ import javax.annotation.Nullable;
 import javax.swing.JPanel;
 
 import org.knime.base.node.mine.sota.view.interaction.Hiliteable;
-import org.knime.core.data.property.ColorAttr;
 
 import com.mind_era.knime.common.util.select.Selectable;
 import com.mind_era.knime.hits.view.heatmap.ViewModel.ParameterModel;
@@ -32,21 +31,10 @@ public class WellViewPanel extends JPanel implements Hiliteable,
 	private static final long serialVersionUID = -5609225166570164016L;
 	private final boolean isSelectable;
 	private ViewModel model;
-	private final Color[] sampleColors = new Color[] {
-			// Color.BLUE/* new Color(30, 30, 255, 70) */, Color.GREEN,
-			/*
-			 * Color.RED, Color.ORANGE, Color.PINK, Color.CYAN, Color.MAGENTA
-			 * Color.LIGHT_GRAY, Color.YELLOW
-			 */
-			Color.getHSBColor(0.2f, 0.7f, .95f),
-			Color.getHSBColor(0.2f, 0.7f, .9f),
-			Color.getHSBColor(0.2f, 0.7f, .85f),
-			Color.getHSBColor(0.2f, 0.7f, .8f),
-			Color.getHSBColor(0.2f, 0.7f, .75f),
-			Color.getHSBColor(0.2f, 0.7f, .7f),
-			Color.getHSBColor(0.2f, 0.7f, .65f) };
-	private final Color borderColor = Color.BLACK;
-	private Color[] colors;
+	/** The painter of the wells of {@link #model}. */
+	private WellPainter painter;
+	/** The packed ARGB colours of the splits. */
+	private int[] colors;
 	private String[] labels;
 	private boolean hilitedAll;
 	private boolean isSelected;
@@ -69,8 +57,9 @@ public class WellViewPanel extends JPanel implements Hiliteable,
 		super();
 		this.isSelectable = isSelectable;
 		this.model = model;
+		this.painter = new WellPainter(model);
 		this.positionOnPlate = positionOnPlate;
-		this.colors = sampleColors;
+		this.colors = WellPainter.SAMPLE_COLORS;
 		this.labels = NO_LABELS;
 		hilitedAll = false;
 		isSelected = false;
@@ -81,205 +70,8 @@ public class WellViewPanel extends JPanel implements Hiliteable,
 	protected void paintComponent(final Graphics g) {
 		super.paintComponent(g);
 		final Rectangle bounds = getBounds();
-		final int radius = Math.min(bounds.width / 2, bounds.height / 2) - 1;
-		if (hilitedAll) {
-			g.setColor(isSelected ? ColorAttr.SELECTED_HILITE
-					: ColorAttr.HILITE);
-			g.fillRect(0, 0, bounds.width, bounds.height);
-		}
-		final List<ParameterModel> primerParameters = model.getMain()
-				.getPrimerParameters();
-		final Collection<SliderModel> sliders = model.getMain()
-				.getArrangementModel().getSliderModels();
-		final int primerParamCount = Math.max(1, selectValueCount(
-				primerParameters, sliders));
-		final int secCount = Math.max(1, selectValueCount(model.getMain()
-				.getSeconderParameters(), sliders));
-		int colorPos = 0;
-		switch (model.getShape()) {
-		case Circle: {
-			final int[] radiuses = getRadiuses(radius, secCount);
-			final int additionalParamCount = selectValueCount(model.getMain()
-					.getAdditionalParameters(), sliders);
-			assert additionalParamCount <= 4 : "Additional parameters: "
-					+ additionalParamCount;
-			switch (additionalParamCount) {
-			case 0:
-				break;
-			case 1:
-				g.setColor(colors[colorPos++]);
-				colorPos %= colors.length;
-				g.fillRect(bounds.width / 2 - radius, bounds.height / 2
-						- radius, 2 * radius, 2 * radius);
-				break;
-			case 2:
-				g.setColor(colors[colorPos++]);
-				colorPos %= colors.length;
-				g.fillRect(bounds.width / 2 - radius, bounds.height / 2
-						- radius, 2 * radius, radius);
-				g.setColor(colors[colorPos++]);
-				colorPos %= colors.length;
-				g.fillRect(bounds.width / 2 - radius, bounds.height / 2,
-						2 * radius, radius);
-				break;
-			case 3:
-				g.setColor(colors[colorPos++]);
-				colorPos %= colors.length;
-				g.fillRect(bounds.width / 2 - radius, bounds.height / 2
-						- radius, 2 * radius, radius);
-				g.setColor(colors[colorPos++]);
-				colorPos %= colors.length;
-				g.fillRect(bounds.width / 2 - radius, bounds.height / 2,
-						radius, radius);
-				g.setColor(colors[colorPos++]);
-				colorPos %= colors.length;
-				g.fillRect(bounds.width / 2, bounds.height / 2, radius, radius);
-				break;
-			case 4:
-				g.setColor(colors[colorPos++]);
-				colorPos %= colors.length;
-				g.fillRect(bounds.width / 2 - radius, bounds.height / 2
-						- radius, radius, radius);
-				g.setColor(colors[colorPos++]);
-				colorPos %= colors.length;
-				g.fillRect(bounds.width / 2, bounds.height / 2 - radius,
-						radius, radius);
-				g.setColor(colors[colorPos++]);
-				colorPos %= colors.length;
-				g.fillRect(bounds.width / 2 - radius, bounds.height / 2,
-						radius, radius);
-				g.setColor(colors[colorPos++]);
-				colorPos %= colors.length;
-				g.fillRect(bounds.width / 2, bounds.height / 2, radius, radius);
-				break;
-			}
-			for (int j = 0; j < secCount; ++j) {
-				for (int i = 0; i < primerParamCount; ++i) {
-					g.setColor(colors[colorPos++]);
-					colorPos %= colors.length;
-					g.fillArc(bounds.width / 2 - radiuses[j], bounds.height / 2
-							- radiuses[j], 2 * radiuses[j], 2 * radiuses[j],
-							model.getMain().getStartAngle() + i * 360
-									/ primerParamCount, 360 / primerParamCount);
-				}
-			}
-			if (model.getMain().isDrawBorder()) {
-				g.setColor(borderColor);
-				drawBorderOval(g, bounds, radius);
-			}
-			if (isSelected) {
-				g.setColor(hilitedAll ? ColorAttr.SELECTED_HILITE
-						: ColorAttr.SELECTED);
-				drawBorderOval(g, bounds, radius);
-				drawBorderOval(g, bounds, radius + 1);
-				drawBorderOval(g, bounds, radius - 1);
-			}
-			if (hilitedAll & !isSelected) {
-				g.setColor(ColorAttr.HILITE);
-				drawBorderOval(g, bounds, radius);
-				// drawBorderOval(g, bounds, radius - 1);
-				// drawBorderOval(g, bounds, radius + 1);
-				// drawBorderOval(g, bounds, radius + 2);
-			}
-			if (model.getMain().isDrawAdditionalBorders()) {
-				g.setColor(borderColor);
-				g.drawRect(bounds.width / 2 - (radius + 1), bounds.height / 2
-						- (radius + 1), 2 * radius + 1, 2 * radius + 1);
-			}
-			if (model.getMain().isDrawPrimaryBorders()) {
-				g.setColor(borderColor);
-				if (primerParamCount > 1) {
-					for (int i = primerParamCount; i-- > 0;) {
-						final double angle = (model.getMain().getStartAngle() + i
-								* 360 / primerParamCount)
-								/ 180.0 * Math.PI;
-						g.drawLine(bounds.width / 2, bounds.height / 2,
-								bounds.width / 2
-										+ (int) (Math.cos(angle) * radius),
-								bounds.height / 2
-										- (int) (Math.sin(angle) * radius));
-					}
-				}
-			}
-			if (model.getMain().isDrawSecondaryBorders()) {
-				g.setColor(borderColor);
-				if (secCount > 0) {
-					for (int i = radiuses.length; i-- > 1;) {
-						final int r = radiuses[i];
-						g.drawOval(bounds.width / 2 - r, bounds.height / 2 - r,
-								2 * r, 2 * r);
-					}
-				}
-			}
-			break;
-		}
-		case Rectangle: {
-			for (int i = secCount; i-- > 0;) {
-				for (int j = primerParamCount; j-- > 0;) {
-					g.setColor(colors[(i * primerParamCount + j)
-							% colors.length /* colorPos++ */]);
-					// colorPos %= colors.length;
-					g.fillRect(bounds.width / 2 - radius + j * 2 * radius
-							/ primerParamCount, bounds.height / 2 - radius + i
-							* 2 * radius / secCount, (int) (radius * 2.0
-							/ primerParamCount + .5), (int) (radius * 2.0
-							/ secCount + .5));
-				}
-			}
-			if (model.getMain().isDrawBorder()) {
-				g.setColor(borderColor);
-				drawBorderRect(g, bounds, radius);
-			}
-			if (isSelected) {
-				g.setColor(hilitedAll ? ColorAttr.SELECTED_HILITE
-						: ColorAttr.SELECTED);
-				drawBorderRect(g, bounds, radius);
-				drawBorderRect(g, bounds, radius + 1);
-			}
-			if (hilitedAll & !isSelected) {
-				g.setColor(ColorAttr.HILITE);
-				drawBorderRect(g, bounds, radius);
-			}
-			if (model.getMain().isDrawPrimaryBorders() && primerParamCount > 1) {
-				g.setColor(borderColor);
-				for (int i = primerParamCount - 1; i-- > 0;) {
-					g.drawLine(bounds.width / 2 - radius + (i + 1) * 2 * radius
-							/ primerParamCount, bounds.height / 2 - radius,
-							bounds.width / 2 - radius + (i + 1) * 2 * radius
-									/ primerParamCount, bounds.height / 2
-									+ radius);
-				}
-			}
-			if (model.getMain().isDrawSecondaryBorders() && secCount > 1) {
-				g.setColor(borderColor);
-				for (int j = secCount - 1; j-- > 0;) {
-					g.drawLine(bounds.width / 2 - radius, bounds.height / 2
-							- radius + (j + 1) * 2 * radius / secCount,
-							bounds.width / 2 + radius, bounds.height / 2
-									- radius + (j + 1) * 2 * radius / secCount);
-				}
-			}
-			break;
-		}
-		default:
-			throw new UnsupportedOperationException("Not supported yet.");
-		}
-	}
-
-	private void drawBorderRect(final Graphics g, final Rectangle bounds,
-			final int radius) {
-		g.drawRect(bounds.width / 2 - radius, bounds.height / 2 - radius,
-				radius * 2, radius * 2);
-	}
-
-	private void drawBorderOval(final Graphics g, final Rectangle bounds,
-			final int radius) {
-		g.drawOval(bounds.width / 2 - radius - 1, bounds.height / 2 - radius
-				- 1, 2 * (radius + 1), 2 * (radius + 1));
-		g.drawOval(bounds.width / 2 - radius, bounds.height / 2 - radius,
-				2 * radius, 2 * radius);
-		// g.drawOval(bounds.width / 2 - radius + 1, bounds.height / 2 - radius
-		// + 1, 2 * (radius - 1), 2 * (radius - 1));
+		painter.paint(g, 0, 0, bounds.width, bounds.height, colors,
+				hilitedAll, isSelected);
 	}
 
 	/**
@@ -290,34 +82,37 @@ public class WellViewPanel extends JPanel implements Hiliteable,
 	}
 
 	/**
-	 * Sets the current colours to show. This call will repaint the well. Any
-	 * change to the {@code colors} array will take affect on next
-	 * {@link #repaint()}.
+	 * Sets the current colours to show. This call will repaint the well,
+	 * unless a different array with the same colours was set. Any change to
+	 * the {@code colors} array will take affect on next {@link #repaint()}.
 	 * 
 	 * @param colors
-	 *            Some colours. It should be as many as primary times secondary
-	 *            parameter values are.
+	 *            Some packed ARGB colours. It should be as many as primary
+	 *            times secondary parameter values are.
 	 */
-	public void setColors(final Color... colors) {
+	public void setColors(final int... colors) {
+		final int[] old = this.colors;
 		setColorsButNotRepaint(colors);
-		repaint();
+		if (this.colors == old || !Arrays.equals(this.colors, old)) {
+			repaint();
+		}
 	}
 
 	/**
 	 * Sets to colours to draw, but does not repaint the panel.
 	 * 
 	 * @param colors
-	 *            Some colours. It should be as many as primary times secondary
-	 *            parameter values are.
+	 *            Some packed ARGB colours. It should be as many as primary
+	 *            times secondary parameter values are.
 	 */
-	protected void setColorsButNotRepaint(final Color... colors) {
-		this.colors = colors == null ? sampleColors : colors;
+	protected void setColorsButNotRepaint(final int... colors) {
+		this.colors = colors == null ? WellPainter.SAMPLE_COLORS : colors;
 	}
 
 	/**
-	 * @return The current set of colours to show.
+	 * @return The current set of (packed ARGB) colours to show.
 	 */
-	protected Color[] getColors() {
+	protected int[] getColors() {
 		return colors == null ? null : colors.clone();
 	}
 
@@ -393,9 +188,19 @@ public class WellViewPanel extends JPanel implements Hiliteable,
 	 */
 	public void setModel(final ViewModel model) {
 		this.model = model;
+		painter = new WellPainter(model);
 		repaint();
 	}
 
+	/**
+	 * Creates the painter of the well again, it should be called when the
+	 * slider selections of the {@link ViewModel} change (the number of the
+	 * shown primary and secondary values might be different).
+	 */
+	void resetPainter() {
+		painter = new WellPainter(model);
+	}
+
 	@Override
 	public boolean isHilited() {
 		return hilitedAll;
@@ -403,8 +208,10 @@ public class WellViewPanel extends JPanel implements Hiliteable,
 
 	@Override
 	public void setHilited(final boolean hilit) {
-		hilitedAll = hilit;
-		repaint();
+		if (hilitedAll != hilit) {
+			hilitedAll = hilit;
+			repaint();
+		}
 	}
 
 	@Override
@@ -426,7 +233,7 @@ public class WellViewPanel extends JPanel implements Hiliteable,
 
 	/**
 	 * If {@link #isSelectable} selects or deselects the well, and
-	 * {@link #repaint()}s it.
+	 * {@link #repaint()}s it if changed.
 	 * 
 	 * @param select
 	 *            If the well is {@link #isSelectable} and this value is {@code
@@ -435,7 +242,7 @@ public class WellViewPanel extends JPanel implements Hiliteable,
 	 *            be deselected.
 	 */
 	public void setSelected(final boolean select) {
-		if (isSelectable) {
+		if (isSelectable && isSelected != select) {
 			isSelected = select;
 			repaint();
 		}
@@ -17,7 +17,12 @@
  * <ul>
  * 	<li>{@link HeatmapNodeModel} is the data model for the values of the wells.</li>
  * 	<li>{@link ViewModel} is responsible for the visual representation of the {@link Heatmap}s.</li>
- * 	<li>{@link Heatmap} is a class holding some {@link WellViewPanel wells}.</li>
+ * 	<li>{@link Heatmap} is a class painting the wells with a {@link WellPainter}
+ * 	(or holding some {@link WellViewPanel wells}).</li>
+ * 	<li>{@link HeatmapValues} computes the colours of a plate from a snapshot of the slider selections,
+ * 	so the {@link Heatmap}s and the off-screen {@link HeatmapImage}s of the export share it.</li>
+ * 	<li>{@link HeatmapImagesNodeModel} renders the {@link HeatmapImage}s of the default arrangement to a table,
+ * 	without a view.</li>
  * 	<li></li>
  * </ul>
  */
@@ -17,11 +17,13 @@ import java.util.TreeMap;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTable;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.container.AbstractCellFactory;
 import org.knime.core.data.container.CellFactory;
@@ -43,6 +45,7 @@ import org.knime.core.node.defaultnodesettings.SettingsModelStringArray;
 
 import com.mind_era.knime.common.Format;
 import com.mind_era.knime.common.util.ModelBuilder;
+import com.mind_era.knime.common.util.NormKeyDictionary;
 import com.mind_era.knime.common.util.ModelBuilder.SpecAnalyser;
 import com.mind_era.knime.common.view.StatTypes;
 
@@ -173,6 +176,13 @@ public class RankNodeModel extends NodeModel {
 	/** experiment, parameter, norm, plate, replicate, stat, rank */
 	private final Map<String, Map<String, Map<String, Map<Integer, Map<Integer, Map<StatTypes, double[]>>>>>> ranks = new TreeMap<String, Map<String, Map<String, Map<Integer, Map<Integer, Map<StatTypes, double[]>>>>>>();
 
+	/**
+	 * The model of the previous execution, it is updated by the next
+	 * execution if only new rows were appended to the input.
+	 */
+	private @Nullable
+	ModelBuilder previousModelBuilder;
+
 	private static final Integer noReplicates = Integer.valueOf(-1);
 	private static final Integer noPlates = Integer.valueOf(-1);
 
@@ -189,7 +199,8 @@ public class RankNodeModel extends NodeModel {
 	@Override
 	protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
 			final ExecutionContext exec) throws Exception {
-		final ModelBuilder modelBuilder = new ModelBuilder(inData[0]);
+		final ModelBuilder modelBuilder = buildModel(inData[0], exec
+				.createSubProgress(.5));
 		final SpecAnalyser specAnalyser = modelBuilder.getSpecAnalyser();
 		final Format format = specAnalyser.getPredictedFormat();
 		logger.debug("Ranking the following parameters, and statistics: "
@@ -703,19 +714,21 @@ public class RankNodeModel extends NodeModel {
 		}
 		final DataColumnSpec[] newColSpec = createNewColSpec();
 		final CellFactory cellFactory = new AbstractCellFactory(newColSpec) {
+			private final NormKeyDictionary normKeys = new NormKeyDictionary(
+					normMethodIdx, logTransformIdx, normKindIdx,
+					varianceAdjustmentIdx, scoreMethodIdx, sumMethodIdx);
+
 			@Override
 			public DataCell[] getCells(final DataRow row) {
 				final DataCell[] ret = new DataCell[newColSpec.length];
+				final String normKey = normKeys.getKey(normKeys.code(row));
 				int i = 0;
 				for (final StatTypes stat : getStatTypes()) {
 					for (final String parameter : parameters) {
 						ret[i++] = new DoubleCell(getRank(format, row,
-								experimentIdx, parameter, normMethodIdx,
-								logTransformIdx, normKindIdx,
-								varianceAdjustmentIdx, scoreMethodIdx,
-								sumMethodIdx, plateIdx, replicateIdx, wellIdx,
-								stat, grouping, plateShift, plateCount,
-								repShift));
+								experimentIdx, parameter, normKey, plateIdx,
+								replicateIdx, wellIdx, stat, grouping,
+								plateShift, plateCount, repShift));
 					}
 				}
 				return ret;
@@ -891,10 +904,8 @@ public class RankNodeModel extends NodeModel {
 
 	private double getRank(final Format format, final DataRow origRow,
 			final int experimentIdx, final String parameter,
-			final int normMethodIdx, final int logTransformIdx,
-			final int normKindIdx, final int varianceAdjustmentIdx,
-			final int scoreMethodIdx, final int sumMethodIdx,
-			final int plateIdx, final int replicateIdx, final int wellIdx,
+			final String normKey, final int plateIdx, final int replicateIdx,
+			final int wellIdx,
 			final StatTypes stat, final RankingGroups grouping,
 			final int plateShift, final int plateCount, final int replicateShift) {
 		final int plate = ((IntCell) origRow.getCell(plateIdx)).getIntValue();
@@ -902,9 +913,7 @@ public class RankNodeModel extends NodeModel {
 				format,
 				((StringCell) origRow.getCell(experimentIdx)).getStringValue(),
 				parameter,
-				ModelBuilder.getNormKey(origRow, normMethodIdx,
-						logTransformIdx, normKindIdx, varianceAdjustmentIdx,
-						scoreMethodIdx, sumMethodIdx),
+				normKey,
 				plate,
 				replicateIdx >= 0 && stat.isUseReplicates() ? ((IntCell) origRow
 						.getCell(replicateIdx)).getIntValue()
@@ -997,6 +1006,49 @@ public class RankNodeModel extends NodeModel {
 		return ds[wellPos];
 	}
 
+	/**
+	 * Builds the model of {@code table}, or if it is the table of the
+	 * {@link #previousModelBuilder previous model} with new rows appended,
+	 * {@link ModelBuilder#updateTo(DataTable, ExecutionMonitor) updates} that
+	 * model (only the new rows are parsed).
+	 * 
+	 * @param table
+	 *            The input table.
+	 * @param exec
+	 *            The {@link ExecutionMonitor} to report progress and check
+	 *            cancellation.
+	 * @return The model of {@code table}.
+	 * @throws CanceledExecutionException
+	 *             If the execution was cancelled.
+	 */
+	private ModelBuilder buildModel(final DataTable table,
+			final ExecutionMonitor exec) throws CanceledExecutionException {
+		final ModelBuilder previous = previousModelBuilder;
+		if (previous != null) {
+			if (previous.updateTo(table, exec)) {
+				return previous;
+			}
+			logger.info("The input is not the previous one with new rows "
+					+ "appended, the model is rebuilt.");
+			previousModelBuilder = null;
+		}
+		final ModelBuilder ret = new ModelBuilder(table, exec, Runtime
+				.getRuntime().availableProcessors());
+		previousModelBuilder = ret;
+		return ret;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Releases the model of the previous execution.
+	 */
+	@Override
+	protected void onDispose() {
+		previousModelBuilder = null;
+		super.onDispose();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -62,6 +62,7 @@ import org.knime.core.node.port.PortObjectSpec;
 import org.knime.core.node.port.PortType;
 import org.knime.core.node.port.PortUtil;
 
+import com.mind_era.knime.common.util.DoubleArrayList;
 import com.mind_era.knime.common.util.SimpleModelBuilder;
 import com.mind_era.knime.common.util.swing.colour.ColourSelector.RangeType;
 import com.mind_era.knime.common.view.StatTypes;
@@ -202,7 +203,7 @@ public class DendrogramNodeModel extends NodeModel implements DataProvider {
 	 *            A table with the original values.
 	 */
 	private void fillStats(final DataTable table) {
-		final Map<String, Map<StatTypes, List<Double>>> vals = new HashMap<String, Map<StatTypes, List<Double>>>();
+		final Map<String, Map<StatTypes, DoubleArrayList>> vals = new HashMap<String, Map<StatTypes, DoubleArrayList>>();
 		ranges.clear();
 		final List<String> columns = getColumns();
 		final int[] colIndices = new int[columns.size()];
@@ -213,9 +214,9 @@ public class DendrogramNodeModel extends NodeModel implements DataProvider {
 				colNames[i] = colName;
 				colIndices[i++] = table.getDataTableSpec().findColumnIndex(
 						colName);
-				final EnumMap<StatTypes, List<Double>> valMap = new EnumMap<StatTypes, List<Double>>(
+				final EnumMap<StatTypes, DoubleArrayList> valMap = new EnumMap<StatTypes, DoubleArrayList>(
 						StatTypes.class);
-				valMap.put(StatTypes.raw, new ArrayList<Double>());
+				valMap.put(StatTypes.raw, new DoubleArrayList());
 				vals.put(colName, valMap);
 				final EnumMap<StatTypes, Map<RangeType, Double>> retMaps = new EnumMap<StatTypes, Map<RangeType, Double>>(
 						StatTypes.class);
@@ -229,8 +230,8 @@ public class DendrogramNodeModel extends NodeModel implements DataProvider {
 				final DataCell cell = row.getCell(colIndices[i]);
 				if (cell instanceof DoubleValue) {
 					final DoubleValue val = (DoubleValue) cell;
-					vals.get(colNames[i]).get(StatTypes.raw)
-							.add(Double.valueOf(val.getDoubleValue()));
+					vals.get(colNames[i]).get(StatTypes.raw).add(
+							val.getDoubleValue());
 				}
 			}
 		}
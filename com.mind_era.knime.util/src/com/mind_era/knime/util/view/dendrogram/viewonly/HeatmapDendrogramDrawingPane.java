@@ -28,13 +28,22 @@ import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.Stroke;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -57,6 +66,7 @@ import org.knime.core.data.property.ColorAttr;
 
 import com.mind_era.knime.common.util.HiliteType;
 import com.mind_era.knime.common.util.Misc;
+import com.mind_era.knime.common.util.VisualUtils;
 import com.mind_era.knime.common.util.swing.colour.ColourComputer;
 import com.mind_era.knime.common.util.swing.colour.ColourSelector.ColourModel;
 import com.mind_era.knime.common.view.StatTypes;
@@ -91,6 +101,55 @@ public class HeatmapDendrogramDrawingPane extends DendrogramDrawingPane {
 	private final Set<String> lastClusterKeys = new HashSet<String>();
 
 	private HiliteType hilite = HiliteType.Normal;
+	/** The nodes of {@link #rootNode} in in-order. */
+	private List<BinaryTreeNode<DendrogramPoint>> nodes = Collections
+			.emptyList();
+	/**
+	 * The index of the parent of each of the {@link #nodes} ({@code -1} for
+	 * the root).
+	 */
+	private int[] parentIndices = new int[0];
+	/**
+	 * The index of each leaf (in the order of {@link #keys}) in
+	 * {@link #nodes}.
+	 */
+	private int[] leafNodeIndices = new int[0];
+	/** The vertical position of each leaf (in the order of {@link #keys}). */
+	private int[] leafYs = new int[0];
+	/**
+	 * The colours of the visible columns (horizontally) for the leaves
+	 * (vertically, in the order of {@link #keys}), {@code null} if they have
+	 * to be recomputed.
+	 */
+	private @Nullable BufferedImage leafImage;
+	/** The row indices of the leaves (in the order of {@link #keys}). */
+	private @Nullable int[] leafRowIndices;
+	/**
+	 * The values of the visible columns for the leaves (by columns), computed
+	 * with {@link #leafImage}.
+	 */
+	private @Nullable double[][] leafValues;
+	/**
+	 * The leaves with missing values (by columns), computed with
+	 * {@link #leafImage}.
+	 */
+	private @Nullable BitSet[] leafMissing;
+	/**
+	 * The formatted {@link #leafValues} (by leaves, then columns), {@code null}
+	 * elements if not formatted yet.
+	 */
+	private @Nullable String[] leafLabels;
+	/**
+	 * The row colours of the leaves (in the order of {@link #keys}),
+	 * {@code null} elements for the default colour.
+	 */
+	private @Nullable Color[] leafRowColours;
+	private final ActionListener colourModelListener = new ActionListener() {
+		@Override
+		public void actionPerformed(final ActionEvent e) {
+			leafColoursChanged();
+		}
+	};
 
 	// private boolean directionUpToDown;
 
@@ -105,6 +164,7 @@ public class HeatmapDendrogramDrawingPane extends DendrogramDrawingPane {
 	 */
 	public void setNodeModel(final DendrogramNodeModel nodeModel) {
 		this.nodeModel = nodeModel;
+		leafColoursChanged();
 		maxStringLength = 0;
 		if (this.nodeModel != null && this.nodeModel.getDataArray(1) != null) {
 			computeIndices();
@@ -128,6 +188,7 @@ public class HeatmapDendrogramDrawingPane extends DendrogramDrawingPane {
 
 	private void computeIndices() {
 		final DataTable dataArray = nodeModel.getOrigData();
+		leafColoursChanged();
 		indices = new int[visibleColumns.size()];
 		selectedIndices = new int[selectedColumns.size()];
 		int i = 0;
@@ -153,19 +214,297 @@ public class HeatmapDendrogramDrawingPane extends DendrogramDrawingPane {
 		rootNode = root;
 		super.setRootNode(root);
 		if (rootNode != null) {
+			final String[] oldKeys = keys;
 			keys = new String[nodeModel.getOrigData().size()];
+			nodes = root.getNodes(Traversal.IN);
+			final Map<BinaryTreeNode<DendrogramPoint>, Integer> nodeIndices = new IdentityHashMap<BinaryTreeNode<DendrogramPoint>, Integer>();
+			for (int n = 0; n < nodes.size(); ++n) {
+				nodeIndices.put(nodes.get(n), Integer.valueOf(n));
+			}
+			parentIndices = new int[nodes.size()];
+			leafNodeIndices = new int[keys.length];
+			leafYs = new int[keys.length];
 			int i = 0;
-			for (final BinaryTreeNode<DendrogramPoint> node : root
-					.getNodes(Traversal.IN)) {
+			for (int n = 0; n < nodes.size(); ++n) {
+				final BinaryTreeNode<DendrogramPoint> node = nodes.get(n);
+				parentIndices[n] = node.getParent() == null ? -1 : nodeIndices
+						.get(node.getParent()).intValue();
 				if (node.isLeaf()) {
+					leafNodeIndices[i] = n;
+					leafYs[i] = node.getContent().getPoint().y;
 					keys[i++] = node.getContent().getRows().iterator().next()
 							.getString();
 				}
 			}
+			if (i < keys.length) {
+				leafNodeIndices = Arrays.copyOf(leafNodeIndices, i);
+				leafYs = Arrays.copyOf(leafYs, i);
+			}
+			if (!Arrays.equals(oldKeys, keys)) {
+				leafColoursChanged();
+			}
+		} else {
+			nodes = Collections.emptyList();
+			parentIndices = new int[0];
+			leafNodeIndices = new int[0];
+			leafYs = new int[0];
 		}
 		repaint();
 	}
 
+	/**
+	 * Computes the colours of the visible columns for each leaf (in the
+	 * order of the leaves) to {@link #leafImage}, unless they are already
+	 * computed.
+	 */
+	private void computeLeafColours() {
+		if (leafImage != null || keys == null || nodeModel == null
+				|| indices == null || colourModel == null) {
+			return;
+		}
+		final DataArray data = nodeModel.getOrigData();
+		final int leafCount = keys.length;
+		final int cols = indices.length;
+		leafRowIndices = new int[leafCount];
+		leafRowColours = new Color[leafCount];
+		for (int leaf = leafCount; leaf-- > 0;) {
+			leafRowIndices[leaf] = nodeModel.getMap().get(keys[leaf])
+					.intValue();
+			final ColorAttr colorAttr = data.getDataTableSpec().getRowColor(
+					data.getRow(leafRowIndices[leaf]));
+			leafRowColours[leaf] = colorAttr == ColorAttr.DEFAULT ? null
+					: colorAttr.getColor();
+		}
+		if (leafCount == 0 || cols == 0) {
+			return;
+		}
+		final double[][] values = new double[cols][leafCount];
+		final BitSet[] missing = new BitSet[cols];
+		for (int col = cols; col-- > 0;) {
+			missing[col] = new BitSet(leafCount);
+		}
+		for (int leaf = 0; leaf < leafCount; ++leaf) {
+			final DataRow row = data.getRow(leafRowIndices[leaf]);
+			for (int col = cols; col-- > 0;) {
+				final DataCell cell = row.getCell(indices[col]);
+				if (cell instanceof DoubleValue) {
+					values[col][leaf] = ((DoubleValue) cell).getDoubleValue();
+				} else {
+					missing[col].set(leaf);
+				}
+			}
+		}
+		final ColourComputer[] computers = new ColourComputer[cols];
+		for (int col = cols; col-- > 0;) {
+			computers[col] = colourModel.getModel(visibleColumns.get(col),
+					StatTypes.raw);
+		}
+		leafImage = leafImage(leafCount, values, missing, computers);
+		leafValues = values;
+		leafMissing = missing;
+		leafLabels = new String[leafCount * cols];
+	}
+
+	/**
+	 * Computes the colours of the leaves to an image.
+	 *
+	 * @param leafCount
+	 *            The number of leaves.
+	 * @param values
+	 *            The values of the leaves by columns.
+	 * @param missing
+	 *            The leaves with missing values by columns.
+	 * @param computers
+	 *            The {@link ColourComputer}s of the columns, the columns
+	 *            without {@link ColourComputer} are left transparent.
+	 * @return The image with a pixel for each column (horizontally) and leaf
+	 *         (vertically), the missing values are
+	 *         {@link VisualUtils#TRANSPARENT}.
+	 */
+	public static BufferedImage leafImage(final int leafCount,
+			final double[][] values, final BitSet[] missing,
+			final ColourComputer[] computers) {
+		final int cols = computers.length;
+		final BufferedImage image = new BufferedImage(cols, leafCount,
+				BufferedImage.TYPE_INT_ARGB);
+		final int[] raster = ((DataBufferInt) image.getRaster()
+				.getDataBuffer()).getData();
+		final int[] argb = new int[leafCount];
+		for (int col = cols; col-- > 0;) {
+			final ColourComputer model = computers[col];
+			if (model == null) {
+				continue;
+			}
+			model.computeAll(values[col], argb);
+			for (int leaf = leafCount; leaf-- > 0;) {
+				raster[leaf * cols + col] = missing[col]
+						.get(leaf) ? VisualUtils.TRANSPARENT : argb[leaf];
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Drops the computed colours of the leaves, they will be recomputed on
+	 * the next paint.
+	 */
+	private void leafColoursChanged() {
+		leafImage = null;
+		leafRowIndices = null;
+		leafRowColours = null;
+		leafValues = null;
+		leafMissing = null;
+		leafLabels = null;
+	}
+
+	/**
+	 * Finds the leaves painted in the {@code from} - {@code to} vertical range.
+	 * The leaves are ordered by their positions (ascending or descending), so
+	 * a binary search is used. The neighbouring leaves are included too, so
+	 * every node with a line crossing the range is an ancestor of a returned
+	 * leaf (or between them in in-order).
+	 *
+	 * @param leafYs
+	 *            The vertical positions of the leaves, either ascending or
+	 *            descending.
+	 * @param from
+	 *            The first visible vertical position.
+	 * @param to
+	 *            The vertical position after the last visible one.
+	 * @return The first and the last (inclusive) index of the leaves, the
+	 *         first is larger than the last if there are no leaves.
+	 */
+	public static int[] visibleLeaves(final int[] leafYs, final int from,
+			final int to) {
+		final int count = leafYs.length;
+		if (count == 0) {
+			return new int[] { 0, -1 };
+		}
+		final boolean ascending = leafYs[0] <= leafYs[count - 1];
+		final int first = ascending ? firstAtLeast(leafYs, from)
+				: firstBelow(leafYs, to);
+		final int last = (ascending ? firstAtLeast(leafYs, to) : firstBelow(
+				leafYs, from)) - 1;
+		return new int[] { Math.max(0, first - 1),
+				Math.min(count - 1, last + 1) };
+	}
+
+	/**
+	 * @param ascending
+	 *            Ascending values.
+	 * @param value
+	 *            A value.
+	 * @return The index of the first element not less than {@code value}
+	 *         (or the length of {@code ascending}).
+	 */
+	private static int firstAtLeast(final int[] ascending, final int value) {
+		int low = 0, high = ascending.length;
+		while (low < high) {
+			final int mid = low + high >>> 1;
+			if (ascending[mid] < value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @param descending
+	 *            Descending values.
+	 * @param value
+	 *            A value.
+	 * @return The index of the first element less than {@code value} (or the
+	 *         length of {@code descending}).
+	 */
+	private static int firstBelow(final int[] descending, final int value) {
+		int low = 0, high = descending.length;
+		while (low < high) {
+			final int mid = low + high >>> 1;
+			if (descending[mid] >= value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Collects the nodes to paint for the visible {@code leaves}: the nodes
+	 * between them (in in-order) and their ancestors.
+	 *
+	 * @param parentIndices
+	 *            The index of the parent of each node ({@code -1} for the
+	 *            root), the nodes are in in-order.
+	 * @param leafNodeIndices
+	 *            The index of the node of each leaf.
+	 * @param leaves
+	 *            The first and the last leaf, see
+	 *            {@link #visibleLeaves(int[], int, int)}.
+	 * @return The indices of the nodes to paint (in in-order).
+	 */
+	public static int[] visibleNodes(final int[] parentIndices,
+			final int[] leafNodeIndices, final int[] leaves) {
+		if (leaves[0] > leaves[1]) {
+			return new int[0];
+		}
+		final int start = leafNodeIndices[leaves[0]];
+		final int end = leafNodeIndices[leaves[1]];
+		final List<Integer> before = new ArrayList<Integer>();
+		for (int n = parentIndices[start]; n >= 0; n = parentIndices[n]) {
+			if (n < start) {
+				before.add(Integer.valueOf(n));
+			}
+		}
+		final List<Integer> after = new ArrayList<Integer>();
+		for (int n = parentIndices[end]; n >= 0; n = parentIndices[n]) {
+			if (n > end) {
+				after.add(Integer.valueOf(n));
+			}
+		}
+		Collections.sort(before);
+		Collections.sort(after);
+		final int[] ret = new int[before.size() + end - start + 1
+				+ after.size()];
+		int i = 0;
+		for (final Integer n : before) {
+			ret[i++] = n.intValue();
+		}
+		for (int n = start; n <= end; ++n) {
+			ret[i++] = n;
+		}
+		for (final Integer n : after) {
+			ret[i++] = n.intValue();
+		}
+		return ret;
+	}
+
+	/**
+	 * @param clip
+	 *            The clip bounds.
+	 * @param x1
+	 *            The first horizontal coordinate.
+	 * @param y1
+	 *            The first vertical coordinate.
+	 * @param x2
+	 *            The second horizontal coordinate.
+	 * @param y2
+	 *            The second vertical coordinate.
+	 * @param margin
+	 *            The extent of the painting around the coordinates.
+	 * @return Whether the rectangle spanned by the coordinates (extended by
+	 *         {@code margin}) intersects {@code clip}.
+	 */
+	private static boolean visible(final Rectangle clip, final int x1,
+			final int y1, final int x2, final int y2, final int margin) {
+		return Math.max(x1, x2) + margin >= clip.x
+				&& Math.min(x1, x2) - margin < clip.x + clip.width
+				&& Math.max(y1, y2) + margin >= clip.y
+				&& Math.min(y1, y2) - margin < clip.y + clip.height;
+	}
+
 	@Override
 	public void paintContent(final Graphics g) {
 		if (rootNode == null) {
@@ -173,98 +512,38 @@ public class HeatmapDendrogramDrawingPane extends DendrogramDrawingPane {
 		}
 		final Stroke backupStroke = ((Graphics2D) g).getStroke();
 		final Color backupColor = g.getColor();
-		final List<BinaryTreeNode<DendrogramPoint>> nodes = rootNode
-				.getNodes(BinaryTree.Traversal.IN);
+		final Rectangle clip = g.getClipBounds() == null ? new Rectangle(0, 0,
+				getWidth(), getHeight()) : g.getClipBounds();
+		computeLeafColours();
+		final BasicStroke normalStroke = new BasicStroke(lineThickness);
+		final BasicStroke boldStroke = new BasicStroke(lineThickness
+				* HeatmapDendrogramDrawingPane.BOLD);
+		final int strokeMargin = (int) Math.ceil(lineThickness
+				* HeatmapDendrogramDrawingPane.BOLD) + 1;
 
 		final FontMetrics fm = g.getFontMetrics();
 		final int fontHeight = fm.getHeight();
-		for (final BinaryTreeNode<DendrogramPoint> node : nodes) {
+		final int cols = visibleColumns.size();
+		final int leafMargin = Math.max(cellHeight / 2 + 1, fontHeight)
+				+ strokeMargin;
+		final int[] leaves = visibleLeaves(leafYs, clip.y - leafMargin, clip.y
+				+ clip.height + leafMargin);
+		// Only the visible leaves are counted.
+		int leaf = leaves[0] - 1;
+		for (final int index : visibleNodes(parentIndices, leafNodeIndices,
+				leaves)) {
+			final BinaryTreeNode<DendrogramPoint> node = nodes.get(index);
 			final DendrogramPoint dendroPoint = node.getContent();
+			if (node.isLeaf()) {
+				++leaf;
+			}
 			if (dendroPoint.getRows().size() == 1 && nodeModel != null) {
 				final Point point = dendroPoint.getPoint();
 				leafX = point.x;
-				final String key = dendroPoint.getRows().iterator().next()
-						.getString();
-				final int index = nodeModel.getMap().get(key).intValue();
-				final DataRow row = nodeModel.getOrigData().getRow(index);
-				final Color color = g.getColor();
-				for (int i = 0; i < indices.length; ++i) {
-					final DataCell cell = row.getCell(indices[i]);
-					if (cell instanceof DoubleValue) {
-						final double val = ((DoubleValue) cell)
-								.getDoubleValue();
-						final ColourComputer model = colourModel.getModel(
-								visibleColumns.get(i), StatTypes.raw);
-						final Color col = model.compute(val);
-						g.setColor(col);
-						g.fillRect(
-								point.x
-										+ (directionLeftToRight ? (i - visibleColumns
-												.size()) * cellWidth
-												: i /*- 1*/
-														* cellWidth), point.y
-										- cellHeight / 2, cellWidth,
-								cellHeight + 1);
-						if (showValues) {
-							g.setColor(Color.RGBtoHSB(col.getRed(),
-									col.getGreen(), col.getBlue(), null)[2] > .6f ? Color.BLACK
-									: Color.WHITE);
-							final String str = Misc.round(val);
-							g.drawString(
-									str,
-									point.x
-											+ (directionLeftToRight ? (i - visibleColumns
-													.size()) * cellWidth
-													: i * cellWidth)
-
-											+ (cellWidth - fm.stringWidth(str))
-											/ 2, point.y + fontHeight / 3);
-						}
-					}
-				}
-
-				final ColorAttr colorAttr = nodeModel.getOrigData()
-						.getDataTableSpec().getRowColor(row);
-				if (colorAttr != ColorAttr.DEFAULT) {
-					final Color rowColor = colorAttr.getColor();
-					g.setColor(rowColor);
-					g.fillRect(
-							directionLeftToRight ? point.x
-									- visibleColumns.size() * cellWidth
-									- maxStringLength : leafX
-									+ visibleColumns.size() * cellWidth,
-							point.y - cellHeight / 2, maxStringLength,
-							cellHeight + 1);
-					g.setColor(Color.RGBtoHSB(rowColor.getGreen(),
-							rowColor.getGreen(), rowColor.getBlue(), null)[2] < .4f ? Color.WHITE
-							: Color.BLACK);
-				} else {
-					g.setColor(Color.RGBtoHSB(getBackground().getGreen(),
-							getBackground().getGreen(), getBackground()
-									.getBlue(), null)[2] < .4f ? Color.WHITE
-							: Color.BLACK);
+				if (leafRowIndices != null && point.y + leafMargin >= clip.y
+						&& point.y - leafMargin < clip.y + clip.height) {
+					paintLeaf(g, leaf, point, cols, fm);
 				}
-				g.drawString(
-						row.getKey().getString(),
-						directionLeftToRight ? point.x - visibleColumns.size()
-								* cellWidth
-								- fm.stringWidth(row.getKey().getString())
-								: point.x + visibleColumns.size() * cellWidth,
-						point.y + /*
-								 * cellHeight / 2 -
-								 */fontHeight / 3);
-				if (lastClusterKeys.contains(row.getKey().getString())) {
-					g.setColor(Color.RGBtoHSB(getBackground().getGreen(),
-							getBackground().getGreen(), getBackground()
-									.getBlue(), null)[2] < .4f ? Color.WHITE
-							: Color.BLACK);
-					final int y = point.y + cellHeight / 2;
-					((Graphics2D) g).setStroke(new BasicStroke(1.0f,
-							BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER,
-							10.0f, new float[] { 2.0f, 3.0f }, 0.0f));
-					g.drawLine(0, y, getWidth(), y);
-				}
-				g.setColor(color);
 			}
 			// set the correct stroke and color
 			switch (hilite) {
@@ -289,21 +568,21 @@ public class HeatmapDendrogramDrawingPane extends DendrogramDrawingPane {
 				break;
 			}
 			if (node.getContent().isSelected() || node.getContent().isHilite()) {
-				((Graphics2D) g).setStroke(new BasicStroke(
-						(lineThickness * HeatmapDendrogramDrawingPane.BOLD)));
+				((Graphics2D) g).setStroke(boldStroke);
 				if (node.isLeaf()) {
 					assert node.getContent().getRows().size() == 1 : node
 							.getContent().getRows().size();
 					final Point point = node.getContent().getPoint();
-					g.drawRect(
-							point.x
-									- (directionLeftToRight ? visibleColumns
-											.size() * cellWidth : 0), point.y
-									- cellHeight / 2 + 1, cellWidth
-									* visibleColumns.size(), cellHeight);
+					final int x = point.x
+							- (directionLeftToRight ? cols * cellWidth : 0);
+					final int y = point.y - cellHeight / 2 + 1;
+					if (visible(clip, x, y, x + cellWidth * cols, y
+							+ cellHeight, strokeMargin)) {
+						g.drawRect(x, y, cellWidth * cols, cellHeight);
+					}
 				}
 			} else {
-				((Graphics2D) g).setStroke(new BasicStroke(lineThickness));
+				((Graphics2D) g).setStroke(normalStroke);
 			}
 			if (node.getLeftChild() != null || node.getRightChild() != null) {
 				// draw vertical line
@@ -311,13 +590,23 @@ public class HeatmapDendrogramDrawingPane extends DendrogramDrawingPane {
 						.getPoint();
 				final Point rightPoint = node.getRightChild().getContent()
 						.getPoint();
-				g.drawLine(node.getContent().getPoint().x/* leftPoint.x */,
-						leftPoint.y /* node.getContent().getPoint().y */, node
-								.getContent().getPoint().x/* rightPoint.x */,
-						rightPoint.y /* node.getContent().getPoint().y */);
+				final int x = node.getContent().getPoint().x;
+				if (visible(clip, x, leftPoint.y, x, rightPoint.y,
+						strokeMargin)) {
+					g.drawLine(x/* leftPoint.x */,
+							leftPoint.y /* node.getContent().getPoint().y */,
+							x/* rightPoint.x */,
+							rightPoint.y /* node.getContent().getPoint().y */);
+				}
 			}
 			// draw horizontal line
 			if (node.getParent() != null) {
+				final Point point = node.getContent().getPoint();
+				final int parentX = node.getParent().getContent().getPoint().x;
+				if (!visible(clip, point.x, point.y, parentX, point.y,
+						strokeMargin)) {
+					continue;
+				}
 				switch (hilite) {
 				case Normal:
 					g.setColor(ColorAttr.DEFAULT.getColor(node.getContent()
@@ -343,16 +632,11 @@ public class HeatmapDendrogramDrawingPane extends DendrogramDrawingPane {
 				// if yes bold line, else normal line
 				if (node.getParent().getContent().isSelected()
 						|| node.getParent().getContent().isHilite()) {
-					((Graphics2D) g)
-							.setStroke(new BasicStroke(
-									(lineThickness * HeatmapDendrogramDrawingPane.BOLD)));
+					((Graphics2D) g).setStroke(boldStroke);
 				} else {
-					((Graphics2D) g).setStroke(new BasicStroke(lineThickness));
+					((Graphics2D) g).setStroke(normalStroke);
 				}
-				g.drawLine(node.getContent().getPoint().x, node.getContent()
-						.getPoint().y,
-						node.getParent().getContent().getPoint().x, node
-								.getContent().getPoint().y);
+				g.drawLine(point.x, point.y, parentX, point.y);
 			} else {
 				g.fillOval(dendroPoint.getPoint().x, dendroPoint.getPoint().y,
 						4, 4);
@@ -362,14 +646,97 @@ public class HeatmapDendrogramDrawingPane extends DendrogramDrawingPane {
 		g.setColor(ColorAttr.SELECTED);
 		for (final int selectedIndex : selectedIndices) {
 			final int pos = leafX
-					+ (directionLeftToRight ? (selectedIndex - visibleColumns
-							.size()) * cellWidth : selectedIndex * cellWidth);
+					+ (directionLeftToRight ? (selectedIndex - cols)
+							* cellWidth : selectedIndex * cellWidth);
 			g.drawLine(pos, 0, pos, getHeight());
 			g.drawLine(pos + cellWidth, 0, pos + cellWidth, getHeight());
 		}
 		g.setColor(backupColor);
 	}
 
+	/**
+	 * Paints the heatmap row, the key and the cluster separator of a leaf.
+	 * 
+	 * @param g
+	 *            The {@link Graphics} to paint on.
+	 * @param leaf
+	 *            The index of the leaf.
+	 * @param point
+	 *            The position of the leaf.
+	 * @param cols
+	 *            The number of visible columns.
+	 * @param fm
+	 *            The {@link FontMetrics} of {@code g}.
+	 */
+	private void paintLeaf(final Graphics g, final int leaf,
+			final Point point, final int cols, final FontMetrics fm) {
+		final int fontHeight = fm.getHeight();
+		final Color color = g.getColor();
+		final int left = point.x
+				+ (directionLeftToRight ? -cols * cellWidth : 0);
+		final int top = point.y - cellHeight / 2;
+		if (leafImage != null) {
+			g.drawImage(leafImage, left, top, left + cols * cellWidth, top
+					+ cellHeight + 1, 0, leaf, cols, leaf + 1, null);
+		}
+		final String key = keys[leaf];
+		if (showValues && leafImage != null) {
+			final int[] raster = ((DataBufferInt) leafImage.getRaster()
+					.getDataBuffer()).getData();
+			for (int i = 0; i < cols; ++i) {
+				if (!leafMissing[i].get(leaf)) {
+					final int argb = raster[leaf * cols + i];
+					g.setColor(Color.RGBtoHSB(argb >> 16 & 0xff,
+							argb >> 8 & 0xff, argb & 0xff, null)[2] > .6f ? Color.BLACK
+							: Color.WHITE);
+					String str = leafLabels[leaf * cols + i];
+					if (str == null) {
+						str = Misc.round(leafValues[i][leaf]);
+						leafLabels[leaf * cols + i] = str;
+					}
+					g.drawString(str, left + i * cellWidth
+							+ (cellWidth - fm.stringWidth(str)) / 2, point.y
+							+ fontHeight / 3);
+				}
+			}
+		}
+		final Color rowColor = leafRowColours[leaf];
+		if (rowColor != null) {
+			g.setColor(rowColor);
+			g.fillRect(directionLeftToRight ? point.x - cols * cellWidth
+					- maxStringLength : point.x + cols * cellWidth, top,
+					maxStringLength, cellHeight + 1);
+			g.setColor(Color.RGBtoHSB(rowColor.getGreen(),
+					rowColor.getGreen(), rowColor.getBlue(), null)[2] < .4f ? Color.WHITE
+					: Color.BLACK);
+		} else {
+			g.setColor(Color.RGBtoHSB(getBackground().getGreen(),
+					getBackground().getGreen(), getBackground().getBlue(),
+					null)[2] < .4f ? Color.WHITE : Color.BLACK);
+		}
+		g.drawString(key, directionLeftToRight ? point.x - cols * cellWidth
+				- fm.stringWidth(key) : point.x + cols * cellWidth, point.y + /*
+																			 * cellHeight
+																			 * /
+																			 * 2
+																			 * -
+																			 */
+				fontHeight / 3);
+		if (lastClusterKeys.contains(key)) {
+			g.setColor(Color.RGBtoHSB(getBackground().getGreen(),
+					getBackground().getGreen(), getBackground().getBlue(),
+					null)[2] < .4f ? Color.WHITE : Color.BLACK);
+			final int y = point.y + cellHeight / 2;
+			final Stroke stroke = ((Graphics2D) g).getStroke();
+			((Graphics2D) g).setStroke(new BasicStroke(1.0f,
+					BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 10.0f,
+					new float[] { 2.0f, 3.0f }, 0.0f));
+			g.drawLine(0, y, getWidth(), y);
+			((Graphics2D) g).setStroke(stroke);
+		}
+		g.setColor(color);
+	}
+
 	/**
 	 * Sets the actual cell height of the heatmap.
 	 * 
@@ -385,7 +752,14 @@ public class HeatmapDendrogramDrawingPane extends DendrogramDrawingPane {
 	 *            The new ColourModel.
 	 */
 	public void setColourModel(final ColourModel colourModel) {
+		if (this.colourModel != null) {
+			this.colourModel.removeActionListener(colourModelListener);
+		}
 		this.colourModel = colourModel;
+		if (colourModel != null) {
+			colourModel.addActionListener(colourModelListener);
+		}
+		leafColoursChanged();
 	}
 
 	@Override
@@ -52,8 +52,10 @@ import org.knime.core.node.property.hilite.HiLiteHandler;
 import org.knime.core.node.property.hilite.HiLiteListener;
 import org.knime.core.node.property.hilite.KeyEvent;
 
+import com.mind_era.knime.common.util.DoubleArrayList;
 import com.mind_era.knime.common.util.Misc;
 import com.mind_era.knime.common.util.SimpleModelBuilder;
+import com.mind_era.knime.common.util.VisualUtils;
 import com.mind_era.knime.common.util.ModelBuilder.SpecAnalyser;
 import com.mind_era.knime.common.util.swing.ImageType;
 import com.mind_era.knime.common.util.swing.PopupListener;
@@ -350,10 +352,11 @@ public class SimpleHeatmapNodeView extends NodeView<SimpleHeatmapNodeModel>
 			final boolean showVals = showValues.isSelected();
 			final int allCols = /* selectedStats.size() */1 * selectedParams
 					.size();
+			final Map<String, Integer> map = indices.get(selectedStat);
+			final int[][] colours = computeColours(selectedStat, map);
 			for (final DataRow row : table) {
 				int i = 0;
 				final Integer integer = Integer.valueOf(y);
-				final Map<String, Integer> map = indices.get(selectedStat);
 				final FontMetrics fm = g.getFontMetrics();
 				for (final String param : selectedParams) {
 					final int index = map.get(param);
@@ -363,11 +366,9 @@ public class SimpleHeatmapNodeView extends NodeView<SimpleHeatmapNodeModel>
 					if (cell instanceof DoubleValue) {
 						final double val = ((DoubleValue) cell)
 								.getDoubleValue();
-						final ColourComputer m = model.getModel(param,
-								selectedStat);
-						final Color col = m == null ? colorHandler == null ? Color.BLACK
+						final Color col = colours[i] == null ? colorHandler == null ? Color.BLACK
 								: colorHandler.getColorAttr(cell).getColor()
-								: m.compute(val);
+								: VisualUtils.interned(colours[i][y]);
 						g.setColor(col);
 						g.fillRect((textLeft ? maxStringLength + i * cellW : i /*- 1*/
 								* cellW), y * cellH, cellW, cellH);
@@ -434,6 +435,43 @@ public class SimpleHeatmapNodeView extends NodeView<SimpleHeatmapNodeModel>
 			}
 		}
 
+		/**
+		 * Computes the colours of the selected parameters with their
+		 * {@link ColourComputer}s, a column at once.
+		 * 
+		 * @param selectedStat
+		 *            The selected statistics.
+		 * @param map
+		 *            The column indices of the parameters of
+		 *            {@code selectedStat}.
+		 * @return The packed ARGB colours of the rows for each selected
+		 *         parameter, {@code null} elements for the parameters without
+		 *         {@link ColourComputer}.
+		 */
+		private int[][] computeColours(final StatTypes selectedStat,
+				final Map<String, Integer> map) {
+			final int[][] ret = new int[selectedParams.size()][];
+			final double[] vals = new double[table.size()];
+			int i = 0;
+			for (final String param : selectedParams) {
+				final ColourComputer m = model.getModel(param, selectedStat);
+				if (m != null) {
+					final int index = map.get(param).intValue();
+					int y = 0;
+					for (final DataRow row : table) {
+						final DataCell cell = row.getCell(index);
+						vals[y++] = cell instanceof DoubleValue ? ((DoubleValue) cell)
+								.getDoubleValue()
+								: Double.NaN;
+					}
+					ret[i] = new int[vals.length];
+					m.computeAll(vals, ret[i]);
+				}
+				++i;
+			}
+			return ret;
+		}
+
 		@Override
 		public void hiLite(final KeyEvent event) {
 			final Set<RowKey> keys = event.keys();
@@ -599,7 +637,7 @@ public class SimpleHeatmapNodeView extends NodeView<SimpleHeatmapNodeModel>
 				.getTable(), s);
 		final Map<String, Map<StatTypes, Map<RangeType, Double>>> ranges = s
 				.initialRanges();
-		final Map<String, Map<StatTypes, List<Double>>> vals = builder
+		final Map<String, Map<StatTypes, DoubleArrayList>> vals = builder
 				.computeAllVals();
 		SimpleModelBuilder.computeStatistics(ranges, vals);
 		selector.update(s.getParameters(), s.getStatistics(), ranges);